@@ -0,0 +1,147 @@
+package com.skyi.benchmark.collector;
+
+import com.skyi.collector.model.MetricDefinition;
+import com.skyi.collector.service.collector.AbstractMetricCollector;
+import com.skyi.collector.service.collector.CollectionContext;
+import com.skyi.collector.service.collector.CollectionResult;
+import com.skyi.collector.service.collector.ConnectionTestResult;
+import com.skyi.collector.service.collector.expression.ExpressionStateStore;
+import com.skyi.collector.service.collector.expression.MetricExpressionCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 采集表达式求值基准
+ * 对比原始类型热路径(复用引用缓冲区、预生成序列状态键)与装箱的parseExpression路径，
+ * 配合 -prof gc 观察每次求值的分配量，表指标按行索引取序列状态
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionEvaluationBenchmark {
+
+    private static final String REFERENCE = ".1.3.6.1.4.1.2021.4.5.0";
+
+    @Param({"rate(value)", "(${" + REFERENCE + "} - value) / ${" + REFERENCE + "} * 100"})
+    private String expression;
+
+    @Param({"1", "64"})
+    private int rows;
+
+    private BenchmarkCollector collector;
+    private CollectionContext context;
+    private MetricDefinition metric;
+    private String[] indexes;
+    private double value;
+
+    @Setup
+    public void setup() {
+        metric = new MetricDefinition();
+        metric.setId(1L);
+        metric.setCode("mem_used_percent");
+        metric.setName("mem_used_percent");
+
+        CollectionContext.MetricProtocolMappingInfo mapping = CollectionContext.MetricProtocolMappingInfo.builder()
+                .id(1L)
+                .metricId(1L)
+                .protocol("snmp")
+                .path(".1.3.6.1.4.1.2021.4.6.0")
+                .expression(expression)
+                .parameters(Collections.emptyMap())
+                .compiledExpression(MetricExpressionCompiler.compile(expression))
+                .stateKey("1:1")
+                .build();
+        context = CollectionContext.builder()
+                .taskId(1L)
+                .protocolMappings(Map.of(1L, mapping))
+                .build();
+
+        indexes = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            indexes[i] = rows == 1 ? null : String.valueOf(i + 1);
+        }
+        collector = new BenchmarkCollector(new ExpressionStateStore());
+    }
+
+    @Benchmark
+    public void evaluatePrimitive(Blackhole blackhole) {
+        value += 1024;
+        for (String index : indexes) {
+            blackhole.consume(collector.evaluate(context, metric, value, index));
+        }
+    }
+
+    @Benchmark
+    public void parseBoxed(Blackhole blackhole) {
+        value += 1024;
+        for (String index : indexes) {
+            blackhole.consume(collector.parse(context, metric, value, index));
+        }
+    }
+
+    /**
+     * 暴露受保护求值方法的采集器
+     */
+    private static final class BenchmarkCollector extends AbstractMetricCollector {
+
+        private BenchmarkCollector(ExpressionStateStore stateStore) {
+            this.expressionStateStore = stateStore;
+        }
+
+        double evaluate(CollectionContext context, MetricDefinition metric, double value, String index) {
+            List<String> references = getExpressionReferences(context, metric);
+            double[] resolved = referenceBuffer(references.size());
+            for (int i = 0; i < references.size(); i++) {
+                resolved[i] = 8L * 1024 * 1024 * 1024;
+            }
+            return evaluateExpression(context, metric, value, resolved, index);
+        }
+
+        Double parse(CollectionContext context, MetricDefinition metric, double value, String index) {
+            List<String> references = getExpressionReferences(context, metric);
+            double[] resolved = new double[references.size()];
+            for (int i = 0; i < resolved.length; i++) {
+                resolved[i] = 8L * 1024 * 1024 * 1024;
+            }
+            return parseExpression(context, metric, value, resolved, index);
+        }
+
+        @Override
+        public String getProtocol() {
+            return "snmp";
+        }
+
+        @Override
+        public List<String> getSupportedAssetTypes() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public CollectionResult collect(CollectionContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ConnectionTestResult testConnection(String assetType, Map<String, Object> connectionParams) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.skyi.benchmark.collector;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skyi.collector.dto.MetricDataDTO;
+import com.skyi.collector.service.codec.MetricWireEncoder;
+import com.skyi.processor.service.codec.MetricWireDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标消息格式基准
+ * 对比采集服务发往处理服务的两种消息格式：旧JSON格式每个数据点一条消息(与JsonSerializer序列化的Map相同)，
+ * 二进制信封格式同一次采集的数据点合为一条消息。
+ * 每次采集100个数据点、4个标签，结果按数据点计；启动时输出两种格式每个数据点的字节数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricWireBenchmark {
+
+    private static final int POINTS_PER_COLLECTION = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<MetricDataDTO> points;
+
+    private List<Map<String, Object>> jsonPoints;
+
+    private byte[][] jsonMessages;
+
+    private byte[] envelope;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        points = new ArrayList<>(POINTS_PER_COLLECTION);
+        jsonPoints = new ArrayList<>(POINTS_PER_COLLECTION);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < POINTS_PER_COLLECTION; i++) {
+            Map<String, String> labels = new HashMap<>();
+            labels.put("host", "10.0.0.1");
+            labels.put("oid", ".1.3.6.1.2.1.2.2.1.10." + i);
+            labels.put("index", String.valueOf(i));
+            labels.put("unit", "bytes/s");
+
+            MetricDataDTO point = new MetricDataDTO();
+            point.setTaskId(7L);
+            point.setInstanceId(1000L);
+            point.setAssetId(3L);
+            point.setMetricName("if_in_octets");
+            point.setMetricValue(i * 1.5);
+            point.setMetricLabels(labels);
+            point.setCollectTime(now);
+            point.setCreateTime(now);
+            points.add(point);
+            jsonPoints.add(toJsonMap(point));
+        }
+
+        jsonMessages = new byte[POINTS_PER_COLLECTION][];
+        long jsonBytes = 0;
+        for (int i = 0; i < POINTS_PER_COLLECTION; i++) {
+            jsonMessages[i] = objectMapper.writeValueAsBytes(jsonPoints.get(i));
+            jsonBytes += jsonMessages[i].length;
+        }
+        envelope = MetricWireEncoder.encodeEnvelope(points);
+        System.out.printf("%n每个数据点字节数: JSON %.1f, 二进制信封 %.1f%n",
+                (double) jsonBytes / POINTS_PER_COLLECTION, (double) envelope.length / POINTS_PER_COLLECTION);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS_PER_COLLECTION)
+    public void encodeJson(Blackhole blackhole) throws JsonProcessingException {
+        for (int i = 0; i < POINTS_PER_COLLECTION; i++) {
+            blackhole.consume(objectMapper.writeValueAsBytes(jsonPoints.get(i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS_PER_COLLECTION)
+    public byte[] encodeEnvelope() {
+        return MetricWireEncoder.encodeEnvelope(points);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS_PER_COLLECTION)
+    public void decodeJson(Blackhole blackhole) {
+        for (byte[] message : jsonMessages) {
+            blackhole.consume(MetricWireDecoder.decode(message));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS_PER_COLLECTION)
+    public Object decodeEnvelope() {
+        return MetricWireDecoder.decode(envelope);
+    }
+
+    /**
+     * 与MetricDataProducerService中JSON格式发送的字段相同
+     */
+    private static Map<String, Object> toJsonMap(MetricDataDTO point) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", point.getId());
+        data.put("taskId", point.getTaskId());
+        data.put("instanceId", point.getInstanceId());
+        data.put("assetId", point.getAssetId());
+        data.put("metricName", point.getMetricName());
+        data.put("metricLabels", point.getMetricLabels());
+        data.put("metricValue", point.getMetricValue());
+        data.put("collectTime", point.getCollectTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        data.put("createTime", point.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        return data;
+    }
+}
@@ -0,0 +1,115 @@
+package com.skyi.benchmark.processor;
+
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.service.anomaly.AnomalyDetector;
+import com.skyi.processor.service.worker.SeriesKey;
+import com.skyi.processor.service.worker.SeriesProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基线异常检测基准
+ * 单个工作线程的检测器依次更新大量序列，每个数据点一次基线更新(含季节项)，
+ * 序列已过预热期，数值在基线附近波动不触发事件；结果按数据点计，配合 -prof gc 确认更新不分配对象
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnomalyDetectorBenchmark {
+
+    private static final long INTERVAL_MILLIS = 10_000L;
+
+    private static final int NOISE_SIZE = 1024;
+
+    @Param({"1000", "100000"})
+    private int series;
+
+    private SeriesProcessor detector;
+    private MetricData[] points;
+    private long[] keys;
+    private double[] noise;
+    private long timestamp;
+    private int next;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        AnomalyDetector factory = new AnomalyDetector();
+        set(factory, "meterRegistry", new SimpleMeterRegistry());
+        set(factory, "enabled", true);
+        set(factory, "alpha", 0.05);
+        set(factory, "seasonalGamma", 0.1);
+        set(factory, "seasonBuckets", 24);
+        set(factory, "threshold", 4.0);
+        set(factory, "minRelativeStddev", 0.01);
+        set(factory, "minStddev", 0.001);
+        set(factory, "warmup", 30);
+        set(factory, "seriesIdleMs", 86_400_000L);
+        set(factory, "checkpointDir", "");
+        set(factory, "checkpointIntervalMs", 300_000L);
+        factory.init();
+        detector = factory.create(0);
+
+        Random random = new Random(42);
+        noise = new double[NOISE_SIZE];
+        for (int i = 0; i < NOISE_SIZE; i++) {
+            noise[i] = 50 + random.nextDouble() * 2 - 1;
+        }
+        points = new MetricData[series];
+        keys = new long[series];
+        timestamp = System.currentTimeMillis();
+        for (int i = 0; i < series; i++) {
+            MetricData point = MetricData.of("if_in_octets", 0.0, Instant.ofEpochMilli(timestamp));
+            point.setAssetId((long) i);
+            point.addTag("index", String.valueOf(i));
+            points[i] = point;
+            keys[i] = SeriesKey.of(point);
+        }
+        // 预热全部序列，使基准测量的是开始评分后的更新
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < series; i++) {
+                update(i);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean update() {
+        int i = next;
+        next = i + 1 == series ? 0 : i + 1;
+        return update(i);
+    }
+
+    private boolean update(int i) {
+        if (i == 0) {
+            timestamp += INTERVAL_MILLIS;
+        }
+        MetricData point = points[i];
+        point.doubleValue(noise[(int) (timestamp / INTERVAL_MILLIS + i) & (NOISE_SIZE - 1)]);
+        point.timestampMillis(timestamp);
+        return detector.process(point, keys[i]);
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,147 @@
+package com.skyi.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 指标最新值
+ * 存储服务在写入时更新最新值表(本地及Redis)，可视化等服务按相同的键直接读取。
+ * Redis中的格式：
+ * <pre>
+ * 键:   latest:{资产ID}:{指标名称}:{标签哈希}，标签哈希为*时表示该资产指标所有标签组合中最新的值
+ * 值:   数据时间(毫秒)|值|写入时间(毫秒)|单位
+ * 水位: latest:watermark 哈希表，各存储实例 → 该实例最近一次更新最新值表的时间(毫秒)
+ * </pre>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatestValue {
+
+    /**
+     * 键前缀
+     */
+    public static final String KEY_PREFIX = "latest:";
+
+    /**
+     * 写入水位键
+     */
+    public static final String WATERMARK_KEY = "latest:watermark";
+
+    /**
+     * 表示任意标签组合的标签哈希
+     */
+    public static final String ANY_TAGS = "*";
+
+    /**
+     * 数据时间(毫秒)
+     */
+    private long time;
+
+    /**
+     * 指标值
+     */
+    private double value;
+
+    /**
+     * 写入最新值表的时间(毫秒)
+     */
+    private long updatedAt;
+
+    /**
+     * 单位
+     */
+    private String unit;
+
+    /**
+     * 最新值的键
+     *
+     * @param assetId    资产ID
+     * @param metricName 指标名称
+     * @param tags       标签，其中的assetId、metricName、unit不参与哈希
+     */
+    public static String key(String assetId, String metricName, Map<String, String> tags) {
+        return KEY_PREFIX + nullToEmpty(assetId) + ":" + nullToEmpty(metricName) + ":" + tagsHash(tags);
+    }
+
+    /**
+     * 资产指标所有标签组合中最新值的键
+     */
+    public static String anyTagsKey(String assetId, String metricName) {
+        return KEY_PREFIX + nullToEmpty(assetId) + ":" + nullToEmpty(metricName) + ":" + ANY_TAGS;
+    }
+
+    /**
+     * 标签哈希：按键排序后的 键=值 序列的64位FNV-1a哈希，没有标签时为0
+     */
+    public static String tagsHash(Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return "0";
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        tags.forEach((key, value) -> {
+            if (key != null && value != null && !value.isEmpty()
+                    && !"assetId".equals(key) && !"metricName".equals(key) && !"unit".equals(key)) {
+                sorted.put(key, value);
+            }
+        });
+        if (sorted.isEmpty()) {
+            return "0";
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            hash = fnv(hash, entry.getKey());
+            hash = fnv(hash, "=");
+            hash = fnv(hash, entry.getValue());
+            hash = fnv(hash, "\u0000");
+        }
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * 编码为Redis中保存的字符串
+     */
+    public String encode() {
+        return time + "|" + value + "|" + updatedAt + "|" + nullToEmpty(unit);
+    }
+
+    /**
+     * 解析Redis中保存的字符串
+     *
+     * @return 最新值，格式错误时返回null
+     */
+    public static LatestValue decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] parts = encoded.split("\\|", 4);
+        if (parts.length < 3) {
+            return null;
+        }
+        try {
+            return new LatestValue(Long.parseLong(parts[0]), Double.parseDouble(parts[1]), Long.parseLong(parts[2]),
+                    parts.length > 3 && !parts[3].isEmpty() ? parts[3] : null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long fnv(long hash, String text) {
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
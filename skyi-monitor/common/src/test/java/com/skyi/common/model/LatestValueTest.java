@@ -0,0 +1,104 @@
+package com.skyi.common.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 最新值测试：Redis值的编码解析，以及标签哈希
+ */
+public class LatestValueTest {
+
+    /**
+     * 测试编码后解析得到相同的值，没有单位时解析为null
+     */
+    @Test
+    public void testEncodeDecode() {
+        LatestValue value = new LatestValue(1_700_000_000_123L, 42.5, 1_700_000_001_000L, "%");
+        assertEquals("1700000000123|42.5|1700000001000|%", value.encode());
+        assertEquals(value, LatestValue.decode(value.encode()));
+
+        LatestValue noUnit = new LatestValue(1L, -0.25, 2L, null);
+        assertEquals("1|-0.25|2|", noUnit.encode());
+        assertEquals(noUnit, LatestValue.decode(noUnit.encode()));
+    }
+
+    /**
+     * 测试单位中的分隔符原样保留，旧格式没有单位字段也能解析
+     */
+    @Test
+    public void testDecodeUnitAndShortFormat() {
+        assertEquals("a|b", LatestValue.decode("1|2.0|3|a|b").getUnit());
+
+        LatestValue value = LatestValue.decode("1|2.0|3");
+        assertEquals(1L, value.getTime());
+        assertEquals(2.0, value.getValue());
+        assertEquals(3L, value.getUpdatedAt());
+        assertNull(value.getUnit());
+    }
+
+    /**
+     * 测试格式错误时返回null
+     */
+    @Test
+    public void testDecodeInvalid() {
+        assertNull(LatestValue.decode(null));
+        assertNull(LatestValue.decode(""));
+        assertNull(LatestValue.decode("1|2.0"));
+        assertNull(LatestValue.decode("x|2.0|3|%"));
+        assertNull(LatestValue.decode("1|NaN?|3|%"));
+    }
+
+    /**
+     * 测试标签哈希与标签顺序无关，忽略保留标签和空值，没有有效标签时为0
+     */
+    @Test
+    public void testTagsHash() {
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("host", "server-1");
+        tags.put("ifIndex", "3");
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("ifIndex", "3");
+        reordered.put("host", "server-1");
+        reordered.put("assetId", "1");
+        reordered.put("metricName", "if_in_octets");
+        reordered.put("unit", "bytes");
+        reordered.put("empty", "");
+        reordered.put("missing", null);
+
+        assertEquals(LatestValue.tagsHash(tags), LatestValue.tagsHash(reordered));
+        assertNotEquals("0", LatestValue.tagsHash(tags));
+
+        Map<String, String> other = new HashMap<>(tags);
+        other.put("ifIndex", "4");
+        assertNotEquals(LatestValue.tagsHash(tags), LatestValue.tagsHash(other));
+
+        Map<String, String> reserved = new HashMap<>();
+        reserved.put("assetId", "1");
+        assertEquals("0", LatestValue.tagsHash(null));
+        assertEquals("0", LatestValue.tagsHash(new HashMap<>()));
+        assertEquals("0", LatestValue.tagsHash(reserved));
+    }
+
+    /**
+     * 测试标签哈希固定为64位FNV-1a，其他服务按相同算法计算键
+     */
+    @Test
+    public void testTagsHashValue() {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("a", "b");
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : "a=b\u0000".getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        assertEquals(Long.toHexString(hash), LatestValue.tagsHash(tags));
+        assertEquals("latest:1:cpu_usage:" + Long.toHexString(hash), LatestValue.key("1", "cpu_usage", tags));
+        assertEquals("latest:1:cpu_usage:*", LatestValue.anyTagsKey("1", "cpu_usage"));
+    }
+}
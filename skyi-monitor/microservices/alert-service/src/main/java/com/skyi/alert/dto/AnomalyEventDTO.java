@@ -0,0 +1,69 @@
+package com.skyi.alert.dto;
+
+import com.skyi.alert.model.AlertSeverity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 基线偏离事件DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnomalyEventDTO {
+    /**
+     * 事件类型
+     */
+    private String eventType;
+    
+    /**
+     * 资产ID
+     */
+    private Long assetId;
+    
+    /**
+     * 指标名称
+     */
+    private String metricName;
+    
+    /**
+     * 指标值
+     */
+    private Double value;
+    
+    /**
+     * 基线预测值
+     */
+    private Double expected;
+    
+    /**
+     * 基线标准差
+     */
+    private Double stddev;
+    
+    /**
+     * 偏离程度（残差/标准差）
+     */
+    private Double score;
+    
+    /**
+     * 事件时间
+     */
+    private LocalDateTime timestamp;
+    
+    /**
+     * 告警级别
+     */
+    private AlertSeverity severity;
+    
+    /**
+     * 额外标签
+     */
+    private Map<String, Object> tags;
+}
@@ -1,6 +1,7 @@
 package com.skyi.alert.service;
 
 import com.skyi.alert.dto.AlertDTO;
+import com.skyi.alert.dto.AnomalyEventDTO;
 import com.skyi.alert.dto.ThresholdAlertDTO;
 import com.skyi.alert.model.Alert;
 import com.skyi.alert.model.AlertSeverity;
@@ -26,6 +27,14 @@ public interface AlertService {
      */
     Alert processThresholdAlert(ThresholdAlertDTO thresholdAlertDTO);
     
+    /**
+     * 处理基线偏离事件
+     *
+     * @param anomalyEventDTO 基线偏离事件数据
+     * @return 生成的告警
+     */
+    Alert processAnomalyEvent(AnomalyEventDTO anomalyEventDTO);
+    
     /**
      * 根据ID查询告警
      *
@@ -1,6 +1,7 @@
 package com.skyi.alert.service.impl;
 
 import com.skyi.alert.dto.AlertDTO;
+import com.skyi.alert.dto.AnomalyEventDTO;
 import com.skyi.alert.dto.ThresholdAlertDTO;
 import com.skyi.alert.model.Alert;
 import com.skyi.alert.model.AlertNotification;
@@ -64,6 +65,32 @@ public class AlertServiceImpl implements AlertService {
         return alertRepository.save(alert);
     }
     
+    @Override
+    @Transactional
+    public Alert processAnomalyEvent(AnomalyEventDTO anomalyEventDTO) {
+        log.info("处理基线偏离事件: {}", anomalyEventDTO);
+        
+        Alert alert = new Alert();
+        alert.setAlertUuid(UUID.randomUUID().toString());
+        alert.setName(anomalyEventDTO.getMetricName() + " 偏离基线");
+        alert.setMessage("指标 " + anomalyEventDTO.getMetricName() + 
+            " 当前值 " + anomalyEventDTO.getValue() + 
+            " 偏离基线预测值 " + anomalyEventDTO.getExpected() + 
+            "，偏离程度 " + anomalyEventDTO.getScore());
+        alert.setMetricName(anomalyEventDTO.getMetricName());
+        alert.setMetricValue(anomalyEventDTO.getValue());
+        alert.setThreshold(anomalyEventDTO.getExpected());
+        alert.setType(AlertType.PATTERN);
+        alert.setSeverity(anomalyEventDTO.getSeverity() != null ? anomalyEventDTO.getSeverity() : AlertSeverity.WARNING);
+        alert.setStatus(AlertStatus.ACTIVE);
+        alert.setAssetId(anomalyEventDTO.getAssetId());
+        alert.setStartTime(LocalDateTime.now());
+        alert.setNotified(false);
+        alert.setNotificationCount(0);
+        
+        return alertRepository.save(alert);
+    }
+    
     @Override
     public Alert getAlertById(Long id) {
         return alertRepository.findById(id)
@@ -142,5 +142,10 @@ public class CollectorTaskDTO {
          * 是否启用
          */
         private Boolean enabled = true;
+        
+        /**
+         * 是否按表遍历采集（SNMP表列，每行生成一条数据）
+         */
+        private Boolean walk = false;
     }
 } 
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.skyi.collector.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import javax.validation.constraints.NotBlank;
@@ -62,4 +63,11 @@ public class MetricDataDTO {
      * 创建时间
      */
     private LocalDateTime createTime;
+    
+    /**
+     * 计数器位宽(32/64)，为空表示非计数器
+     * 仅在采集器内部用于计数器转速率，不随数据发送
+     */
+    @JsonIgnore
+    private Integer counterBits;
 } 
\ No newline at end of file
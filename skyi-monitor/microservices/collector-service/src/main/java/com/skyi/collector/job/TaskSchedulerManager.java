@@ -1,213 +1,665 @@
 package com.skyi.collector.job;
 
-import com.cronutils.mapper.CronMapper;
-import com.cronutils.model.Cron;
 import com.cronutils.model.CronType;
 import com.cronutils.model.definition.CronDefinition;
 import com.cronutils.model.definition.CronDefinitionBuilder;
 import com.cronutils.model.time.ExecutionTime;
 import com.cronutils.parser.CronParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skyi.collector.job.cluster.ClusterMembership;
+import com.skyi.collector.job.wheel.HierarchicalTimingWheel;
+import com.skyi.collector.model.CollectorRule;
 import com.skyi.collector.model.CollectorTask;
 import com.skyi.collector.model.CollectorTaskSchedule;
+import com.skyi.collector.repository.CollectorRuleRepository;
 import com.skyi.collector.repository.CollectorTaskRepository;
 import com.skyi.collector.repository.CollectorTaskScheduleRepository;
 import com.skyi.collector.service.CollectorTaskExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 /**
  * 任务调度管理器
- * 负责动态执行界面配置的调度任务
+ * 启动时一次性加载启用的任务、调度配置和调度规则，之后全部在内存中的分层时间轮上调度，
+ * 本节点的配置变更由各服务写库后调用refresh/remove增量更新，在事务中调用时推迟到事务提交后生效，
+ * 回滚的变更不会留在时间轮上；其他节点写入的变更由定时同步按更新时间增量拉取，删除和停用按ID集合比对移除。
+ * 固定频率类调度按key的哈希值在周期内错开相位，并叠加随机抖动，避免相同周期的大量任务在同一时刻触发。
+ * 多实例部署时每个节点都维护完整的调度，触发时只执行按一致性哈希归属于本节点的任务
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class TaskSchedulerManager {
-    
+
+    private static final String TASK_KEY = "task:";
+    private static final String SCHEDULE_KEY = "schedule:";
+    private static final String RULE_KEY = "rule:";
+
     private final CollectorTaskRepository taskRepository;
     private final CollectorTaskScheduleRepository scheduleRepository;
+    private final CollectorRuleRepository ruleRepository;
     private final CollectorTaskExecutor taskExecutor;
-    
+    private final ObjectMapper objectMapper;
+    private final ClusterMembership clusterMembership;
+
     // Cron表达式解析器
     private final CronDefinition cronDefinition = CronDefinitionBuilder.instanceDefinitionFor(CronType.QUARTZ);
     private final CronParser parser = new CronParser(cronDefinition);
-    
+
+    @Value("${collector.scheduler.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${collector.scheduler.wheel-bits:6}")
+    private int wheelBits;
+
+    @Value("${collector.scheduler.wheel-levels:4}")
+    private int wheelLevels;
+
+    @Value("${collector.scheduler.max-jitter-ms:2000}")
+    private long maxJitterMs;
+
+    @Value("${collector.scheduler.dispatch-threads:2}")
+    private int dispatchThreads;
+
+    @Value("${collector.scheduler.sync-lookback-ms:60000}")
+    private long syncLookbackMs;
+
     /**
-     * 执行固定频率的调度任务
-     * 每10秒检查一次
+     * 任务缓存，调度和规则触发时直接使用，不再逐条查库
      */
-    @Scheduled(fixedRate = 10000)
-    public void executeFixedRateSchedules() {
-        LocalDateTime now = LocalDateTime.now();
-        log.debug("检查固定频率调度任务: {}", now);
-        
-        try {
-            // 查询需要执行的固定频率调度
-            List<CollectorTaskSchedule> schedules = scheduleRepository.findFixedRateSchedulesToExecute(now);
-            log.info("发现{}个固定频率调度需要执行", schedules.size());
-            
-            for (CollectorTaskSchedule schedule : schedules) {
-                try {
-                    // 获取对应的任务
-                    CollectorTask task = taskRepository.findById(schedule.getTaskId()).orElse(null);
-                    if (task == null) {
-                        log.warn("任务不存在: taskId={}", schedule.getTaskId());
-                        continue;
-                    }
-                    
-                    // 执行任务
-                    taskExecutor.scheduleTask(task, false);
-                    
-                    // 更新调度记录
-                    schedule.setLastExecuteTime(now);
-                    // 计算下次执行时间
-                    schedule.setNextExecuteTime(now.plusSeconds(schedule.getFixedRate()));
-                    scheduleRepository.save(schedule);
-                    
-                } catch (Exception e) {
-                    log.error("执行固定频率调度出错: scheduleId={}, {}", schedule.getId(), e.getMessage(), e);
+    private final Map<Long, CollectorTask> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * 每个调度项当前有效的触发器
+     */
+    private final Map<String, Trigger> triggers = new ConcurrentHashMap<>();
+
+    /**
+     * 已应用的各调度项的更新时间，定时同步时跳过未变化的记录
+     */
+    private final Map<String, LocalDateTime> versions = new ConcurrentHashMap<>();
+
+    private HierarchicalTimingWheel wheel;
+
+    private ExecutorService dispatcher;
+
+    /**
+     * 应用启动完成后加载全部调度并启动时间轮
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        clusterMembership.join();
+        AtomicInteger threadIndex = new AtomicInteger();
+        dispatcher = Executors.newFixedThreadPool(Math.max(1, dispatchThreads), r -> {
+            Thread thread = new Thread(r, "task-scheduler-dispatch-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        wheel = new HierarchicalTimingWheel("task-scheduler-wheel", tickMs, wheelBits, wheelLevels);
+        wheel.start();
+
+        taskRepository.findAll().forEach(this::applyTask);
+        scheduleRepository.findByEnabled(1).forEach(this::applySchedule);
+        ruleRepository.findByStatus(1).forEach(this::applyRule);
+
+        log.info("任务调度时间轮已启动, tick: {}ms, 任务数: {}, 调度项数: {}", tickMs, tasks.size(), triggers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        triggers.values().forEach(Trigger::cancel);
+        triggers.clear();
+        if (wheel != null) {
+            wheel.stop();
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * 任务新增或修改后刷新缓存和按采集间隔的调度
+     *
+     * @param task 采集任务
+     */
+    public void refreshTask(CollectorTask task) {
+        afterCommit(() -> applyTask(task));
+    }
+
+    private void applyTask(CollectorTask task) {
+        if (task == null || task.getId() == null) {
+            return;
+        }
+        tasks.put(task.getId(), task);
+
+        String key = TASK_KEY + task.getId();
+        recordVersion(key, task.getUpdateTime());
+        if (!isStarted() || task.getStatus() == null || task.getStatus() != 1
+                || task.getInterval() == null || task.getInterval() <= 0) {
+            disarm(key);
+            return;
+        }
+        armPeriodic(key, task.getInterval() * 1000L, System.currentTimeMillis(),
+                base -> fireTask(task.getId(), base));
+    }
+
+    /**
+     * 任务删除后移除缓存和调度
+     *
+     * @param taskId 任务ID
+     */
+    public void removeTask(Long taskId) {
+        afterCommit(() -> {
+            tasks.remove(taskId);
+            versions.remove(TASK_KEY + taskId);
+            disarm(TASK_KEY + taskId);
+        });
+    }
+
+    /**
+     * 调度配置新增、修改、启停后刷新
+     *
+     * @param schedule 调度配置
+     */
+    public void refreshSchedule(CollectorTaskSchedule schedule) {
+        afterCommit(() -> applySchedule(schedule));
+    }
+
+    private void applySchedule(CollectorTaskSchedule schedule) {
+        if (schedule == null || schedule.getId() == null) {
+            return;
+        }
+        String key = SCHEDULE_KEY + schedule.getId();
+        recordVersion(key, schedule.getUpdateTime());
+        if (!isStarted() || schedule.getEnabled() == null || schedule.getEnabled() != 1) {
+            disarm(key);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        switch (schedule.getScheduleType()) {
+            case 1: // 固定频率
+                if (schedule.getFixedRate() == null || schedule.getFixedRate() <= 0) {
+                    disarm(key);
+                    return;
+                }
+                long from = Math.max(now, toMillis(schedule.getStartTime(), now));
+                armPeriodic(key, schedule.getFixedRate() * 1000L, from, base -> fireSchedule(schedule, base));
+                break;
+            case 2: // CRON
+                armCron(key, schedule.getCronExpression(), Math.max(now, toMillis(schedule.getStartTime(), now)),
+                        base -> fireSchedule(schedule, base));
+                break;
+            case 3: // 一次性
+                if (schedule.getExecuteTime() == null || schedule.getLastExecuteTime() != null) {
+                    disarm(key);
+                    return;
                 }
+                long executeAt = toMillis(schedule.getExecuteTime(), now);
+                arm(key, executeAt, executeAt, base -> fireSchedule(schedule, base));
+                break;
+            default:
+                log.warn("不支持的调度类型: scheduleId={}, type={}", schedule.getId(), schedule.getScheduleType());
+                disarm(key);
+                break;
+        }
+    }
+
+    /**
+     * 调度配置删除后移除
+     *
+     * @param scheduleId 调度ID
+     */
+    public void removeSchedule(Long scheduleId) {
+        afterCommit(() -> {
+            versions.remove(SCHEDULE_KEY + scheduleId);
+            disarm(SCHEDULE_KEY + scheduleId);
+        });
+    }
+
+    /**
+     * 调度规则新增、修改、启停后刷新
+     *
+     * @param rule 调度规则
+     */
+    public void refreshRule(CollectorRule rule) {
+        afterCommit(() -> applyRule(rule));
+    }
+
+    private void applyRule(CollectorRule rule) {
+        if (rule == null || rule.getId() == null) {
+            return;
+        }
+        String key = RULE_KEY + rule.getId();
+        recordVersion(key, rule.getUpdateTime());
+        if (!isStarted() || rule.getStatus() == null || rule.getStatus() != 1 || rule.getType() == null) {
+            disarm(key);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            switch (rule.getType()) {
+                case "interval":
+                    long intervalMs = Long.parseLong(rule.getExpression().trim()) * 1000L;
+                    armPeriodic(key, intervalMs, now, base -> fireRule(rule, base));
+                    break;
+                case "cron":
+                    armCron(key, rule.getExpression(), now, base -> fireRule(rule, base));
+                    break;
+                case "fixedTime":
+                    armFixedTime(key, LocalTime.parse(rule.getExpression().trim()), now, base -> fireRule(rule, base));
+                    break;
+                default:
+                    log.warn("不支持的规则类型: ruleId={}, type={}", rule.getId(), rule.getType());
+                    disarm(key);
+                    break;
             }
         } catch (Exception e) {
-            log.error("执行固定频率调度过程出错: {}", e.getMessage(), e);
+            log.error("调度规则配置无效: ruleId={}, {}", rule.getId(), e.getMessage());
+            disarm(key);
         }
     }
-    
+
     /**
-     * 执行一次性调度任务
-     * 每1分钟检查一次
+     * 调度规则删除后移除
+     *
+     * @param ruleId 规则ID
      */
-    @Scheduled(fixedRate = 60000)
-    public void executeOneTimeSchedules() {
-        LocalDateTime now = LocalDateTime.now();
-        log.debug("检查一次性调度任务: {}", now);
-        
+    public void removeRule(Long ruleId) {
+        afterCommit(() -> {
+            versions.remove(RULE_KEY + ruleId);
+            disarm(RULE_KEY + ruleId);
+        });
+    }
+
+    /**
+     * 同步其他节点写入的配置变更
+     * 各节点只在本地调用refresh/remove，其他节点新增、修改的任务、调度和规则按更新时间增量拉取；
+     * 回看窗口覆盖同步间隔、长事务提交延迟和节点间时钟偏差，窗口内已应用过的同一版本不会重复安排。
+     * 删除以及在其他节点停用的调度项查不到修改记录，按数据库中的ID集合比对后移除
+     */
+    @Scheduled(fixedDelayString = "${collector.scheduler.sync-interval-ms:10000}",
+            initialDelayString = "${collector.scheduler.sync-interval-ms:10000}")
+    public void syncChanges() {
+        if (!isStarted()) {
+            return;
+        }
         try {
-            // 查询需要执行的一次性调度
-            List<CollectorTaskSchedule> schedules = scheduleRepository.findOneTimeSchedulesToExecute(now);
-            log.info("发现{}个一次性调度需要执行", schedules.size());
-            
-            for (CollectorTaskSchedule schedule : schedules) {
-                try {
-                    // 获取对应的任务
-                    CollectorTask task = taskRepository.findById(schedule.getTaskId()).orElse(null);
-                    if (task == null) {
-                        log.warn("任务不存在: taskId={}", schedule.getTaskId());
-                        continue;
-                    }
-                    
-                    // 执行任务
-                    taskExecutor.scheduleTask(task, false);
-                    
-                    // 更新调度记录
-                    schedule.setLastExecuteTime(now);
-                    schedule.setEnabled(0); // 执行完成后自动禁用
-                    scheduleRepository.save(schedule);
-                    
-                } catch (Exception e) {
-                    log.error("执行一次性调度出错: scheduleId={}, {}", schedule.getId(), e.getMessage(), e);
+            LocalDateTime since = LocalDateTime.now().minus(Duration.ofMillis(syncLookbackMs));
+            taskRepository.findByUpdateTimeAfter(since).stream()
+                    .filter(task -> isChanged(TASK_KEY + task.getId(), task.getUpdateTime()))
+                    .forEach(this::applyTask);
+            scheduleRepository.findByUpdateTimeAfter(since).stream()
+                    .filter(schedule -> isChanged(SCHEDULE_KEY + schedule.getId(), schedule.getUpdateTime()))
+                    .forEach(this::applySchedule);
+            ruleRepository.findByUpdateTimeAfter(since).stream()
+                    .filter(rule -> isChanged(RULE_KEY + rule.getId(), rule.getUpdateTime()))
+                    .forEach(this::applyRule);
+
+            Set<Long> taskIds = new HashSet<>(taskRepository.findAllIds());
+            tasks.keySet().removeIf(taskId -> {
+                if (taskIds.contains(taskId)) {
+                    return false;
                 }
-            }
+                forget(TASK_KEY + taskId);
+                return true;
+            });
+            retainArmed(SCHEDULE_KEY, new HashSet<>(scheduleRepository.findEnabledIds()));
+            retainArmed(RULE_KEY, new HashSet<>(ruleRepository.findEnabledIds()));
         } catch (Exception e) {
-            log.error("执行一次性调度过程出错: {}", e.getMessage(), e);
+            log.error("同步调度配置变更出错: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 移除数据库中已不再启用的调度项
+     */
+    private void retainArmed(String prefix, Set<Long> enabledIds) {
+        for (String key : triggers.keySet()) {
+            if (key.startsWith(prefix) && !enabledIds.contains(Long.valueOf(key.substring(prefix.length())))) {
+                forget(key);
+            }
+        }
+    }
+
+    /**
+     * 移除调度项及其版本记录，刚提交的记录被误判移除时会在下次同步的回看窗口内重新安排
+     */
+    private void forget(String key) {
+        versions.remove(key);
+        disarm(key);
+    }
+
+    private void recordVersion(String key, LocalDateTime updateTime) {
+        if (updateTime != null) {
+            versions.put(key, updateTime);
         }
     }
-    
+
+    private boolean isChanged(String key, LocalDateTime updateTime) {
+        return updateTime == null || !Objects.equals(versions.get(key), updateTime);
+    }
+
     /**
-     * 执行CRON调度任务
-     * 每1分钟检查一次
+     * 当前线程处于事务中时在提交后执行，否则立即执行
      */
-    @Scheduled(fixedRate = 60000)
-    public void executeCronSchedules() {
-        LocalDateTime now = LocalDateTime.now();
-        ZonedDateTime zonedNow = now.atZone(ZoneId.systemDefault());
-        log.debug("检查CRON调度任务: {}", now);
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 按采集间隔执行任务
+     */
+    private void fireTask(Long taskId, long base) {
+        CollectorTask task = tasks.get(taskId);
+        if (task == null || task.getStatus() == null || task.getStatus() != 1
+                || task.getInterval() == null || task.getInterval() <= 0) {
+            return;
+        }
+        armPeriodic(TASK_KEY + taskId, task.getInterval() * 1000L, base + 1, next -> fireTask(taskId, next));
+        if (clusterMembership.ownsTask(taskId)) {
+            taskExecutor.scheduleTask(task, false);
+        }
+    }
+
+    /**
+     * 执行调度配置
+     */
+    private void fireSchedule(CollectorTaskSchedule schedule, long base) {
+        long now = System.currentTimeMillis();
+        if (schedule.getEndTime() != null && now > toMillis(schedule.getEndTime(), now)) {
+            log.info("调度已超出有效期: scheduleId={}", schedule.getId());
+            return;
+        }
+
+        LocalDateTime executeTime = toLocalDateTime(now);
+        LocalDateTime nextExecuteTime = null;
+        int enabled = 1;
+        String key = SCHEDULE_KEY + schedule.getId();
+        switch (schedule.getScheduleType()) {
+            case 1:
+                nextExecuteTime = toLocalDateTime(armPeriodic(key, schedule.getFixedRate() * 1000L, base + 1,
+                        next -> fireSchedule(schedule, next)));
+                break;
+            case 2:
+                long nextCron = armCron(key, schedule.getCronExpression(), base + 1, next -> fireSchedule(schedule, next));
+                nextExecuteTime = nextCron > 0 ? toLocalDateTime(nextCron) : null;
+                break;
+            default:
+                // 一次性调度执行后自动禁用
+                enabled = 0;
+                break;
+        }
+        schedule.setLastExecuteTime(executeTime);
+        schedule.setNextExecuteTime(nextExecuteTime);
+        schedule.setEnabled(enabled);
         
+        // 调度随其任务归属，由任务所在节点执行并记录执行状态
+        if (!clusterMembership.ownsTask(schedule.getTaskId())) {
+            return;
+        }
+
+        CollectorTask task = resolveTask(schedule.getTaskId());
+        if (task == null) {
+            log.warn("任务不存在: taskId={}", schedule.getTaskId());
+            return;
+        }
+
         try {
-            // 查询当前有效的CRON调度
-            List<CollectorTaskSchedule> schedules = scheduleRepository.findValidCronSchedules(now);
-            log.info("发现{}个CRON调度需要检查", schedules.size());
-            
-            for (CollectorTaskSchedule schedule : schedules) {
-                try {
-                    // 解析CRON表达式
-                    Cron cron = parser.parse(schedule.getCronExpression());
-                    ExecutionTime executionTime = ExecutionTime.forCron(cron);
-                    
-                    // 检查是否需要执行
-                    LocalDateTime lastExecuteTime = schedule.getLastExecuteTime();
-                    if (lastExecuteTime == null) {
-                        // 从未执行过，检查当前时间是否应该执行
-                        Optional<ZonedDateTime> nextExecution = executionTime.nextExecution(zonedNow.minusMinutes(1));
-                        if (nextExecution.isPresent() && !nextExecution.get().isAfter(zonedNow)) {
-                            executeSchedule(schedule, now);
-                        }
-                    } else {
-                        // 已执行过，检查上次执行时间到现在是否应该执行
-                        ZonedDateTime lastZoned = lastExecuteTime.atZone(ZoneId.systemDefault());
-                        Optional<ZonedDateTime> nextExecution = executionTime.nextExecution(lastZoned);
-                        if (nextExecution.isPresent() && !nextExecution.get().isAfter(zonedNow)) {
-                            executeSchedule(schedule, now);
-                        }
-                    }
-                    
-                } catch (Exception e) {
-                    log.error("检查CRON调度出错: scheduleId={}, {}", schedule.getId(), e.getMessage(), e);
-                }
+            taskExecutor.scheduleTask(task, false);
+            scheduleRepository.updateExecuteState(schedule.getId(), executeTime, nextExecuteTime, enabled);
+        } catch (Exception e) {
+            log.error("执行调度出错: scheduleId={}, {}", schedule.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 执行调度规则关联的全部任务
+     */
+    private void fireRule(CollectorRule rule, long base) {
+        String key = RULE_KEY + rule.getId();
+        long next = -1;
+        try {
+            switch (rule.getType()) {
+                case "interval":
+                    next = armPeriodic(key, Long.parseLong(rule.getExpression().trim()) * 1000L, base + 1,
+                            b -> fireRule(rule, b));
+                    break;
+                case "cron":
+                    next = armCron(key, rule.getExpression(), base + 1, b -> fireRule(rule, b));
+                    break;
+                default:
+                    next = armFixedTime(key, LocalTime.parse(rule.getExpression().trim()), base + 1,
+                            b -> fireRule(rule, b));
+                    break;
             }
         } catch (Exception e) {
-            log.error("执行CRON调度过程出错: {}", e.getMessage(), e);
+            log.error("计算规则下次执行时间出错: ruleId={}, {}", rule.getId(), e.getMessage());
+        }
+
+        List<Long> taskIds;
+        try {
+            taskIds = rule.getTaskIds() == null ? List.of()
+                    : objectMapper.readValue(rule.getTaskIds(), new TypeReference<List<Long>>() {});
+        } catch (Exception e) {
+            log.error("解析规则任务ID列表出错: ruleId={}, {}", rule.getId(), e.getMessage());
+            return;
+        }
+        if (taskIds.isEmpty()) {
+            log.warn("规则没有关联任务: {}", rule.getName());
+            return;
+        }
+
+        int executed = 0;
+        for (Long taskId : taskIds) {
+            if (!clusterMembership.ownsTask(taskId)) {
+                continue;
+            }
+            CollectorTask task = resolveTask(taskId);
+            if (task == null) {
+                log.warn("任务不存在: taskId={}", taskId);
+                continue;
+            }
+            try {
+                log.debug("规则[{}]触发执行任务: {}", rule.getName(), task.getName());
+                taskExecutor.scheduleTask(task, false);
+                executed++;
+            } catch (Exception e) {
+                log.error("规则执行任务出错: ruleId={}, taskId={}, {}", rule.getId(), taskId, e.getMessage(), e);
+            }
+        }
+
+        log.debug("规则[{}]在本节点触发{}个任务", rule.getName(), executed);
+
+        // 更新规则的执行时间，由规则归属节点负责记录
+        if (clusterMembership.owns(key)) {
+            LocalDateTime executeTime = LocalDateTime.now();
+            rule.setLastExecuteTime(executeTime);
+            rule.setNextExecuteTime(next > 0 ? toLocalDateTime(next) : null);
+            try {
+                ruleRepository.updateExecuteTime(rule.getId(), executeTime, rule.getNextExecuteTime());
+            } catch (Exception e) {
+                log.error("更新规则执行时间出错: ruleId={}, {}", rule.getId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 从缓存获取任务，缓存未命中时回源数据库
+     */
+    private CollectorTask resolveTask(Long taskId) {
+        CollectorTask task = tasks.get(taskId);
+        if (task == null) {
+            task = taskRepository.findById(taskId).orElse(null);
+            if (task != null) {
+                tasks.put(taskId, task);
+            }
         }
+        return task;
     }
-    
+
     /**
-     * 执行调度
+     * 安排固定周期调度
+     * 触发时刻对齐到按key哈希确定的相位上，使相同周期的任务均匀分布在整个周期内
      *
-     * @param schedule 调度配置
-     * @param now 当前时间
+     * @return 下次触发的基准时间
      */
-    private void executeSchedule(CollectorTaskSchedule schedule, LocalDateTime now) {
+    private long armPeriodic(String key, long periodMs, long from, LongConsumer fire) {
+        long phase = Math.floorMod(spread(key), periodMs);
+        long base = from + Math.floorMod(phase - from, periodMs);
+        long jitter = Math.min(maxJitterMs, periodMs / 10);
+        arm(key, base, base + random(jitter), fire);
+        return base;
+    }
+
+    /**
+     * 安排CRON调度
+     *
+     * @return 下次触发的基准时间，没有下次执行时返回-1
+     */
+    private long armCron(String key, String expression, long from, LongConsumer fire) {
         try {
-            // 获取对应的任务
-            CollectorTask task = taskRepository.findById(schedule.getTaskId()).orElse(null);
-            if (task == null) {
-                log.warn("任务不存在: taskId={}", schedule.getTaskId());
+            ExecutionTime executionTime = ExecutionTime.forCron(parser.parse(expression));
+            ZonedDateTime fromTime = Instant.ofEpochMilli(from).atZone(ZoneId.systemDefault());
+            Optional<ZonedDateTime> next = executionTime.nextExecution(fromTime);
+            if (next.isEmpty()) {
+                disarm(key);
+                return -1;
+            }
+            long base = next.get().toInstant().toEpochMilli();
+            arm(key, base, base + random(maxJitterMs), fire);
+            return base;
+        } catch (Exception e) {
+            log.error("CRON表达式无效: key={}, expression={}, {}", key, expression, e.getMessage());
+            disarm(key);
+            return -1;
+        }
+    }
+
+    /**
+     * 安排每天固定时刻的调度
+     *
+     * @return 下次触发的基准时间
+     */
+    private long armFixedTime(String key, LocalTime time, long from, LongConsumer fire) {
+        ZonedDateTime fromTime = Instant.ofEpochMilli(from).atZone(ZoneId.systemDefault());
+        ZonedDateTime next = fromTime.with(time);
+        if (next.isBefore(fromTime)) {
+            next = next.plusDays(1);
+        }
+        long base = next.toInstant().toEpochMilli();
+        arm(key, base, base + random(maxJitterMs), fire);
+        return base;
+    }
+
+    /**
+     * 在时间轮上安排触发器，替换同一key原有的触发器
+     * 到期回调只负责把执行转交给分发线程，不在时间轮线程上访问数据库
+     */
+    private void arm(String key, long base, long deadline, LongConsumer fire) {
+        Trigger trigger = new Trigger();
+        Trigger previous = triggers.put(key, trigger);
+        if (previous != null) {
+            previous.cancel();
+        }
+        trigger.timeout = wheel.schedule(deadline, () -> dispatcher.execute(() -> {
+            if (!triggers.remove(key, trigger)) {
                 return;
             }
-            
-            // 执行任务
-            taskExecutor.scheduleTask(task, false);
-            
-            // 更新调度记录
-            schedule.setLastExecuteTime(now);
-            
-            // 计算下次执行时间（仅更新显示用，实际调度不依赖此字段）
-            if (schedule.getScheduleType() == 2) { // CRON
-                try {
-                    Cron cron = parser.parse(schedule.getCronExpression());
-                    ExecutionTime executionTime = ExecutionTime.forCron(cron);
-                    ZonedDateTime zonedNow = now.atZone(ZoneId.systemDefault());
-                    Optional<ZonedDateTime> nextExecution = executionTime.nextExecution(zonedNow);
-                    if (nextExecution.isPresent()) {
-                        schedule.setNextExecuteTime(nextExecution.get().toLocalDateTime());
-                    }
-                } catch (Exception e) {
-                    log.warn("计算CRON下次执行时间出错: {}", e.getMessage());
-                }
+            try {
+                fire.accept(base);
+            } catch (Exception e) {
+                log.error("调度触发出错: key={}, {}", key, e.getMessage(), e);
+            }
+        }));
+        if (trigger.cancelled) {
+            trigger.timeout.cancel();
+        }
+    }
+
+    private void disarm(String key) {
+        Trigger previous = triggers.remove(key);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private boolean isStarted() {
+        return wheel != null;
+    }
+
+    private long random(long bound) {
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound) : 0;
+    }
+
+    /**
+     * 对key做哈希扩散，避免相邻ID落在相近的相位上
+     */
+    private long spread(String key) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private long toMillis(LocalDateTime time, long defaultValue) {
+        return time == null ? defaultValue : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 调度项在时间轮上的触发器
+     */
+    private static final class Trigger {
+
+        private volatile HierarchicalTimingWheel.Timeout timeout;
+        private volatile boolean cancelled;
+
+        void cancel() {
+            cancelled = true;
+            HierarchicalTimingWheel.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
             }
-            
-            scheduleRepository.save(schedule);
-            
-        } catch (Exception e) {
-            log.error("执行调度任务出错: scheduleId={}, {}", schedule.getId(), e.getMessage(), e);
         }
     }
-} 
\ No newline at end of file
+}
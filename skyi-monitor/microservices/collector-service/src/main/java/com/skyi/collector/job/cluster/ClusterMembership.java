@@ -0,0 +1,154 @@
+package com.skyi.collector.job.cluster;
+
+import com.skyi.collector.repository.CollectorNodeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 采集节点成员管理
+ * 各collector-service实例通过数据库心跳表发现彼此，无需选主：
+ * 每个节点用相同的成员列表构建一致性哈希环，按key独立计算归属，结果在所有节点上一致。
+ * 节点加入或心跳超时后，下一次心跳刷新成员列表，归属随之重新划分。
+ * 心跳时间和超时判断都使用数据库时钟
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterMembership {
+
+    private final CollectorNodeRepository nodeRepository;
+
+    @Value("${collector.cluster.enabled:true}")
+    private boolean enabled;
+
+    @Value("${collector.cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${server.port:8082}")
+    private int serverPort;
+
+    @Value("${collector.cluster.node-timeout-ms:15000}")
+    private long nodeTimeoutMs;
+
+    @Value("${collector.cluster.virtual-nodes:160}")
+    private int virtualNodes;
+
+    private String nodeId;
+
+    private String host;
+
+    /**
+     * 当前哈希环，成员变化时整体替换
+     */
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(Collections.emptyList(), 0);
+
+    /**
+     * 加入集群，写入首次心跳并加载成员列表
+     */
+    public synchronized void join() {
+        if (nodeId != null) {
+            return;
+        }
+        host = resolveHost();
+        nodeId = configuredNodeId == null || configuredNodeId.isBlank()
+                ? host + ":" + serverPort + ":" + UUID.randomUUID().toString().substring(0, 8)
+                : configuredNodeId;
+        if (enabled) {
+            heartbeat();
+        }
+        log.info("采集节点已加入集群: nodeId={}, 成员: {}", nodeId, ring.getMembers());
+    }
+
+    /**
+     * 定时心跳并刷新成员列表
+     */
+    @Scheduled(fixedDelayString = "${collector.cluster.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        if (!enabled || nodeId == null) {
+            return;
+        }
+        try {
+            // 写入和超时判断都用数据库时钟，节点间的时钟偏差不影响成员列表
+            nodeRepository.heartbeat(nodeId, host);
+            Set<String> members = new HashSet<>(nodeRepository.findLiveNodeIds(nodeTimeoutMs));
+            members.add(nodeId);
+            if (!members.equals(ring.getMembers())) {
+                log.info("采集集群成员变化: {} -> {}", ring.getMembers(), members);
+                ring = new ConsistentHashRing(members, virtualNodes);
+            }
+
+            // 清理长时间无心跳的节点记录
+            nodeRepository.deleteExpired(nodeTimeoutMs * 10);
+        } catch (Exception e) {
+            // 心跳失败时保留上一次的成员列表，避免数据库抖动导致归属频繁变化
+            log.error("采集节点心跳出错: nodeId={}, {}", nodeId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 退出集群，删除心跳记录使其他节点尽快接管
+     */
+    @PreDestroy
+    public void leave() {
+        if (!enabled || nodeId == null) {
+            return;
+        }
+        try {
+            nodeRepository.deleteByNodeId(nodeId);
+            log.info("采集节点已退出集群: nodeId={}", nodeId);
+        } catch (Exception e) {
+            log.warn("删除节点心跳记录出错: nodeId={}, {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * 判断key是否归当前节点负责
+     * 未启用集群或尚未获得成员列表时，当前节点负责全部key
+     *
+     * @param key 归属键，如任务ID
+     * @return 是否归当前节点
+     */
+    public boolean owns(String key) {
+        ConsistentHashRing current = ring;
+        if (!enabled || current.isEmpty()) {
+            return true;
+        }
+        return nodeId.equals(current.owner(key));
+    }
+
+    /**
+     * 判断采集任务是否归当前节点负责
+     *
+     * @param taskId 任务ID
+     * @return 是否归当前节点
+     */
+    public boolean ownsTask(Long taskId) {
+        return owns("task:" + taskId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Set<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    private String resolveHost() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.skyi.collector.job.wheel;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分层时间轮
+ * 第0层每格一个tick，第i层每格覆盖第i-1层一整圈；当低层转完一圈时，
+ * 将高层当前格中的定时项下沉到低层，到期项在第0层触发。
+ * 插入、取消均为O(1)，只有一个工作线程推进时间轮，其他线程提交的定时项经无锁队列交给工作线程，
+ * 因此到期回调在工作线程上执行，必须快速返回，耗时工作应转交给其他执行器
+ */
+@Slf4j
+public class HierarchicalTimingWheel {
+
+    private final String name;
+    private final long tickNanos;
+    private final long tickMillis;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int levels;
+
+    @SuppressWarnings("unchecked")
+    private final List<Timeout>[][] buckets;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 时间轮起点，tick编号由此换算
+     */
+    private long startNanos;
+    private long startMillis;
+
+    /**
+     * 当前已处理到的tick，仅工作线程读写
+     */
+    private long currentTick;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    /**
+     * @param name 工作线程名称
+     * @param tickMillis 每格时长(毫秒)
+     * @param wheelBits 每层格数的位数，每层格数为2^wheelBits
+     * @param levels 层数
+     */
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(String name, long tickMillis, int wheelBits, int levels) {
+        this.name = name;
+        this.tickMillis = Math.max(1, tickMillis);
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(this.tickMillis);
+        this.wheelBits = wheelBits;
+        this.wheelMask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.buckets = new List[levels][1 << wheelBits];
+        for (int level = 0; level < levels; level++) {
+            for (int slot = 0; slot <= wheelMask; slot++) {
+                buckets[level][slot] = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * 启动工作线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        startMillis = System.currentTimeMillis();
+        running = true;
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 停止工作线程，未到期的定时项被丢弃
+     */
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * 添加定时项
+     *
+     * @param deadlineMillis 到期时间(epoch毫秒)，已过期的定时项在下一个tick触发
+     * @param task 到期回调
+     * @return 可取消的定时项
+     */
+    public Timeout schedule(long deadlineMillis, Runnable task) {
+        long deadlineTick = Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis);
+        Timeout timeout = new Timeout(deadlineTick, task);
+        size.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 时间轮中未触发且未取消的定时项数(近似值)
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void run() {
+        while (running) {
+            long wait = startNanos + (currentTick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            try {
+                transferPending();
+                currentTick++;
+                cascade();
+                expire();
+            } catch (Throwable e) {
+                log.error("时间轮[{}]推进出错: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 将其他线程提交的定时项放入时间轮
+     */
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                size.decrementAndGet();
+            } else {
+                // 在tick推进前放入，最早在下一个tick触发
+                place(timeout, currentTick + 1);
+            }
+        }
+    }
+
+    /**
+     * 低层转完一圈时，把高层当前格的定时项下沉
+     */
+    private void cascade() {
+        for (int level = 1; level < levels; level++) {
+            int shift = wheelBits * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+            int slot = (int) ((currentTick >>> shift) & wheelMask);
+            List<Timeout> bucket = buckets[level][slot];
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            List<Timeout> moving = new ArrayList<>(bucket);
+            bucket.clear();
+            for (Timeout timeout : moving) {
+                if (timeout.cancelled) {
+                    size.decrementAndGet();
+                } else {
+                    // 以当前tick为基准重新放置，本tick到期的项落入第0层当前格，随后的expire()即可触发
+                    place(timeout, currentTick);
+                }
+            }
+        }
+    }
+
+    /**
+     * 触发第0层当前格中到期的定时项
+     */
+    private void expire() {
+        List<Timeout> bucket = buckets[0][(int) (currentTick & wheelMask)];
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Timeout> due = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Timeout timeout : due) {
+            if (timeout.cancelled) {
+                size.decrementAndGet();
+                continue;
+            }
+            if (timeout.deadlineTick > currentTick) {
+                // 超出时间轮范围的定时项转了一圈回到这里，重新放置
+                place(timeout, currentTick + 1);
+                continue;
+            }
+            size.decrementAndGet();
+            timeout.expired = true;
+            try {
+                timeout.task.run();
+            } catch (Throwable e) {
+                log.error("时间轮[{}]定时项执行出错: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 按剩余tick数选择层级和格位
+     *
+     * @param earliestTick 最早触发的tick，已过期的定时项放在该tick
+     */
+    private void place(Timeout timeout, long earliestTick) {
+        long tick = Math.max(timeout.deadlineTick, earliestTick);
+        long remaining = tick - currentTick;
+        for (int level = 0; level < levels; level++) {
+            int shift = wheelBits * level;
+            if (remaining < (1L << (shift + wheelBits))) {
+                buckets[level][(int) ((tick >>> shift) & wheelMask)].add(timeout);
+                return;
+            }
+        }
+        // 超出最高层范围，放在最高层最远的格中，下沉后再次判断
+        int shift = wheelBits * (levels - 1);
+        long farthest = currentTick + (1L << (shift + wheelBits)) - 1;
+        buckets[levels - 1][(int) ((farthest >>> shift) & wheelMask)].add(timeout);
+    }
+
+    /**
+     * 时间轮中的定时项
+     */
+    public static final class Timeout {
+
+        private final long deadlineTick;
+        private final Runnable task;
+        private volatile boolean cancelled;
+        private volatile boolean expired;
+
+        private Timeout(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * 取消定时项，已取消的项在所在格被处理时移除
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+}
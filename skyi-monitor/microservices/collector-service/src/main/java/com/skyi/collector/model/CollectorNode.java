@@ -0,0 +1,49 @@
+package com.skyi.collector.model;
+
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 采集服务节点实体类
+ * 每个collector-service实例定期写入心跳，心跳未超时的节点组成当前成员列表，用于划分任务归属
+ */
+@Data
+@Entity
+@Table(name = "t_collector_node")
+public class CollectorNode {
+    
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 节点标识
+     */
+    @Column(nullable = false, unique = true, length = 100)
+    private String nodeId;
+    
+    /**
+     * 主机地址
+     */
+    @Column(length = 100)
+    private String host;
+    
+    /**
+     * 最后心跳时间
+     */
+    @Column(nullable = false)
+    private LocalDateTime lastHeartbeatTime;
+    
+    /**
+     * 创建时间
+     */
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createTime;
+}
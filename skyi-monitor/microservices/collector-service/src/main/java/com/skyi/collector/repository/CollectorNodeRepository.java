@@ -0,0 +1,68 @@
+package com.skyi.collector.repository;
+
+import com.skyi.collector.model.CollectorNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 采集服务节点数据访问接口
+ * 心跳的写入和超时判断都使用数据库时钟，避免节点间时钟偏差导致成员列表抖动
+ */
+public interface CollectorNodeRepository extends JpaRepository<CollectorNode, Long> {
+    
+    /**
+     * 根据节点标识查询
+     *
+     * @param nodeId 节点标识
+     * @return 节点信息
+     */
+    Optional<CollectorNode> findByNodeId(String nodeId);
+    
+    /**
+     * 写入心跳，心跳时间取数据库当前时间，节点不存在时插入
+     *
+     * @param nodeId 节点标识
+     * @param host 主机地址
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO t_collector_node (node_id, host, last_heartbeat_time) VALUES (:nodeId, :host, NOW()) " +
+            "ON DUPLICATE KEY UPDATE host = VALUES(host), last_heartbeat_time = NOW()", nativeQuery = true)
+    void heartbeat(@Param("nodeId") String nodeId, @Param("host") String host);
+    
+    /**
+     * 查询心跳未超时的节点，按数据库当前时间判断
+     *
+     * @param timeoutMs 心跳超时时间(毫秒)
+     * @return 节点标识列表
+     */
+    @Query(value = "SELECT node_id FROM t_collector_node " +
+            "WHERE last_heartbeat_time > NOW() - INTERVAL :timeoutMs * 1000 MICROSECOND", nativeQuery = true)
+    List<String> findLiveNodeIds(@Param("timeoutMs") long timeoutMs);
+    
+    /**
+     * 删除节点
+     *
+     * @param nodeId 节点标识
+     */
+    @Modifying
+    @Transactional
+    void deleteByNodeId(String nodeId);
+    
+    /**
+     * 清理停止心跳超过指定时长的节点，按数据库当前时间判断
+     *
+     * @param timeoutMs 时长(毫秒)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM t_collector_node " +
+            "WHERE last_heartbeat_time < NOW() - INTERVAL :timeoutMs * 1000 MICROSECOND", nativeQuery = true)
+    void deleteExpired(@Param("timeoutMs") long timeoutMs);
+}
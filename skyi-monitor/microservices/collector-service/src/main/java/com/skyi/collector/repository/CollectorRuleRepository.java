@@ -3,7 +3,10 @@ package com.skyi.collector.repository;
 import com.skyi.collector.model.CollectorRule;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -46,4 +49,34 @@ public interface CollectorRuleRepository extends JpaRepository<CollectorRule, Lo
      */
     @Query("SELECT r FROM CollectorRule r WHERE r.status = 1 AND (r.nextExecuteTime IS NULL OR r.nextExecuteTime <= :currentTime)")
     List<CollectorRule> findRulesNeedExecute(LocalDateTime currentTime);
-} 
\ No newline at end of file
+    
+    /**
+     * 更新规则的执行时间
+     *
+     * @param id 规则ID
+     * @param lastExecuteTime 上次执行时间
+     * @param nextExecuteTime 下次执行时间
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CollectorRule r SET r.lastExecuteTime = :lastExecuteTime, r.nextExecuteTime = :nextExecuteTime WHERE r.id = :id")
+    void updateExecuteTime(@Param("id") Long id,
+                           @Param("lastExecuteTime") LocalDateTime lastExecuteTime,
+                           @Param("nextExecuteTime") LocalDateTime nextExecuteTime);
+    
+    /**
+     * 查询指定时间之后修改过的规则
+     *
+     * @param updateTime 起始时间
+     * @return 规则列表
+     */
+    List<CollectorRule> findByUpdateTimeAfter(LocalDateTime updateTime);
+    
+    /**
+     * 查询全部启用的规则ID
+     *
+     * @return 规则ID列表
+     */
+    @Query("SELECT r.id FROM CollectorRule r WHERE r.status = 1")
+    List<Long> findEnabledIds();
+}
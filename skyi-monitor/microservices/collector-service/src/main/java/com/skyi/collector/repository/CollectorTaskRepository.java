@@ -3,7 +3,10 @@ package com.skyi.collector.repository;
 import com.skyi.collector.model.CollectorTask;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -62,4 +65,37 @@ public interface CollectorTaskRepository extends JpaRepository<CollectorTask, Lo
      */
     @Query("SELECT t FROM CollectorTask t WHERE t.status = 1 AND (t.lastExecuteTime IS NULL OR TIMESTAMPDIFF(SECOND, t.lastExecuteTime, :currentTime) >= t.interval)")
     List<CollectorTask> findTasksNeedExecute(LocalDateTime currentTime);
-} 
\ No newline at end of file
+    
+    /**
+     * 查询指定时间之后修改过的任务
+     *
+     * @param updateTime 起始时间
+     * @return 任务列表
+     */
+    List<CollectorTask> findByUpdateTimeAfter(LocalDateTime updateTime);
+    
+    /**
+     * 查询全部任务ID
+     *
+     * @return 任务ID列表
+     */
+    @Query("SELECT t.id FROM CollectorTask t")
+    List<Long> findAllIds();
+    
+    /**
+     * 更新任务的执行时间和执行状态
+     * 仅更新执行相关字段，避免覆盖界面同时修改的任务配置
+     * 更新时间显式保持原值(表定义为ON UPDATE CURRENT_TIMESTAMP)，执行后不会被各节点当作配置变更重新同步
+     *
+     * @param id 任务ID
+     * @param lastExecuteTime 上次执行时间
+     * @param lastExecuteStatus 上次执行状态
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CollectorTask t SET t.lastExecuteTime = :lastExecuteTime, " +
+            "t.lastExecuteStatus = :lastExecuteStatus, t.updateTime = t.updateTime WHERE t.id = :id")
+    void updateExecuteState(@Param("id") Long id,
+                            @Param("lastExecuteTime") LocalDateTime lastExecuteTime,
+                            @Param("lastExecuteStatus") Integer lastExecuteStatus);
+}
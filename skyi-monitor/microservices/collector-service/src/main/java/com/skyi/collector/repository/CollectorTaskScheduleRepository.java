@@ -3,7 +3,10 @@ package com.skyi.collector.repository;
 import com.skyi.collector.model.CollectorTaskSchedule;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -70,4 +73,39 @@ public interface CollectorTaskScheduleRepository extends JpaRepository<Collector
             "AND (s.startTime IS NULL OR s.startTime <= :currentTime) " +
             "AND (s.endTime IS NULL OR s.endTime >= :currentTime)")
     List<CollectorTaskSchedule> findValidCronSchedules(LocalDateTime currentTime);
-} 
\ No newline at end of file
+    
+    /**
+     * 更新调度的执行时间和启用状态
+     * 仅更新执行相关字段，避免覆盖界面同时修改的调度配置
+     * 更新时间显式保持原值(表定义为ON UPDATE CURRENT_TIMESTAMP)，执行后不会被各节点当作配置变更重新同步
+     *
+     * @param id 调度ID
+     * @param lastExecuteTime 上次执行时间
+     * @param nextExecuteTime 下次执行时间
+     * @param enabled 是否启用
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CollectorTaskSchedule s SET s.lastExecuteTime = :lastExecuteTime, " +
+            "s.nextExecuteTime = :nextExecuteTime, s.enabled = :enabled, s.updateTime = s.updateTime WHERE s.id = :id")
+    void updateExecuteState(@Param("id") Long id,
+                            @Param("lastExecuteTime") LocalDateTime lastExecuteTime,
+                            @Param("nextExecuteTime") LocalDateTime nextExecuteTime,
+                            @Param("enabled") Integer enabled);
+    
+    /**
+     * 查询指定时间之后修改过的调度配置
+     *
+     * @param updateTime 起始时间
+     * @return 调度配置列表
+     */
+    List<CollectorTaskSchedule> findByUpdateTimeAfter(LocalDateTime updateTime);
+    
+    /**
+     * 查询全部启用的调度ID
+     *
+     * @return 调度ID列表
+     */
+    @Query("SELECT s.id FROM CollectorTaskSchedule s WHERE s.enabled = 1")
+    List<Long> findEnabledIds();
+}
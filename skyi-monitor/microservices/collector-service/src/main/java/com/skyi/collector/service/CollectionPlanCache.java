@@ -0,0 +1,300 @@
+package com.skyi.collector.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skyi.collector.model.CollectorTask;
+import com.skyi.collector.model.MetricDefinition;
+import com.skyi.collector.model.MetricProtocolMapping;
+import com.skyi.collector.repository.MetricDefinitionRepository;
+import com.skyi.collector.repository.MetricProtocolMappingRepository;
+import com.skyi.collector.service.collector.CollectionContext;
+import com.skyi.collector.service.collector.CollectionPlan;
+import com.skyi.collector.service.collector.MetricCollector;
+import com.skyi.collector.service.collector.MetricCollectorRegistry;
+import com.skyi.collector.service.collector.expression.MetricExpression;
+import com.skyi.collector.service.collector.expression.MetricExpressionCompiler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.smi.OID;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 采集计划缓存
+ * 按任务缓存编译后的采集计划，稳态下一次采集只剩网络IO和状态写入；
+ * 任务、指标定义或协议映射被修改时由对应服务失效缓存，资产信息来自外部服务，按TTL定期刷新
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CollectionPlanCache {
+
+    private final MetricCollectorRegistry collectorRegistry;
+    private final MetricDefinitionRepository metricDefinitionRepository;
+    private final MetricProtocolMappingRepository metricProtocolMappingRepository;
+    private final AssetService assetService;
+    private final ObjectMapper objectMapper;
+
+    private final Map<Long, CollectionPlan> plans = new ConcurrentHashMap<>();
+
+    @Value("${collector.plan.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    /**
+     * 获取任务的采集计划，缓存未命中、过期或任务已变更时重新编译
+     *
+     * @param task 采集任务
+     * @return 采集计划
+     * @throws IllegalStateException 任务配置无法编译为有效计划时抛出
+     */
+    public CollectionPlan getPlan(CollectorTask task) {
+        CollectionPlan plan = plans.get(task.getId());
+        if (plan != null && isValid(plan, task)) {
+            return plan;
+        }
+
+        plan = compile(task);
+        plans.put(task.getId(), plan);
+        return plan;
+    }
+
+    /**
+     * 任务修改或删除后失效，处于事务中时延迟到提交之后
+     *
+     * @param taskId 任务ID
+     */
+    public void invalidateTask(Long taskId) {
+        afterCommit(() -> plans.remove(taskId));
+    }
+
+    /**
+     * 指标定义或其协议映射修改后，失效所有引用该指标的计划，处于事务中时延迟到提交之后
+     *
+     * @param metricId 指标ID
+     */
+    public void invalidateMetric(Long metricId) {
+        afterCommit(() -> plans.values().removeIf(plan -> plan.containsMetric(metricId)));
+    }
+
+    /**
+     * 失效全部计划，处于事务中时延迟到提交之后
+     */
+    public void invalidateAll() {
+        afterCommit(plans::clear);
+    }
+
+    /**
+     * 事务提交后执行失效
+     * 在事务内失效时，并发的采集可能在提交前重新读到旧数据并缓存旧计划，直到TTL过期
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private boolean isValid(CollectionPlan plan, CollectorTask task) {
+        return Objects.equals(plan.getTaskUpdateTime(), task.getUpdateTime())
+                && System.currentTimeMillis() - plan.getCompiledAt() < ttlSeconds * 1000;
+    }
+
+    /**
+     * 编译采集计划
+     */
+    private CollectionPlan compile(CollectorTask task) {
+        // 获取资产信息
+        Long assetId = task.getAssetId();
+        Map<String, Object> assetInfo = assetService.getAssetBasicInfo(assetId);
+        if (assetInfo == null || assetInfo.isEmpty()) {
+            throw new IllegalStateException("资产信息不存在: " + assetId);
+        }
+
+        // 解析任务中配置的指标ID列表
+        List<Long> metricIds = parseMetricIds(task.getMetrics());
+        if (metricIds.isEmpty()) {
+            throw new IllegalStateException("任务未配置有效的指标");
+        }
+
+        // 查询指标定义
+        List<MetricDefinition> metricDefinitions = metricDefinitionRepository.findAllById(metricIds);
+        if (metricDefinitions.isEmpty()) {
+            throw new IllegalStateException("未找到指标定义");
+        }
+
+        // 查询指标协议映射
+        List<MetricProtocolMapping> protocolMappings = metricProtocolMappingRepository.findByMetricIdInAndProtocol(
+                metricIds, task.getProtocol());
+
+        // 查找最佳采集器
+        MetricCollector collector = collectorRegistry.findBestCollector(task.getProtocol(), task.getType());
+        if (collector == null) {
+            throw new IllegalStateException("未找到支持的采集器: protocol=" + task.getProtocol()
+                    + ", assetType=" + task.getType());
+        }
+
+        log.debug("编译采集计划: taskId={}, 指标数={}", task.getId(), metricDefinitions.size());
+        return CollectionPlan.builder()
+                .taskId(task.getId())
+                .protocol(task.getProtocol())
+                .assetId(assetId)
+                .assetType(task.getType())
+                .assetName(getStringValue(assetInfo, "name"))
+                .assetIp(getStringValue(assetInfo, "ip"))
+                .metrics(Collections.unmodifiableList(new ArrayList<>(metricDefinitions)))
+                .protocolMappings(Collections.unmodifiableMap(buildMappingInfoMap(task.getId(), protocolMappings)))
+                .connectionParams(Collections.unmodifiableMap(parseConnectionParams(task.getConnectionParams())))
+                .collector(collector)
+                .taskUpdateTime(task.getUpdateTime())
+                .compiledAt(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * 解析任务中配置的指标ID列表
+     * 支持 "[1,2,3]" 和 "[{\"id\":1,\"enabled\":true}]" 两种格式
+     */
+    private List<Long> parseMetricIds(String metrics) {
+        List<Long> metricIds = new ArrayList<>();
+        if (metrics == null || metrics.isBlank()) {
+            return metricIds;
+        }
+
+        try {
+            List<Object> items = objectMapper.readValue(metrics, new TypeReference<List<Object>>() {});
+            for (Object item : items) {
+                Object id = item instanceof Map ? ((Map<?, ?>) item).get("id") : item;
+                if (item instanceof Map && Boolean.FALSE.equals(((Map<?, ?>) item).get("enabled"))) {
+                    continue;
+                }
+                if (id != null && !id.toString().isBlank()) {
+                    metricIds.add(Long.valueOf(id.toString().trim()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("解析指标ID列表出错: {}", e.getMessage(), e);
+        }
+
+        return metricIds;
+    }
+
+    /**
+     * 构建指标协议映射信息Map，SNMP路径预先解析为OID
+     */
+    private Map<Long, CollectionContext.MetricProtocolMappingInfo> buildMappingInfoMap(
+            Long taskId, List<MetricProtocolMapping> protocolMappings) {
+
+        Map<Long, CollectionContext.MetricProtocolMappingInfo> mappingInfoMap = new HashMap<>();
+
+        for (MetricProtocolMapping mapping : protocolMappings) {
+            CollectionContext.MetricProtocolMappingInfo mappingInfo = CollectionContext.MetricProtocolMappingInfo.builder()
+                    .id(mapping.getId())
+                    .metricId(mapping.getMetricId())
+                    .protocol(mapping.getProtocol())
+                    .path(mapping.getPath())
+                    .expression(mapping.getExpression())
+                    .parameters(Collections.unmodifiableMap(parseParameters(mapping.getParameters())))
+                    .compiledPath(compilePath(mapping))
+                    .compiledExpression(compileExpression(mapping))
+                    .stateKey(taskId + ":" + mapping.getMetricId())
+                    .build();
+
+            mappingInfoMap.put(mapping.getMetricId(), mappingInfo);
+        }
+
+        return mappingInfoMap;
+    }
+
+    /**
+     * 预解析协议路径，无法解析时留空，由采集器在采集时报告错误
+     */
+    private Object compilePath(MetricProtocolMapping mapping) {
+        if (!"snmp".equalsIgnoreCase(mapping.getProtocol()) || mapping.getPath() == null
+                || mapping.getPath().isBlank()) {
+            return null;
+        }
+        try {
+            return new OID(mapping.getPath());
+        } catch (Exception e) {
+            log.warn("无效的OID[{}]: {}", mapping.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 编译解析表达式，无效时留空，由采集器报告指标错误
+     */
+    private MetricExpression compileExpression(MetricProtocolMapping mapping) {
+        if (mapping.getExpression() == null || mapping.getExpression().isBlank()) {
+            return null;
+        }
+        try {
+            return MetricExpressionCompiler.compile(mapping.getExpression());
+        } catch (IllegalArgumentException e) {
+            log.warn("指标[{}]的表达式无效: {}", mapping.getMetricId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 解析参数字符串为Map
+     */
+    private Map<String, Object> parseParameters(String parameters) {
+        if (parameters == null || parameters.isBlank()) {
+            return new HashMap<>();
+        }
+
+        try {
+            // 格式为: "{\"key1\":\"value1\",\"walk\":true}"
+            return objectMapper.readValue(parameters, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            log.warn("解析参数出错: {}", e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 解析连接参数字符串为Map
+     */
+    private Map<String, Object> parseConnectionParams(String connectionParams) {
+        if (connectionParams == null || connectionParams.isBlank()) {
+            return new HashMap<>();
+        }
+
+        try {
+            // 格式为: "{\"ipAddress\":\"192.168.1.1\",\"port\":161,\"community\":\"public\"}"
+            return objectMapper.readValue(connectionParams, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            log.warn("解析连接参数出错: {}", e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 从Map中获取字符串值
+     */
+    private String getStringValue(Map<String, Object> map, String key) {
+        if (map == null || !map.containsKey(key)) {
+            return null;
+        }
+
+        Object value = map.get(key);
+        return value != null ? value.toString() : null;
+    }
+}
@@ -3,12 +3,9 @@ package com.skyi.collector.service;
 import com.skyi.collector.dto.MetricDataDTO;
 import com.skyi.collector.model.CollectorTask;
 import com.skyi.collector.model.CollectorTaskInstance;
-import com.skyi.collector.model.MetricDefinition;
-import com.skyi.collector.model.MetricProtocolMapping;
 import com.skyi.collector.repository.CollectorTaskInstanceRepository;
-import com.skyi.collector.repository.MetricDefinitionRepository;
-import com.skyi.collector.repository.MetricProtocolMappingRepository;
 import com.skyi.collector.service.collector.*;
+import com.skyi.collector.service.collector.counter.CounterRateConverter;
 import com.skyi.collector.service.impl.MetricDataProducerService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,7 +14,6 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 指标采集服务
@@ -30,21 +26,18 @@ public class MetricCollectionService {
     @Autowired
     private MetricCollectorRegistry collectorRegistry;
     
-    @Autowired
-    private MetricDefinitionRepository metricDefinitionRepository;
-    
-    @Autowired
-    private MetricProtocolMappingRepository metricProtocolMappingRepository;
-    
     @Autowired
     private CollectorTaskInstanceRepository taskInstanceRepository;
     
     @Autowired
-    private AssetService assetService; // 假设存在一个资产服务用于获取资产信息
+    private CollectionPlanCache collectionPlanCache;
     
     @Autowired
     private MetricDataProducerService metricDataProducerService;
     
+    @Autowired
+    private CounterRateConverter counterRateConverter;
+    
     @Value("${collector.kafka.enabled:true}")
     private boolean kafkaEnabled;
     
@@ -87,47 +80,28 @@ public class MetricCollectionService {
             return CollectionResult.failure(LocalDateTime.now(), LocalDateTime.now(), "任务已禁用");
         }
         
-        // 获取资产信息
-        Long assetId = task.getAssetId();
-        Map<String, Object> assetInfo = assetService.getAssetBasicInfo(assetId);
-        if (assetInfo == null || assetInfo.isEmpty()) {
-            return CollectionResult.failure(LocalDateTime.now(), LocalDateTime.now(), "资产信息不存在: " + assetId);
-        }
-        
-        // 解析任务中配置的指标ID列表
-        List<Long> metricIds = parseMetricIds(task.getMetrics());
-        if (metricIds.isEmpty()) {
-            return CollectionResult.failure(LocalDateTime.now(), LocalDateTime.now(), "任务未配置有效的指标");
-        }
-        
-        // 查询指标定义
-        List<MetricDefinition> metricDefinitions = metricDefinitionRepository.findAllById(metricIds);
-        if (metricDefinitions.isEmpty()) {
-            return CollectionResult.failure(LocalDateTime.now(), LocalDateTime.now(), "未找到指标定义");
+        // 获取编译后的采集计划，稳态下不再访问指标定义表和资产服务
+        CollectionPlan plan;
+        try {
+            plan = collectionPlanCache.getPlan(task);
+        } catch (IllegalStateException e) {
+            return CollectionResult.failure(LocalDateTime.now(), LocalDateTime.now(), e.getMessage());
         }
         
-        // 查询指标协议映射
-        List<MetricProtocolMapping> protocolMappings = metricProtocolMappingRepository.findByMetricIdInAndProtocol(
-                metricIds, task.getProtocol());
-        
-        // 构建映射关系
-        Map<Long, CollectionContext.MetricProtocolMappingInfo> mappingInfoMap = buildMappingInfoMap(protocolMappings);
-        
         // 创建采集上下文
-        CollectionContext context = buildCollectionContext(task, instance, assetInfo, metricDefinitions, mappingInfoMap);
-        
-        // 查找最佳采集器
-        MetricCollector collector = collectorRegistry.findBestCollector(task.getProtocol(), task.getType());
-        if (collector == null) {
-            return CollectionResult.failure(LocalDateTime.now(), LocalDateTime.now(), 
-                    "未找到支持的采集器: protocol=" + task.getProtocol() + ", assetType=" + task.getType());
-        }
+        CollectionContext context = plan.newContext(instance.getId(), task);
+        MetricCollector collector = plan.getCollector();
         
         // 执行采集
         CollectionResult result;
         try {
             result = collector.collect(context);
             
+            // 计数器换算为速率
+            if (result.getMetricData() != null) {
+                result.setMetricData(counterRateConverter.convert(result.getMetricData()));
+            }
+            
             // 更新任务实例状态
             updateTaskInstanceStatus(instance, result);
             
@@ -175,166 +149,6 @@ public class MetricCollectionService {
         }
     }
     
-    /**
-     * 解析任务中配置的指标ID列表
-     */
-    @SuppressWarnings("unchecked")
-    private List<Long> parseMetricIds(String metrics) {
-        List<Long> metricIds = new ArrayList<>();
-        
-        try {
-            if (metrics == null || metrics.isBlank()) {
-                return metricIds;
-            }
-            
-            // 这里简化处理，实际应该使用ObjectMapper解析JSON
-            // 假设metrics格式为: "[1,2,3]" 或 "[{\"id\":1},{\"id\":2}]"
-            if (metrics.contains("\"id\"")) {
-                // 格式为: "[{\"id\":1,\"enabled\":true},{\"id\":2,\"enabled\":true}]"
-                // 解析为Map列表
-                List<Map<String, Object>> metricsList = parseMetricsAsMapList(metrics);
-                for (Map<String, Object> metric : metricsList) {
-                    if (metric.containsKey("id")) {
-                        Object id = metric.get("id");
-                        if (id != null) {
-                            metricIds.add(Long.valueOf(id.toString()));
-                        }
-                    }
-                }
-            } else {
-                // 格式为: "[1,2,3]"
-                // 解析为Long列表
-                String cleanedMetrics = metrics.replace("[", "").replace("]", "").replace("\"", "");
-                String[] idStrs = cleanedMetrics.split(",");
-                for (String idStr : idStrs) {
-                    if (!idStr.isBlank()) {
-                        metricIds.add(Long.valueOf(idStr.trim()));
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.warn("解析指标ID列表出错: {}", e.getMessage(), e);
-        }
-        
-        return metricIds;
-    }
-    
-    /**
-     * 解析复杂格式的指标配置
-     */
-    @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> parseMetricsAsMapList(String metrics) {
-        // 实际项目中应该使用ObjectMapper解析
-        // 这里仅作示例，实际需要完整实现
-        return new ArrayList<>();
-    }
-    
-    /**
-     * 构建指标协议映射信息Map
-     */
-    private Map<Long, CollectionContext.MetricProtocolMappingInfo> buildMappingInfoMap(
-            List<MetricProtocolMapping> protocolMappings) {
-        
-        Map<Long, CollectionContext.MetricProtocolMappingInfo> mappingInfoMap = new HashMap<>();
-        
-        for (MetricProtocolMapping mapping : protocolMappings) {
-            CollectionContext.MetricProtocolMappingInfo mappingInfo = CollectionContext.MetricProtocolMappingInfo.builder()
-                    .id(mapping.getId())
-                    .metricId(mapping.getMetricId())
-                    .protocol(mapping.getProtocol())
-                    .path(mapping.getPath())
-                    .expression(mapping.getExpression())
-                    .parameters(parseParameters(mapping.getParameters()))
-                    .build();
-            
-            mappingInfoMap.put(mapping.getMetricId(), mappingInfo);
-        }
-        
-        return mappingInfoMap;
-    }
-    
-    /**
-     * 解析参数字符串为Map
-     */
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> parseParameters(String parameters) {
-        // 实际项目中应该使用ObjectMapper解析
-        // 这里仅作示例，实际需要完整实现
-        if (parameters == null || parameters.isBlank()) {
-            return new HashMap<>();
-        }
-        
-        try {
-            // 假设格式为: "{\"key1\":\"value1\",\"key2\":123}"
-            // 实际应使用ObjectMapper解析
-            return new HashMap<>();
-        } catch (Exception e) {
-            log.warn("解析参数出错: {}", e.getMessage(), e);
-            return new HashMap<>();
-        }
-    }
-    
-    /**
-     * 构建采集上下文
-     */
-    private CollectionContext buildCollectionContext(
-            CollectorTask task,
-            CollectorTaskInstance instance,
-            Map<String, Object> assetInfo,
-            List<MetricDefinition> metricDefinitions,
-            Map<Long, CollectionContext.MetricProtocolMappingInfo> mappingInfoMap) {
-        
-        // 解析连接参数
-        Map<String, Object> connectionParams = parseConnectionParams(task.getConnectionParams());
-        
-        return CollectionContext.builder()
-                .taskId(task.getId())
-                .instanceId(instance.getId())
-                .assetId(task.getAssetId())
-                .assetType(task.getType())
-                .assetName(getStringValue(assetInfo, "name"))
-                .assetIp(getStringValue(assetInfo, "ip"))
-                .metrics(metricDefinitions)
-                .protocolMappings(mappingInfoMap)
-                .connectionParams(connectionParams)
-                .variables(new HashMap<>())
-                .originalTask(task)
-                .build();
-    }
-    
-    /**
-     * 解析连接参数字符串为Map
-     */
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> parseConnectionParams(String connectionParams) {
-        // 实际项目中应该使用ObjectMapper解析
-        // 这里仅作示例，实际需要完整实现
-        if (connectionParams == null || connectionParams.isBlank()) {
-            return new HashMap<>();
-        }
-        
-        try {
-            // 假设格式为: "{\"ipAddress\":\"192.168.1.1\",\"port\":161,\"community\":\"public\"}"
-            // 实际应使用ObjectMapper解析
-            return new HashMap<>();
-        } catch (Exception e) {
-            log.warn("解析连接参数出错: {}", e.getMessage(), e);
-            return new HashMap<>();
-        }
-    }
-    
-    /**
-     * 从Map中获取字符串值
-     */
-    private String getStringValue(Map<String, Object> map, String key) {
-        if (map == null || !map.containsKey(key)) {
-            return null;
-        }
-        
-        Object value = map.get(key);
-        return value != null ? value.toString() : null;
-    }
-    
     /**
      * 更新任务实例状态
      */
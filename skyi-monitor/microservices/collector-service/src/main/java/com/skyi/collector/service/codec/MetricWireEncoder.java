@@ -0,0 +1,336 @@
+package com.skyi.collector.service.codec;
+
+import com.skyi.collector.dto.MetricDataDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 指标数据二进制编码器
+ * 采集服务发往处理服务的指标消息格式，与processor-service中的MetricWireDecoder对应：
+ * <pre>
+ * byte    魔数 0xC7 (JSON文本首字节总是ASCII，据此区分二进制与旧JSON消息)
+ * byte    格式版本
+ * varint  字典长度N，随后N个字符串(varint字节数 + UTF-8)，指标名和标签键值按下标引用
+ * varint  数据点数M，随后M个数据点:
+ *   varint  字段存在标志位: 1=taskId 2=instanceId 4=assetId 8=value 16=collectTime 32=createTime
+ *   varlong taskId / instanceId / assetId (zigzag，按标志位出现)
+ *   varint  指标名下标
+ *   double  指标值(8字节大端，按标志位出现)
+ *   varlong collectTime / createTime (epoch毫秒，zigzag，按标志位出现)
+ *   varint  标签数K，随后K对(键下标, 值下标)
+ * </pre>
+ * 版本2为信封格式，一条消息携带同一次采集结果的全部数据点，公共字段只写一次：
+ * <pre>
+ * byte    魔数, byte 版本(2), 字典(同版本1)
+ * varint  公共字段标志位(同版本1的taskId/instanceId/assetId/collectTime位)
+ * varlong taskId / instanceId / assetId / 基准collectTime (zigzag，按标志位出现)
+ * varlong createTime (zigzag)
+ * varint  数据点数M，随后M个数据点:
+ *   varint  标志位: 8=value 16=collectTime
+ *   varint  指标名下标
+ *   double  指标值(按标志位出现)
+ *   varlong collectTime与基准的差值(zigzag，按标志位出现)
+ *   varint  标签数K，随后K对(键下标, 值下标)
+ * </pre>
+ * 版本号只在格式不兼容时递增，处理服务需先于采集服务升级
+ */
+public final class MetricWireEncoder {
+
+    public static final byte MAGIC = (byte) 0xC7;
+
+    public static final byte VERSION_1 = 1;
+
+    public static final byte VERSION_2 = 2;
+
+    static final int HAS_TASK_ID = 1;
+    static final int HAS_INSTANCE_ID = 1 << 1;
+    static final int HAS_ASSET_ID = 1 << 2;
+    static final int HAS_VALUE = 1 << 3;
+    static final int HAS_COLLECT_TIME = 1 << 4;
+    static final int HAS_CREATE_TIME = 1 << 5;
+
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private static final ThreadLocal<MetricWireEncoder> LOCAL = ThreadLocal.withInitial(MetricWireEncoder::new);
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private String[] strings = new String[64];
+    private byte[] buffer = new byte[1024];
+    private int position;
+
+    private MetricWireEncoder() {
+    }
+
+    /**
+     * 编码指标数据
+     *
+     * @param metricDataList 指标数据
+     * @return 编码后的消息
+     */
+    public static byte[] encode(List<MetricDataDTO> metricDataList) {
+        return LOCAL.get().encodeV1(metricDataList);
+    }
+
+    /**
+     * 按信封格式编码同一任务实例、同一资产的一组指标数据，
+     * 数据点的任务、实例或资产不一致时退回版本1逐点写入全部字段
+     *
+     * @param metricDataList 指标数据
+     * @return 编码后的消息
+     */
+    public static byte[] encodeEnvelope(List<MetricDataDTO> metricDataList) {
+        MetricWireEncoder encoder = LOCAL.get();
+        return isHomogeneous(metricDataList)
+                ? encoder.encodeV2(metricDataList)
+                : encoder.encodeV1(metricDataList);
+    }
+
+    private static boolean isHomogeneous(List<MetricDataDTO> metricDataList) {
+        if (metricDataList.isEmpty()) {
+            return false;
+        }
+        MetricDataDTO first = metricDataList.get(0);
+        for (MetricDataDTO metricData : metricDataList) {
+            if (!Objects.equals(first.getTaskId(), metricData.getTaskId())
+                    || !Objects.equals(first.getInstanceId(), metricData.getInstanceId())
+                    || !Objects.equals(first.getAssetId(), metricData.getAssetId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] encodeV1(List<MetricDataDTO> metricDataList) {
+        try {
+            writeHeader(VERSION_1, metricDataList);
+            writeVarLong(metricDataList.size());
+            for (MetricDataDTO metricData : metricDataList) {
+                writePoint(metricData);
+            }
+            return Arrays.copyOf(buffer, position);
+        } finally {
+            reset();
+        }
+    }
+
+    private byte[] encodeV2(List<MetricDataDTO> metricDataList) {
+        try {
+            writeHeader(VERSION_2, metricDataList);
+
+            // 公共字段取第一个数据点，采集时间以最早的为基准
+            MetricDataDTO first = metricDataList.get(0);
+            Long baseTime = null;
+            for (MetricDataDTO metricData : metricDataList) {
+                Long time = toEpochMilli(metricData.getCollectTime());
+                if (time != null && (baseTime == null || time < baseTime)) {
+                    baseTime = time;
+                }
+            }
+
+            int flags = 0;
+            if (first.getTaskId() != null) {
+                flags |= HAS_TASK_ID;
+            }
+            if (first.getInstanceId() != null) {
+                flags |= HAS_INSTANCE_ID;
+            }
+            if (first.getAssetId() != null) {
+                flags |= HAS_ASSET_ID;
+            }
+            if (baseTime != null) {
+                flags |= HAS_COLLECT_TIME;
+            }
+            writeVarLong(flags);
+            if (first.getTaskId() != null) {
+                writeZigZag(first.getTaskId());
+            }
+            if (first.getInstanceId() != null) {
+                writeZigZag(first.getInstanceId());
+            }
+            if (first.getAssetId() != null) {
+                writeZigZag(first.getAssetId());
+            }
+            if (baseTime != null) {
+                writeZigZag(baseTime);
+            }
+            Long createTime = toEpochMilli(first.getCreateTime());
+            writeZigZag(createTime != null ? createTime : System.currentTimeMillis());
+
+            writeVarLong(metricDataList.size());
+            for (MetricDataDTO metricData : metricDataList) {
+                Long time = toEpochMilli(metricData.getCollectTime());
+                int pointFlags = (metricData.getMetricValue() != null ? HAS_VALUE : 0)
+                        | (time != null ? HAS_COLLECT_TIME : 0);
+                writeVarLong(pointFlags);
+                writeVarLong(indexOf(metricData.getMetricName()));
+                if (metricData.getMetricValue() != null) {
+                    writeDouble(metricData.getMetricValue());
+                }
+                if (time != null) {
+                    writeZigZag(time - baseTime);
+                }
+                writeLabels(metricData.getMetricLabels());
+            }
+            return Arrays.copyOf(buffer, position);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * 写入魔数、版本和字典
+     */
+    private void writeHeader(byte version, List<MetricDataDTO> metricDataList) {
+        // 先收集字典，再依次写入字典和数据点
+        for (MetricDataDTO metricData : metricDataList) {
+            intern(metricData.getMetricName());
+            if (metricData.getMetricLabels() != null) {
+                for (Map.Entry<String, String> label : metricData.getMetricLabels().entrySet()) {
+                    intern(label.getKey());
+                    intern(label.getValue());
+                }
+            }
+        }
+
+        position = 0;
+        writeByte(MAGIC);
+        writeByte(version);
+        writeVarLong(dictionary.size());
+        for (int i = 0; i < dictionary.size(); i++) {
+            writeString(strings[i]);
+        }
+    }
+
+    private void reset() {
+        dictionary.clear();
+        Arrays.fill(strings, null);
+        // 偶发的超大消息不长期占用线程缓冲区
+        if (buffer.length > MAX_RETAINED_BUFFER) {
+            buffer = new byte[1024];
+        }
+    }
+
+    private void writePoint(MetricDataDTO metricData) {
+        int flags = 0;
+        if (metricData.getTaskId() != null) {
+            flags |= HAS_TASK_ID;
+        }
+        if (metricData.getInstanceId() != null) {
+            flags |= HAS_INSTANCE_ID;
+        }
+        if (metricData.getAssetId() != null) {
+            flags |= HAS_ASSET_ID;
+        }
+        if (metricData.getMetricValue() != null) {
+            flags |= HAS_VALUE;
+        }
+        if (metricData.getCollectTime() != null) {
+            flags |= HAS_COLLECT_TIME;
+        }
+        flags |= HAS_CREATE_TIME;
+        writeVarLong(flags);
+
+        if (metricData.getTaskId() != null) {
+            writeZigZag(metricData.getTaskId());
+        }
+        if (metricData.getInstanceId() != null) {
+            writeZigZag(metricData.getInstanceId());
+        }
+        if (metricData.getAssetId() != null) {
+            writeZigZag(metricData.getAssetId());
+        }
+        writeVarLong(indexOf(metricData.getMetricName()));
+        if (metricData.getMetricValue() != null) {
+            writeDouble(metricData.getMetricValue());
+        }
+        if (metricData.getCollectTime() != null) {
+            writeZigZag(toEpochMilli(metricData.getCollectTime()));
+        }
+        Long createTime = toEpochMilli(metricData.getCreateTime());
+        writeZigZag(createTime != null ? createTime : System.currentTimeMillis());
+        writeLabels(metricData.getMetricLabels());
+    }
+
+    private void writeLabels(Map<String, String> labels) {
+        if (labels == null) {
+            writeVarLong(0);
+            return;
+        }
+        writeVarLong(labels.size());
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            writeVarLong(indexOf(label.getKey()));
+            writeVarLong(indexOf(label.getValue()));
+        }
+    }
+
+    /**
+     * 字符串加入字典，null按空字符串处理
+     */
+    private void intern(String value) {
+        String key = value != null ? value : "";
+        if (dictionary.containsKey(key)) {
+            return;
+        }
+        int index = dictionary.size();
+        if (index == strings.length) {
+            strings = Arrays.copyOf(strings, index * 2);
+        }
+        strings[index] = key;
+        dictionary.put(key, index);
+    }
+
+    private static Long toEpochMilli(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null;
+    }
+
+    private int indexOf(String value) {
+        return dictionary.get(value != null ? value : "");
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeDouble(double value) {
+        ensureCapacity(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (bits >>> shift);
+        }
+    }
+
+    private void writeByte(byte value) {
+        ensureCapacity(1);
+        buffer[position++] = value;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+}
@@ -3,11 +3,18 @@ package com.skyi.collector.service.collector;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skyi.collector.dto.MetricDataDTO;
 import com.skyi.collector.model.MetricDefinition;
+import com.skyi.collector.service.collector.expression.ExpressionScope;
+import com.skyi.collector.service.collector.expression.ExpressionStateStore;
+import com.skyi.collector.service.collector.expression.MetricExpression;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,9 +24,17 @@ import java.util.Map;
 @Slf4j
 public abstract class AbstractMetricCollector implements MetricCollector {
     
+    /**
+     * 表达式求值作用域，按线程复用
+     */
+    private static final ThreadLocal<ExpressionScope> SCOPE = ThreadLocal.withInitial(ExpressionScope::new);
+    
     @Autowired
     protected ObjectMapper objectMapper;
     
+    @Autowired
+    protected ExpressionStateStore expressionStateStore;
+    
     @Override
     public boolean supportsMetric(MetricDefinition metricDefinition) {
         return getProtocol().equalsIgnoreCase(metricDefinition.getCollectionMethod()) &&
@@ -41,6 +56,26 @@ public abstract class AbstractMetricCollector implements MetricCollector {
             Double value,
             Map<String, String> labels) {
         
+        return createMetricData(context, metricDef, value, labels, System.currentTimeMillis());
+    }
+    
+    /**
+     * 创建指标数据对象
+     * 
+     * @param context 采集上下文
+     * @param metricDef 指标定义
+     * @param value 指标值
+     * @param labels 标签Map
+     * @param collectTimeMillis 采集时间(毫秒)，应与计算该值的表达式使用的采样时间一致
+     * @return 指标数据DTO
+     */
+    protected MetricDataDTO createMetricData(
+            CollectionContext context,
+            MetricDefinition metricDef,
+            Double value,
+            Map<String, String> labels,
+            long collectTimeMillis) {
+        
         MetricDataDTO data = new MetricDataDTO();
         data.setTaskId(context.getTaskId());
         data.setInstanceId(context.getInstanceId());
@@ -71,7 +106,7 @@ public abstract class AbstractMetricCollector implements MetricCollector {
         }
         
         data.setMetricLabels(labels);
-        data.setCollectTime(LocalDateTime.now());
+        data.setCollectTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(collectTimeMillis), ZoneId.systemDefault()));
         
         return data;
     }
@@ -95,6 +130,20 @@ public abstract class AbstractMetricCollector implements MetricCollector {
         return mapping.getPath();
     }
     
+    /**
+     * 获取采集计划中预解析的协议路径
+     * 
+     * @param context 采集上下文
+     * @param metricDef 指标定义
+     * @return 预解析路径，未预解析时返回null
+     */
+    protected Object getCompiledPath(CollectionContext context, MetricDefinition metricDef) {
+        CollectionContext.MetricProtocolMappingInfo mapping = 
+                context.getProtocolMappings().get(metricDef.getId());
+        
+        return mapping != null ? mapping.getCompiledPath() : null;
+    }
+    
     /**
      * 获取指标的额外参数
      * 
@@ -114,48 +163,141 @@ public abstract class AbstractMetricCollector implements MetricCollector {
     }
     
     /**
-     * 解析脚本表达式
+     * 获取指标表达式引用的兄弟路径
      * 
      * @param context 采集上下文
      * @param metricDef 指标定义
-     * @param rawValue 原始值
-     * @return 解析后的值
+     * @return 引用路径列表，下标即引用槽位
      */
-    protected Double parseExpression(CollectionContext context, MetricDefinition metricDef, Object rawValue) {
+    protected List<String> getExpressionReferences(CollectionContext context, MetricDefinition metricDef) {
         CollectionContext.MetricProtocolMappingInfo mapping = 
                 context.getProtocolMappings().get(metricDef.getId());
         
-        if (mapping == null || mapping.getExpression() == null || mapping.getExpression().isBlank()) {
-            // 没有表达式，尝试直接转换为Double
-            try {
-                if (rawValue instanceof Number) {
-                    return ((Number) rawValue).doubleValue();
-                } else if (rawValue instanceof String) {
-                    return Double.parseDouble((String) rawValue);
-                } else {
-                    return null;
-                }
-            } catch (Exception e) {
-                log.warn("无法将值[{}]转换为Double: {}", rawValue, e.getMessage());
-                return null;
-            }
+        if (mapping == null || mapping.getCompiledExpression() == null) {
+            return Collections.emptyList();
         }
         
-        // TODO: 实现表达式解析引擎，支持如JavaScript、Groovy等脚本语言
-        // 这里暂时实现为直接返回原始值的Double表示
+        return mapping.getCompiledExpression().getReferences();
+    }
+    
+    /**
+     * 指标映射是否配置了解析表达式
+     * 
+     * @param context 采集上下文
+     * @param metricDef 指标定义
+     * @return 是否配置了表达式
+     */
+    protected boolean hasExpression(CollectionContext context, MetricDefinition metricDef) {
+        CollectionContext.MetricProtocolMappingInfo mapping = 
+                context.getProtocolMappings().get(metricDef.getId());
+        
+        return mapping != null && mapping.getExpression() != null && !mapping.getExpression().isBlank();
+    }
+    
+    /**
+     * 解析脚本表达式
+     * 
+     * @param context 采集上下文
+     * @param metricDef 指标定义
+     * @param rawValue 原始值
+     * @return 解析后的值
+     */
+    protected Double parseExpression(CollectionContext context, MetricDefinition metricDef, Object rawValue) {
+        return parseExpression(context, metricDef, rawValue, null, null);
+    }
+    
+    /**
+     * 解析脚本表达式
+     * 
+     * @param context 采集上下文
+     * @param metricDef 指标定义
+     * @param rawValue 原始值
+     * @param references 表达式引用值，下标与{@link #getExpressionReferences}一致，缺失的值为NaN
+     * @param index 表行索引，用于区分rate/delta的序列状态，标量指标为null
+     * @return 解析后的值，无法计算(如首次采样的rate)时返回null
+     */
+    protected Double parseExpression(CollectionContext context, MetricDefinition metricDef, Object rawValue,
+                                     double[] references, String index) {
+        double value;
         try {
             if (rawValue instanceof Number) {
-                return ((Number) rawValue).doubleValue();
+                value = ((Number) rawValue).doubleValue();
             } else if (rawValue instanceof String) {
-                return Double.parseDouble((String) rawValue);
+                value = Double.parseDouble((String) rawValue);
             } else {
                 return null;
             }
         } catch (Exception e) {
-            log.warn("无法解析表达式[{}]或将值[{}]转换为Double: {}", 
-                    mapping.getExpression(), rawValue, e.getMessage());
+            log.warn("无法将值[{}]转换为Double: {}", rawValue, e.getMessage());
             return null;
         }
+        
+        double result = evaluateExpression(context, metricDef, value, references, index);
+        return Double.isNaN(result) ? null : result;
+    }
+    
+    /**
+     * 按原始类型计算脚本表达式，采集热路径使用，不装箱也不拼接序列键
+     * 
+     * @param context 采集上下文
+     * @param metricDef 指标定义
+     * @param value 原始值
+     * @param references 表达式引用值，可使用{@link #referenceBuffer}复用的数组
+     * @param index 表行索引，标量指标为null
+     * @return 解析后的值，无法计算或结果非有限值时返回NaN
+     */
+    protected double evaluateExpression(CollectionContext context, MetricDefinition metricDef, double value,
+                                        double[] references, String index) {
+        return evaluateExpression(context, metricDef, value, references, index, System.currentTimeMillis());
+    }
+    
+    /**
+     * 按原始类型计算脚本表达式，rate/delta按本次与上一次的采集时间之差计算，
+     * 不受求值时刻(如响应排队、表遍历耗时)的影响
+     * 
+     * @param context 采集上下文
+     * @param metricDef 指标定义
+     * @param value 原始值
+     * @param references 表达式引用值，可使用{@link #referenceBuffer}复用的数组
+     * @param index 表行索引，标量指标为null
+     * @param collectTimeMillis 样本的采集时间(毫秒)，与写入指标数据的采集时间一致
+     * @return 解析后的值，无法计算或结果非有限值时返回NaN
+     */
+    protected double evaluateExpression(CollectionContext context, MetricDefinition metricDef, double value,
+                                        double[] references, String index, long collectTimeMillis) {
+        CollectionContext.MetricProtocolMappingInfo mapping = 
+                context.getProtocolMappings().get(metricDef.getId());
+        
+        if (mapping == null || mapping.getExpression() == null || mapping.getExpression().isBlank()) {
+            // 没有表达式，直接返回原始值
+            return value;
+        }
+        
+        MetricExpression expression = mapping.getCompiledExpression();
+        if (expression == null) {
+            log.warn("指标[{}]的表达式[{}]无效", metricDef.getCode(), mapping.getExpression());
+            return Double.NaN;
+        }
+        
+        double[] state = null;
+        if (expression.isStateful()) {
+            String stateKey = mapping.getStateKey() != null ? mapping.getStateKey()
+                    : context.getTaskId() + ":" + metricDef.getId();
+            state = expressionStateStore.get(stateKey, index, expression.getStateSize());
+        }
+        
+        double result = expression.evaluate(SCOPE.get().reset(value, collectTimeMillis, references, state));
+        return Double.isInfinite(result) ? Double.NaN : result;
+    }
+    
+    /**
+     * 获取当前线程复用的表达式引用值数组，填充后应立即用于求值
+     * 
+     * @param size 引用数量
+     * @return 长度不小于size的数组
+     */
+    protected double[] referenceBuffer(int size) {
+        return SCOPE.get().referenceBuffer(size);
     }
     
     /**
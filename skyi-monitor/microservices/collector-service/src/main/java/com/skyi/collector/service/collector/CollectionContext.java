@@ -2,6 +2,7 @@ package com.skyi.collector.service.collector;
 
 import com.skyi.collector.model.CollectorTask;
 import com.skyi.collector.model.MetricDefinition;
+import com.skyi.collector.service.collector.expression.MetricExpression;
 import lombok.Builder;
 import lombok.Data;
 
@@ -106,5 +107,20 @@ public class CollectionContext {
          * 额外参数(JSON格式)
          */
         private Map<String, Object> parameters;
+        
+        /**
+         * 协议相关的预解析路径(如SNMP的OID对象)，为空时由采集器按path解析
+         */
+        private Object compiledPath;
+        
+        /**
+         * 编译后的解析表达式，表达式为空或无效时为空
+         */
+        private MetricExpression compiledExpression;
+        
+        /**
+         * 有状态表达式的序列状态键(任务ID:指标ID)，编译采集计划时生成
+         */
+        private String stateKey;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.skyi.collector.service.collector;
+
+import com.skyi.collector.model.CollectorTask;
+import com.skyi.collector.model.MetricDefinition;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的采集计划
+ * 由任务配置一次性解析得到：指标定义、协议映射(含预解析的路径)、连接参数、资产信息和采集器，
+ * 在两次采集之间保持不变，创建后不再修改，可被并发执行的多个采集实例共享
+ */
+@Getter
+@Builder
+public class CollectionPlan {
+    
+    /**
+     * 任务ID
+     */
+    private final Long taskId;
+    
+    /**
+     * 采集协议
+     */
+    private final String protocol;
+    
+    /**
+     * 资产ID
+     */
+    private final Long assetId;
+    
+    /**
+     * 资产类型
+     */
+    private final String assetType;
+    
+    /**
+     * 资产名称
+     */
+    private final String assetName;
+    
+    /**
+     * 资产IP
+     */
+    private final String assetIp;
+    
+    /**
+     * 指标定义列表(不可修改)
+     */
+    private final List<MetricDefinition> metrics;
+    
+    /**
+     * 指标ID到协议映射的关系(不可修改)
+     */
+    private final Map<Long, CollectionContext.MetricProtocolMappingInfo> protocolMappings;
+    
+    /**
+     * 连接参数(不可修改)
+     */
+    private final Map<String, Object> connectionParams;
+    
+    /**
+     * 采集器
+     */
+    private final MetricCollector collector;
+    
+    /**
+     * 编译时任务的更新时间，用于识别未经服务层修改的任务变更
+     */
+    private final LocalDateTime taskUpdateTime;
+    
+    /**
+     * 编译时间(毫秒)
+     */
+    private final long compiledAt;
+    
+    /**
+     * 是否包含指定指标
+     *
+     * @param metricId 指标ID
+     * @return 是否包含
+     */
+    public boolean containsMetric(Long metricId) {
+        return protocolMappings.containsKey(metricId)
+                || metrics.stream().anyMatch(metric -> metric.getId().equals(metricId));
+    }
+    
+    /**
+     * 为一次采集创建上下文，只有实例ID和变量表是每次新建的
+     *
+     * @param instanceId 任务实例ID
+     * @param originalTask 原始任务
+     * @return 采集上下文
+     */
+    public CollectionContext newContext(Long instanceId, CollectorTask originalTask) {
+        return CollectionContext.builder()
+                .taskId(taskId)
+                .instanceId(instanceId)
+                .assetId(assetId)
+                .assetType(assetType)
+                .assetName(assetName)
+                .assetIp(assetIp)
+                .metrics(metrics)
+                .protocolMappings(protocolMappings)
+                .connectionParams(connectionParams)
+                .variables(new HashMap<>())
+                .originalTask(originalTask)
+                .build();
+    }
+}
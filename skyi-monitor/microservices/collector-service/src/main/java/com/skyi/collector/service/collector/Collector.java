@@ -5,6 +5,7 @@ import com.skyi.collector.model.CollectorTask;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 采集器接口
@@ -42,6 +43,18 @@ public interface Collector {
      */
     List<MetricDataDTO> collect(CollectorTask task, Long instanceId);
     
+    /**
+     * 异步执行采集任务
+     * 默认在调用线程中同步采集，支持非阻塞I/O的采集器应重写此方法
+     * 
+     * @param task 采集任务
+     * @param instanceId 任务实例ID
+     * @return 采集数据结果Future
+     */
+    default CompletableFuture<List<MetricDataDTO>> collectAsync(CollectorTask task, Long instanceId) {
+        return CompletableFuture.completedFuture(collect(task, instanceId));
+    }
+    
     /**
      * 校验采集指标配置
      * 
@@ -5,6 +5,7 @@ import com.skyi.collector.model.MetricDefinition;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 插件化指标采集器接口
@@ -34,6 +35,17 @@ public interface MetricCollector {
      */
     CollectionResult collect(CollectionContext context);
     
+    /**
+     * 异步执行采集操作
+     * 默认在调用线程中同步采集，支持非阻塞I/O的采集器应重写此方法
+     * 
+     * @param context 采集上下文
+     * @return 采集结果Future
+     */
+    default CompletableFuture<CollectionResult> collectAsync(CollectionContext context) {
+        return CompletableFuture.completedFuture(collect(context));
+    }
+    
     /**
      * 测试连接
      * 
@@ -0,0 +1,209 @@
+package com.skyi.collector.service.collector.counter;
+
+import com.skyi.collector.dto.MetricDataDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 计数器转速率
+ * 采集器标记为计数器的指标(SNMP Counter32/Counter64、MySQL累计状态值等)在入库前换算为每秒速率，
+ * 查询时无需再对原始计数器求导。
+ * 每个序列(任务+指标名+标签)的上一次采样保存在按分段加锁的基本类型哈希表中；
+ * 32位、64位计数器回绕时按2^32、2^64补齐，其他情况下的值回退视为设备或代理重启，以本次采样为新基准
+ */
+@Slf4j
+@Component
+public class CounterRateConverter {
+
+    private static final double WRAP_32 = 4294967296.0;
+
+    private static final double WRAP_64 = 18446744073709551616.0;
+
+    private static final int STRIPES = 16;
+
+    private final CounterStateTable[] tables = new CounterStateTable[STRIPES];
+
+    @Value("${collector.counter-rate.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * both: 同时保留原始计数器和速率; rate: 只输出速率
+     */
+    @Value("${collector.counter-rate.mode:both}")
+    private String mode;
+
+    @Value("${collector.counter-rate.suffix:_rate}")
+    private String suffix;
+
+    @Value("${collector.counter-rate.state-idle-ms:3600000}")
+    private long stateIdleMs;
+
+    public CounterRateConverter() {
+        for (int i = 0; i < STRIPES; i++) {
+            tables[i] = new CounterStateTable();
+        }
+    }
+
+    /**
+     * 将采集结果中的计数器换算为速率
+     *
+     * @param metricDataList 采集数据
+     * @return 换算后的数据，首次采样或重启后的计数器在rate模式下不输出
+     */
+    public List<MetricDataDTO> convert(List<MetricDataDTO> metricDataList) {
+        if (!enabled || metricDataList == null || metricDataList.stream().noneMatch(this::isCounter)) {
+            return metricDataList;
+        }
+
+        boolean keepRaw = !"rate".equalsIgnoreCase(mode);
+        List<MetricDataDTO> converted = new ArrayList<>(metricDataList.size() * (keepRaw ? 2 : 1));
+        for (MetricDataDTO metricData : metricDataList) {
+            if (!isCounter(metricData)) {
+                converted.add(metricData);
+                continue;
+            }
+            if (keepRaw) {
+                converted.add(metricData);
+            }
+            double rate = computeRate(metricData);
+            if (!Double.isNaN(rate)) {
+                converted.add(toRateData(metricData, rate));
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * 计算每秒速率，无法计算时返回NaN
+     */
+    double computeRate(MetricDataDTO metricData) {
+        long key = seriesKey(metricData);
+        double value = metricData.getMetricValue();
+        long time = metricData.getCollectTime() != null
+                ? metricData.getCollectTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+
+        CounterStateTable table = tables[(int) (key >>> 60) & (STRIPES - 1)];
+        double previous;
+        long previousTime;
+        synchronized (table) {
+            int slot = table.find(key);
+            previous = slot >= 0 ? table.value(slot) : Double.NaN;
+            previousTime = slot >= 0 ? table.time(slot) : 0L;
+            table.put(key, value, time, System.currentTimeMillis());
+        }
+        if (Double.isNaN(previous)) {
+            return Double.NaN;
+        }
+
+        long elapsed = time - previousTime;
+        if (elapsed <= 0) {
+            return Double.NaN;
+        }
+
+        double delta = value - previous;
+        if (delta < 0) {
+            // 按位宽补齐后的增量小于半个量程时视为回绕，否则视为重启
+            double range = wrapRange(metricData.getCounterBits());
+            double wrapped = delta + range;
+            if (range > 0 && wrapped >= 0 && wrapped < range / 2) {
+                delta = wrapped;
+            } else {
+                log.debug("计数器重置: metric={}, assetId={}, {} -> {}",
+                        metricData.getMetricName(), metricData.getAssetId(), previous, value);
+                return Double.NaN;
+            }
+        }
+        return delta * 1000.0 / elapsed;
+    }
+
+    /**
+     * 清理长时间未出现的序列
+     */
+    @Scheduled(fixedDelayString = "${collector.counter-rate.state-purge-interval-ms:600000}")
+    public void purgeIdle() {
+        long threshold = System.currentTimeMillis() - stateIdleMs;
+        int removed = 0;
+        int remaining = 0;
+        for (CounterStateTable table : tables) {
+            synchronized (table) {
+                removed += table.purge(threshold);
+                remaining += table.size();
+            }
+        }
+        if (removed > 0) {
+            log.debug("清理过期计数器序列: {}个，剩余: {}个", removed, remaining);
+        }
+    }
+
+    private static double wrapRange(Integer bits) {
+        if (bits == null) {
+            return 0;
+        }
+        return bits == 32 ? WRAP_32 : bits == 64 ? WRAP_64 : 0;
+    }
+
+    private boolean isCounter(MetricDataDTO metricData) {
+        return metricData.getCounterBits() != null && metricData.getMetricValue() != null;
+    }
+
+    private MetricDataDTO toRateData(MetricDataDTO counter, double rate) {
+        MetricDataDTO metricData = new MetricDataDTO();
+        metricData.setTaskId(counter.getTaskId());
+        metricData.setInstanceId(counter.getInstanceId());
+        metricData.setAssetId(counter.getAssetId());
+        metricData.setMetricName(counter.getMetricName() + suffix);
+        metricData.setMetricLabels(counter.getMetricLabels() != null
+                ? new HashMap<>(counter.getMetricLabels()) : null);
+        metricData.setMetricValue(rate);
+        metricData.setCollectTime(counter.getCollectTime());
+        metricData.setCreateTime(counter.getCreateTime());
+        return metricData;
+    }
+
+    /**
+     * 序列键: 任务ID、指标名和标签集合的64位哈希，标签按无序集合参与计算
+     */
+    private long seriesKey(MetricDataDTO metricData) {
+        long h = metricData.getTaskId() != null ? metricData.getTaskId() : 0L;
+        h = h * 0x100000001B3L ^ hash(metricData.getMetricName());
+        long labels = 0;
+        if (metricData.getMetricLabels() != null) {
+            for (Map.Entry<String, String> label : metricData.getMetricLabels().entrySet()) {
+                labels += mix(hash(label.getKey()) * 31 + hash(label.getValue()));
+            }
+        }
+        return mix(h ^ labels);
+    }
+
+    /**
+     * 64位FNV-1a字符串哈希
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        if (value == null) {
+            return h;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,133 @@
+package com.skyi.collector.service.collector.counter;
+
+/**
+ * 计数器序列状态表
+ * 以序列的64位哈希为键、开放寻址的基本类型数组保存上一次采样，
+ * 每个序列只占用一个long键、一个double值和两个long时间，不为序列创建对象。
+ * 非线程安全，由{@link CounterRateConverter}按分段加锁访问
+ */
+final class CounterStateTable {
+
+    /**
+     * 空槽位标记，真实哈希恰为0时映射为1
+     */
+    private static final long EMPTY = 0L;
+
+    private static final int MIN_CAPACITY = 64;
+
+    private long[] keys;
+    private double[] values;
+    private long[] times;
+    private long[] lastSeen;
+    private int size;
+
+    CounterStateTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * 查找序列所在槽位
+     *
+     * @param key 序列哈希
+     * @return 槽位，不存在时返回-1
+     */
+    int find(long key) {
+        key = normalize(key);
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return slot;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    double value(int slot) {
+        return values[slot];
+    }
+
+    long time(int slot) {
+        return times[slot];
+    }
+
+    /**
+     * 写入序列的最新采样
+     */
+    void put(long key, double value, long time, long now) {
+        key = normalize(key);
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2, Long.MIN_VALUE);
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        times[slot] = time;
+        lastSeen[slot] = now;
+    }
+
+    /**
+     * 清理在指定时间之前未出现的序列，重建表以保持探测链连续
+     *
+     * @param threshold 时间阈值(毫秒)
+     * @return 清理的序列数
+     */
+    int purge(long threshold) {
+        int before = size;
+        int capacity = MIN_CAPACITY;
+        int live = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && lastSeen[slot] >= threshold) {
+                live++;
+            }
+        }
+        while (live * 4 > capacity * 3) {
+            capacity *= 2;
+        }
+        rehash(capacity, threshold);
+        return before - size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void rehash(int capacity, long threshold) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        long[] oldTimes = times;
+        long[] oldLastSeen = lastSeen;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY && oldLastSeen[slot] >= threshold) {
+                put(oldKeys[slot], oldValues[slot], oldTimes[slot], oldLastSeen[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        times = new long[capacity];
+        lastSeen = new long[capacity];
+        size = 0;
+    }
+
+    private static long normalize(long key) {
+        return key == EMPTY ? 1L : key;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
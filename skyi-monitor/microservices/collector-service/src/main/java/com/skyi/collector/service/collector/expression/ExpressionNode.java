@@ -0,0 +1,186 @@
+package com.skyi.collector.service.collector.expression;
+
+/**
+ * 表达式节点
+ * 每种运算对应一个final实现类，求值只在基本类型上进行
+ */
+interface ExpressionNode {
+
+    double eval(ExpressionScope scope);
+
+    /**
+     * 常量
+     */
+    final class Constant implements ExpressionNode {
+        final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double eval(ExpressionScope scope) {
+            return value;
+        }
+    }
+
+    /**
+     * 原始采集值
+     */
+    final class Value implements ExpressionNode {
+        @Override
+        public double eval(ExpressionScope scope) {
+            return scope.value();
+        }
+    }
+
+    /**
+     * 兄弟路径引用
+     */
+    final class Reference implements ExpressionNode {
+        private final int slot;
+
+        Reference(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public double eval(ExpressionScope scope) {
+            return scope.reference(slot);
+        }
+    }
+
+    /**
+     * 一元运算与单参数函数
+     */
+    final class Unary implements ExpressionNode {
+        static final int NEGATE = 0;
+        static final int ABS = 1;
+        static final int ROUND = 2;
+        static final int FLOOR = 3;
+        static final int CEIL = 4;
+
+        private final int op;
+        private final ExpressionNode operand;
+
+        Unary(int op, ExpressionNode operand) {
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        public double eval(ExpressionScope scope) {
+            return apply(op, operand.eval(scope));
+        }
+
+        static double apply(int op, double v) {
+            switch (op) {
+                case NEGATE:
+                    return -v;
+                case ABS:
+                    return Math.abs(v);
+                case ROUND:
+                    return Math.rint(v);
+                case FLOOR:
+                    return Math.floor(v);
+                case CEIL:
+                    return Math.ceil(v);
+                default:
+                    throw new IllegalStateException("未知的一元运算: " + op);
+            }
+        }
+    }
+
+    /**
+     * 二元运算与双参数函数
+     */
+    final class Binary implements ExpressionNode {
+        static final int ADD = 0;
+        static final int SUB = 1;
+        static final int MUL = 2;
+        static final int DIV = 3;
+        static final int MOD = 4;
+        static final int MIN = 5;
+        static final int MAX = 6;
+
+        private final int op;
+        private final ExpressionNode left;
+        private final ExpressionNode right;
+
+        Binary(int op, ExpressionNode left, ExpressionNode right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double eval(ExpressionScope scope) {
+            return apply(op, left.eval(scope), right.eval(scope));
+        }
+
+        static double apply(int op, double l, double r) {
+            switch (op) {
+                case ADD:
+                    return l + r;
+                case SUB:
+                    return l - r;
+                case MUL:
+                    return l * r;
+                case DIV:
+                    return l / r;
+                case MOD:
+                    return l % r;
+                case MIN:
+                    return Math.min(l, r);
+                case MAX:
+                    return Math.max(l, r);
+                default:
+                    throw new IllegalStateException("未知的二元运算: " + op);
+            }
+        }
+    }
+
+    /**
+     * 与上一次采样的差值，rate按秒归一化
+     * 状态布局: [是否已有上一次采样, 上一次的值, 上一次的采样时间]；
+     * 首次采样、时间未前进或rate遇到值回退(计数器重置)时返回NaN并以本次采样为新基准；
+     * delta可用于仪表类指标，允许为负
+     */
+    final class Difference implements ExpressionNode {
+        private final ExpressionNode operand;
+        private final int slot;
+        private final boolean perSecond;
+
+        Difference(ExpressionNode operand, int slot, boolean perSecond) {
+            this.operand = operand;
+            this.slot = slot;
+            this.perSecond = perSecond;
+        }
+
+        @Override
+        public double eval(ExpressionScope scope) {
+            double current = operand.eval(scope);
+            double[] state = scope.state();
+            if (state == null || Double.isNaN(current)) {
+                return Double.NaN;
+            }
+
+            long now = scope.timestampMillis();
+            boolean initialized = state[slot] != 0;
+            double previous = state[slot + 1];
+            long previousTime = (long) state[slot + 2];
+            state[slot] = 1;
+            state[slot + 1] = current;
+            state[slot + 2] = now;
+
+            if (!initialized || (perSecond && current < previous)) {
+                return Double.NaN;
+            }
+            if (!perSecond) {
+                return current - previous;
+            }
+            long elapsed = now - previousTime;
+            return elapsed > 0 ? (current - previous) * 1000.0 / elapsed : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.skyi.collector.service.collector.expression;
+
+/**
+ * 表达式求值作用域
+ * 保存一次求值所需的原始值、引用值、采样时间和序列状态，
+ * 可按线程复用，求值过程中不创建对象
+ */
+public final class ExpressionScope {
+
+    private static final double[] NO_REFERENCES = new double[0];
+
+    private double value;
+    private long timestampMillis;
+    private double[] references = NO_REFERENCES;
+    private double[] state;
+    private double[] referenceBuffer = NO_REFERENCES;
+
+    /**
+     * 设置本次求值的输入
+     *
+     * @param value 原始值
+     * @param timestampMillis 采样时间(毫秒)
+     * @param references 引用值，下标与{@link MetricExpression#getReferences()}一致，缺失的值为NaN
+     * @param state 序列状态，长度不小于{@link MetricExpression#getStateSize()}，无状态表达式可为null
+     * @return 当前作用域
+     */
+    public ExpressionScope reset(double value, long timestampMillis, double[] references, double[] state) {
+        this.value = value;
+        this.timestampMillis = timestampMillis;
+        this.references = references != null ? references : NO_REFERENCES;
+        this.state = state;
+        return this;
+    }
+
+    /**
+     * 获取按线程复用的引用值缓冲区，内容在同一线程下次获取前有效
+     *
+     * @param size 所需长度
+     * @return 长度不小于size的数组
+     */
+    public double[] referenceBuffer(int size) {
+        if (referenceBuffer.length < size) {
+            referenceBuffer = new double[size];
+        }
+        return referenceBuffer;
+    }
+
+    double value() {
+        return value;
+    }
+
+    long timestampMillis() {
+        return timestampMillis;
+    }
+
+    double reference(int slot) {
+        return slot < references.length ? references[slot] : Double.NaN;
+    }
+
+    double[] state() {
+        return state;
+    }
+}
@@ -0,0 +1,99 @@
+package com.skyi.collector.service.collector.expression;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 表达式序列状态存储
+ * 为rate/delta等有状态表达式按序列(任务、指标、表行索引)保存上一次采样，
+ * 独立于采集计划，计划重新编译后状态保持连续；长时间未访问的序列定期清理。
+ * 表指标按指标键和行索引两级存放，采集时直接用预先生成的指标键查找，不再逐行拼接序列键
+ */
+@Slf4j
+@Component
+public class ExpressionStateStore {
+
+    private final Map<String, SeriesState> states = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, SeriesState>> tables = new ConcurrentHashMap<>();
+
+    @Value("${collector.expression.state-idle-ms:3600000}")
+    private long stateIdleMs;
+
+    /**
+     * 获取序列状态数组，不存在或长度不足时新建
+     * 同一序列的两次采集不会并发执行，调用方对返回的数组读写无需加锁
+     *
+     * @param seriesKey 序列键
+     * @param size 状态数组长度
+     * @return 状态数组
+     */
+    public double[] get(String seriesKey, int size) {
+        SeriesState state = states.get(seriesKey);
+        if (state == null || state.values.length < size) {
+            state = new SeriesState(new double[size]);
+            states.put(seriesKey, state);
+        }
+        state.lastAccess = System.currentTimeMillis();
+        return state.values;
+    }
+
+    /**
+     * 获取表指标某一行的序列状态数组，行索引为null时等同于标量序列
+     *
+     * @param seriesKey 指标序列键
+     * @param index 表行索引
+     * @param size 状态数组长度
+     * @return 状态数组
+     */
+    public double[] get(String seriesKey, String index, int size) {
+        if (index == null) {
+            return get(seriesKey, size);
+        }
+        Map<String, SeriesState> rows = tables.computeIfAbsent(seriesKey, key -> new ConcurrentHashMap<>());
+        SeriesState state = rows.get(index);
+        if (state == null || state.values.length < size) {
+            state = new SeriesState(new double[size]);
+            rows.put(index, state);
+        }
+        state.lastAccess = System.currentTimeMillis();
+        return state.values;
+    }
+
+    /**
+     * 当前保存的序列数
+     */
+    public int size() {
+        return states.size() + tables.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * 清理长时间未访问的序列
+     */
+    @Scheduled(fixedDelayString = "${collector.expression.state-purge-interval-ms:600000}")
+    public void purgeIdle() {
+        long threshold = System.currentTimeMillis() - stateIdleMs;
+        int before = size();
+        states.values().removeIf(state -> state.lastAccess < threshold);
+        tables.values().forEach(rows -> rows.values().removeIf(state -> state.lastAccess < threshold));
+        tables.values().removeIf(Map::isEmpty);
+        int after = size();
+        if (before > after) {
+            log.debug("清理过期表达式序列状态: {}个，剩余: {}个", before - after, after);
+        }
+    }
+
+    private static final class SeriesState {
+        private final double[] values;
+        private volatile long lastAccess;
+
+        private SeriesState(double[] values) {
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.skyi.collector.service.collector.expression;
+
+import java.util.List;
+
+/**
+ * 编译后的指标表达式
+ * 由{@link MetricExpressionCompiler}将表达式文本编译为节点树，求值只做基本类型运算，不创建对象。
+ * 表达式本身不保存序列状态，可被多个采集任务并发共享；
+ * rate/delta等依赖上一次采样的函数通过作用域中的状态数组读写
+ */
+public final class MetricExpression {
+
+    private final String source;
+    private final ExpressionNode root;
+    private final List<String> references;
+    private final int stateSize;
+
+    MetricExpression(String source, ExpressionNode root, List<String> references, int stateSize) {
+        this.source = source;
+        this.root = root;
+        this.references = references;
+        this.stateSize = stateSize;
+    }
+
+    /**
+     * 求值
+     *
+     * @param scope 求值作用域
+     * @return 结果，输入缺失或无法计算(如首次采样的rate)时为NaN
+     */
+    public double evaluate(ExpressionScope scope) {
+        return root.eval(scope);
+    }
+
+    /**
+     * 表达式文本
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 表达式引用的兄弟路径(如同一PDU中的其他OID)，按引用槽位排序
+     */
+    public List<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * 每个序列需要的状态数组长度，为0表示表达式无状态
+     */
+    public int getStateSize() {
+        return stateSize;
+    }
+
+    public boolean isStateful() {
+        return stateSize > 0;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,290 @@
+package com.skyi.collector.service.collector.expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 指标表达式编译器
+ * 将协议映射中的表达式文本编译为{@link MetricExpression}，每个映射只需编译一次。
+ * <p>
+ * 支持的语法：
+ * <ul>
+ *     <li>{@code value}或{@code x}：原始采集值</li>
+ *     <li>{@code ${1.3.6.1.4.1.2021.4.6.0}}：引用同一请求中的兄弟路径，表指标中按同一行索引取值</li>
+ *     <li>四则运算与取模：{@code + - * / %}，括号和一元负号</li>
+ *     <li>数值单位后缀：K/M/G/T/P为1000的幂，Ki/Mi/Gi/Ti/Pi为1024的幂，如{@code value / 1Mi}</li>
+ *     <li>函数：{@code rate(e)}每秒变化率、{@code delta(e)}与上次采样的差值、
+ *     {@code abs(e) round(e) floor(e) ceil(e) min(a, b) max(a, b)}</li>
+ * </ul>
+ * 例如内存使用率：{@code (${.1.3.6.1.4.1.2021.4.5.0} - value) / ${.1.3.6.1.4.1.2021.4.5.0} * 100}
+ */
+public final class MetricExpressionCompiler {
+
+    private final String source;
+    private final List<String> references = new ArrayList<>();
+    private int pos;
+    private int stateSize;
+
+    private MetricExpressionCompiler(String source) {
+        this.source = source;
+    }
+
+    /**
+     * 编译表达式
+     *
+     * @param expression 表达式文本
+     * @return 编译后的表达式
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public static MetricExpression compile(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("表达式为空");
+        }
+        MetricExpressionCompiler compiler = new MetricExpressionCompiler(expression.trim());
+        ExpressionNode root = compiler.parseExpression();
+        compiler.skipWhitespace();
+        if (compiler.pos < compiler.source.length()) {
+            throw compiler.error("无法识别的内容");
+        }
+        return new MetricExpression(compiler.source, root,
+                Collections.unmodifiableList(compiler.references), compiler.stateSize);
+    }
+
+    private ExpressionNode parseExpression() {
+        ExpressionNode node = parseTerm();
+        while (true) {
+            if (consume('+')) {
+                node = binary(ExpressionNode.Binary.ADD, node, parseTerm());
+            } else if (consume('-')) {
+                node = binary(ExpressionNode.Binary.SUB, node, parseTerm());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionNode parseTerm() {
+        ExpressionNode node = parseUnary();
+        while (true) {
+            if (consume('*')) {
+                node = binary(ExpressionNode.Binary.MUL, node, parseUnary());
+            } else if (consume('/')) {
+                node = binary(ExpressionNode.Binary.DIV, node, parseUnary());
+            } else if (consume('%')) {
+                node = binary(ExpressionNode.Binary.MOD, node, parseUnary());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionNode parseUnary() {
+        if (consume('-')) {
+            return unary(ExpressionNode.Unary.NEGATE, parseUnary());
+        }
+        if (consume('+')) {
+            return parseUnary();
+        }
+        return parsePrimary();
+    }
+
+    private ExpressionNode parsePrimary() {
+        skipWhitespace();
+        if (pos >= source.length()) {
+            throw error("表达式不完整");
+        }
+
+        char c = source.charAt(pos);
+        if (c == '(') {
+            pos++;
+            ExpressionNode node = parseExpression();
+            expect(')');
+            return node;
+        }
+        if (c == '$') {
+            return parseReference();
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (Character.isLetter(c)) {
+            return parseIdentifier();
+        }
+        throw error("无法识别的字符'" + c + "'");
+    }
+
+    private ExpressionNode parseReference() {
+        pos++;
+        expect('{');
+        int end = source.indexOf('}', pos);
+        if (end < 0) {
+            throw error("引用缺少'}'");
+        }
+        String path = source.substring(pos, end).trim();
+        if (path.isEmpty()) {
+            throw error("引用路径为空");
+        }
+        pos = end + 1;
+
+        int slot = references.indexOf(path);
+        if (slot < 0) {
+            slot = references.size();
+            references.add(path);
+        }
+        return new ExpressionNode.Reference(slot);
+    }
+
+    private ExpressionNode parseNumber() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            int mark = pos++;
+            if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) {
+                pos++;
+            }
+            if (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                    pos++;
+                }
+            } else {
+                pos = mark;
+            }
+        }
+
+        double number;
+        try {
+            number = Double.parseDouble(source.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("无效的数字'" + source.substring(start, pos) + "'");
+        }
+        return new ExpressionNode.Constant(number * parseUnit());
+    }
+
+    /**
+     * 解析紧跟在数字后的单位后缀
+     */
+    private double parseUnit() {
+        if (pos >= source.length()) {
+            return 1;
+        }
+        char unit = source.charAt(pos);
+        int exponent = "KMGTP".indexOf(unit == 'k' ? 'K' : unit) + 1;
+        if (exponent == 0) {
+            return 1;
+        }
+        boolean binary = pos + 1 < source.length() && source.charAt(pos + 1) == 'i';
+        int next = pos + (binary ? 2 : 1);
+        if (next < source.length() && Character.isLetterOrDigit(source.charAt(next))) {
+            throw error("无效的单位后缀");
+        }
+        pos = next;
+        return Math.pow(binary ? 1024 : 1000, exponent);
+    }
+
+    private ExpressionNode parseIdentifier() {
+        int start = pos;
+        while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+            pos++;
+        }
+        String name = source.substring(start, pos);
+
+        if ("value".equals(name) || "x".equals(name)) {
+            return new ExpressionNode.Value();
+        }
+
+        skipWhitespace();
+        if (pos >= source.length() || source.charAt(pos) != '(') {
+            throw error("未知的变量'" + name + "'");
+        }
+        pos++;
+
+        switch (name) {
+            case "rate":
+            case "delta": {
+                ExpressionNode operand = parseExpression();
+                expect(')');
+                int slot = stateSize;
+                stateSize += 3;
+                return new ExpressionNode.Difference(operand, slot, "rate".equals(name));
+            }
+            case "abs":
+                return unaryFunction(ExpressionNode.Unary.ABS);
+            case "round":
+                return unaryFunction(ExpressionNode.Unary.ROUND);
+            case "floor":
+                return unaryFunction(ExpressionNode.Unary.FLOOR);
+            case "ceil":
+                return unaryFunction(ExpressionNode.Unary.CEIL);
+            case "min":
+                return binaryFunction(ExpressionNode.Binary.MIN);
+            case "max":
+                return binaryFunction(ExpressionNode.Binary.MAX);
+            default:
+                throw error("未知的函数'" + name + "'");
+        }
+    }
+
+    private ExpressionNode unaryFunction(int op) {
+        ExpressionNode operand = parseExpression();
+        expect(')');
+        return unary(op, operand);
+    }
+
+    private ExpressionNode binaryFunction(int op) {
+        ExpressionNode left = parseExpression();
+        expect(',');
+        ExpressionNode right = parseExpression();
+        expect(')');
+        return binary(op, left, right);
+    }
+
+    /**
+     * 创建一元节点，常量操作数在编译期折叠
+     */
+    private ExpressionNode unary(int op, ExpressionNode operand) {
+        if (operand instanceof ExpressionNode.Constant) {
+            return new ExpressionNode.Constant(
+                    ExpressionNode.Unary.apply(op, ((ExpressionNode.Constant) operand).value));
+        }
+        return new ExpressionNode.Unary(op, operand);
+    }
+
+    /**
+     * 创建二元节点，常量操作数在编译期折叠
+     */
+    private ExpressionNode binary(int op, ExpressionNode left, ExpressionNode right) {
+        if (left instanceof ExpressionNode.Constant && right instanceof ExpressionNode.Constant) {
+            return new ExpressionNode.Constant(ExpressionNode.Binary.apply(op,
+                    ((ExpressionNode.Constant) left).value, ((ExpressionNode.Constant) right).value));
+        }
+        return new ExpressionNode.Binary(op, left, right);
+    }
+
+    private boolean consume(char expected) {
+        skipWhitespace();
+        if (pos < source.length() && source.charAt(pos) == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char expected) {
+        if (!consume(expected)) {
+            throw error("缺少'" + expected + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("表达式[" + source + "]第" + (pos + 1) + "个字符处" + message);
+    }
+}
@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * MySQL数据库采集器
@@ -35,6 +36,10 @@ public class MySqlCollector extends AbstractCollector {
     private static final String INNODB_BUFFER_POOL_PAGES_FREE_SQL = "SHOW GLOBAL STATUS LIKE 'Innodb_buffer_pool_pages_free'";
     private static final String INNODB_BUFFER_POOL_PAGES_TOTAL_SQL = "SHOW GLOBAL STATUS LIKE 'Innodb_buffer_pool_pages_total'";
     
+    // 累计型状态值，由计数器转速率阶段换算为每秒速率
+    private static final Set<String> COUNTER_PATHS = Set.of(
+            "questions", "bytes_received", "bytes_sent", "innodb_row_lock_time");
+    
     @Override
     public String getType() {
         return TYPE;
@@ -131,6 +136,9 @@ public class MySqlCollector extends AbstractCollector {
                     // 创建指标数据
                     MetricDataDTO metricData = createMetricData(
                             task, instanceId, metricName, value, labels);
+                    if (COUNTER_PATHS.contains(metricPath.toLowerCase())) {
+                        metricData.setCounterBits(64);
+                    }
                     results.add(metricData);
                 } else {
                     log.warn("获取MySQL指标数据失败, metric={}", metricName);
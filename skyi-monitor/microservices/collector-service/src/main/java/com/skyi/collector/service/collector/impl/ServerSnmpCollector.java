@@ -5,22 +5,25 @@ import com.skyi.collector.dto.CollectorTaskDTO;
 import com.skyi.collector.dto.MetricDataDTO;
 import com.skyi.collector.model.CollectorTask;
 import com.skyi.collector.service.collector.AbstractCollector;
+import com.skyi.collector.service.collector.snmp.SnmpBulkRequester;
+import com.skyi.collector.service.collector.snmp.SnmpSessionPool;
+import com.skyi.collector.service.collector.snmp.SnmpVariables;
 import lombok.extern.slf4j.Slf4j;
-import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
-import org.snmp4j.Snmp;
-import org.snmp4j.TransportMapping;
+import org.snmp4j.Target;
 import org.snmp4j.event.ResponseEvent;
-import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.*;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 服务器SNMP采集器
@@ -39,6 +42,15 @@ public class ServerSnmpCollector extends AbstractCollector {
     private static final String DISK_TOTAL_OID_PREFIX = ".1.3.6.1.4.1.2021.9.1.6";
     private static final String DISK_USED_OID_PREFIX = ".1.3.6.1.4.1.2021.9.1.8";
     
+    // 需要按表遍历的列
+    private static final Set<String> TABLE_OID_PREFIXES = Set.of(DISK_TOTAL_OID_PREFIX, DISK_USED_OID_PREFIX);
+    
+    @Autowired
+    private SnmpSessionPool sessionPool;
+    
+    @Autowired
+    private SnmpBulkRequester bulkRequester;
+    
     @Override
     public String getType() {
         return TYPE;
@@ -52,35 +64,15 @@ public class ServerSnmpCollector extends AbstractCollector {
     @Override
     public boolean testConnection(Map<String, String> connectionParams) {
         try {
-            String ipAddress = connectionParams.get("ipAddress");
-            String port = connectionParams.getOrDefault("port", "161");
-            String community = connectionParams.getOrDefault("community", "public");
-            int version = Integer.parseInt(connectionParams.getOrDefault("version", "1"));
-            
-            // 创建SNMP实例并测试连接
-            Address targetAddress = new UdpAddress(ipAddress + "/" + port);
-            TransportMapping<?> transport = new DefaultUdpTransportMapping();
-            Snmp snmp = new Snmp(transport);
-            transport.listen();
-            
-            // 创建目标对象
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setAddress(targetAddress);
-            target.setRetries(2);
-            target.setTimeout(1000);
-            target.setVersion(version == 2 ? SnmpConstants.version2c : SnmpConstants.version1);
+            // 创建目标对象(v3使用USM用户认证)，通过共享会话池测试连接
+            Target<UdpAddress> target = sessionPool.createTarget(connectionParams, 1);
             
             // 创建PDU
-            PDU pdu = new PDU();
+            PDU pdu = sessionPool.createPdu(PDU.GET, target);
             pdu.add(new VariableBinding(new OID(CPU_LOAD_OID)));
-            pdu.setType(PDU.GET);
             
             // 发送GET请求
-            ResponseEvent response = snmp.send(pdu, target);
-            
-            // 关闭连接
-            snmp.close();
+            ResponseEvent<?> response = sessionPool.send(pdu, target).join();
             
             // 检查响应
             if (response != null && response.getResponse() != null) {
@@ -96,7 +88,11 @@ public class ServerSnmpCollector extends AbstractCollector {
     
     @Override
     public List<MetricDataDTO> collect(CollectorTask task, Long instanceId) {
-        List<MetricDataDTO> results = new ArrayList<>();
+        return collectAsync(task, instanceId).join();
+    }
+    
+    @Override
+    public CompletableFuture<List<MetricDataDTO>> collectAsync(CollectorTask task, Long instanceId) {
         try {
             // 解析连接参数和指标
             Map<String, String> connectionParams = parseConnectionParams(task);
@@ -104,87 +100,98 @@ public class ServerSnmpCollector extends AbstractCollector {
             
             if (metrics.isEmpty() || connectionParams.isEmpty()) {
                 log.warn("采集任务配置不完整, taskId={}", task.getId());
-                return results;
+                return CompletableFuture.completedFuture(new ArrayList<>());
             }
             
             String ipAddress = connectionParams.get("ipAddress");
-            String port = connectionParams.getOrDefault("port", "161");
-            String community = connectionParams.getOrDefault("community", "public");
-            int version = Integer.parseInt(connectionParams.getOrDefault("version", "1"));
-            
-            // 创建SNMP实例
-            Address targetAddress = new UdpAddress(ipAddress + "/" + port);
-            TransportMapping<?> transport = new DefaultUdpTransportMapping();
-            Snmp snmp = new Snmp(transport);
-            transport.listen();
             
-            // 创建目标对象
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setAddress(targetAddress);
-            target.setRetries(2);
-            target.setTimeout(1000);
-            target.setVersion(version == 2 ? SnmpConstants.version2c : SnmpConstants.version1);
+            // 创建目标对象(v3使用USM用户认证)，请求通过共享会话池发送
+            Target<UdpAddress> target = sessionPool.createTarget(connectionParams, 1);
             
-            // 处理每个指标
+            // 区分标量指标与表指标，标量按报文大小批量GET，表指标按列遍历
+            Map<OID, CollectorTaskDTO.MetricDTO> scalarMetrics = new LinkedHashMap<>();
+            Map<OID, CollectorTaskDTO.MetricDTO> tableMetrics = new LinkedHashMap<>();
             for (CollectorTaskDTO.MetricDTO metric : metrics) {
                 if (!metric.getEnabled()) {
                     continue;
                 }
                 
-                // 获取指标OID
-                String oid = metric.getPath();
-                
                 try {
-                    // 创建PDU
-                    PDU pdu = new PDU();
-                    pdu.add(new VariableBinding(new OID(oid)));
-                    pdu.setType(PDU.GET);
-                    
-                    // 发送GET请求
-                    ResponseEvent response = snmp.send(pdu, target);
-                    
-                    // 处理响应
-                    if (response != null && response.getResponse() != null) {
-                        PDU responsePDU = response.getResponse();
-                        if (responsePDU.getErrorStatus() == PDU.noError) {
-                            VariableBinding vb = responsePDU.get(0);
-                            if (vb != null) {
-                                Variable variable = vb.getVariable();
-                                Double value = parseSnmpValue(vb);
-                                
-                                if (value != null) {
-                                    // 创建标签
-                                    Map<String, String> labels = new HashMap<>();
-                                    labels.put("host", ipAddress);
-                                    labels.put("metric", metric.getName());
-                                    
-                                    // 创建指标数据
-                                    MetricDataDTO metricData = createMetricData(
-                                            task, instanceId, metric.getName(), value, labels);
-                                    results.add(metricData);
-                                }
-                            }
-                        } else {
-                            log.warn("SNMP响应错误: {}, OID={}", 
-                                    responsePDU.getErrorStatusText(), oid);
-                        }
+                    OID oid = new OID(metric.getPath());
+                    if (isTableMetric(metric)) {
+                        tableMetrics.put(oid, metric);
                     } else {
-                        log.warn("SNMP响应为空, OID={}", oid);
+                        scalarMetrics.put(oid, metric);
                     }
                 } catch (Exception e) {
-                    log.error("采集指标出错: {}, OID={}", e.getMessage(), oid, e);
+                    log.error("采集指标出错: {}, OID={}", e.getMessage(), metric.getPath(), e);
                 }
             }
             
-            // 关闭连接
-            snmp.close();
+            CompletableFuture<Map<OID, VariableBinding>> scalarFuture =
+                    bulkRequester.get(new ArrayList<>(scalarMetrics.keySet()), target);
+            CompletableFuture<Map<OID, List<VariableBinding>>> tableFuture =
+                    bulkRequester.walk(new ArrayList<>(tableMetrics.keySet()), target);
             
-        } catch (IOException e) {
+            return scalarFuture.thenCombine(tableFuture, (values, columns) -> {
+                List<MetricDataDTO> results = new ArrayList<>();
+                scalarMetrics.forEach((oid, metric) -> {
+                    VariableBinding vb = values.get(oid);
+                    if (vb != null) {
+                        addMetricData(task, instanceId, ipAddress, metric, vb, null, results);
+                    } else {
+                        log.warn("SNMP响应为空或OID不存在, OID={}", oid);
+                    }
+                });
+                tableMetrics.forEach((root, metric) -> {
+                    List<VariableBinding> rows = columns.getOrDefault(root, Collections.emptyList());
+                    if (rows.isEmpty()) {
+                        log.warn("SNMP表遍历未返回数据, OID={}", root);
+                    }
+                    for (VariableBinding vb : rows) {
+                        addMetricData(task, instanceId, ipAddress, metric, vb,
+                                vb.getOid().getSuffix(root).toDottedString(), results);
+                    }
+                });
+                return results;
+            });
+            
+        } catch (Exception e) {
             log.error("SNMP采集出错: {}", e.getMessage(), e);
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+    }
+    
+    /**
+     * 判断指标是否为表列，显式配置walk或属于已知表列前缀时按表遍历
+     */
+    private boolean isTableMetric(CollectorTaskDTO.MetricDTO metric) {
+        return Boolean.TRUE.equals(metric.getWalk()) || TABLE_OID_PREFIXES.contains(metric.getPath());
+    }
+    
+    /**
+     * 将变量绑定转换为指标数据
+     */
+    private void addMetricData(CollectorTask task, Long instanceId, String ipAddress,
+                               CollectorTaskDTO.MetricDTO metric, VariableBinding vb, String index,
+                               List<MetricDataDTO> results) {
+        Double value = parseSnmpValue(vb);
+        if (value == null) {
+            return;
+        }
+        
+        // 创建标签
+        Map<String, String> labels = new HashMap<>();
+        labels.put("host", ipAddress);
+        labels.put("metric", metric.getName());
+        if (index != null) {
+            labels.put("index", index);
         }
         
-        return results;
+        // 创建指标数据，计数器类型由后续阶段换算为速率
+        MetricDataDTO metricData = createMetricData(task, instanceId, metric.getName(), value, labels);
+        metricData.setCounterBits(SnmpVariables.counterBits(vb.getVariable()));
+        results.add(metricData);
     }
     
     @Override
@@ -231,7 +238,7 @@ public class ServerSnmpCollector extends AbstractCollector {
             } else if (variable instanceof Counter32) {
                 return (double) ((Counter32) variable).getValue();
             } else if (variable instanceof Counter64) {
-                return (double) ((Counter64) variable).getValue();
+                return SnmpVariables.unsignedValue((Counter64) variable);
             } else if (variable instanceof Gauge32) {
                 return (double) ((Gauge32) variable).getValue();
             } else if (variable instanceof TimeTicks) {
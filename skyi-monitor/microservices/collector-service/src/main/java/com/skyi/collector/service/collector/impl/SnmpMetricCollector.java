@@ -6,19 +6,21 @@ import com.skyi.collector.service.collector.AbstractMetricCollector;
 import com.skyi.collector.service.collector.CollectionContext;
 import com.skyi.collector.service.collector.CollectionResult;
 import com.skyi.collector.service.collector.ConnectionTestResult;
+import com.skyi.collector.service.collector.snmp.SnmpBulkRequester;
+import com.skyi.collector.service.collector.snmp.SnmpSessionPool;
+import com.skyi.collector.service.collector.snmp.SnmpVariables;
 import lombok.extern.slf4j.Slf4j;
-import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
-import org.snmp4j.Snmp;
-import org.snmp4j.TransportMapping;
+import org.snmp4j.Target;
 import org.snmp4j.event.ResponseEvent;
-import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.*;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * SNMP协议指标采集器
@@ -31,6 +33,12 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
     private static final String PROTOCOL = "snmp";
     private static final List<String> SUPPORTED_ASSET_TYPES = Arrays.asList("server", "network", "storage");
     
+    @Autowired
+    private SnmpSessionPool sessionPool;
+    
+    @Autowired
+    private SnmpBulkRequester bulkRequester;
+    
     @Override
     public String getProtocol() {
         return PROTOCOL;
@@ -48,47 +56,27 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
             // 解析连接参数
             String ipAddress = getStringParam(connectionParams, "ipAddress");
             int port = getIntParam(connectionParams, "port", 161);
-            String community = getStringParam(connectionParams, "community", "public");
-            int version = getIntParam(connectionParams, "version", 2);
-            int timeout = getIntParam(connectionParams, "timeout", 1000);
-            int retries = getIntParam(connectionParams, "retries", 2);
             
             if (ipAddress == null || ipAddress.isBlank()) {
                 return ConnectionTestResult.failure("连接测试失败", "IP地址不能为空");
             }
             
-            // 创建SNMP连接
-            Address targetAddress = new UdpAddress(ipAddress + "/" + port);
-            TransportMapping<?> transport = new DefaultUdpTransportMapping();
-            Snmp snmp = new Snmp(transport);
-            transport.listen();
-            
-            // 创建目标对象
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setAddress(targetAddress);
-            target.setRetries(retries);
-            target.setTimeout(timeout);
-            target.setVersion(version == 1 ? SnmpConstants.version1 : 
-                             (version == 3 ? SnmpConstants.version3 : SnmpConstants.version2c));
+            // 创建目标对象，v3使用USM用户认证
+            Target<UdpAddress> target = sessionPool.createTarget(connectionParams, 2);
             
             // 创建测试OID (sysDescr.0)
             OID testOid = new OID(".1.3.6.1.2.1.1.1.0");
             
             // 创建PDU
-            PDU pdu = new PDU();
+            PDU pdu = sessionPool.createPdu(PDU.GET, target);
             pdu.add(new VariableBinding(testOid));
-            pdu.setType(PDU.GET);
             
-            // 发送GET请求并记录时间
+            // 通过共享会话发送GET请求并记录时间
             long requestTime = System.currentTimeMillis();
-            ResponseEvent response = snmp.send(pdu, target);
+            ResponseEvent<?> response = sessionPool.send(pdu, target).join();
             long responseTime = System.currentTimeMillis();
             long latency = responseTime - requestTime;
             
-            // 关闭连接
-            snmp.close();
-            
             // 检查响应
             if (response == null || response.getResponse() == null) {
                 return ConnectionTestResult.failure("连接测试失败", "未收到响应");
@@ -122,8 +110,12 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
     
     @Override
     public CollectionResult collect(CollectionContext context) {
+        return collectAsync(context).join();
+    }
+    
+    @Override
+    public CompletableFuture<CollectionResult> collectAsync(CollectionContext context) {
         LocalDateTime startTime = LocalDateTime.now();
-        List<MetricDataDTO> results = new ArrayList<>();
         
         try {
             // 预处理上下文
@@ -132,36 +124,21 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
             // 解析连接参数
             Map<String, Object> connectionParams = context.getConnectionParams();
             String ipAddress = getStringParam(connectionParams, "ipAddress");
-            int port = getIntParam(connectionParams, "port", 161);
-            String community = getStringParam(connectionParams, "community", "public");
-            int version = getIntParam(connectionParams, "version", 2);
-            int timeout = getIntParam(connectionParams, "timeout", 1000);
-            int retries = getIntParam(connectionParams, "retries", 2);
             
             if (ipAddress == null || ipAddress.isBlank()) {
-                return CollectionResult.failure(startTime, LocalDateTime.now(), "IP地址不能为空");
+                return CompletableFuture.completedFuture(
+                        CollectionResult.failure(startTime, LocalDateTime.now(), "IP地址不能为空"));
             }
             
             // 获取要采集的指标
             List<MetricDefinition> metrics = context.getMetrics();
             if (metrics == null || metrics.isEmpty()) {
-                return CollectionResult.failure(startTime, LocalDateTime.now(), "没有配置采集指标");
+                return CompletableFuture.completedFuture(
+                        CollectionResult.failure(startTime, LocalDateTime.now(), "没有配置采集指标"));
             }
             
-            // 创建SNMP连接
-            Address targetAddress = new UdpAddress(ipAddress + "/" + port);
-            TransportMapping<?> transport = new DefaultUdpTransportMapping();
-            Snmp snmp = new Snmp(transport);
-            transport.listen();
-            
-            // 创建目标对象
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setAddress(targetAddress);
-            target.setRetries(retries);
-            target.setTimeout(timeout);
-            target.setVersion(version == 1 ? SnmpConstants.version1 : 
-                             (version == 3 ? SnmpConstants.version3 : SnmpConstants.version2c));
+            // 创建目标对象(v3使用USM用户认证)，请求通过共享会话池发送
+            Target<UdpAddress> target = sessionPool.createTarget(connectionParams, 2);
             
             // 创建结果对象
             CollectionResult result = CollectionResult.builder()
@@ -170,48 +147,48 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
                     .metricData(new ArrayList<>())
                     .build();
             
-            // 使用批量采集模式，将多个OID一次性查询
+            CompletableFuture<CollectionResult> future;
             if (supportsBatchCollection()) {
-                result = collectBatch(context, snmp, target, metrics, result);
+                // 使用批量采集模式，将多个OID一次性查询
+                future = collectBatch(context, target, metrics, result);
             } else {
-                // 单独采集每个指标
-                for (MetricDefinition metric : metrics) {
-                    collectSingleMetric(context, snmp, target, metric, result);
-                }
+                // 单独采集每个指标，所有请求并发在途
+                CompletableFuture<?>[] futures = metrics.stream()
+                        .map(metric -> collectSingleMetric(context, target, metric, result))
+                        .toArray(CompletableFuture[]::new);
+                future = CompletableFuture.allOf(futures).thenApply(v -> result);
             }
             
-            // 关闭连接
-            snmp.close();
-            
-            // 设置结束时间
-            result.setEndTime(LocalDateTime.now());
-            
-            // 后处理结果
-            return postProcess(context, result);
+            return future.thenApply(r -> {
+                // 设置结束时间
+                r.setEndTime(LocalDateTime.now());
+                
+                // 后处理结果
+                return postProcess(context, r);
+            }).exceptionally(e -> handleCollectionException(unwrap(e), startTime, "SNMP采集出错"));
             
         } catch (Exception e) {
-            return handleCollectionException(e, startTime, "SNMP采集出错");
+            return CompletableFuture.completedFuture(handleCollectionException(e, startTime, "SNMP采集出错"));
         }
     }
     
     /**
      * 批量采集多个指标
+     * 标量OID按报文大小拆分为多个GET请求；映射参数walk=true的指标按表遍历，每行生成一条指标数据
      */
-    private CollectionResult collectBatch(
+    private CompletableFuture<CollectionResult> collectBatch(
             CollectionContext context,
-            Snmp snmp, 
-            CommunityTarget target,
+            Target<UdpAddress> target,
             List<MetricDefinition> metrics,
-            CollectionResult result) throws Exception {
-        
-        // 创建PDU
-        PDU pdu = new PDU();
-        pdu.setType(PDU.GET);
+            CollectionResult result) {
         
-        // 记录指标ID和OID的映射关系，用于结果处理
-        Map<String, MetricDefinition> oidToMetricMap = new HashMap<>();
+        // 记录OID和指标的映射关系，用于结果处理
+        Map<OID, MetricDefinition> scalarMetrics = new LinkedHashMap<>();
+        Map<OID, MetricDefinition> tableMetrics = new LinkedHashMap<>();
+        // 表达式引用的兄弟OID随同一批请求获取，表指标的引用按列遍历
+        Set<OID> scalarReferences = new LinkedHashSet<>();
+        Set<OID> tableReferences = new LinkedHashSet<>();
         
-        // 添加所有指标的OID到PDU
         for (MetricDefinition metric : metrics) {
             String path = getMetricPath(context, metric);
             if (path == null || path.isBlank()) {
@@ -220,75 +197,107 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
             }
             
             try {
-                OID oid = new OID(path);
-                pdu.add(new VariableBinding(oid));
-                oidToMetricMap.put(oid.toString(), metric);
+                OID oid = resolveOid(context, metric, path);
+                boolean table = isTableMetric(context, metric);
+                if (table) {
+                    tableMetrics.put(oid, metric);
+                } else {
+                    scalarMetrics.put(oid, metric);
+                }
+                for (String reference : getExpressionReferences(context, metric)) {
+                    (table ? tableReferences : scalarReferences).add(toOid(reference));
+                }
             } catch (Exception e) {
                 log.warn("无效的OID[{}]: {}", path, e.getMessage());
                 result.addMetricError(metric.getId(), "无效的OID: " + e.getMessage());
             }
         }
         
-        // 如果PDU为空，则返回结果
-        if (pdu.size() == 0) {
+        // 没有有效OID则直接返回结果
+        if (scalarMetrics.isEmpty() && tableMetrics.isEmpty()) {
             result.setErrorMessage("没有有效的OID可供查询");
             result.setSuccess(false);
-            return result;
+            return CompletableFuture.completedFuture(result);
         }
         
-        // 发送请求
-        ResponseEvent response = snmp.send(pdu, target);
+        // 标量GET与表遍历并发进行，全部完成后统一处理结果
+        scalarReferences.addAll(scalarMetrics.keySet());
+        tableReferences.addAll(tableMetrics.keySet());
+        CompletableFuture<Map<OID, VariableBinding>> scalarFuture =
+                bulkRequester.get(new ArrayList<>(scalarReferences), target);
+        CompletableFuture<Map<OID, List<VariableBinding>>> tableFuture =
+                bulkRequester.walk(new ArrayList<>(tableReferences), target);
         
-        // 处理响应
-        if (response == null || response.getResponse() == null) {
+        return scalarFuture.thenCombine(tableFuture, (values, columns) ->
+                handleBatchResponse(context, values, columns, scalarMetrics, tableMetrics, result));
+    }
+    
+    /**
+     * 优先使用采集计划中预解析的OID，OID在发送时会被复制，可在并发采集间共享
+     */
+    private OID resolveOid(CollectionContext context, MetricDefinition metric, String path) {
+        Object compiled = getCompiledPath(context, metric);
+        return compiled instanceof OID ? (OID) compiled : new OID(path);
+    }
+
+    /**
+     * 判断指标是否按表遍历采集
+     */
+    private boolean isTableMetric(CollectionContext context, MetricDefinition metric) {
+        Object walk = getMetricParameters(context, metric).get("walk");
+        return walk != null && Boolean.parseBoolean(walk.toString());
+    }
+    
+    /**
+     * 处理批量采集的响应
+     */
+    private CollectionResult handleBatchResponse(
+            CollectionContext context,
+            Map<OID, VariableBinding> values,
+            Map<OID, List<VariableBinding>> columns,
+            Map<OID, MetricDefinition> scalarMetrics,
+            Map<OID, MetricDefinition> tableMetrics,
+            CollectionResult result) {
+        
+        // 同一批响应的样本使用同一采集时间，rate/delta按相邻两次采集的时间差计算
+        long collectTime = System.currentTimeMillis();
+        
+        // 所有请求均无数据返回，视为设备无响应
+        boolean noData = values.isEmpty() && columns.values().stream().allMatch(List::isEmpty);
+        if (noData) {
             result.setErrorMessage("未收到SNMP响应");
             result.setSuccess(false);
             return result;
         }
         
-        PDU responsePDU = response.getResponse();
-        if (responsePDU.getErrorStatus() != PDU.noError) {
-            result.setErrorMessage("SNMP错误: " + responsePDU.getErrorStatusText());
-            result.setSuccess(false);
-            return result;
+        // 处理标量指标
+        for (Map.Entry<OID, MetricDefinition> entry : scalarMetrics.entrySet()) {
+            VariableBinding vb = values.get(entry.getKey());
+            if (vb == null) {
+                result.addMetricError(entry.getValue().getId(), "未收到SNMP响应或OID不存在");
+                continue;
+            }
+            addMetricValue(context, entry.getValue(), vb, null,
+                    resolveReferences(context, entry.getValue(), values, null), collectTime, result);
         }
         
-        // 处理每个变量绑定
-        for (int i = 0; i < responsePDU.size(); i++) {
-            VariableBinding vb = responsePDU.get(i);
-            OID oid = vb.getOid();
-            Variable var = vb.getVariable();
-            
-            // 查找对应的指标
-            MetricDefinition metric = oidToMetricMap.get(oid.toString());
-            if (metric == null) {
-                log.warn("收到未知OID的响应: {}", oid);
+        // 表指标引用的兄弟列按完整OID索引，便于按行索引取值
+        Map<OID, VariableBinding> rowValues = new HashMap<>();
+        if (tableMetrics.values().stream().anyMatch(metric -> !getExpressionReferences(context, metric).isEmpty())) {
+            columns.values().forEach(rows -> rows.forEach(vb -> rowValues.put(vb.getOid(), vb)));
+        }
+        
+        // 处理表指标，每行一条数据，以行索引区分
+        for (Map.Entry<OID, MetricDefinition> entry : tableMetrics.entrySet()) {
+            List<VariableBinding> rows = columns.getOrDefault(entry.getKey(), Collections.emptyList());
+            if (rows.isEmpty()) {
+                result.addMetricError(entry.getValue().getId(), "表遍历未返回数据");
                 continue;
             }
-            
-            try {
-                // 解析值
-                Double value = parseSnmpValue(vb);
-                
-                // 应用表达式转换
-                if (value != null) {
-                    value = parseExpression(context, metric, value);
-                }
-                
-                // 创建指标数据
-                if (value != null) {
-                    Map<String, String> labels = new HashMap<>();
-                    labels.put("host", context.getAssetIp());
-                    labels.put("oid", oid.toString());
-                    
-                    MetricDataDTO metricData = createMetricData(context, metric, value, labels);
-                    result.addMetricData(metricData);
-                } else {
-                    result.addMetricError(metric.getId(), "无法解析指标值");
-                }
-            } catch (Exception e) {
-                log.warn("处理指标[{}]响应出错: {}", metric.getCode(), e.getMessage());
-                result.addMetricError(metric.getId(), "处理响应出错: " + e.getMessage());
+            for (VariableBinding vb : rows) {
+                OID index = vb.getOid().getSuffix(entry.getKey());
+                addMetricValue(context, entry.getValue(), vb, index.toDottedString(),
+                        resolveReferences(context, entry.getValue(), rowValues, index), collectTime, result);
             }
         }
         
@@ -296,87 +305,216 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
     }
     
     /**
-     * 采集单个指标
+     * 解析变量绑定并写入采集结果
      */
-    private void collectSingleMetric(
+    private void addMetricValue(
             CollectionContext context,
-            Snmp snmp, 
-            CommunityTarget target,
             MetricDefinition metric,
+            VariableBinding vb,
+            String index,
+            double[] references,
+            long collectTime,
             CollectionResult result) {
         
-        String path = getMetricPath(context, metric);
-        if (path == null || path.isBlank()) {
-            result.addMetricError(metric.getId(), "指标路径为空");
-            return;
-        }
-        
         try {
-            // 创建PDU
-            PDU pdu = new PDU();
-            pdu.add(new VariableBinding(new OID(path)));
-            pdu.setType(PDU.GET);
-            
-            // 发送请求
-            ResponseEvent response = snmp.send(pdu, target);
-            
-            // 处理响应
-            if (response == null || response.getResponse() == null) {
-                result.addMetricError(metric.getId(), "未收到SNMP响应");
-                return;
-            }
-            
-            PDU responsePDU = response.getResponse();
-            if (responsePDU.getErrorStatus() != PDU.noError) {
-                result.addMetricError(metric.getId(), 
-                        "SNMP错误: " + responsePDU.getErrorStatusText());
-                return;
-            }
-            
-            // 获取变量绑定
-            VariableBinding vb = responsePDU.get(0);
-            if (vb == null) {
-                result.addMetricError(metric.getId(), "响应中没有变量绑定");
-                return;
-            }
-            
             // 解析值
-            Double value = parseSnmpValue(vb);
+            double value = parseSnmpValue(vb);
             
             // 应用表达式转换
-            if (value != null) {
-                value = parseExpression(context, metric, value);
+            if (!Double.isNaN(value)) {
+                value = evaluateExpression(context, metric, value, references, index, collectTime);
             }
             
             // 创建指标数据
-            if (value != null) {
+            if (!Double.isNaN(value)) {
                 Map<String, String> labels = new HashMap<>();
                 labels.put("host", context.getAssetIp());
-                labels.put("oid", path);
+                labels.put("oid", vb.getOid().toString());
+                if (index != null) {
+                    labels.put("index", index);
+                }
                 
-                MetricDataDTO metricData = createMetricData(context, metric, value, labels);
+                MetricDataDTO metricData = createMetricData(context, metric, value, labels, collectTime);
+                // 经表达式转换后不再是原始计数器，只标记未配置表达式的计数器
+                if (!hasExpression(context, metric)) {
+                    metricData.setCounterBits(SnmpVariables.counterBits(vb.getVariable()));
+                }
                 result.addMetricData(metricData);
             } else {
                 result.addMetricError(metric.getId(), "无法解析指标值");
             }
+        } catch (Exception e) {
+            log.warn("处理指标[{}]响应出错: {}", metric.getCode(), e.getMessage());
+            result.addMetricError(metric.getId(), "处理响应出错: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 按表达式引用槽位取兄弟OID的值，表指标按行索引取同一行的值，缺失的值为NaN
+     * 返回线程复用的数组，需在同一线程内立即用于求值
+     */
+    private double[] resolveReferences(
+            CollectionContext context,
+            MetricDefinition metric,
+            Map<OID, VariableBinding> values,
+            OID index) {
+        
+        List<String> references = getExpressionReferences(context, metric);
+        if (references.isEmpty()) {
+            return null;
+        }
+        
+        double[] resolved = referenceBuffer(references.size());
+        for (int i = 0; i < references.size(); i++) {
+            double value = Double.NaN;
+            try {
+                OID oid = toOid(references.get(i));
+                if (index != null) {
+                    oid.append(index);
+                }
+                value = parseSnmpValue(values.get(oid));
+            } catch (Exception e) {
+                log.warn("无效的引用OID[{}]: {}", references.get(i), e.getMessage());
+            }
+            resolved[i] = value;
+        }
+        return resolved;
+    }
+    
+    private OID toOid(String path) {
+        return new OID(path.startsWith(".") ? path.substring(1) : path);
+    }
+    
+    /**
+     * 采集单个指标
+     * 多个指标的响应回调可能并发执行，写入结果时需对结果对象加锁
+     */
+    private CompletableFuture<Void> collectSingleMetric(
+            CollectionContext context,
+            Target<UdpAddress> target,
+            MetricDefinition metric,
+            CollectionResult result) {
+        
+        String path = getMetricPath(context, metric);
+        if (path == null || path.isBlank()) {
+            synchronized (result) {
+                result.addMetricError(metric.getId(), "指标路径为空");
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        try {
+            // 创建PDU，表达式引用的兄弟OID随同一请求获取
+            PDU pdu = sessionPool.createPdu(PDU.GET, target);
+            pdu.add(new VariableBinding(resolveOid(context, metric, path)));
+            for (String reference : getExpressionReferences(context, metric)) {
+                pdu.add(new VariableBinding(toOid(reference)));
+            }
+            
+            // 发送请求
+            return sessionPool.send(pdu, target)
+                    .thenAccept(response -> {
+                        synchronized (result) {
+                            handleSingleResponse(context, metric, path, response, result);
+                        }
+                    })
+                    .exceptionally(e -> {
+                        log.warn("采集指标[{}]出错: {}", metric.getCode(), unwrap(e).getMessage());
+                        synchronized (result) {
+                            result.addMetricError(metric.getId(), "采集出错: " + unwrap(e).getMessage());
+                        }
+                        return null;
+                    });
             
         } catch (Exception e) {
             log.warn("采集指标[{}]出错: {}", metric.getCode(), e.getMessage());
-            result.addMetricError(metric.getId(), "采集出错: " + e.getMessage());
+            synchronized (result) {
+                result.addMetricError(metric.getId(), "采集出错: " + e.getMessage());
+            }
+            return CompletableFuture.completedFuture(null);
         }
     }
     
     /**
-     * 解析SNMP变量值为Double
+     * 处理单个指标的响应
      */
-    private Double parseSnmpValue(VariableBinding vb) {
+    private void handleSingleResponse(
+            CollectionContext context,
+            MetricDefinition metric,
+            String path,
+            ResponseEvent<?> response,
+            CollectionResult result) {
+        
+        // 处理响应
+        if (response == null || response.getResponse() == null) {
+            result.addMetricError(metric.getId(), "未收到SNMP响应");
+            return;
+        }
+        
+        PDU responsePDU = response.getResponse();
+        if (responsePDU.getErrorStatus() != PDU.noError) {
+            result.addMetricError(metric.getId(), 
+                    "SNMP错误: " + responsePDU.getErrorStatusText());
+            return;
+        }
+        
+        // 获取变量绑定
+        VariableBinding vb = responsePDU.get(0);
         if (vb == null) {
-            return null;
+            result.addMetricError(metric.getId(), "响应中没有变量绑定");
+            return;
+        }
+        
+        // 解析值
+        double value = parseSnmpValue(vb);
+        long collectTime = System.currentTimeMillis();
+        
+        // 应用表达式转换，引用值取自同一响应中的其余变量绑定
+        if (!Double.isNaN(value)) {
+            Map<OID, VariableBinding> values = new HashMap<>();
+            for (int i = 1; i < responsePDU.size(); i++) {
+                values.put(responsePDU.get(i).getOid(), responsePDU.get(i));
+            }
+            value = evaluateExpression(context, metric, value,
+                    resolveReferences(context, metric, values, null), null, collectTime);
+        }
+        
+        // 创建指标数据
+        if (!Double.isNaN(value)) {
+            Map<String, String> labels = new HashMap<>();
+            labels.put("host", context.getAssetIp());
+            labels.put("oid", path);
+            
+            MetricDataDTO metricData = createMetricData(context, metric, value, labels, collectTime);
+            // 经表达式转换后不再是原始计数器，只标记未配置表达式的计数器
+            if (!hasExpression(context, metric)) {
+                metricData.setCounterBits(SnmpVariables.counterBits(vb.getVariable()));
+            }
+            result.addMetricData(metricData);
+        } else {
+            result.addMetricError(metric.getId(), "无法解析指标值");
+        }
+    }
+    
+    /**
+     * 解开异步执行包装的异常
+     */
+    private Exception unwrap(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+    
+    /**
+     * 解析SNMP变量值为double，缺失或无法解析时返回NaN
+     */
+    private double parseSnmpValue(VariableBinding vb) {
+        if (vb == null) {
+            return Double.NaN;
         }
         
         Variable var = vb.getVariable();
-        if (var == null) {
-            return null;
+        if (var == null || var.isException()) {
+            return Double.NaN;
         }
         
         try {
@@ -387,7 +525,7 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
             } else if (var instanceof Counter32) {
                 return (double) ((Counter32) var).getValue();
             } else if (var instanceof Counter64) {
-                return (double) ((Counter64) var).getValue();
+                return SnmpVariables.unsignedValue((Counter64) var);
             } else if (var instanceof Gauge32) {
                 return (double) ((Gauge32) var).getValue();
             } else if (var instanceof TimeTicks) {
@@ -397,12 +535,12 @@ public class SnmpMetricCollector extends AbstractMetricCollector {
                     return Double.parseDouble(var.toString());
                 } catch (NumberFormatException e) {
                     log.warn("无法将SNMP值[{}]转换为Double: {}", var, e.getMessage());
-                    return null;
+                    return Double.NaN;
                 }
             }
         } catch (Exception e) {
             log.warn("解析SNMP值时发生错误: {}", e.getMessage());
-            return null;
+            return Double.NaN;
         }
     }
 
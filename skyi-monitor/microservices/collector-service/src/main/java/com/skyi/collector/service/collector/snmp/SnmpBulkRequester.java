@@ -0,0 +1,340 @@
+package com.skyi.collector.service.collector.snmp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.PDU;
+import org.snmp4j.Target;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SNMP批量请求器
+ * 在共享会话池之上提供两种批量采集方式：
+ * 1. 标量批量GET：按目标的最大报文大小自动拆分为多个PDU并发发送，设备返回tooBig时对半拆分重试
+ * 2. 表遍历：v2c/v3使用GETBULK、v1使用GETNEXT，多列同时推进，越出子树或endOfMibView时结束
+ */
+@Slf4j
+@Component
+public class SnmpBulkRequester {
+
+    /**
+     * 报文固定开销估算(版本、团体名、PDU头、请求ID、错误状态等)
+     */
+    private static final int MESSAGE_OVERHEAD = 64;
+
+    /**
+     * SNMPv3消息头(USM安全参数、引擎ID及上下文)的额外开销
+     */
+    private static final int V3_HEADER_OVERHEAD = 120;
+
+    /**
+     * 单个变量绑定中值部分的预估长度(计数器、整数及短字符串)
+     */
+    private static final int VALUE_SIZE_ESTIMATE = 16;
+
+    @Autowired
+    private SnmpSessionPool sessionPool;
+
+    @Value("${collector.snmp.max-oids-per-pdu:60}")
+    private int maxOidsPerPdu;
+
+    @Value("${collector.snmp.max-repetitions:25}")
+    private int maxRepetitions;
+
+    @Value("${collector.snmp.max-walk-rows:10000}")
+    private int maxWalkRows;
+
+    /**
+     * 批量获取标量OID
+     * 拆分后的各PDU并发发送，超时或失败的OID不会出现在结果中
+     *
+     * @param oids 待查询OID列表
+     * @param target 目标设备
+     * @return OID到变量绑定的映射
+     */
+    public CompletableFuture<Map<OID, VariableBinding>> get(List<OID> oids, Target<UdpAddress> target) {
+        Map<OID, VariableBinding> values = new ConcurrentHashMap<>();
+        if (oids == null || oids.isEmpty()) {
+            return CompletableFuture.completedFuture(values);
+        }
+
+        CompletableFuture<?>[] futures = split(oids, target).stream()
+                .map(chunk -> getChunk(chunk, target, values))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures).thenApply(v -> values);
+    }
+
+    /**
+     * 遍历表的一列或多列
+     * 结果按请求的列根OID分组，每列内按OID递增排列
+     *
+     * @param roots 列根OID列表，例如 ifDescr、dskTotal
+     * @param target 目标设备
+     * @return 列根OID到该列所有行的映射
+     */
+    public CompletableFuture<Map<OID, List<VariableBinding>>> walk(List<OID> roots, Target<UdpAddress> target) {
+        Map<OID, List<VariableBinding>> columns = new LinkedHashMap<>();
+        if (roots == null || roots.isEmpty()) {
+            return CompletableFuture.completedFuture(columns);
+        }
+        for (OID root : roots) {
+            columns.put(root, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        CompletableFuture<?>[] futures = split(roots, target).stream()
+                .map(chunk -> walkColumns(chunk, target, columns))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures).thenApply(v -> columns);
+    }
+
+    /**
+     * 按报文大小预算和单PDU数量上限拆分OID列表
+     */
+    private List<List<OID>> split(List<OID> oids, Target<UdpAddress> target) {
+        List<List<OID>> chunks = new ArrayList<>();
+        int budget = target.getMaxSizeRequestPDU() - messageOverhead(target);
+        List<OID> current = new ArrayList<>();
+        int currentSize = 0;
+
+        for (OID oid : oids) {
+            int size = estimateBindingSize(oid);
+            if (!current.isEmpty() && (currentSize + size > budget || current.size() >= maxOidsPerPdu)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentSize = 0;
+            }
+            current.add(oid);
+            currentSize += size;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    /**
+     * 发送一个GET分片，必要时对半拆分或剔除不存在的OID后重试
+     */
+    private CompletableFuture<Void> getChunk(List<OID> oids, Target<UdpAddress> target,
+                                             Map<OID, VariableBinding> values) {
+        PDU pdu = sessionPool.createPdu(PDU.GET, target);
+        for (OID oid : oids) {
+            pdu.add(new VariableBinding(oid));
+        }
+
+        return sessionPool.send(pdu, target).thenCompose(event -> {
+            PDU response = event.getResponse();
+            if (response == null) {
+                log.warn("SNMP批量GET未收到响应, target={}, OID数={}", target.getAddress(), oids.size());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+
+            int status = response.getErrorStatus();
+            if (status == PDU.tooBig && oids.size() > 1) {
+                // 设备响应超出其报文上限，对半拆分后重试
+                int middle = oids.size() / 2;
+                log.debug("SNMP响应过大，拆分重试, target={}, OID数={}", target.getAddress(), oids.size());
+                return CompletableFuture.allOf(
+                        getChunk(oids.subList(0, middle), target, values),
+                        getChunk(oids.subList(middle, oids.size()), target, values));
+            }
+            if (status == PDU.noSuchName && oids.size() > 1
+                    && response.getErrorIndex() > 0 && response.getErrorIndex() <= oids.size()) {
+                // v1设备遇到不存在的OID会使整个PDU失败，剔除该OID后重试其余部分
+                List<OID> remaining = new ArrayList<>(oids);
+                OID missing = remaining.remove(response.getErrorIndex() - 1);
+                log.debug("OID不存在，剔除后重试: {}", missing);
+                return getChunk(remaining, target, values);
+            }
+            if (status != PDU.noError) {
+                log.warn("SNMP批量GET错误: {}, target={}", response.getErrorStatusText(), target.getAddress());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+
+            for (VariableBinding vb : response.getVariableBindings()) {
+                if (!vb.isException()) {
+                    values.put(vb.getOid(), vb);
+                }
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }).exceptionally(e -> {
+            log.warn("SNMP批量GET出错: {}, target={}", e.getMessage(), target.getAddress());
+            return null;
+        });
+    }
+
+    /**
+     * 同时遍历一组列
+     */
+    private CompletableFuture<Void> walkColumns(List<OID> roots, Target<UdpAddress> target,
+                                                Map<OID, List<VariableBinding>> columns) {
+        WalkState state = new WalkState(roots);
+        return walkStep(state, target, columns, initialRepetitions(roots.size(), target));
+    }
+
+    /**
+     * 执行一轮遍历请求，并在响应回调中推进游标发起下一轮
+     */
+    private CompletableFuture<Void> walkStep(WalkState state, Target<UdpAddress> target,
+                                             Map<OID, List<VariableBinding>> columns, int repetitions) {
+        List<Integer> active = state.activeColumns();
+        if (active.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        boolean bulk = target.getVersion() != SnmpConstants.version1;
+        PDU pdu = sessionPool.createPdu(bulk ? PDU.GETBULK : PDU.GETNEXT, target);
+        if (bulk) {
+            pdu.setNonRepeaters(0);
+            pdu.setMaxRepetitions(repetitions);
+        }
+        for (int column : active) {
+            pdu.add(new VariableBinding(state.cursors[column]));
+        }
+
+        return sessionPool.send(pdu, target).thenCompose(event -> {
+            PDU response = event.getResponse();
+            if (response == null) {
+                log.warn("SNMP表遍历未收到响应, target={}, 列={}", target.getAddress(), state.describeActive());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+
+            int status = response.getErrorStatus();
+            if (status == PDU.tooBig) {
+                if (bulk && repetitions > 1) {
+                    // 减半重复次数后重试同一游标
+                    return walkStep(state, target, columns, repetitions / 2);
+                }
+                if (active.size() > 1) {
+                    // 单行仍然过大，逐列独立遍历
+                    CompletableFuture<?>[] futures = active.stream()
+                            .map(column -> walkStep(state.detach(column), target, columns, 1))
+                            .toArray(CompletableFuture[]::new);
+                    return CompletableFuture.allOf(futures);
+                }
+                log.warn("SNMP表遍历单行响应仍然过大, target={}, 列={}", target.getAddress(), state.describeActive());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (status == PDU.noSuchName && response.getErrorIndex() > 0 && response.getErrorIndex() <= active.size()) {
+                // v1设备以noSuchName表示已到达MIB末尾
+                state.done[active.get(response.getErrorIndex() - 1)] = true;
+                return walkStep(state, target, columns, repetitions);
+            }
+            if (status != PDU.noError) {
+                log.warn("SNMP表遍历错误: {}, target={}", response.getErrorStatusText(), target.getAddress());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+
+            // GETBULK响应按行排列，每行依次对应各活跃列
+            List<? extends VariableBinding> bindings = response.getVariableBindings();
+            for (int i = 0; i < bindings.size(); i++) {
+                int column = active.get(i % active.size());
+                if (state.done[column]) {
+                    continue;
+                }
+                VariableBinding vb = bindings.get(i);
+                OID root = state.roots.get(column);
+                if (vb.isException() || !vb.getOid().startsWith(root)
+                        || vb.getOid().compareTo(state.cursors[column]) <= 0) {
+                    state.done[column] = true;
+                    continue;
+                }
+                columns.get(root).add(vb);
+                state.cursors[column] = vb.getOid();
+                if (++state.rows[column] >= maxWalkRows) {
+                    log.warn("SNMP表遍历行数达到上限{}, target={}, 列={}", maxWalkRows, target.getAddress(), root);
+                    state.done[column] = true;
+                }
+            }
+            if (bindings.isEmpty()) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            return walkStep(state, target, columns, repetitions);
+        }).exceptionally(e -> {
+            log.warn("SNMP表遍历出错: {}, target={}", e.getMessage(), target.getAddress());
+            return null;
+        });
+    }
+
+    /**
+     * 按报文大小预算估算初始GETBULK重复次数
+     */
+    private int initialRepetitions(int columnCount, Target<UdpAddress> target) {
+        int rowSize = columnCount * estimateBindingSize(null);
+        int fit = (target.getMaxSizeRequestPDU() - messageOverhead(target)) / Math.max(1, rowSize);
+        return Math.max(1, Math.min(maxRepetitions, fit));
+    }
+
+    private int messageOverhead(Target<UdpAddress> target) {
+        int overhead = MESSAGE_OVERHEAD + target.getSecurityName().length();
+        return target.getVersion() == SnmpConstants.version3 ? overhead + V3_HEADER_OVERHEAD : overhead;
+    }
+
+    /**
+     * 估算单个变量绑定在响应中的编码长度
+     * 遍历时行OID未知，按根OID加上索引的典型长度估算
+     */
+    private int estimateBindingSize(OID oid) {
+        int oidLength = oid != null ? oid.getBERLength() : 16;
+        return oidLength + VALUE_SIZE_ESTIMATE + 4;
+    }
+
+    /**
+     * 一组列的遍历游标
+     */
+    private static class WalkState {
+
+        private final List<OID> roots;
+        private final OID[] cursors;
+        private final boolean[] done;
+        private final int[] rows;
+
+        WalkState(List<OID> roots) {
+            this.roots = roots;
+            this.cursors = roots.toArray(new OID[0]);
+            this.done = new boolean[roots.size()];
+            this.rows = new int[roots.size()];
+        }
+
+        List<Integer> activeColumns() {
+            List<Integer> active = new ArrayList<>();
+            for (int i = 0; i < done.length; i++) {
+                if (!done[i]) {
+                    active.add(i);
+                }
+            }
+            return active;
+        }
+
+        /**
+         * 将某一列从当前状态中分离为独立的遍历状态
+         */
+        WalkState detach(int column) {
+            WalkState single = new WalkState(Collections.singletonList(roots.get(column)));
+            single.cursors[0] = cursors[column];
+            single.rows[0] = rows[column];
+            done[column] = true;
+            return single;
+        }
+
+        String describeActive() {
+            List<OID> active = new ArrayList<>();
+            for (int column : activeColumns()) {
+                active.add(roots.get(column));
+            }
+            return active.toString();
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.skyi.collector.service.collector.snmp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.PDU;
+import org.snmp4j.ScopedPDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.UserTarget;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.mp.MPv3;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.security.AuthHMAC192SHA256;
+import org.snmp4j.security.AuthMD5;
+import org.snmp4j.security.AuthSHA;
+import org.snmp4j.security.PrivAES128;
+import org.snmp4j.security.PrivAES256;
+import org.snmp4j.security.PrivDES;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.security.SecurityModels;
+import org.snmp4j.security.SecurityProtocols;
+import org.snmp4j.security.USM;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.util.MultiThreadedMessageDispatcher;
+import org.snmp4j.util.ThreadPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 共享SNMP会话池
+ * 进程内只维护一个长生命周期的SNMP引擎：固定数量的UDP传输通道轮询发送，
+ * 由同一个消息分发器按请求ID匹配响应，并通过ResponseListener回调完成Future，
+ * 采集线程无需阻塞等待设备响应。
+ * SNMPv3用户按(设备引擎ID, 安全名)注册到共享USM中，密钥按引擎ID本地化，
+ * 安全名相同但凭据不同的设备互不覆盖；设备的引擎ID首次使用时发现并缓存
+ */
+@Slf4j
+@Component
+public class SnmpSessionPool {
+
+    @Value("${collector.snmp.transport-count:4}")
+    private int transportCount;
+
+    @Value("${collector.snmp.dispatcher-threads:4}")
+    private int dispatcherThreads;
+
+    @Value("${collector.snmp.max-message-size:1472}")
+    private int maxMessageSize;
+
+    /**
+     * 设备引擎ID的缓存时间，过期后重新发现(设备重置后引擎ID可能变化)
+     */
+    @Value("${collector.snmp.engine-id-ttl-ms:3600000}")
+    private long engineIdTtlMs;
+
+    private Snmp snmp;
+
+    private USM usm;
+
+    private ThreadPool dispatcherPool;
+
+    private final List<DefaultUdpTransportMapping> transports = new ArrayList<>();
+
+    private final AtomicInteger nextTransport = new AtomicInteger();
+
+    /**
+     * 设备地址 → 引擎ID
+     */
+    private final Map<UdpAddress, EngineId> engineIds = new ConcurrentHashMap<>();
+
+    /**
+     * 引擎ID/安全名 → 已注册的用户，凭据变化时重新注册
+     */
+    private final Map<String, UsmUser> registeredUsers = new ConcurrentHashMap<>();
+
+    // 请求统计
+    private final AtomicLong inFlight = new AtomicLong(0);
+    private final AtomicLong totalRequests = new AtomicLong(0);
+    private final AtomicLong timeoutRequests = new AtomicLong(0);
+
+    /**
+     * 初始化SNMP引擎并开始监听
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        dispatcherPool = ThreadPool.create("snmp-dispatcher", Math.max(1, dispatcherThreads));
+        MultiThreadedMessageDispatcher dispatcher =
+                new MultiThreadedMessageDispatcher(dispatcherPool, new MessageDispatcherImpl());
+
+        // 注册v1/v2c/v3消息处理模型，与Snmp默认构造保持一致
+        dispatcher.addMessageProcessingModel(new MPv1());
+        dispatcher.addMessageProcessingModel(new MPv2c());
+        SecurityProtocols.getInstance().addDefaultProtocols();
+        usm = new USM(SecurityProtocols.getInstance(), new OctetString(MPv3.createLocalEngineID()), 0);
+        SecurityModels.getInstance().addSecurityModel(usm);
+        dispatcher.addMessageProcessingModel(new MPv3(usm));
+
+        snmp = new Snmp(dispatcher);
+        for (int i = 0; i < Math.max(1, transportCount); i++) {
+            DefaultUdpTransportMapping transport = new DefaultUdpTransportMapping();
+            transports.add(transport);
+            snmp.addTransportMapping(transport);
+        }
+        snmp.listen();
+
+        log.info("初始化共享SNMP会话池，传输通道数: {}, 分发线程数: {}", transports.size(), dispatcherThreads);
+    }
+
+    /**
+     * 关闭SNMP引擎
+     */
+    @PreDestroy
+    public void destroy() {
+        try {
+            if (snmp != null) {
+                snmp.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭SNMP会话池出错: {}", e.getMessage());
+        } finally {
+            if (dispatcherPool != null) {
+                dispatcherPool.stop();
+            }
+        }
+    }
+
+    /**
+     * 异步发送SNMP请求
+     * 响应、超时或发送失败都会完成返回的Future，超时表现为响应PDU为空
+     *
+     * @param pdu 请求PDU
+     * @param target 目标设备
+     * @return 响应事件Future
+     */
+    public CompletableFuture<ResponseEvent<?>> send(PDU pdu, Target<UdpAddress> target) {
+        CompletableFuture<ResponseEvent<?>> future = new CompletableFuture<>();
+        DefaultUdpTransportMapping transport = transports.get(
+                Math.floorMod(nextTransport.getAndIncrement(), transports.size()));
+
+        ResponseListener listener = new ResponseListener() {
+            @Override
+            public <A extends Address> void onResponse(ResponseEvent<A> event) {
+                // 必须取消挂起请求，否则重传定时器与请求上下文不会释放
+                ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+                inFlight.decrementAndGet();
+                if (event.getResponse() == null && event.getError() == null) {
+                    timeoutRequests.incrementAndGet();
+                }
+                future.complete(event);
+            }
+        };
+
+        try {
+            inFlight.incrementAndGet();
+            totalRequests.incrementAndGet();
+            snmp.send(pdu, target, transport, null, listener);
+        } catch (Exception e) {
+            inFlight.decrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 创建请求PDU，v3目标使用携带上下文的ScopedPDU
+     *
+     * @param type PDU类型
+     * @param target 目标设备
+     * @return 请求PDU
+     */
+    public PDU createPdu(int type, Target<UdpAddress> target) {
+        PDU pdu = target.getVersion() == SnmpConstants.version3 ? new ScopedPDU() : new PDU();
+        pdu.setType(type);
+        return pdu;
+    }
+
+    /**
+     * 按连接参数创建目标对象，v3使用USM用户认证，v1/v2c使用团体名
+     * 参数：ipAddress、port(161)、version、timeout(1000)、retries(2)，
+     * v1/v2c的community(public)，v3的securityName、authProtocol、authPassword、privProtocol、privPassword
+     *
+     * @param params 连接参数
+     * @param defaultVersion 未配置版本时使用的SNMP版本(1/2/3)
+     * @return 目标对象
+     */
+    public Target<UdpAddress> createTarget(Map<String, ?> params, int defaultVersion) {
+        String ipAddress = param(params, "ipAddress", null);
+        int port = intParam(params, "port", 161);
+        int version = intParam(params, "version", defaultVersion);
+        int timeout = intParam(params, "timeout", 1000);
+        int retries = intParam(params, "retries", 2);
+        if (version == 3) {
+            return createUserTarget(ipAddress, port, param(params, "securityName", null),
+                    param(params, "authProtocol", null), param(params, "authPassword", null),
+                    param(params, "privProtocol", null), param(params, "privPassword", null), timeout, retries);
+        }
+        return createTarget(ipAddress, port, param(params, "community", "public"), version, timeout, retries);
+    }
+
+    /**
+     * 创建USM用户认证(SNMPv3)的目标对象
+     * 首次使用设备时发现其引擎ID(阻塞，最长为超时时间)，用户按该引擎ID本地化密钥后注册到共享引擎的USM中，
+     * 同一设备同一用户只注册一次；安全级别由是否配置认证、加密密码决定
+     *
+     * @param ipAddress IP地址
+     * @param port 端口
+     * @param securityName 安全名(用户名)
+     * @param authProtocol 认证协议(MD5/SHA/SHA256)，默认SHA
+     * @param authPassword 认证密码，为空时不认证
+     * @param privProtocol 加密协议(DES/AES/AES256)，默认AES
+     * @param privPassword 加密密码，为空时不加密
+     * @param timeout 超时时间(毫秒)
+     * @param retries 重试次数
+     * @return 目标对象
+     * @throws IllegalStateException 发现设备引擎ID失败
+     */
+    public UserTarget<UdpAddress> createUserTarget(String ipAddress, int port, String securityName,
+                                                   String authProtocol, String authPassword,
+                                                   String privProtocol, String privPassword,
+                                                   long timeout, int retries) {
+        if (securityName == null || securityName.isBlank()) {
+            throw new IllegalArgumentException("SNMPv3安全名不能为空");
+        }
+        boolean auth = authPassword != null && !authPassword.isEmpty();
+        boolean priv = auth && privPassword != null && !privPassword.isEmpty();
+        OctetString userName = new OctetString(securityName);
+        UdpAddress address = new UdpAddress(ipAddress + "/" + port);
+        OctetString engineId = engineId(address, timeout);
+        registerUser(engineId, new UsmUser(userName,
+                auth ? authProtocolId(authProtocol) : null, auth ? new OctetString(authPassword) : null,
+                priv ? privProtocolId(privProtocol) : null, priv ? new OctetString(privPassword) : null));
+
+        UserTarget<UdpAddress> target = new UserTarget<>();
+        target.setSecurityName(userName);
+        target.setAuthoritativeEngineID(engineId.getValue());
+        target.setSecurityLevel(priv ? SecurityLevel.AUTH_PRIV : (auth ? SecurityLevel.AUTH_NOPRIV : SecurityLevel.NOAUTH_NOPRIV));
+        target.setAddress(address);
+        target.setRetries(retries);
+        target.setTimeout(timeout);
+        target.setMaxSizeRequestPDU(maxMessageSize);
+        target.setVersion(SnmpConstants.version3);
+        return target;
+    }
+
+    /**
+     * 创建团体名认证的目标对象
+     *
+     * @param ipAddress IP地址
+     * @param port 端口
+     * @param community 团体名
+     * @param version SNMP版本(1/2/3)
+     * @param timeout 超时时间(毫秒)
+     * @param retries 重试次数
+     * @return 目标对象
+     */
+    public CommunityTarget<UdpAddress> createTarget(String ipAddress, int port, String community,
+                                                   int version, long timeout, int retries) {
+        CommunityTarget<UdpAddress> target = new CommunityTarget<>();
+        target.setCommunity(new OctetString(community));
+        target.setAddress(new UdpAddress(ipAddress + "/" + port));
+        target.setRetries(retries);
+        target.setTimeout(timeout);
+        target.setMaxSizeRequestPDU(maxMessageSize);
+        target.setVersion(version == 1 ? SnmpConstants.version1 :
+                         (version == 3 ? SnmpConstants.version3 : SnmpConstants.version2c));
+        return target;
+    }
+
+    /**
+     * 设备的引擎ID，缓存未命中或已过期时向设备发现
+     */
+    private OctetString engineId(UdpAddress address, long timeout) {
+        long now = System.currentTimeMillis();
+        EngineId cached = engineIds.get(address);
+        if (cached != null && now - cached.discoveredAt < engineIdTtlMs) {
+            return cached.id;
+        }
+        byte[] discovered = snmp.discoverAuthoritativeEngineID(address, timeout);
+        if (discovered == null || discovered.length == 0) {
+            if (cached != null) {
+                // 设备暂时无响应时沿用之前的引擎ID，由请求本身报告超时
+                return cached.id;
+            }
+            throw new IllegalStateException("发现SNMPv3引擎ID失败: " + address);
+        }
+        OctetString id = new OctetString(discovered);
+        if (cached != null && !cached.id.equals(id)) {
+            log.info("设备SNMPv3引擎ID已变化: {}, {} -> {}", address, cached.id.toHexString(), id.toHexString());
+        }
+        engineIds.put(address, new EngineId(id, now));
+        return id;
+    }
+
+    /**
+     * 按引擎ID注册用户，已注册且凭据相同时跳过(密钥本地化需要上万次哈希)
+     */
+    private void registerUser(OctetString engineId, UsmUser user) {
+        String key = engineId.toHexString() + "/" + user.getSecurityName();
+        registeredUsers.compute(key, (k, registered) -> {
+            if (registered != null && sameCredentials(registered, user)) {
+                return registered;
+            }
+            usm.addUser(user.getSecurityName(), engineId, user);
+            return user;
+        });
+    }
+
+    private static boolean sameCredentials(UsmUser a, UsmUser b) {
+        return Objects.equals(a.getAuthenticationProtocol(), b.getAuthenticationProtocol())
+                && Objects.equals(a.getAuthenticationPassphrase(), b.getAuthenticationPassphrase())
+                && Objects.equals(a.getPrivacyProtocol(), b.getPrivacyProtocol())
+                && Objects.equals(a.getPrivacyPassphrase(), b.getPrivacyPassphrase());
+    }
+
+    private static OID authProtocolId(String protocol) {
+        switch (protocol == null ? "SHA" : protocol.toUpperCase(Locale.ROOT)) {
+            case "MD5":
+                return AuthMD5.ID;
+            case "SHA256":
+                return AuthHMAC192SHA256.ID;
+            case "SHA":
+                return AuthSHA.ID;
+            default:
+                throw new IllegalArgumentException("不支持的SNMPv3认证协议: " + protocol);
+        }
+    }
+
+    private static OID privProtocolId(String protocol) {
+        switch (protocol == null ? "AES" : protocol.toUpperCase(Locale.ROOT)) {
+            case "DES":
+                return PrivDES.ID;
+            case "AES256":
+                return PrivAES256.ID;
+            case "AES":
+            case "AES128":
+                return PrivAES128.ID;
+            default:
+                throw new IllegalArgumentException("不支持的SNMPv3加密协议: " + protocol);
+        }
+    }
+
+    private static String param(Map<String, ?> params, String key, String defaultValue) {
+        Object value = params == null ? null : params.get(key);
+        return value != null ? value.toString() : defaultValue;
+    }
+
+    private static int intParam(Map<String, ?> params, String key, int defaultValue) {
+        Object value = params == null ? null : params.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 发现的设备引擎ID及发现时间
+     */
+    private static final class EngineId {
+
+        private final OctetString id;
+        private final long discoveredAt;
+
+        private EngineId(OctetString id, long discoveredAt) {
+            this.id = id;
+            this.discoveredAt = discoveredAt;
+        }
+    }
+
+    /**
+     * 当前在途请求数
+     */
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 累计请求数
+     */
+    public long getTotalRequests() {
+        return totalRequests.get();
+    }
+
+    /**
+     * 累计超时请求数
+     */
+    public long getTimeoutRequests() {
+        return timeoutRequests.get();
+    }
+}
@@ -0,0 +1,41 @@
+package com.skyi.collector.service.collector.snmp;
+
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Variable;
+
+/**
+ * SNMP变量工具
+ * 各SNMP采集器共用的变量类型判断
+ */
+public final class SnmpVariables {
+
+    private SnmpVariables() {
+    }
+
+    /**
+     * SNMP计数器类型的位宽，用于后续阶段按位宽处理计数器回绕
+     *
+     * @param variable 变量
+     * @return Counter32为32，Counter64为64，非计数器返回null
+     */
+    public static Integer counterBits(Variable variable) {
+        if (variable instanceof Counter32) {
+            return 32;
+        } else if (variable instanceof Counter64) {
+            return 64;
+        }
+        return null;
+    }
+
+    /**
+     * Counter64按无符号数转换，getValue()以有符号long返回，不小于2^63的值需补齐
+     *
+     * @param counter 64位计数器
+     * @return 计数器值
+     */
+    public static double unsignedValue(Counter64 counter) {
+        long value = counter.getValue();
+        return value >= 0 ? (double) value : (double) (value >>> 1) * 2.0 + (value & 1);
+    }
+}
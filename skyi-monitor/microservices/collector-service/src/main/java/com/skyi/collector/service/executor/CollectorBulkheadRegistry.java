@@ -0,0 +1,91 @@
+package com.skyi.collector.service.executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 按协议划分的采集执行器注册表
+ * 每个协议首次使用时按配置创建隔离舱：
+ * collector.executor.bulkheads.{protocol}.max-concurrency / queue-capacity，
+ * 未单独配置的协议使用collector.executor.default-*的默认值
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CollectorBulkheadRegistry {
+
+    private static final String MODE_VIRTUAL = "virtual";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ProtocolBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Value("${collector.executor.mode:platform}")
+    private String mode;
+
+    @Value("${collector.executor.default-max-concurrency:10}")
+    private int defaultMaxConcurrency;
+
+    @Value("${collector.executor.default-queue-capacity:200}")
+    private int defaultQueueCapacity;
+
+    /**
+     * 获取协议对应的隔离舱
+     *
+     * @param protocol 采集协议
+     * @return 隔离舱
+     */
+    public ProtocolBulkhead get(String protocol) {
+        String key = protocol == null || protocol.isBlank() ? "default" : protocol.toLowerCase(Locale.ROOT);
+        return bulkheads.computeIfAbsent(key, this::create);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(ProtocolBulkhead::shutdown);
+    }
+
+    private ProtocolBulkhead create(String protocol) {
+        String prefix = "collector.executor.bulkheads." + protocol + ".";
+        int maxConcurrency = Math.max(1, environment.getProperty(
+                prefix + "max-concurrency", Integer.class, defaultMaxConcurrency));
+        int queueCapacity = Math.max(1, environment.getProperty(
+                prefix + "queue-capacity", Integer.class, defaultQueueCapacity));
+
+        if (MODE_VIRTUAL.equalsIgnoreCase(mode)) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                log.info("创建协议[{}]虚拟线程采集隔离舱, 最大并发: {}, 队列容量: {}",
+                        protocol, maxConcurrency, queueCapacity);
+                return ProtocolBulkhead.virtual(protocol, virtualExecutor, maxConcurrency, queueCapacity, meterRegistry);
+            }
+            log.warn("当前JDK不支持虚拟线程，协议[{}]回退为平台线程隔离舱", protocol);
+        }
+
+        log.info("创建协议[{}]采集隔离舱, 最大并发: {}, 队列容量: {}", protocol, maxConcurrency, queueCapacity);
+        return ProtocolBulkhead.platform(protocol, maxConcurrency, queueCapacity, meterRegistry);
+    }
+
+    /**
+     * 反射获取虚拟线程执行器，项目以Java 11编译，仅在JDK 21及以上运行时可用
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
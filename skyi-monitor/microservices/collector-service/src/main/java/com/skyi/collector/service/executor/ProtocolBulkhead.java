@@ -0,0 +1,206 @@
+package com.skyi.collector.service.executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 单个协议的采集隔离舱
+ * 每个协议拥有独立的并发上限和有界等待队列，某一协议的慢目标只会占满自己的隔离舱，
+ * 队列满时直接拒绝新任务并计数，不会无限堆积。
+ * 任务是异步的：并发许可从任务开始一直持有到任务返回的Future完成(包括等待设备响应和收尾)，
+ * 执行线程只用于启动任务和运行收尾，等待响应期间不占用线程
+ */
+@Slf4j
+public class ProtocolBulkhead {
+
+    private final String protocol;
+
+    /**
+     * 启动任务和运行收尾的执行器，同时在其上运行的工作不超过并发上限的两倍，不会拒绝
+     */
+    private final ExecutorService executor;
+
+    /**
+     * 限制同时在途(已启动且Future未完成)的任务数
+     */
+    private final Semaphore concurrency;
+
+    /**
+     * 限制已提交(在途+等待中)的任务总数
+     */
+    private final Semaphore admission;
+
+    /**
+     * 等待并发许可的任务
+     */
+    private final Queue<Supplier<? extends CompletionStage<?>>> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final Counter rejectedCounter;
+    private final Timer latencyTimer;
+
+    /**
+     * 创建平台线程隔离舱
+     */
+    static ProtocolBulkhead platform(String protocol, int maxConcurrency, int queueCapacity,
+                                     MeterRegistry meterRegistry) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "collector-" + protocol + "-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return new ProtocolBulkhead(protocol, executor, maxConcurrency, queueCapacity, meterRegistry);
+    }
+
+    /**
+     * 创建虚拟线程隔离舱，每个任务一个虚拟线程
+     */
+    static ProtocolBulkhead virtual(String protocol, ExecutorService virtualExecutor, int maxConcurrency,
+                                    int queueCapacity, MeterRegistry meterRegistry) {
+        return new ProtocolBulkhead(protocol, virtualExecutor, maxConcurrency, queueCapacity, meterRegistry);
+    }
+
+    private ProtocolBulkhead(String protocol, ExecutorService executor, int maxConcurrency,
+                             int queueCapacity, MeterRegistry meterRegistry) {
+        this.protocol = protocol;
+        this.executor = executor;
+        this.concurrency = new Semaphore(maxConcurrency);
+        this.admission = new Semaphore(maxConcurrency + Math.max(0, queueCapacity));
+
+        Gauge.builder("collector.executor.queue.size", queued, AtomicInteger::get)
+                .description("采集任务等待队列长度")
+                .tag("protocol", protocol)
+                .register(meterRegistry);
+        Gauge.builder("collector.executor.active", active, AtomicInteger::get)
+                .description("正在执行的采集任务数")
+                .tag("protocol", protocol)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("collector.executor.rejected")
+                .description("因隔离舱已满被拒绝的采集任务数")
+                .tag("protocol", protocol)
+                .register(meterRegistry);
+        this.latencyTimer = Timer.builder("collector.task.duration")
+                .description("采集任务从开始到完成的耗时")
+                .tag("protocol", protocol)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 提交异步任务，隔离舱已满时抛出RejectedExecutionException
+     * 任务在获得并发许可后于隔离舱线程上启动，许可在其返回的Future完成后释放
+     *
+     * @param task 任务，返回任务完成的Future
+     */
+    public void submit(Supplier<? extends CompletionStage<?>> task) {
+        if (!admission.tryAcquire()) {
+            rejected();
+        }
+        queued.incrementAndGet();
+        pending.add(task);
+        drain();
+    }
+
+    /**
+     * 采集完成后的收尾执行器
+     * 收尾在隔离舱线程上运行，且仍处于任务的并发许可之内，不会被拒绝，也不会在SNMP分发线程上执行
+     *
+     * @return 执行器
+     */
+    public Executor completionExecutor() {
+        return executor;
+    }
+
+    /**
+     * 记录一次采集任务耗时
+     *
+     * @param nanos 耗时(纳秒)
+     */
+    public void recordLatency(long nanos) {
+        latencyTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 关闭隔离舱
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 有空闲许可时启动等待中的任务
+     * 许可释放与任务入队都会调用，任一方错过时另一方会补上
+     */
+    private void drain() {
+        while (!pending.isEmpty() && concurrency.tryAcquire()) {
+            Supplier<? extends CompletionStage<?>> task = pending.poll();
+            if (task == null) {
+                concurrency.release();
+                continue;
+            }
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                executor.execute(() -> start(task));
+            } catch (RejectedExecutionException e) {
+                // 仅在关闭后发生
+                log.warn("协议[{}]采集隔离舱已关闭，丢弃任务", protocol);
+                finish();
+            }
+        }
+    }
+
+    private void start(Supplier<? extends CompletionStage<?>> task) {
+        CompletionStage<?> stage;
+        try {
+            stage = task.get();
+        } catch (Throwable e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        if (stage == null) {
+            finish();
+            return;
+        }
+        stage.whenComplete((result, error) -> {
+            if (error != null) {
+                log.warn("协议[{}]采集任务异常结束: {}", protocol, error.getMessage());
+            }
+            finish();
+        });
+    }
+
+    private void finish() {
+        active.decrementAndGet();
+        concurrency.release();
+        admission.release();
+        drain();
+    }
+
+    private void rejected() {
+        rejectedCounter.increment();
+        throw new RejectedExecutionException("协议[" + protocol + "]采集隔离舱已满");
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skyi.collector.dto.CollectorRuleDTO;
+import com.skyi.collector.job.TaskSchedulerManager;
 import com.skyi.collector.model.CollectorRule;
 import com.skyi.collector.repository.CollectorRuleRepository;
 import com.skyi.collector.service.CollectorRuleService;
@@ -33,6 +34,7 @@ public class CollectorRuleServiceImpl implements CollectorRuleService {
 
     private final CollectorRuleRepository ruleRepository;
     private final ObjectMapper objectMapper;
+    private final TaskSchedulerManager taskSchedulerManager;
 
     @Override
     @Transactional
@@ -58,6 +60,7 @@ public class CollectorRuleServiceImpl implements CollectorRuleService {
         
         // 保存规则
         rule = ruleRepository.save(rule);
+        taskSchedulerManager.refreshRule(rule);
         
         // 转换为DTO并返回
         ruleDTO.setId(rule.getId());
@@ -92,6 +95,7 @@ public class CollectorRuleServiceImpl implements CollectorRuleService {
         
         // 保存规则
         rule = ruleRepository.save(rule);
+        taskSchedulerManager.refreshRule(rule);
         
         // 转换为DTO并返回
         ruleDTO.setId(rule.getId());
@@ -104,6 +108,7 @@ public class CollectorRuleServiceImpl implements CollectorRuleService {
     @Transactional
     public void deleteRule(Long id) {
         ruleRepository.deleteById(id);
+        taskSchedulerManager.removeRule(id);
     }
 
     @Override
@@ -161,6 +166,7 @@ public class CollectorRuleServiceImpl implements CollectorRuleService {
         rule.setUpdateTime(LocalDateTime.now());
         
         rule = ruleRepository.save(rule);
+        taskSchedulerManager.refreshRule(rule);
         
         return convertToDTO(rule);
     }
@@ -176,6 +182,7 @@ public class CollectorRuleServiceImpl implements CollectorRuleService {
         rule.setUpdateTime(LocalDateTime.now());
         
         rule = ruleRepository.save(rule);
+        taskSchedulerManager.refreshRule(rule);
         
         return convertToDTO(rule);
     }
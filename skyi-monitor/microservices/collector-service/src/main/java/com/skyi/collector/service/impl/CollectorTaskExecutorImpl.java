@@ -2,6 +2,7 @@ package com.skyi.collector.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skyi.collector.dto.MetricDataDTO;
+import com.skyi.collector.job.cluster.ClusterMembership;
 import com.skyi.collector.model.CollectorTask;
 import com.skyi.collector.model.CollectorTaskInstance;
 import com.skyi.collector.repository.CollectorMetricDataRepository;
@@ -9,16 +10,21 @@ import com.skyi.collector.repository.CollectorTaskInstanceRepository;
 import com.skyi.collector.repository.CollectorTaskRepository;
 import com.skyi.collector.service.CollectorTaskExecutor;
 import com.skyi.collector.service.collector.Collector;
+import com.skyi.collector.service.collector.counter.CounterRateConverter;
+import com.skyi.collector.service.executor.CollectorBulkheadRegistry;
+import com.skyi.collector.service.executor.ProtocolBulkhead;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 采集任务执行器实现
@@ -34,13 +40,72 @@ public class CollectorTaskExecutorImpl implements CollectorTaskExecutor {
     private final CollectorMetricDataRepository metricDataRepository;
     private final ObjectMapper objectMapper;
     
-    // 线程池
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
+    // 按协议隔离的执行器
+    private final CollectorBulkheadRegistry bulkheadRegistry;
+    
+    // 多实例部署时的任务归属
+    private final ClusterMembership clusterMembership;
+    
+    // 计数器转速率
+    private final CounterRateConverter counterRateConverter;
+    
+    // 异步收尾不在调用方事务内，单独开启事务
+    private final TransactionTemplate transactionTemplate;
     
     @Override
     @Transactional
     public Long executeTask(CollectorTask task) {
-        // 创建任务实例
+        Long instanceId = createInstance(task);
+        long startNanos = System.nanoTime();
+        CompletableFuture<List<MetricDataDTO>> collectFuture = startCollect(task, instanceId);
+        if (collectFuture == null) {
+            return instanceId;
+        }
+        
+        // 同步执行时等待采集完成后在调用线程上收尾，不在SNMP分发线程上执行
+        List<MetricDataDTO> metricDataList = null;
+        Throwable error = null;
+        try {
+            metricDataList = collectFuture.join();
+        } catch (Exception e) {
+            error = e;
+        }
+        completeTask(task, instanceId, metricDataList, error);
+        bulkheadRegistry.get(task.getProtocol()).recordLatency(System.nanoTime() - startNanos);
+        return instanceId;
+    }
+    
+    /**
+     * 异步执行采集任务
+     * 采集器基于共享会话非阻塞发送请求，等待设备响应期间不占用执行线程，
+     * 采集完成后再切换到指定执行器，在事务内保存数据和更新状态
+     *
+     * @param task 采集任务
+     * @param completionExecutor 采集完成后的收尾执行器
+     * @return 任务实例ID的Future，收尾完成后才完成
+     */
+    private CompletableFuture<Long> executeTaskAsync(CollectorTask task, Executor completionExecutor) {
+        Long instanceId = createInstance(task);
+        long startNanos = System.nanoTime();
+        CompletableFuture<List<MetricDataDTO>> collectFuture = startCollect(task, instanceId);
+        if (collectFuture == null) {
+            return CompletableFuture.completedFuture(instanceId);
+        }
+        
+        return collectFuture.handleAsync((metricDataList, error) -> {
+            transactionTemplate.executeWithoutResult(status -> completeTask(task, instanceId, metricDataList, error));
+            bulkheadRegistry.get(task.getProtocol()).recordLatency(System.nanoTime() - startNanos);
+            return instanceId;
+        }, completionExecutor);
+    }
+    
+    /**
+     * 创建执行中的任务实例
+     *
+     * @param task 采集任务
+     * @return 实例ID
+     */
+    private Long createInstance(CollectorTask task) {
         CollectorTaskInstance instance = new CollectorTaskInstance();
         instance.setTaskId(task.getId());
         instance.setAssetId(task.getAssetId());
@@ -48,49 +113,82 @@ public class CollectorTaskExecutorImpl implements CollectorTaskExecutor {
         instance.setStatus(2); // 进行中
         
         // 保存实例
-        CollectorTaskInstance savedInstance = instanceRepository.save(instance);
+        return instanceRepository.save(instance).getId();
+    }
+    
+    /**
+     * 启动采集
+     *
+     * @param task 采集任务
+     * @param instanceId 实例ID
+     * @return 采集结果的Future，找不到采集器时返回null(实例已标记为失败)
+     */
+    private CompletableFuture<List<MetricDataDTO>> startCollect(CollectorTask task, Long instanceId) {
+        // 查找适合的采集器
+        Collector collector = findSuitableCollector(task);
+        if (collector == null) {
+            log.error("找不到适合的采集器, taskId={}, type={}, protocol={}", 
+                    task.getId(), task.getType(), task.getProtocol());
+            
+            // 更新实例状态为失败
+            updateInstanceStatus(instanceId, false, "找不到适合的采集器");
+            return null;
+        }
         
+        // 执行采集
         try {
-            // 查找适合的采集器
-            Collector collector = findSuitableCollector(task);
-            if (collector == null) {
-                log.error("找不到适合的采集器, taskId={}, type={}, protocol={}", 
-                        task.getId(), task.getType(), task.getProtocol());
+            return collector.collectAsync(task, instanceId);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * 采集完成后保存数据并更新任务状态
+     *
+     * @param task 采集任务
+     * @param instanceId 实例ID
+     * @param metricDataList 采集数据
+     * @param error 采集异常
+     */
+    private void completeTask(CollectorTask task, Long instanceId, List<MetricDataDTO> metricDataList, Throwable error) {
+        if (error == null) {
+            try {
+                // 计数器换算为速率后保存采集数据
+                saveMetricData(counterRateConverter.convert(metricDataList));
+                
+                // 更新实例状态为成功
+                updateInstanceStatus(instanceId, true, null);
                 
-                // 更新实例状态为失败
-                updateInstanceStatus(savedInstance.getId(), false, "找不到适合的采集器");
-                return savedInstance.getId();
+                // 更新任务最后执行时间和状态
+                updateExecuteState(task, 1);
+                return;
+            } catch (Exception e) {
+                error = e;
             }
-            
-            // 执行采集
-            List<MetricDataDTO> metricDataList = collector.collect(task, savedInstance.getId());
-            
-            // 保存采集数据
-            saveMetricData(metricDataList);
-            
-            // 更新实例状态为成功
-            updateInstanceStatus(savedInstance.getId(), true, null);
-            
-            // 更新任务最后执行时间和状态
-            task.setLastExecuteTime(LocalDateTime.now());
-            task.setLastExecuteStatus(1);
-            taskRepository.save(task);
-            
-            return savedInstance.getId();
-            
-        } catch (Exception e) {
-            log.error("执行采集任务出错: {}, taskId={}", e.getMessage(), task.getId(), e);
-            
-            // 更新实例状态为失败
-            updateInstanceStatus(savedInstance.getId(), false, e.getMessage());
-            
-            // 更新任务最后执行时间和状态
-            task.setLastExecuteTime(LocalDateTime.now());
-            task.setLastExecuteStatus(0);
-            taskRepository.save(task);
-            
-            return savedInstance.getId();
         }
+        
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        log.error("执行采集任务出错: {}, taskId={}", cause.getMessage(), task.getId(), cause);
+        
+        // 更新实例状态为失败
+        updateInstanceStatus(instanceId, false, cause.getMessage());
+        
+        // 更新任务最后执行时间和状态
+        updateExecuteState(task, 0);
+    }
+    
+    /**
+     * 只更新任务的执行时间和状态，不回写缓存中的整个任务，避免覆盖其他节点同时修改的配置
+     *
+     * @param task 采集任务
+     * @param status 执行状态
+     */
+    private void updateExecuteState(CollectorTask task, int status) {
+        LocalDateTime executeTime = LocalDateTime.now();
+        task.setLastExecuteTime(executeTime);
+        task.setLastExecuteStatus(status);
+        taskRepository.updateExecuteState(task.getId(), executeTime, status);
     }
     
     @Override
@@ -102,9 +200,11 @@ public class CollectorTaskExecutorImpl implements CollectorTaskExecutor {
         List<CollectorTask> tasks = taskRepository.findTasksNeedExecute(now);
         log.info("定时执行任务数量: {}", tasks.size());
         
-        // 异步执行每个任务
+        // 异步执行归属于本节点的任务
         for (CollectorTask task : tasks) {
-            scheduleTask(task, false);
+            if (clusterMembership.ownsTask(task.getId())) {
+                scheduleTask(task, false);
+            }
         }
     }
     
@@ -114,10 +214,17 @@ public class CollectorTaskExecutorImpl implements CollectorTaskExecutor {
             // 同步执行
             return executeTask(task);
         } else {
-            // 异步执行
-            CompletableFuture.runAsync(() -> {
-                executeTask(task);
-            }, executorService);
+            // 异步执行，提交到任务协议对应的隔离舱，采集等待期间不占用执行线程，
+            // 并发许可持有到收尾完成
+            ProtocolBulkhead bulkhead = bulkheadRegistry.get(task.getProtocol());
+            try {
+                bulkhead.submit(() -> executeTaskAsync(task, bulkhead.completionExecutor()).exceptionally(e -> {
+                    log.error("异步执行采集任务出错: {}, taskId={}", e.getMessage(), task.getId(), e);
+                    return null;
+                }));
+            } catch (RejectedExecutionException e) {
+                log.warn("采集任务被拒绝: {}, taskId={}", e.getMessage(), task.getId());
+            }
             
             return null;
         }
@@ -1,6 +1,7 @@
 package com.skyi.collector.service.impl;
 
 import com.skyi.collector.dto.CollectorTaskScheduleDTO;
+import com.skyi.collector.job.TaskSchedulerManager;
 import com.skyi.collector.model.CollectorTask;
 import com.skyi.collector.model.CollectorTaskSchedule;
 import com.skyi.collector.repository.CollectorTaskRepository;
@@ -39,6 +40,7 @@ public class CollectorTaskScheduleServiceImpl implements CollectorTaskScheduleSe
     private final CollectorTaskRepository taskRepository;
     private final CollectorTaskService taskService;
     private final CollectorTaskExecutor taskExecutor;
+    private final TaskSchedulerManager taskSchedulerManager;
 
     @Override
     @Transactional
@@ -58,6 +60,7 @@ public class CollectorTaskScheduleServiceImpl implements CollectorTaskScheduleSe
 
         // 保存调度
         schedule = scheduleRepository.save(schedule);
+        taskSchedulerManager.refreshSchedule(schedule);
 
         // 转换为DTO并返回
         scheduleDTO.setId(schedule.getId());
@@ -89,6 +92,7 @@ public class CollectorTaskScheduleServiceImpl implements CollectorTaskScheduleSe
 
         // 保存调度
         schedule = scheduleRepository.save(schedule);
+        taskSchedulerManager.refreshSchedule(schedule);
 
         // 转换为DTO并返回
         BeanUtils.copyProperties(schedule, scheduleDTO);
@@ -99,6 +103,7 @@ public class CollectorTaskScheduleServiceImpl implements CollectorTaskScheduleSe
     @Transactional
     public void deleteSchedule(Long id) {
         scheduleRepository.deleteById(id);
+        taskSchedulerManager.removeSchedule(id);
     }
 
     @Override
@@ -183,6 +188,7 @@ public class CollectorTaskScheduleServiceImpl implements CollectorTaskScheduleSe
         schedule.setEnabled(1);
         schedule.setUpdateTime(LocalDateTime.now());
         schedule = scheduleRepository.save(schedule);
+        taskSchedulerManager.refreshSchedule(schedule);
 
         CollectorTaskScheduleDTO dto = new CollectorTaskScheduleDTO();
         BeanUtils.copyProperties(schedule, dto);
@@ -198,6 +204,7 @@ public class CollectorTaskScheduleServiceImpl implements CollectorTaskScheduleSe
         schedule.setEnabled(0);
         schedule.setUpdateTime(LocalDateTime.now());
         schedule = scheduleRepository.save(schedule);
+        taskSchedulerManager.removeSchedule(id);
 
         CollectorTaskScheduleDTO dto = new CollectorTaskScheduleDTO();
         BeanUtils.copyProperties(schedule, dto);
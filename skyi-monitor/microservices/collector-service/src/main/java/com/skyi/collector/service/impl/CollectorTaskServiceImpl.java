@@ -3,8 +3,10 @@ package com.skyi.collector.service.impl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skyi.collector.dto.CollectorTaskDTO;
+import com.skyi.collector.job.TaskSchedulerManager;
 import com.skyi.collector.model.CollectorTask;
 import com.skyi.collector.repository.CollectorTaskRepository;
+import com.skyi.collector.service.CollectionPlanCache;
 import com.skyi.collector.service.CollectorTaskExecutor;
 import com.skyi.collector.service.CollectorTaskService;
 import com.skyi.collector.service.collector.Collector;
@@ -37,6 +39,8 @@ public class CollectorTaskServiceImpl implements CollectorTaskService {
     private final CollectorTaskExecutor taskExecutor;
     private final List<Collector> collectors;
     private final ObjectMapper objectMapper;
+    private final TaskSchedulerManager taskSchedulerManager;
+    private final CollectionPlanCache collectionPlanCache;
 
     @Override
     @Transactional
@@ -81,6 +85,8 @@ public class CollectorTaskServiceImpl implements CollectorTaskService {
         
         // 保存任务
         task = taskRepository.save(task);
+        collectionPlanCache.invalidateTask(task.getId());
+        taskSchedulerManager.refreshTask(task);
         
         // 转换为DTO并返回
         taskDTO.setId(task.getId());
@@ -130,6 +136,8 @@ public class CollectorTaskServiceImpl implements CollectorTaskService {
         
         // 保存任务
         task = taskRepository.save(task);
+        collectionPlanCache.invalidateTask(task.getId());
+        taskSchedulerManager.refreshTask(task);
         
         // 转换为DTO并返回
         BeanUtils.copyProperties(task, taskDTO);
@@ -140,6 +148,8 @@ public class CollectorTaskServiceImpl implements CollectorTaskService {
     @Transactional
     public void deleteTask(Long id) {
         taskRepository.deleteById(id);
+        collectionPlanCache.invalidateTask(id);
+        taskSchedulerManager.removeTask(id);
     }
 
     @Override
@@ -263,6 +273,8 @@ public class CollectorTaskServiceImpl implements CollectorTaskService {
         task.setStatus(1); // 1表示启用
         task.setUpdateTime(LocalDateTime.now());
         task = taskRepository.save(task);
+        collectionPlanCache.invalidateTask(task.getId());
+        taskSchedulerManager.refreshTask(task);
         
         CollectorTaskDTO taskDTO = new CollectorTaskDTO();
         BeanUtils.copyProperties(task, taskDTO);
@@ -278,6 +290,8 @@ public class CollectorTaskServiceImpl implements CollectorTaskService {
         task.setStatus(0); // 0表示禁用
         task.setUpdateTime(LocalDateTime.now());
         task = taskRepository.save(task);
+        collectionPlanCache.invalidateTask(task.getId());
+        taskSchedulerManager.refreshTask(task);
         
         CollectorTaskDTO taskDTO = new CollectorTaskDTO();
         BeanUtils.copyProperties(task, taskDTO);
@@ -1,11 +1,16 @@
 package com.skyi.collector.service.impl;
 
 import com.skyi.collector.dto.MetricDataDTO;
+import com.skyi.collector.service.codec.MetricWireEncoder;
 import com.skyi.collector.service.collector.CollectionResult;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.retry.annotation.Backoff;
@@ -15,11 +20,14 @@ import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureCallback;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -32,6 +40,15 @@ import java.util.concurrent.atomic.AtomicLong;
 @Service
 public class MetricDataProducerService {
 
+    private static final String WIRE_FORMAT_BINARY = "binary";
+
+    /**
+     * 信封消息提交失败时的最多尝试次数和重试间隔，与单条发送的@Retryable一致
+     */
+    private static final int ENVELOPE_MAX_ATTEMPTS = 3;
+
+    private static final long ENVELOPE_RETRY_DELAY_MS = 1000;
+
     @Autowired
     private KafkaTemplate<String, Object> kafkaTemplate;
     
@@ -49,6 +66,25 @@ public class MetricDataProducerService {
     @Value("${spring.kafka.producer.retries:3}")
     private int retries;
     
+    /**
+     * 指标消息格式: binary(二进制，见MetricWireEncoder) 或 json
+     */
+    @Value("${collector.kafka.wire-format:binary}")
+    private String wireFormat;
+    
+    /**
+     * 批量发送时是否将同一任务实例、同一资产的数据点合并为一条信封消息，仅二进制格式生效
+     */
+    @Value("${collector.kafka.envelope-enabled:true}")
+    private boolean envelopeEnabled;
+    
+    @Autowired
+    private KafkaProperties kafkaProperties;
+    
+    private DefaultKafkaProducerFactory<String, byte[]> binaryProducerFactory;
+    
+    private KafkaTemplate<String, byte[]> binaryKafkaTemplate;
+    
     // 发送统计
     private final AtomicLong totalSent = new AtomicLong(0);
     private final AtomicLong successSent = new AtomicLong(0);
@@ -56,7 +92,23 @@ public class MetricDataProducerService {
     
     @PostConstruct
     public void init() {
-        log.info("初始化指标数据生产者服务，指标数据主题: {}, 采集状态主题: {}", metricDataTopic, collectionStatusTopic);
+        log.info("初始化指标数据生产者服务，指标数据主题: {}, 采集状态主题: {}, 消息格式: {}, 信封模式: {}", 
+                metricDataTopic, collectionStatusTopic, wireFormat, envelopeEnabled);
+        
+        // 二进制格式使用独立的字节数组生产者，其他主题仍沿用JSON序列化
+        if (WIRE_FORMAT_BINARY.equalsIgnoreCase(wireFormat)) {
+            Map<String, Object> props = kafkaProperties.buildProducerProperties();
+            props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+            binaryProducerFactory = new DefaultKafkaProducerFactory<>(props);
+            binaryKafkaTemplate = new KafkaTemplate<>(binaryProducerFactory);
+        }
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        if (binaryProducerFactory != null) {
+            binaryProducerFactory.destroy();
+        }
     }
     
     /**
@@ -75,29 +127,24 @@ public class MetricDataProducerService {
         try {
             totalSent.incrementAndGet();
             
-            // 转换为Kafka友好的格式（处理LocalDateTime）
-            Map<String, Object> data = convertToKafkaFormat(metricData);
             String key = metricData.getAssetId() + "_" + metricData.getMetricName();
             
-            // 发送消息
-            ListenableFuture<SendResult<String, Object>> future = kafkaTemplate.send(metricDataTopic, key, data);
+            // 发送消息，二进制格式直接发送编码后的字节，JSON格式转换为Kafka友好的Map（处理LocalDateTime）
+            ListenableFuture<? extends SendResult<String, ?>> future = binaryKafkaTemplate != null
+                    ? binaryKafkaTemplate.send(metricDataTopic, key,
+                            MetricWireEncoder.encode(Collections.singletonList(metricData)))
+                    : kafkaTemplate.send(metricDataTopic, key, convertToKafkaFormat(metricData));
             
             // 异步处理发送结果
-            future.addCallback(new ListenableFutureCallback<SendResult<String, Object>>() {
-                @Override
-                public void onFailure(Throwable ex) {
-                    failedSent.incrementAndGet();
-                    log.error("发送指标数据到Kafka失败，metricName={}，assetId={}，错误：{}", 
-                            metricData.getMetricName(), metricData.getAssetId(), ex.getMessage(), ex);
-                }
-                
-                @Override
-                public void onSuccess(SendResult<String, Object> result) {
-                    successSent.incrementAndGet();
-                    log.debug("成功发送指标数据到Kafka，metricName={}，assetId={}，partition={}，offset={}", 
-                            metricData.getMetricName(), metricData.getAssetId(),
-                            result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
-                }
+            future.addCallback(result -> {
+                successSent.incrementAndGet();
+                log.debug("成功发送指标数据到Kafka，metricName={}，assetId={}，partition={}，offset={}", 
+                        metricData.getMetricName(), metricData.getAssetId(),
+                        result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+            }, ex -> {
+                failedSent.incrementAndGet();
+                log.error("发送指标数据到Kafka失败，metricName={}，assetId={}，错误：{}", 
+                        metricData.getMetricName(), metricData.getAssetId(), ex.getMessage(), ex);
             });
             
             return true;
@@ -185,6 +232,10 @@ public class MetricDataProducerService {
             return 0;
         }
         
+        if (envelopeEnabled && binaryKafkaTemplate != null) {
+            return sendEnvelopes(metricDataList);
+        }
+        
         // 分批处理
         List<MetricDataDTO> batch = new ArrayList<>(batchSize);
         int totalSuccess = 0;
@@ -208,6 +259,81 @@ public class MetricDataProducerService {
         return totalSuccess;
     }
     
+    /**
+     * 按任务实例和资产分组，每组每batchSize个数据点发送一条信封消息，消息键为资产ID，
+     * 同一资产的数据仍落在同一分区
+     */
+    private int sendEnvelopes(Iterable<MetricDataDTO> metricDataList) {
+        Map<String, List<MetricDataDTO>> groups = new LinkedHashMap<>();
+        for (MetricDataDTO metricData : metricDataList) {
+            if (metricData == null) {
+                continue;
+            }
+            String groupKey = metricData.getTaskId() + "_" + metricData.getInstanceId() + "_" + metricData.getAssetId();
+            groups.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(metricData);
+        }
+        
+        int totalSuccess = 0;
+        for (List<MetricDataDTO> group : groups.values()) {
+            for (int from = 0; from < group.size(); from += batchSize) {
+                totalSuccess += sendEnvelope(group.subList(from, Math.min(from + batchSize, group.size())));
+            }
+        }
+        
+        log.info("批量发送指标数据完成，信封数: {}，成功数据点: {}", groups.size(), totalSuccess);
+        return totalSuccess;
+    }
+    
+    /**
+     * 发送一条信封消息，提交到生产者失败(如缓冲区已满、获取元数据超时)时按固定间隔重试，
+     * 提交之后的网络错误由生产者按spring.kafka.producer.retries重试
+     *
+     * @return 已提交发送的数据点数
+     */
+    private int sendEnvelope(List<MetricDataDTO> envelope) {
+        int size = envelope.size();
+        Long assetId = envelope.get(0).getAssetId();
+        totalSent.addAndGet(size);
+        byte[] message;
+        try {
+            message = MetricWireEncoder.encodeEnvelope(envelope);
+        } catch (Exception e) {
+            failedSent.addAndGet(size);
+            log.error("编码指标信封异常，assetId={}，数据点={}", assetId, size, e);
+            return 0;
+        }
+        int maxAttempts = retries > 0 ? ENVELOPE_MAX_ATTEMPTS : 1;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                binaryKafkaTemplate.send(metricDataTopic, String.valueOf(assetId), message)
+                        .addCallback(result -> {
+                            successSent.addAndGet(size);
+                            log.debug("成功发送指标信封到Kafka，assetId={}，数据点={}，partition={}，offset={}", 
+                                    assetId, size, result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
+                        }, ex -> {
+                            failedSent.addAndGet(size);
+                            log.error("发送指标信封到Kafka失败，assetId={}，数据点={}，错误：{}", assetId, size, ex.getMessage(), ex);
+                        });
+                return size;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    failedSent.addAndGet(size);
+                    log.error("发送指标信封异常，已尝试{}次，assetId={}，数据点={}", attempt, assetId, size, e);
+                    return 0;
+                }
+                log.warn("发送指标信封异常，{}毫秒后重试({}/{})，assetId={}，错误：{}", 
+                        ENVELOPE_RETRY_DELAY_MS, attempt, maxAttempts, assetId, e.getMessage());
+                try {
+                    Thread.sleep(ENVELOPE_RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    failedSent.addAndGet(size);
+                    return 0;
+                }
+            }
+        }
+    }
+    
     /**
      * 处理单个批次
      */
@@ -10,7 +10,9 @@ import com.skyi.collector.model.MetricProtocolMapping;
 import com.skyi.collector.repository.MetricAssetTypeMappingRepository;
 import com.skyi.collector.repository.MetricDefinitionRepository;
 import com.skyi.collector.repository.MetricProtocolMappingRepository;
+import com.skyi.collector.service.CollectionPlanCache;
 import com.skyi.collector.service.MetricDefinitionService;
+import com.skyi.collector.service.collector.expression.MetricExpressionCompiler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -40,6 +42,7 @@ public class MetricDefinitionServiceImpl implements MetricDefinitionService {
     private final MetricProtocolMappingRepository protocolMappingRepository;
     private final MetricAssetTypeMappingRepository assetTypeMappingRepository;
     private final ObjectMapper objectMapper;
+    private final CollectionPlanCache collectionPlanCache;
 
     @Override
     @Transactional
@@ -65,6 +68,9 @@ public class MetricDefinitionServiceImpl implements MetricDefinitionService {
         // 保存资产类型映射
         saveAssetTypeMappings(metricId, metricDTO.getAssetTypeMappings());
         
+        // 任务可能预先引用了尚未创建的指标ID，新建指标时失效全部采集计划
+        collectionPlanCache.invalidateAll();
+        
         // 返回完整的DTO
         return getMetricById(metricId);
     }
@@ -98,6 +104,8 @@ public class MetricDefinitionServiceImpl implements MetricDefinitionService {
         assetTypeMappingRepository.deleteByMetricId(id);
         saveAssetTypeMappings(id, metricDTO.getAssetTypeMappings());
         
+        collectionPlanCache.invalidateMetric(id);
+        
         // 返回完整的DTO
         return getMetricById(id);
     }
@@ -118,6 +126,7 @@ public class MetricDefinitionServiceImpl implements MetricDefinitionService {
         
         // 删除指标定义
         metricRepository.deleteById(id);
+        collectionPlanCache.invalidateMetric(id);
     }
 
     @Override
@@ -201,6 +210,7 @@ public class MetricDefinitionServiceImpl implements MetricDefinitionService {
         metric.setUpdatedTime(LocalDateTime.now());
         
         metric = metricRepository.save(metric);
+        collectionPlanCache.invalidateMetric(id);
         
         return convertToDTO(metric);
     }
@@ -215,6 +225,7 @@ public class MetricDefinitionServiceImpl implements MetricDefinitionService {
         metric.setUpdatedTime(LocalDateTime.now());
         
         metric = metricRepository.save(metric);
+        collectionPlanCache.invalidateMetric(id);
         
         return convertToDTO(metric);
     }
@@ -320,6 +331,11 @@ public class MetricDefinitionServiceImpl implements MetricDefinitionService {
         }
         
         for (MetricProtocolMappingDTO mappingDTO : mappings) {
+            // 保存前校验表达式，避免无效表达式到采集时才暴露
+            if (StringUtils.hasText(mappingDTO.getExpression())) {
+                MetricExpressionCompiler.compile(mappingDTO.getExpression());
+            }
+            
             MetricProtocolMapping mapping = new MetricProtocolMapping();
             BeanUtils.copyProperties(mappingDTO, mapping);
             mapping.setMetricId(metricId);
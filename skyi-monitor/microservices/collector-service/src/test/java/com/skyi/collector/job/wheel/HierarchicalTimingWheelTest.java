@@ -0,0 +1,139 @@
+package com.skyi.collector.job.wheel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分层时间轮测试
+ * 每格1毫秒、每层4格、共3层，第0层覆盖4毫秒、第1层16毫秒、第2层64毫秒，
+ * 几十毫秒的定时项即可覆盖逐层下沉和超出范围后循环下沉
+ */
+public class HierarchicalTimingWheelTest {
+
+    /**
+     * 系统时钟与单调时钟之间的误差余量(毫秒)
+     */
+    private static final long CLOCK_SLACK_MS = 2;
+
+    private HierarchicalTimingWheel wheel;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new HierarchicalTimingWheel("test-wheel", 1, 2, 3);
+        wheel.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    /**
+     * 测试各层的定时项都不早于到期时间触发，需要经过高层下沉的定时项也能触发
+     */
+    @Test
+    public void testCascade() throws InterruptedException {
+        long[] delays = {0, 1, 3, 5, 15, 17, 40, 63, 65};
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        List<String> early = new CopyOnWriteArrayList<>();
+        long now = System.currentTimeMillis();
+        for (long delay : delays) {
+            long deadline = now + delay;
+            wheel.schedule(deadline, () -> {
+                if (System.currentTimeMillis() + CLOCK_SLACK_MS < deadline) {
+                    early.add("delay=" + delay);
+                }
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "未触发的定时项: " + latch.getCount());
+        assertTrue(early.isEmpty(), "提前触发: " + early);
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * 测试超出最高层范围的定时项循环下沉后按时触发
+     */
+    @Test
+    public void testBeyondRange() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long deadline = System.currentTimeMillis() + 200;
+        long[] fired = new long[1];
+        wheel.schedule(deadline, () -> {
+            fired[0] = System.currentTimeMillis();
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(fired[0] + CLOCK_SLACK_MS >= deadline, "提前" + (deadline - fired[0]) + "毫秒触发");
+    }
+
+    /**
+     * 测试已过期的定时项在下一个tick触发
+     */
+    @Test
+    public void testPastDeadline() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(System.currentTimeMillis() - 10_000, latch::countDown);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 测试在回调中重新排定下一次触发(周期任务的重新布防)，每次均按时触发
+     */
+    @Test
+    public void testRearm() throws InterruptedException {
+        int rounds = 20;
+        long period = 7;
+        CountDownLatch latch = new CountDownLatch(rounds);
+        AtomicInteger early = new AtomicInteger();
+        Runnable[] task = new Runnable[1];
+        long[] deadline = {System.currentTimeMillis() + period};
+        task[0] = () -> {
+            if (System.currentTimeMillis() + CLOCK_SLACK_MS < deadline[0]) {
+                early.incrementAndGet();
+            }
+            latch.countDown();
+            if (latch.getCount() > 0) {
+                deadline[0] += period;
+                wheel.schedule(deadline[0], task[0]);
+            }
+        };
+        wheel.schedule(deadline[0], task[0]);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "剩余次数: " + latch.getCount());
+        assertEquals(0, early.get());
+    }
+
+    /**
+     * 测试取消的定时项不触发，并从计数中移除
+     */
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel.Timeout near = wheel.schedule(now + 5, fired::incrementAndGet);
+        HierarchicalTimingWheel.Timeout far = wheel.schedule(now + 30, fired::incrementAndGet);
+        near.cancel();
+        far.cancel();
+        CountDownLatch latch = new CountDownLatch(1);
+        HierarchicalTimingWheel.Timeout marker = wheel.schedule(now + 60, latch::countDown);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, fired.get());
+        assertTrue(near.isCancelled());
+        assertFalse(far.isExpired());
+        assertTrue(marker.isExpired());
+        assertEquals(0, wheel.size());
+    }
+}
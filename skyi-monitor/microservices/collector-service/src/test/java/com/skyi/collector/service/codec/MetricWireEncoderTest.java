@@ -0,0 +1,114 @@
+package com.skyi.collector.service.codec;
+
+import com.skyi.collector.dto.MetricDataDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 指标消息编码测试
+ * 编码结果与processor-service中MetricWireDecoderTest解码的消息逐字节一致，两端测试共同约束消息格式
+ */
+public class MetricWireEncoderTest {
+
+    /**
+     * 版本2信封：if_in_octets=1.5@1700000000000、if_out_octets无值@1700000000250，标签ifIndex=3
+     */
+    private static final String ENVELOPE = "c702040c69665f696e5f6f6374657473076966496e64657801330d69665f6f75745f6f6374657473"
+            + "170ed8040380a0abfef962e8a7abfef9620218003ff8000000000000000101021003f403010102";
+
+    /**
+     * 版本1，数据点同上
+     */
+    private static final String POINTS = "c701040c69665f696e5f6f6374657473076966496e64657801330d69665f6f75745f6f6374657473"
+            + "023f0ed80403003ff800000000000080a0abfef962e8a7abfef962010102"
+            + "370ed8040303f4a3abfef962e8a7abfef962010102";
+
+    /**
+     * 测试同一任务实例、同一资产的数据点按信封格式编码
+     */
+    @Test
+    public void testEncodeEnvelope() {
+        assertEquals(ENVELOPE, hex(MetricWireEncoder.encodeEnvelope(points())));
+    }
+
+    /**
+     * 测试逐点编码
+     */
+    @Test
+    public void testEncodePoints() {
+        assertEquals(POINTS, hex(MetricWireEncoder.encode(points())));
+    }
+
+    /**
+     * 测试资产不一致时信封退回版本1，且线程复用的字典在两次编码之间被清空
+     */
+    @Test
+    public void testEnvelopeFallback() {
+        List<MetricDataDTO> points = points();
+        points.get(1).setAssetId(99L);
+        byte[] message = MetricWireEncoder.encodeEnvelope(points);
+        assertEquals(MetricWireEncoder.MAGIC, message[0]);
+        assertEquals(MetricWireEncoder.VERSION_1, message[1]);
+
+        assertEquals(ENVELOPE, hex(MetricWireEncoder.encodeEnvelope(points())));
+    }
+
+    /**
+     * 测试超过初始缓冲区的消息和重复字符串只写入一次字典
+     */
+    @Test
+    public void testLargeMessage() {
+        List<MetricDataDTO> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            MetricDataDTO point = point("if_in_octets", (double) i, 1700000000000L);
+            point.setMetricLabels(Collections.singletonMap("ifIndex", String.valueOf(i % 10)));
+            points.add(point);
+        }
+        byte[] message = MetricWireEncoder.encodeEnvelope(points);
+
+        assertEquals(MetricWireEncoder.VERSION_2, message[1]);
+        // 字典: 指标名、标签键、10个标签值
+        assertEquals(12, message[2]);
+        assertEquals(ENVELOPE, hex(MetricWireEncoder.encodeEnvelope(points())));
+    }
+
+    private static List<MetricDataDTO> points() {
+        return new ArrayList<>(Arrays.asList(
+                point("if_in_octets", 1.5, 1700000000000L),
+                point("if_out_octets", null, 1700000000250L)));
+    }
+
+    private static MetricDataDTO point(String metricName, Double value, long collectTime) {
+        MetricDataDTO point = new MetricDataDTO();
+        point.setTaskId(7L);
+        point.setInstanceId(300L);
+        point.setAssetId(-2L);
+        point.setMetricName(metricName);
+        point.setMetricValue(value);
+        point.setCollectTime(time(collectTime));
+        point.setCreateTime(time(1700000000500L));
+        point.setMetricLabels(Collections.singletonMap("ifIndex", "3"));
+        return point;
+    }
+
+    private static LocalDateTime time(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static String hex(byte[] data) {
+        StringBuilder builder = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,155 @@
+package com.skyi.collector.service.collector.counter;
+
+import com.skyi.collector.dto.MetricDataDTO;
+import com.skyi.collector.service.collector.snmp.SnmpVariables;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.smi.Counter64;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 计数器转速率测试
+ */
+public class CounterRateConverterTest {
+
+    private static final long BASE_TIME = 1700000000000L;
+
+    private CounterRateConverter converter;
+
+    @BeforeEach
+    public void setUp() {
+        converter = new CounterRateConverter();
+        ReflectionTestUtils.setField(converter, "enabled", true);
+        ReflectionTestUtils.setField(converter, "mode", "both");
+        ReflectionTestUtils.setField(converter, "suffix", "_rate");
+        ReflectionTestUtils.setField(converter, "stateIdleMs", 3600000L);
+    }
+
+    /**
+     * 测试速率按两次采集时间之差计算，首次采样和时间未前进时无法计算
+     */
+    @Test
+    public void testRate() {
+        assertTrue(Double.isNaN(converter.computeRate(counter("if_in_octets", 1000, 32, 0))));
+        assertEquals(50, converter.computeRate(counter("if_in_octets", 1500, 32, 10_000)), 1e-9);
+        assertTrue(Double.isNaN(converter.computeRate(counter("if_in_octets", 1600, 32, 10_000))));
+        assertEquals(20, converter.computeRate(counter("if_in_octets", 1700, 32, 15_000)), 1e-9);
+    }
+
+    /**
+     * 测试32位计数器回绕按2^32补齐，大幅回退视为重启
+     */
+    @Test
+    public void testCounter32Wrap() {
+        converter.computeRate(counter("wrap", 4294967000.0, 32, 0));
+        // 回绕前296，回绕后200
+        assertEquals(49.6, converter.computeRate(counter("wrap", 200, 32, 10_000)), 1e-9);
+
+        converter.computeRate(counter("reset", 1_000_000_000, 32, 0));
+        assertTrue(Double.isNaN(converter.computeRate(counter("reset", 10, 32, 10_000))));
+        // 重启后以本次为新基准
+        assertEquals(1, converter.computeRate(counter("reset", 20, 32, 20_000)), 1e-9);
+    }
+
+    /**
+     * 测试64位计数器回绕按2^64补齐，按无符号数读取超过2^63的值
+     */
+    @Test
+    public void testCounter64Wrap() {
+        double nearMax = SnmpVariables.unsignedValue(new Counter64(-4096L));
+        assertEquals(18446744073709547520.0, nearMax);
+
+        converter.computeRate(counter("wrap", nearMax, 64, 0));
+        assertEquals(8192, converter.computeRate(counter("wrap", 4096, 64, 1_000)), 1e-9);
+
+        // 远离上限的回退视为重启
+        converter.computeRate(counter("reset", 1e12, 64, 0));
+        assertTrue(Double.isNaN(converter.computeRate(counter("reset", 5, 64, 1_000))));
+
+        // 32位的回绕范围不适用于64位计数器
+        converter.computeRate(counter("bits", 4294967000.0, 64, 0));
+        assertTrue(Double.isNaN(converter.computeRate(counter("bits", 200, 64, 10_000))));
+    }
+
+    /**
+     * 测试标签不同的序列分别计算
+     */
+    @Test
+    public void testSeriesByLabels() {
+        MetricDataDTO first = counter("if_in_octets", 0, 64, 0);
+        first.setMetricLabels(Collections.singletonMap("index", "1"));
+        MetricDataDTO second = counter("if_in_octets", 1000, 64, 0);
+        second.setMetricLabels(Collections.singletonMap("index", "2"));
+        converter.computeRate(first);
+        converter.computeRate(second);
+
+        first = counter("if_in_octets", 100, 64, 1_000);
+        first.setMetricLabels(Collections.singletonMap("index", "1"));
+        second = counter("if_in_octets", 3000, 64, 1_000);
+        second.setMetricLabels(Collections.singletonMap("index", "2"));
+        assertEquals(100, converter.computeRate(first), 1e-9);
+        assertEquals(2000, converter.computeRate(second), 1e-9);
+    }
+
+    /**
+     * 测试清理长时间未出现的序列后重新以首次采样开始，且状态表扩容后序列仍可查到
+     */
+    @Test
+    public void testPurgeIdle() {
+        for (int i = 0; i < 1000; i++) {
+            converter.computeRate(counter("series_" + i, i, 64, 0));
+        }
+        assertEquals(1, converter.computeRate(counter("series_999", 1000, 64, 1_000)), 1e-9);
+
+        converter.purgeIdle();
+        assertEquals(1, converter.computeRate(counter("series_0", 1, 64, 1_000)), 1e-9);
+
+        ReflectionTestUtils.setField(converter, "stateIdleMs", -60_000L);
+        converter.purgeIdle();
+        assertTrue(Double.isNaN(converter.computeRate(counter("series_1", 2, 64, 1_000))));
+    }
+
+    /**
+     * 测试转换结果：非计数器原样保留，both模式保留原始计数器，rate模式首次采样不输出
+     */
+    @Test
+    public void testConvert() {
+        MetricDataDTO gauge = counter("cpu_usage", 12, 32, 0);
+        gauge.setCounterBits(null);
+
+        List<MetricDataDTO> first = converter.convert(Arrays.asList(gauge, counter("if_in_octets", 0, 32, 0)));
+        assertEquals(2, first.size());
+
+        List<MetricDataDTO> second = converter.convert(Arrays.asList(gauge, counter("if_in_octets", 100, 32, 1_000)));
+        assertEquals(3, second.size());
+        MetricDataDTO rate = second.get(2);
+        assertEquals("if_in_octets_rate", rate.getMetricName());
+        assertEquals(100, rate.getMetricValue(), 1e-9);
+        assertEquals(second.get(1).getCollectTime(), rate.getCollectTime());
+        assertNull(rate.getCounterBits());
+
+        ReflectionTestUtils.setField(converter, "mode", "rate");
+        List<MetricDataDTO> rateOnly = converter.convert(Collections.singletonList(counter("if_out_octets", 0, 32, 0)));
+        assertTrue(rateOnly.isEmpty());
+    }
+
+    private static MetricDataDTO counter(String metricName, double value, int bits, long offsetMillis) {
+        MetricDataDTO metricData = new MetricDataDTO();
+        metricData.setTaskId(1L);
+        metricData.setAssetId(2L);
+        metricData.setMetricName(metricName);
+        metricData.setMetricValue(value);
+        metricData.setCounterBits(bits);
+        metricData.setCollectTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(BASE_TIME + offsetMillis), ZoneId.systemDefault()));
+        return metricData;
+    }
+}
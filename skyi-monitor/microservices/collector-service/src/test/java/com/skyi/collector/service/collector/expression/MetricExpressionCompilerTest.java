@@ -0,0 +1,124 @@
+package com.skyi.collector.service.collector.expression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 指标表达式编译与求值测试
+ */
+public class MetricExpressionCompilerTest {
+
+    private final ExpressionScope scope = new ExpressionScope();
+
+    /**
+     * 测试运算符优先级、括号、一元负号和取模
+     */
+    @Test
+    public void testArithmetic() {
+        assertEquals(14, eval("2 + 3 * 4", 0));
+        assertEquals(20, eval("(2 + 3) * 4", 0));
+        assertEquals(-5, eval("-value", 5));
+        assertEquals(1, eval("x % 3", 7));
+        assertEquals(2.5, eval("value / 4", 10));
+        assertFalse(MetricExpressionCompiler.compile("value * 8").isStateful());
+    }
+
+    /**
+     * 测试单位后缀和内置函数
+     */
+    @Test
+    public void testUnitsAndFunctions() {
+        assertEquals(2, eval("value / 1Ki", 2048));
+        assertEquals(3, eval("value / 1M", 3_000_000));
+        assertEquals(4, eval("abs(value)", -4));
+        assertEquals(3, eval("round(value)", 2.6));
+        assertEquals(2, eval("floor(value)", 2.6));
+        assertEquals(3, eval("ceil(value)", 2.2));
+        assertEquals(1, eval("min(value, 1)", 5));
+        assertEquals(5, eval("max(value, 1)", 5));
+    }
+
+    /**
+     * 测试引用兄弟路径，相同路径只占一个槽位，缺失的引用值为NaN
+     */
+    @Test
+    public void testReferences() {
+        MetricExpression expression = MetricExpressionCompiler.compile(
+                "(${.1.3.6.1.4.1.2021.4.5.0} - value) / ${.1.3.6.1.4.1.2021.4.5.0} * 100");
+        assertEquals(1, expression.getReferences().size());
+
+        assertEquals(75, expression.evaluate(scope.reset(25, 0, new double[]{100}, null)), 1e-9);
+        assertTrue(Double.isNaN(expression.evaluate(scope.reset(25, 0, new double[]{Double.NaN}, null))));
+        assertTrue(Double.isNaN(expression.evaluate(scope.reset(25, 0, null, null))));
+    }
+
+    /**
+     * 测试rate按两次采集时间之差归一化到每秒，首次采样、时间未前进和计数器回退时为NaN
+     */
+    @Test
+    public void testRate() {
+        MetricExpression expression = MetricExpressionCompiler.compile("rate(value) * 8");
+        assertTrue(expression.isStateful());
+        double[] state = new double[expression.getStateSize()];
+
+        assertTrue(Double.isNaN(evaluate(expression, 1000, 10_000, state)));
+        // 10秒增加500
+        assertEquals(400, evaluate(expression, 1500, 20_000, state), 1e-9);
+        // 采集时间未前进
+        assertTrue(Double.isNaN(evaluate(expression, 1600, 20_000, state)));
+        // 计数器重置，以本次为新基准
+        assertTrue(Double.isNaN(evaluate(expression, 100, 25_000, state)));
+        assertEquals(16, evaluate(expression, 110, 30_000, state), 1e-9);
+    }
+
+    /**
+     * 测试delta允许为负，与采集间隔无关
+     */
+    @Test
+    public void testDelta() {
+        MetricExpression expression = MetricExpressionCompiler.compile("delta(value)");
+        double[] state = new double[expression.getStateSize()];
+
+        assertTrue(Double.isNaN(evaluate(expression, 50, 1_000, state)));
+        assertEquals(-20, evaluate(expression, 30, 2_000, state), 1e-9);
+        assertEquals(5, evaluate(expression, 35, 60_000, state), 1e-9);
+    }
+
+    /**
+     * 测试同一表达式中的多个有状态函数各自占用状态，不同序列的状态互不影响
+     */
+    @Test
+    public void testIndependentState() {
+        MetricExpression expression = MetricExpressionCompiler.compile("rate(value) + delta(value)");
+        double[] first = new double[expression.getStateSize()];
+        double[] second = new double[expression.getStateSize()];
+
+        evaluate(expression, 0, 0, first);
+        evaluate(expression, 100, 0, second);
+        // 第一个序列10秒增加100: rate=10, delta=100
+        assertEquals(110, evaluate(expression, 100, 10_000, first), 1e-9);
+        // 第二个序列2秒增加10: rate=5, delta=10
+        assertEquals(15, evaluate(expression, 110, 2_000, second), 1e-9);
+    }
+
+    /**
+     * 测试语法错误
+     */
+    @Test
+    public void testSyntaxErrors() {
+        for (String source : Arrays.asList("", "value +", "(value", "value)", "unknown(value)", "rate()", "${}", "value $")) {
+            assertThrows(IllegalArgumentException.class, () -> MetricExpressionCompiler.compile(source), source);
+        }
+    }
+
+    private double eval(String source, double value) {
+        return MetricExpressionCompiler.compile(source).evaluate(scope.reset(value, 0, null, null));
+    }
+
+    private double evaluate(MetricExpression expression, double value, long collectTime, double[] state) {
+        return expression.evaluate(scope.reset(value, collectTime, null, state));
+    }
+}
@@ -0,0 +1,287 @@
+package com.skyi.collector.service.collector.snmp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.PDU;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * SNMP批量请求测试
+ * 会话池由内存中的模拟设备应答，模拟设备按GET/GETNEXT/GETBULK语义遍历MIB，
+ * 响应的变量绑定数超过上限时返回tooBig
+ */
+public class SnmpBulkRequesterTest {
+
+    private static final OID IF_DESCR = new OID("1.3.6.1.2.1.2.2.1.2");
+    private static final OID IF_IN_OCTETS = new OID("1.3.6.1.2.1.2.2.1.10");
+    private static final OID IF_OUT_OCTETS = new OID("1.3.6.1.2.1.2.2.1.16");
+    private static final OID SYS_UP_TIME = new OID("1.3.6.1.2.1.1.3.0");
+    private static final int INTERFACES = 30;
+
+    private final FakeAgent agent = new FakeAgent();
+
+    private SnmpBulkRequester requester;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 1; i <= INTERFACES; i++) {
+            agent.mib.put(new OID(IF_DESCR).append(i), new OctetString("eth" + i));
+            agent.mib.put(new OID(IF_IN_OCTETS).append(i), new Counter32(i * 100L));
+        }
+        agent.mib.put(SYS_UP_TIME, new Counter32(12345));
+        // 接口表之后的其他子树，遍历不应越界读取
+        agent.mib.put(new OID("1.3.6.1.2.1.4.1.0"), new Counter32(1));
+
+        SnmpSessionPool sessionPool = mock(SnmpSessionPool.class);
+        when(sessionPool.createPdu(anyInt(), any())).thenAnswer(invocation -> {
+            PDU pdu = new PDU();
+            pdu.setType(invocation.getArgument(0));
+            return pdu;
+        });
+        when(sessionPool.send(any(), any())).thenAnswer(invocation -> agent.handle(invocation.getArgument(0)));
+
+        requester = new SnmpBulkRequester();
+        ReflectionTestUtils.setField(requester, "sessionPool", sessionPool);
+        ReflectionTestUtils.setField(requester, "maxOidsPerPdu", 60);
+        ReflectionTestUtils.setField(requester, "maxRepetitions", 25);
+        ReflectionTestUtils.setField(requester, "maxWalkRows", 10000);
+    }
+
+    /**
+     * 测试GETBULK同时遍历多列，每列按OID递增返回全部行，越出子树的列单独结束
+     */
+    @Test
+    public void testBulkWalk() {
+        Map<OID, List<VariableBinding>> columns = requester.walk(
+                Arrays.asList(IF_DESCR, IF_IN_OCTETS, IF_OUT_OCTETS), target(SnmpConstants.version2c)).join();
+
+        assertColumn(columns.get(IF_DESCR), IF_DESCR, INTERFACES);
+        assertColumn(columns.get(IF_IN_OCTETS), IF_IN_OCTETS, INTERFACES);
+        assertTrue(columns.get(IF_OUT_OCTETS).isEmpty());
+        assertEquals("eth7", columns.get(IF_DESCR).get(6).getVariable().toString());
+        assertTrue(agent.requests.stream().allMatch(pdu -> pdu.getType() == PDU.GETBULK));
+        // 3列时按报文大小预算估算的重复次数小于配置上限
+        int repetitions = agent.requests.get(0).getMaxRepetitions();
+        assertTrue(repetitions > 1 && repetitions < 25, "重复次数: " + repetitions);
+    }
+
+    /**
+     * 测试响应过大时减半重复次数后从同一游标继续，结果不重复不遗漏
+     */
+    @Test
+    public void testBulkWalkTooBig() {
+        agent.maxResponseBindings = 8;
+        Map<OID, List<VariableBinding>> columns = requester.walk(
+                Arrays.asList(IF_DESCR, IF_IN_OCTETS), target(SnmpConstants.version2c)).join();
+
+        assertColumn(columns.get(IF_DESCR), IF_DESCR, INTERFACES);
+        assertColumn(columns.get(IF_IN_OCTETS), IF_IN_OCTETS, INTERFACES);
+        // 重复次数逐次减半，直到2列 * 重复次数不超过8个变量绑定，之后不再继续减小
+        assertFalse(agent.tooBig.isEmpty());
+        int accepted = agent.requests.stream().filter(pdu -> !agent.tooBig.contains(pdu))
+                .mapToInt(PDU::getMaxRepetitions).min().orElse(0);
+        assertTrue(accepted * 2 <= 8 && accepted * 4 > 8, "重复次数: " + accepted);
+    }
+
+    /**
+     * 测试重复次数减到1仍然过大时逐列独立遍历
+     */
+    @Test
+    public void testBulkWalkDetachColumns() {
+        agent.maxResponseBindings = 1;
+        Map<OID, List<VariableBinding>> columns = requester.walk(
+                Arrays.asList(IF_DESCR, IF_IN_OCTETS), target(SnmpConstants.version2c)).join();
+
+        assertColumn(columns.get(IF_DESCR), IF_DESCR, INTERFACES);
+        assertColumn(columns.get(IF_IN_OCTETS), IF_IN_OCTETS, INTERFACES);
+    }
+
+    /**
+     * 测试v1使用GETNEXT遍历，到达MIB末尾的noSuchName结束对应列
+     */
+    @Test
+    public void testGetNextWalk() {
+        agent.version1 = true;
+        agent.mib.tailMap(new OID("1.3.6.1.2.1.4"), true).clear();
+        Map<OID, List<VariableBinding>> columns = requester.walk(
+                Arrays.asList(IF_DESCR, IF_IN_OCTETS), target(SnmpConstants.version1)).join();
+
+        assertColumn(columns.get(IF_DESCR), IF_DESCR, INTERFACES);
+        assertColumn(columns.get(IF_IN_OCTETS), IF_IN_OCTETS, INTERFACES);
+        assertTrue(agent.requests.stream().allMatch(pdu -> pdu.getType() == PDU.GETNEXT));
+    }
+
+    /**
+     * 测试单列行数上限
+     */
+    @Test
+    public void testWalkRowLimit() {
+        ReflectionTestUtils.setField(requester, "maxWalkRows", 10);
+        Map<OID, List<VariableBinding>> columns = requester.walk(
+                Arrays.asList(IF_DESCR), target(SnmpConstants.version2c)).join();
+
+        assertEquals(10, columns.get(IF_DESCR).size());
+    }
+
+    /**
+     * 测试标量GET按单PDU数量上限拆分，不存在的OID不出现在结果中
+     */
+    @Test
+    public void testGetSplit() {
+        ReflectionTestUtils.setField(requester, "maxOidsPerPdu", 10);
+        List<OID> oids = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            oids.add(new OID(IF_IN_OCTETS).append(i));
+        }
+        oids.add(new OID(IF_IN_OCTETS).append(999));
+
+        Map<OID, VariableBinding> values = requester.get(oids, target(SnmpConstants.version2c)).join();
+
+        assertEquals(25, values.size());
+        assertEquals(2500, values.get(new OID(IF_IN_OCTETS).append(25)).getVariable().toLong());
+        assertEquals(3, agent.requests.size());
+        assertTrue(agent.requests.stream().allMatch(pdu -> pdu.size() <= 10));
+    }
+
+    /**
+     * 测试标量GET响应过大时对半拆分重试
+     */
+    @Test
+    public void testGetTooBig() {
+        agent.maxResponseBindings = 4;
+        List<OID> oids = new ArrayList<>();
+        for (int i = 1; i <= INTERFACES; i++) {
+            oids.add(new OID(IF_DESCR).append(i));
+        }
+
+        Map<OID, VariableBinding> values = requester.get(oids, target(SnmpConstants.version2c)).join();
+
+        assertEquals(INTERFACES, values.size());
+        assertTrue(agent.requests.stream().anyMatch(pdu -> pdu.size() == INTERFACES));
+        assertTrue(agent.requests.stream().allMatch(pdu -> pdu.size() <= 4 || agent.tooBig.contains(pdu)));
+    }
+
+    /**
+     * 测试v1设备因不存在的OID使整个PDU失败时，剔除该OID后重试其余部分
+     */
+    @Test
+    public void testGetV1NoSuchName() {
+        agent.version1 = true;
+        Map<OID, VariableBinding> values = requester.get(
+                Arrays.asList(SYS_UP_TIME, new OID("1.3.6.1.2.1.1.99.0"), new OID(IF_IN_OCTETS).append(1)),
+                target(SnmpConstants.version1)).join();
+
+        assertEquals(2, values.size());
+        assertEquals(12345, values.get(SYS_UP_TIME).getVariable().toLong());
+        assertEquals(2, agent.requests.size());
+    }
+
+    private static void assertColumn(List<VariableBinding> rows, OID root, int expected) {
+        assertEquals(expected, rows.size(), "列" + root);
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(new OID(root).append(i + 1), rows.get(i).getOid());
+        }
+    }
+
+    private static CommunityTarget<UdpAddress> target(int version) {
+        CommunityTarget<UdpAddress> target = new CommunityTarget<>(
+                new UdpAddress("127.0.0.1/161"), new OctetString("public"));
+        target.setVersion(version);
+        target.setMaxSizeRequestPDU(1472);
+        return target;
+    }
+
+    /**
+     * 内存中的模拟设备
+     */
+    private static final class FakeAgent {
+
+        private final NavigableMap<OID, Variable> mib = new TreeMap<>();
+        private final List<PDU> requests = new ArrayList<>();
+        private final List<PDU> tooBig = new ArrayList<>();
+        private int maxResponseBindings = Integer.MAX_VALUE;
+        /**
+         * v1设备以noSuchName错误表示OID不存在或已到达MIB末尾，整个PDU失败
+         */
+        private boolean version1;
+
+        synchronized CompletableFuture<ResponseEvent<?>> handle(PDU request) {
+            requests.add(request);
+            PDU response = new PDU();
+            response.setType(PDU.RESPONSE);
+            response.setRequestID(request.getRequestID());
+            if (request.getType() == PDU.GETBULK) {
+                List<? extends VariableBinding> cursors = request.getVariableBindings();
+                OID[] positions = new OID[cursors.size()];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = cursors.get(i).getOid();
+                }
+                for (int row = 0; row < request.getMaxRepetitions(); row++) {
+                    for (int i = 0; i < positions.length; i++) {
+                        OID next = positions[i] != null ? mib.higherKey(positions[i]) : null;
+                        if (next == null) {
+                            response.add(new VariableBinding(positions[i] != null ? positions[i] : cursors.get(i).getOid(),
+                                    Null.endOfMibView));
+                            positions[i] = null;
+                        } else {
+                            response.add(new VariableBinding(next, mib.get(next)));
+                            positions[i] = next;
+                        }
+                    }
+                }
+            } else {
+                List<? extends VariableBinding> bindings = request.getVariableBindings();
+                for (int i = 0; i < bindings.size(); i++) {
+                    OID oid = bindings.get(i).getOid();
+                    OID found = request.getType() == PDU.GETNEXT ? mib.higherKey(oid) : (mib.containsKey(oid) ? oid : null);
+                    if (found == null) {
+                        if (version1) {
+                            response.clear();
+                            response.setErrorStatus(PDU.noSuchName);
+                            response.setErrorIndex(i + 1);
+                            return respond(request, response);
+                        }
+                        response.add(new VariableBinding(oid, Null.noSuchObject));
+                    } else {
+                        response.add(new VariableBinding(found, mib.get(found)));
+                    }
+                }
+            }
+
+            if (response.size() > maxResponseBindings) {
+                tooBig.add(request);
+                response.clear();
+                response.setErrorStatus(PDU.tooBig);
+            }
+            return respond(request, response);
+        }
+
+        private CompletableFuture<ResponseEvent<?>> respond(PDU request, PDU response) {
+            return CompletableFuture.completedFuture(new ResponseEvent<>(this, null, request, response, null));
+        }
+    }
+}
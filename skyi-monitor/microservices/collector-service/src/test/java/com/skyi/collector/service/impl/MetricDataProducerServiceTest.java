@@ -0,0 +1,116 @@
+package com.skyi.collector.service.impl;
+
+import com.skyi.collector.dto.MetricDataDTO;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 指标信封发送测试
+ */
+public class MetricDataProducerServiceTest {
+
+    private static final String TOPIC = "collector-metric-data";
+
+    private MetricDataProducerService producerService;
+
+    private KafkaTemplate<String, byte[]> binaryKafkaTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        binaryKafkaTemplate = mock(KafkaTemplate.class);
+        producerService = new MetricDataProducerService();
+        ReflectionTestUtils.setField(producerService, "binaryKafkaTemplate", binaryKafkaTemplate);
+        ReflectionTestUtils.setField(producerService, "metricDataTopic", TOPIC);
+        ReflectionTestUtils.setField(producerService, "batchSize", 3);
+        ReflectionTestUtils.setField(producerService, "retries", 3);
+        ReflectionTestUtils.setField(producerService, "envelopeEnabled", true);
+    }
+
+    /**
+     * 测试按任务实例和资产分组，每组每batchSize个数据点一条消息，消息键为资产ID
+     */
+    @Test
+    public void testGroupEnvelopes() {
+        when(binaryKafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenAnswer(invocation -> sent());
+
+        List<MetricDataDTO> points = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            points.add(point(1L, "cpu_" + i));
+        }
+        points.add(point(2L, "cpu"));
+        points.add(null);
+
+        assertEquals(5, producerService.sendMetricDataBatch(points));
+
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(binaryKafkaTemplate, times(3)).send(eq(TOPIC), keys.capture(), any(byte[].class));
+        assertEquals(List.of("1", "1", "2"), keys.getAllValues());
+        assertEquals(5L, producerService.getStats().get("successSent"));
+    }
+
+    /**
+     * 测试提交到生产者失败时有限次重试，成功后不计为失败
+     */
+    @Test
+    public void testRetryEnvelope() {
+        when(binaryKafkaTemplate.send(anyString(), anyString(), any(byte[].class)))
+                .thenThrow(new IllegalStateException("buffer exhausted"))
+                .thenAnswer(invocation -> sent());
+
+        assertEquals(1, producerService.sendMetricDataBatch(List.of(point(1L, "cpu"))));
+        verify(binaryKafkaTemplate, times(2)).send(anyString(), anyString(), any(byte[].class));
+        assertEquals(0L, producerService.getStats().get("failedSent"));
+    }
+
+    /**
+     * 测试重试次数用尽后计为失败，未开启生产者重试时只尝试一次
+     */
+    @Test
+    public void testRetryExhausted() {
+        when(binaryKafkaTemplate.send(anyString(), anyString(), any(byte[].class)))
+                .thenThrow(new IllegalStateException("buffer exhausted"));
+        ReflectionTestUtils.setField(producerService, "retries", 0);
+
+        assertEquals(0, producerService.sendMetricDataBatch(List.of(point(1L, "cpu"))));
+        verify(binaryKafkaTemplate, times(1)).send(anyString(), anyString(), any(byte[].class));
+        assertEquals(1L, producerService.getStats().get("failedSent"));
+    }
+
+    private static SettableListenableFuture<SendResult<String, byte[]>> sent() {
+        SettableListenableFuture<SendResult<String, byte[]>> future = new SettableListenableFuture<>();
+        future.set(new SendResult<>(null, new RecordMetadata(new TopicPartition(TOPIC, 0), 0, 0, 0, 0, 0)));
+        return future;
+    }
+
+    private static MetricDataDTO point(Long assetId, String metricName) {
+        MetricDataDTO point = new MetricDataDTO();
+        point.setTaskId(7L);
+        point.setInstanceId(300L);
+        point.setAssetId(assetId);
+        point.setMetricName(metricName);
+        point.setMetricValue(1.0);
+        point.setCollectTime(LocalDateTime.now());
+        return point;
+    }
+}
@@ -0,0 +1,23 @@
+package com.skyi.processor.client;
+
+import com.skyi.processor.dto.MetricDefinitionDTO;
+import com.skyi.processor.dto.Result;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+
+import java.util.List;
+
+/**
+ * 采集服务客户端
+ */
+@FeignClient(name = "collector-service", url = "${processor.collector.url:}")
+public interface CollectorServiceClient {
+
+    /**
+     * 获取全部指标定义
+     *
+     * @return 指标定义列表
+     */
+    @GetMapping("/collector/metrics/export")
+    Result<List<MetricDefinitionDTO>> exportMetrics();
+}
@@ -1,16 +1,27 @@
 package com.skyi.processor.config;
 
+import com.skyi.processor.service.consumer.WindowRebuildListener;
+import com.skyi.processor.service.storage.RejectedPointsException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
-import org.springframework.util.backoff.FixedBackOff;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+
+import java.util.Map;
 
 /**
  * Kafka配置类
@@ -26,28 +37,70 @@ public class KafkaConfig {
     @Value("${processor.kafka.topics.collection-status}")
     private String collectionStatusTopic;
     
+    @Value("${processor.kafka.topics.dead-letter-suffix:.DLT}")
+    private String deadLetterSuffix;
+    
+    @Value("${spring.kafka.listener.concurrency:3}")
+    private int concurrency;
+    
+    @Value("${processor.kafka.max-retries:5}")
+    private int maxRetries;
+    
+    @Value("${processor.kafka.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+    
+    @Value("${processor.kafka.max-retry-backoff-ms:30000}")
+    private long maxRetryBackoffMs;
+    
+    /**
+     * 死信发布器，处理失败的原始消息原样(含异常信息头)发到 原主题+后缀 的死信主题，由Kafka选择分区
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(KafkaProperties kafkaProperties) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties();
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props));
+        return new DeadLetterPublishingRecoverer(template,
+                (record, exception) -> new TopicPartition(record.topic() + deadLetterSuffix, -1));
+    }
+    
     /**
      * 配置Kafka监听器工厂
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory(
-            ConsumerFactory<String, String> consumerFactory) {
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> consumerFactory,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+            WindowRebuildListener windowRebuildListener) {
         
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = 
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = 
                 new ConcurrentKafkaListenerContainerFactory<>();
         
         factory.setConsumerFactory(consumerFactory);
         
-        // 配置手动确认模式
+        // 批量监听，每次poll的消息(最多max-poll-records条)作为一批交给监听器
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        
+        // 配置手动确认模式，由监听器在数据写入存储后确认
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         
-        // 配置错误处理器，出错后等待1秒，最多重试3次
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
-                (record, exception) -> {
-                    log.error("处理消息失败: {}, 异常: {}", record, exception.getMessage(), exception);
-                },
-                new FixedBackOff(1000L, 3L)
-        );
+        // 分区分配后重放消息重建预聚合窗口，分区收回时丢弃其未关闭的窗口
+        factory.getContainerProperties().setConsumerRebalanceListener(windowRebuildListener);
+        
+        // 配置错误处理器：整批按指数退避重试有限次数，仍失败的消息发往死信主题后继续消费；
+        // 数据被存储拒绝时重试不会成功，整批直接进入死信主题，避免阻塞分区
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(Math.max(0, maxRetries));
+        backOff.setInitialInterval(retryBackoffMs);
+        backOff.setMultiplier(2.0);
+        backOff.setMaxInterval(Math.max(retryBackoffMs, maxRetryBackoffMs));
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, exception) -> {
+            log.error("消息处理失败，发送到死信主题: topic={}, partition={}, offset={}, 原因: {}",
+                    record.topic(), record.partition(), record.offset(), exception.getMessage());
+            deadLetterPublishingRecoverer.accept(record, exception);
+        }, backOff);
+        errorHandler.addNotRetryableExceptions(RejectedPointsException.class);
         
         factory.setCommonErrorHandler(errorHandler);
         return factory;
@@ -113,6 +113,47 @@ public class MetricController {
         return ResponseEntity.ok(result);
     }
     
+    /**
+     * 查询分位数
+     *
+     * @param metricName 指标名称
+     * @param assetId 资产ID（可选，不指定时合并所有序列）
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param quantile 分位（0到1之间，默认0.99）
+     * @param tags 标签（可选，格式：key1=value1,key2=value2）
+     * @return 分位数
+     */
+    @GetMapping("/quantile")
+    public ResponseEntity<Map<String, Object>> queryQuantile(
+            @RequestParam String metricName,
+            @RequestParam(required = false) Long assetId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "0.99") double quantile,
+            @RequestParam(required = false) String tags) {
+        
+        Instant startInstant = startTime.atZone(ZoneId.systemDefault()).toInstant();
+        Instant endInstant = endTime.atZone(ZoneId.systemDefault()).toInstant();
+        
+        Map<String, String> tagMap = parseTags(tags);
+        if (assetId != null) {
+            tagMap.put("assetId", assetId.toString());
+        }
+        
+        log.debug("查询分位数: metricName={}, startTime={}, endTime={}, quantile={}, tags={}", 
+                metricName, startInstant, endInstant, quantile, tagMap);
+        
+        Double value = metricStorageService.queryQuantile(metricName, tagMap, startInstant, endInstant, quantile);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("metricName", metricName);
+        response.put("quantile", quantile);
+        response.put("value", value);
+        
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * 手动存储指标数据
      *
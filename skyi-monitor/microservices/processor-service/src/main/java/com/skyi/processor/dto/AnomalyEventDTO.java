@@ -0,0 +1,71 @@
+package com.skyi.processor.dto;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 基线偏离事件DTO
+ * 数据点偏离序列在线基线超过阈值时发送到pattern-alert主题
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnomalyEventDTO {
+    /**
+     * 事件类型
+     */
+    private String eventType;
+
+    /**
+     * 资产ID
+     */
+    private Long assetId;
+
+    /**
+     * 指标名称
+     */
+    private String metricName;
+
+    /**
+     * 指标值
+     */
+    private Double value;
+
+    /**
+     * 基线预测值
+     */
+    private Double expected;
+
+    /**
+     * 基线标准差
+     */
+    private Double stddev;
+
+    /**
+     * 偏离程度，|值 - 预测值| / 标准差
+     */
+    private Double score;
+
+    /**
+     * 事件时间
+     */
+    @JSONField(format = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime timestamp;
+
+    /**
+     * 告警级别：CRITICAL、WARNING、INFO
+     */
+    private String severity;
+
+    /**
+     * 额外标签
+     */
+    private Map<String, Object> tags;
+}
@@ -0,0 +1,42 @@
+package com.skyi.processor.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 指标定义DTO
+ * 只包含阈值规则用到的字段，其余字段反序列化时忽略
+ */
+@Data
+@NoArgsConstructor
+public class MetricDefinitionDTO {
+    /**
+     * 指标ID
+     */
+    private Long id;
+
+    /**
+     * 指标编码
+     */
+    private String code;
+
+    /**
+     * 指标名称
+     */
+    private String name;
+
+    /**
+     * 阈值下限
+     */
+    private Double thresholdMin;
+
+    /**
+     * 阈值上限
+     */
+    private Double thresholdMax;
+
+    /**
+     * 状态：1-启用，0-禁用
+     */
+    private Integer status;
+}
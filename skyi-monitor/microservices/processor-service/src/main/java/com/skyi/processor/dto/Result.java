@@ -0,0 +1,32 @@
+package com.skyi.processor.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 其他服务的通用响应结果
+ *
+ * @param <T> 数据类型
+ */
+@Data
+@NoArgsConstructor
+public class Result<T> {
+    /**
+     * 状态码，200表示成功
+     */
+    private Integer code;
+
+    /**
+     * 消息
+     */
+    private String message;
+
+    /**
+     * 数据
+     */
+    private T data;
+
+    public boolean isSuccess() {
+        return code != null && code == 200;
+    }
+}
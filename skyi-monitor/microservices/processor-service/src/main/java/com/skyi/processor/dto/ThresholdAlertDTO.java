@@ -0,0 +1,76 @@
+package com.skyi.processor.dto;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 阈值告警DTO
+ * 与告警服务的ThresholdAlertDTO字段一致，发送到threshold-alert主题
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ThresholdAlertDTO {
+    /**
+     * 事件类型
+     */
+    private String eventType;
+
+    /**
+     * 资产ID
+     */
+    private Long assetId;
+
+    /**
+     * 资产名称
+     */
+    private String assetName;
+
+    /**
+     * 资产类型
+     */
+    private String assetType;
+
+    /**
+     * 指标名称
+     */
+    private String metricName;
+
+    /**
+     * 指标值
+     */
+    private Double value;
+
+    /**
+     * 阈值
+     */
+    private Double threshold;
+
+    /**
+     * 事件时间，ISO格式以便告警服务的Jackson解析
+     */
+    @JSONField(format = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime timestamp;
+
+    /**
+     * 持续时间（秒）
+     */
+    private Integer duration;
+
+    /**
+     * 告警级别：CRITICAL、WARNING、INFO
+     */
+    private String severity;
+
+    /**
+     * 额外标签
+     */
+    private Map<String, Object> tags;
+}
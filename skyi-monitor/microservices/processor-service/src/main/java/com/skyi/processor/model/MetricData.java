@@ -1,61 +1,339 @@
 package com.skyi.processor.model;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 
 import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * 指标数据模型
- * 用于存储指标数据
+ * 用于存储指标数据。
+ * 处理链路上每秒经过大量数据点，内部表示尽量少分配对象：数值为double、时间戳为毫秒long，
+ * 标签为按键排序的键值交替数组，指标名和标签取自{@link MetricDictionary}，额外字段在第一次添加时才创建。
+ * 热路径使用hasValue/doubleValue、timestampMillis、tagCount/tagKey/tagValue等方法；
+ * getValue、getTimestamp、getTags保留原有的类型，供接口序列化和非热路径代码使用，每次调用会创建包装对象或视图
  */
 @Data
 @NoArgsConstructor
 @Accessors(chain = true)
 public class MetricData {
+
+    /**
+     * 没有时间戳
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final String[] NO_TAGS = new String[0];
+
     /**
      * 指标名称
      */
     private String metricName;
-    
+
     /**
-     * 指标值
+     * 指标值，valuePresent为false时无值
      */
-    private Double value;
-    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private double value;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean valuePresent;
+
     /**
-     * 时间戳
+     * 时间戳(毫秒)
      */
-    private Instant timestamp;
-    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long timestampMillis = NO_TIMESTAMP;
+
     /**
      * 资产ID
      */
     private Long assetId;
-    
+
     /**
      * 采集任务ID
      */
     private Long taskId;
-    
+
     /**
      * 采集实例ID
      */
     private Long instanceId;
-    
+
     /**
      * 标签，用于描述指标的维度
+     * 键值交替存放并按键排序；数组创建后不再修改，添加标签时替换为新数组，可以在数据点之间共享
      */
-    private Map<String, String> tags = new HashMap<>();
-    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String[] tags = NO_TAGS;
+
     /**
      * 额外字段，用于存储其他信息
      */
-    private Map<String, Object> fields = new HashMap<>();
-    
+    private Map<String, Object> fields;
+
+    /**
+     * 预聚合粒度(如1m)，只有预聚合结果设置，存储按粒度选择保留策略；原始数据为null
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String rollup;
+
+    /**
+     * 来源Kafka分区，-1表示不是从Kafka消费的数据；与来源位点一起供有状态的处理阶段识别重新投递的数据
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private int sourcePartition = -1;
+
+    /**
+     * 来源Kafka位点，-1表示未知
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long sourceOffset = -1L;
+
+    /**
+     * 是否为重建聚合窗口而重放的已处理数据，重放的数据只参与预聚合，不再写入存储
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean replayed;
+
+    public Double getValue() {
+        return valuePresent ? value : null;
+    }
+
+    public MetricData setValue(Double value) {
+        this.valuePresent = value != null;
+        this.value = valuePresent ? value : 0;
+        return this;
+    }
+
+    /**
+     * 是否有指标值
+     */
+    public boolean hasValue() {
+        return valuePresent;
+    }
+
+    /**
+     * 指标值，无值时为0
+     */
+    public double doubleValue() {
+        return value;
+    }
+
+    /**
+     * 设置指标值
+     *
+     * @param value 指标值
+     * @return 当前对象
+     */
+    public MetricData doubleValue(double value) {
+        this.value = value;
+        this.valuePresent = true;
+        return this;
+    }
+
+    public Instant getTimestamp() {
+        return timestampMillis != NO_TIMESTAMP ? Instant.ofEpochMilli(timestampMillis) : null;
+    }
+
+    public MetricData setTimestamp(Instant timestamp) {
+        this.timestampMillis = timestamp != null ? timestamp.toEpochMilli() : NO_TIMESTAMP;
+        return this;
+    }
+
+    /**
+     * 是否有时间戳
+     */
+    public boolean hasTimestamp() {
+        return timestampMillis != NO_TIMESTAMP;
+    }
+
+    /**
+     * 时间戳(毫秒)，没有时间戳时为{@link #NO_TIMESTAMP}
+     */
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * 设置时间戳
+     *
+     * @param timestampMillis 时间戳(毫秒)
+     * @return 当前对象
+     */
+    public MetricData timestampMillis(long timestampMillis) {
+        this.timestampMillis = timestampMillis;
+        return this;
+    }
+
+    /**
+     * 预聚合粒度，原始数据为null
+     */
+    public String rollup() {
+        return rollup;
+    }
+
+    /**
+     * 标记为预聚合结果
+     *
+     * @param resolution 粒度标签，如1m
+     * @return 当前对象
+     */
+    public MetricData rollup(String resolution) {
+        this.rollup = resolution;
+        return this;
+    }
+
+    /**
+     * 记录数据来源的Kafka消息
+     *
+     * @param partition 分区
+     * @param offset 位点
+     * @param replayed 是否为重建聚合窗口而重放的消息
+     * @return 当前对象
+     */
+    public MetricData source(int partition, long offset, boolean replayed) {
+        this.sourcePartition = partition;
+        this.sourceOffset = offset;
+        this.replayed = replayed;
+        return this;
+    }
+
+    /**
+     * 来源Kafka分区，不是从Kafka消费的数据为-1
+     */
+    public int sourcePartition() {
+        return sourcePartition;
+    }
+
+    /**
+     * 来源Kafka位点，不是从Kafka消费的数据为-1
+     */
+    public long sourceOffset() {
+        return sourceOffset;
+    }
+
+    /**
+     * 是否为重建聚合窗口而重放的数据
+     */
+    public boolean replayed() {
+        return replayed;
+    }
+
+    /**
+     * 标签的只读视图
+     */
+    public Map<String, String> getTags() {
+        return new TagView(tags);
+    }
+
+    public MetricData setTags(Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            this.tags = NO_TAGS;
+            return this;
+        }
+        String[] pairs = new String[tags.size() * 2];
+        int count = 0;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (tag.getKey() != null) {
+                pairs[count++] = MetricDictionary.intern(tag.getKey());
+                pairs[count++] = MetricDictionary.intern(tag.getValue());
+            }
+        }
+        this.tags = sortPairs(count == pairs.length ? pairs : Arrays.copyOf(pairs, count));
+        return this;
+    }
+
+    /**
+     * 标签数量
+     */
+    public int tagCount() {
+        return tags.length >> 1;
+    }
+
+    /**
+     * 第index个标签的键，按键排序
+     */
+    public String tagKey(int index) {
+        return tags[index << 1];
+    }
+
+    /**
+     * 第index个标签的值
+     */
+    public String tagValue(int index) {
+        return tags[(index << 1) + 1];
+    }
+
+    /**
+     * 按键查找标签值
+     *
+     * @param key 标签键
+     * @return 标签值，不存在时返回null
+     */
+    public String tag(String key) {
+        if (key == null) {
+            return null;
+        }
+        int index = indexOf(tags, key);
+        return index >= 0 ? tags[index + 1] : null;
+    }
+
+    /**
+     * 标签数组(键值交替，按键排序)，调用方不能修改
+     */
+    public String[] tagPairs() {
+        return tags;
+    }
+
+    /**
+     * 直接使用键值交替的标签数组，数组归当前对象所有，之后不能再修改；
+     * 键为null的标签不允许出现，键和值应取自{@link MetricDictionary}
+     *
+     * @param pairs 标签数组，按键排序或未排序均可
+     * @return 当前对象
+     */
+    public MetricData tagPairs(String[] pairs) {
+        this.tags = pairs == null || pairs.length == 0 ? NO_TAGS : sortPairs(pairs);
+        return this;
+    }
+
+    /**
+     * 额外字段，没有字段时返回空Map
+     */
+    public Map<String, Object> getFields() {
+        return fields != null ? fields : Collections.emptyMap();
+    }
+
     /**
      * 添加标签
      *
@@ -64,13 +342,28 @@ public class MetricData {
      * @return 当前对象
      */
     public MetricData addTag(String key, String value) {
-        if (this.tags == null) {
-            this.tags = new HashMap<>();
+        if (key == null) {
+            return this;
         }
-        this.tags.put(key, value);
+        key = MetricDictionary.intern(key);
+        value = MetricDictionary.intern(value);
+        int index = indexOf(tags, key);
+        String[] pairs;
+        if (index >= 0) {
+            pairs = tags.clone();
+            pairs[index + 1] = value;
+        } else {
+            int insert = -(index + 1);
+            pairs = new String[tags.length + 2];
+            System.arraycopy(tags, 0, pairs, 0, insert);
+            pairs[insert] = key;
+            pairs[insert + 1] = value;
+            System.arraycopy(tags, insert, pairs, insert + 2, tags.length - insert);
+        }
+        this.tags = pairs;
         return this;
     }
-    
+
     /**
      * 添加字段
      *
@@ -85,7 +378,7 @@ public class MetricData {
         this.fields.put(key, value);
         return this;
     }
-    
+
     /**
      * 创建指标数据
      *
@@ -100,4 +393,123 @@ public class MetricData {
                 .setValue(value)
                 .setTimestamp(timestamp);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 二分查找标签键
+     *
+     * @return 键在数组中的下标，不存在时为 -(插入位置) - 1
+     */
+    private static int indexOf(String[] pairs, String key) {
+        int low = 0;
+        int high = (pairs.length >> 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            String current = pairs[mid << 1];
+            int cmp = current == key ? 0 : current.compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid << 1;
+            }
+        }
+        return -((low << 1) + 1);
+    }
+
+    /**
+     * 按键插入排序，单个数据点的标签通常不超过十个；重复的键保留后出现的值
+     */
+    private static String[] sortPairs(String[] pairs) {
+        int count = pairs.length >> 1;
+        int sorted = 1;
+        while (sorted < count && pairs[(sorted - 1) << 1].compareTo(pairs[sorted << 1]) < 0) {
+            sorted++;
+        }
+        if (sorted >= count) {
+            // 已经有序(如共享的聚合标签)时不写数组
+            return pairs;
+        }
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            String key = pairs[i << 1];
+            String value = pairs[(i << 1) + 1];
+            int j = unique;
+            while (j > 0 && pairs[(j - 1) << 1].compareTo(key) > 0) {
+                j--;
+            }
+            if (j > 0 && pairs[(j - 1) << 1].equals(key)) {
+                pairs[((j - 1) << 1) + 1] = value;
+                continue;
+            }
+            System.arraycopy(pairs, j << 1, pairs, (j + 1) << 1, (unique - j) << 1);
+            pairs[j << 1] = key;
+            pairs[(j << 1) + 1] = value;
+            unique++;
+        }
+        return unique == count ? pairs : Arrays.copyOf(pairs, unique << 1);
+    }
+
+    /**
+     * 标签数组的只读Map视图
+     */
+    private static final class TagView extends AbstractMap<String, String> {
+
+        private final String[] pairs;
+
+        private TagView(String[] pairs) {
+            this.pairs = pairs;
+        }
+
+        @Override
+        public int size() {
+            return pairs.length >> 1;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && indexOf(pairs, (String) key) >= 0;
+        }
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int index = indexOf(pairs, (String) key);
+            return index >= 0 ? pairs[index + 1] : null;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public int size() {
+                    return pairs.length >> 1;
+                }
+
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < pairs.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (index >= pairs.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(pairs[index], pairs[index + 1]);
+                            index += 2;
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.skyi.processor.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 指标名和标签的共享字典
+ * 相同的指标名、标签键和标签值在所有数据点之间共用同一个String实例，
+ * 解码每条消息产生的字符串在字典命中后即可回收，标签比较可以先按引用判断。
+ * 字典条目数有上限，超过后新字符串不再加入(原样返回)，高基数标签值不会让字典无限增长
+ */
+public final class MetricDictionary {
+
+    private static final int MAX_ENTRIES = 200_000;
+
+    private static final Map<String, String> ENTRIES = new ConcurrentHashMap<>(4096);
+
+    private MetricDictionary() {
+    }
+
+    /**
+     * 获取字符串在字典中的实例
+     *
+     * @param value 字符串
+     * @return 字典中相等的实例，字典已满且不存在时返回原字符串
+     */
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = ENTRIES.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (ENTRIES.size() >= MAX_ENTRIES) {
+            return value;
+        }
+        existing = ENTRIES.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * 字典当前条目数
+     */
+    public static int size() {
+        return ENTRIES.size();
+    }
+}
@@ -5,6 +5,7 @@ import com.skyi.processor.model.MetricData;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 指标处理服务接口
@@ -34,6 +35,14 @@ public interface MetricProcessorService {
      */
     void processBatchMetrics(List<MetricData> metricDataList);
     
+    /**
+     * 在调用线程中处理一批指标数据并提交存储
+     * 
+     * @param metricDataList 指标数据列表
+     * @return 数据写入存储后完成的Future，值为写入条数
+     */
+    CompletableFuture<Integer> processAndStoreMetrics(List<MetricData> metricDataList);
+    
     /**
      * 应用数据转换
      * 根据不同指标类型应用不同的转换规则
@@ -45,7 +54,7 @@ public interface MetricProcessorService {
     
     /**
      * 检测异常数据
-     * 基于指标阈值判断是否为异常值
+     * 数值超出指标的阈值规则，或经过序列工作线程时被基线检测标记为偏离(带anomaly_score字段)即为异常
      * 
      * @param metricData 指标数据
      * @return 是否异常
@@ -5,6 +5,7 @@ import com.skyi.processor.model.MetricData;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 指标存储服务接口
@@ -26,6 +27,13 @@ public interface MetricStorageService {
      */
     int storeMetrics(List<MetricData> metricDataList);
 
+    /**
+     * 批量存储指标数据并返回写入结果
+     * @param metricDataList 指标数据列表
+     * @return 数据写入存储后完成的Future，值为写入条数；写入失败或被丢弃时异常完成
+     */
+    CompletableFuture<Integer> storeMetricsAsync(List<MetricData> metricDataList);
+
     /**
      * 查询指标数据
      * @param metricName 指标名称
@@ -66,10 +74,24 @@ public interface MetricStorageService {
     /**
      * 对指标数据列表执行聚合计算
      * @param metricDataList 指标数据列表
-     * @param aggregationType 聚合类型，如mean、max、min、sum等
+     * @param aggregationType 聚合类型，如mean、max、min、sum等，分位数为median、p50、p95、p99、p99.9等；
+     *                        计算分位数时带分位数草图的聚合数据合并草图，原始数据逐个计入
      * @return 聚合结果值
      */
     Double aggregateMetrics(List<MetricData> metricDataList, String aggregationType);
+
+    /**
+     * 查询时间范围内的分位数
+     * 合并预聚合数据中的分位数草图得到结果，匹配标签条件的多个序列合并计算；没有预聚合数据时使用原始数据
+     * @param metricName 指标名称
+     * @param tags 标签条件
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param quantile 分位，0到1之间
+     * @return 分位数，无数据时返回null
+     */
+    Double queryQuantile(String metricName, Map<String, String> tags,
+                         Instant startTime, Instant endTime, double quantile);
     
     /**
      * 删除指标数据
@@ -0,0 +1,132 @@
+package com.skyi.processor.service.aggregation;
+
+import com.skyi.processor.model.MetricData;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 指标数据的聚合计算
+ * 各存储实现共用的内存聚合：mean/avg、max、min、sum、count以及分位数(median、pNN)
+ */
+@Slf4j
+public final class MetricAggregations {
+
+    private MetricAggregations() {
+    }
+
+    /**
+     * 对指标数据列表执行聚合计算
+     *
+     * @param metricDataList 指标数据列表
+     * @param aggregationType 聚合类型，不支持的类型按平均值计算
+     * @return 聚合结果值，没有有效值时返回null
+     */
+    public static Double aggregate(List<MetricData> metricDataList, String aggregationType) {
+        if (metricDataList == null || metricDataList.isEmpty()) {
+            return null;
+        }
+
+        Double quantile = parseQuantile(aggregationType);
+        if (quantile != null) {
+            return quantile(metricDataList, quantile);
+        }
+
+        double sum = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        double min = Double.POSITIVE_INFINITY;
+        int count = 0;
+        for (MetricData metricData : metricDataList) {
+            if (!metricData.hasValue()) {
+                continue;
+            }
+            double value = metricData.doubleValue();
+            sum += value;
+            max = Math.max(max, value);
+            min = Math.min(min, value);
+            count++;
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        // 根据聚合类型执行不同的计算
+        switch (aggregationType.toLowerCase()) {
+            case "mean":
+            case "avg":
+                return sum / count;
+
+            case "max":
+                return max;
+
+            case "min":
+                return min;
+
+            case "sum":
+                return sum;
+
+            case "count":
+                return (double) count;
+
+            default:
+                log.warn("不支持的聚合类型: {}, 使用平均值代替", aggregationType);
+                return sum / count;
+        }
+    }
+
+    /**
+     * 解析分位数聚合类型：median或pNN(如p99、p99.9)
+     *
+     * @return 0到1之间的分位，不是分位数类型时返回null
+     */
+    public static Double parseQuantile(String aggregationType) {
+        if (aggregationType == null) {
+            return null;
+        }
+        String type = aggregationType.trim().toLowerCase();
+        if ("median".equals(type)) {
+            return 0.5;
+        }
+        if (type.length() < 2 || type.charAt(0) != 'p' || !Character.isDigit(type.charAt(1))) {
+            return null;
+        }
+        try {
+            double percentile = Double.parseDouble(type.substring(1));
+            return percentile <= 100 ? percentile / 100 : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 计算分位数，带分位数草图的数据合并草图，其余数据按原始值计入
+     *
+     * @return 分位数，无数据时返回null
+     */
+    public static Double quantile(List<MetricData> metricDataList, double quantile) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (MetricData metricData : metricDataList) {
+            Object encoded = metricData.getFields().get(StreamingAggregator.SKETCH_FIELD);
+            if (encoded != null) {
+                mergeSketch(sketch, encoded, metricData.getMetricName());
+            } else if (metricData.hasValue()) {
+                sketch.add(metricData.doubleValue());
+            }
+        }
+        return sketch.isEmpty() ? null : sketch.quantile(quantile);
+    }
+
+    /**
+     * 合并编码后的分位数草图，无法解析时记录日志并忽略
+     */
+    public static void mergeSketch(QuantileSketch sketch, Object encoded, String metricName) {
+        if (!(encoded instanceof String)) {
+            return;
+        }
+        try {
+            sketch.merge(QuantileSketch.decode((String) encoded));
+        } catch (IllegalArgumentException e) {
+            log.warn("无法解析分位数草图: 指标名称={}, 原因: {}", metricName, e.getMessage());
+        }
+    }
+}
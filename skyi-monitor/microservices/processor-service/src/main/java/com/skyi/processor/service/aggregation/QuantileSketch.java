@@ -0,0 +1,338 @@
+package com.skyi.processor.service.aggregation;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 可合并的分位数草图
+ * 按DDSketch的对数分桶实现：值v落入下标ceil(log(v)/log(gamma))的桶，gamma=(1+a)/(1-a)，
+ * 任意分位数的相对误差不超过a(默认1%)。正值、负值分别用连续的计数数组保存，零单独计数；
+ * 桶数超过上限时区间上端对齐到最大的值，合并最小的桶，只影响最低分位的精度。
+ * 两个草图的桶定义相同，合并只需逐桶相加，细粒度窗口的草图可以合并出任意粗粒度、多序列的分位数。
+ * 非线程安全
+ */
+public final class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final int MAX_BINS = 2048;
+
+    /**
+     * 小于该值的数按0处理
+     */
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private final Store positive = new Store();
+    private final Store negative = new Store();
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("相对误差需在0和1之间: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * 加入一个值，NaN和无穷值忽略
+     */
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (value > MIN_INDEXABLE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    /**
+     * 合并另一个草图
+     *
+     * @throws IllegalArgumentException 两个草图的相对误差不同
+     */
+    public void merge(QuantileSketch other) {
+        if (Double.compare(relativeAccuracy, other.relativeAccuracy) != 0) {
+            throw new IllegalArgumentException("无法合并相对误差不同的分位数草图");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * 估算分位数
+     *
+     * @param quantile 分位，0到1之间
+     * @return 分位数，草图为空时返回NaN
+     */
+    public double quantile(double quantile) {
+        if (count == 0 || quantile < 0 || quantile > 1) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(quantile * (count - 1));
+        if (rank < negative.total) {
+            // 负值按绝对值从大到小排列
+            int key = negative.keyAtRank(negative.total - 1 - rank);
+            return -value(key);
+        }
+        rank -= negative.total;
+        if (rank < zeroCount) {
+            return 0;
+        }
+        rank -= zeroCount;
+        return value(positive.keyAtRank(rank));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 清空草图以便复用
+     */
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    /**
+     * 序列化为Base64字符串，用于写入聚合数据点的字符串字段
+     */
+    public String encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(FORMAT_VERSION);
+        long bits = Double.doubleToLongBits(relativeAccuracy);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (bits >>> shift));
+        }
+        writeVarLong(out, zeroCount);
+        positive.write(out);
+        negative.write(out);
+        return Base64.getEncoder().withoutPadding().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * 从{@link #encode()}的结果还原草图
+     *
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static QuantileSketch decode(String encoded) {
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(encoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("分位数草图编码错误");
+        }
+        if (data.length < 9 || data[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的分位数草图版本");
+        }
+        try {
+            long bits = 0;
+            for (int i = 1; i < 9; i++) {
+                bits = (bits << 8) | (data[i] & 0xFF);
+            }
+            QuantileSketch sketch = new QuantileSketch(Double.longBitsToDouble(bits));
+            int[] position = {9};
+            sketch.zeroCount = readVarLong(data, position);
+            sketch.positive.read(data, position);
+            sketch.negative.read(data, position);
+            sketch.count = sketch.zeroCount + sketch.positive.total + sketch.negative.total;
+            return sketch;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("分位数草图数据不完整");
+        }
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * 桶的代表值，取桶区间(gamma^(k-1), gamma^k]的中点使相对误差对称
+     */
+    private double value(int key) {
+        return 2 * Math.pow(gamma, key) / (gamma + 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("分位数草图中的变长整数格式错误");
+    }
+
+    /**
+     * 连续下标区间的桶计数
+     */
+    private static final class Store {
+
+        private long[] counts = new long[0];
+        private int offset;
+        private long total;
+
+        void add(int key, long n) {
+            if (total == 0) {
+                // 空的存储以首个下标为中心重新定位，复用已分配的数组
+                if (counts.length == 0) {
+                    counts = new long[8];
+                }
+                offset = key - counts.length / 2;
+            }
+            int i = key - offset;
+            if (i < 0 && counts.length == MAX_BINS) {
+                // 已达桶数上限，区间上端先对齐到最大的非空桶，仍放不下的更小的值并入最低的桶
+                anchorTop();
+                i = Math.max(key - offset, 0);
+            } else if (i < 0 || i >= counts.length) {
+                grow(key);
+                i = Math.max(key - offset, 0);
+            }
+            counts[i] += n;
+            total += n;
+        }
+
+        void merge(Store other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] > 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        int keyAtRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset + counts.length - 1;
+        }
+
+        /**
+         * 最大的非空桶下标，存储非空时才能调用
+         */
+        int highestKey() {
+            int i = counts.length - 1;
+            while (i > 0 && counts[i] == 0) {
+                i--;
+            }
+            return offset + i;
+        }
+
+        void clear() {
+            Arrays.fill(counts, 0);
+            total = 0;
+        }
+
+        /**
+         * 已满的区间整体下移，使最大的非空桶位于区间上端，把上端空余的桶让给更小的值
+         */
+        private void anchorTop() {
+            int shift = offset + counts.length - 1 - highestKey();
+            if (shift <= 0) {
+                return;
+            }
+            System.arraycopy(counts, 0, counts, shift, counts.length - shift);
+            Arrays.fill(counts, 0, shift, 0L);
+            offset -= shift;
+        }
+
+        /**
+         * 扩展区间以容纳key，空余容量留在新增的一侧；超过桶数上限时区间上端对齐到最大的值，更低的桶并入第一个桶
+         */
+        private void grow(int key) {
+            int low = Math.min(key, offset);
+            int high = Math.max(key, highestKey());
+            int span = high - low + 1;
+            int length = Math.min(MAX_BINS, Math.max(span + 8, counts.length * 2));
+            if (span > length || key < offset) {
+                low = high - length + 1;
+            }
+            long[] resized = new long[length];
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    resized[Math.max(offset + i - low, 0)] += counts[i];
+                }
+            }
+            counts = resized;
+            offset = low;
+        }
+
+        void write(ByteArrayOutputStream out) {
+            int first = 0;
+            int last = counts.length - 1;
+            while (first <= last && counts[first] == 0) {
+                first++;
+            }
+            while (last >= first && counts[last] == 0) {
+                last--;
+            }
+            int length = last - first + 1;
+            writeVarLong(out, length);
+            if (length == 0) {
+                return;
+            }
+            long key = offset + first;
+            writeVarLong(out, (key << 1) ^ (key >> 63));
+            for (int i = first; i <= last; i++) {
+                writeVarLong(out, counts[i]);
+            }
+        }
+
+        void read(byte[] data, int[] position) {
+            int length = (int) readVarLong(data, position);
+            if (length == 0) {
+                return;
+            }
+            long zigzag = readVarLong(data, position);
+            int first = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+            for (int i = 0; i < length; i++) {
+                long n = readVarLong(data, position);
+                if (n > 0) {
+                    add(first + i, n);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.skyi.processor.service.aggregation;
+
+import com.skyi.processor.model.MetricData;
+
+import java.util.Arrays;
+
+/**
+ * 单个序列在各粒度下的未关闭窗口
+ * 每个粒度保留两个窗口槽位，宽限期内上一个窗口尚未关闭时新窗口使用另一个槽位；
+ * 统计值保存在基本类型数组中，槽位下标为 粒度序号 * 2 + 槽位；
+ * 每个槽位另有一个分位数草图，窗口关闭后清空复用；
+ * 另外记录序列最近聚合的数据所在的Kafka分区和位点，用于跳过重新投递的数据
+ */
+final class SeriesWindows {
+
+    final String metricName;
+    final Long assetId;
+    final Long taskId;
+    final Long instanceId;
+    final String[] tags;
+
+    final long[] starts;
+    final long[] counts;
+    final double[] sums;
+    final double[] mins;
+    final double[] maxs;
+    final double[] lasts;
+    final long[] lastTimes;
+    final QuantileSketch[] sketches;
+
+    long lastSeen;
+
+    int partition = -1;
+    long lastOffset = -1L;
+    long lastOffsetTime = Long.MIN_VALUE;
+
+    SeriesWindows(MetricData metricData, int resolutions) {
+        this.metricName = metricData.getMetricName();
+        this.assetId = metricData.getAssetId();
+        this.taskId = metricData.getTaskId();
+        this.instanceId = metricData.getInstanceId();
+        // 标签数组不会被修改(添加标签时数据点换用新数组)，可以直接共享
+        this.tags = metricData.tagPairs();
+        int slots = resolutions * 2;
+        starts = new long[slots];
+        counts = new long[slots];
+        sums = new double[slots];
+        mins = new double[slots];
+        maxs = new double[slots];
+        lasts = new double[slots];
+        lastTimes = new long[slots];
+        sketches = new QuantileSketch[slots];
+    }
+
+    /**
+     * 查找时间窗口所在槽位
+     *
+     * @return 槽位下标，不存在时返回-1
+     */
+    int find(int resolution, long start) {
+        int base = resolution * 2;
+        for (int slot = base; slot < base + 2; slot++) {
+            if (counts[slot] > 0 && starts[slot] == start) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 获取空槽位，两个槽位都在使用时返回起始时间较早的槽位(取反表示需要先输出)
+     */
+    int freeOrOldest(int resolution) {
+        int base = resolution * 2;
+        if (counts[base] == 0) {
+            return base;
+        }
+        if (counts[base + 1] == 0) {
+            return base + 1;
+        }
+        return ~(starts[base] <= starts[base + 1] ? base : base + 1);
+    }
+
+    void open(int slot, long start) {
+        starts[slot] = start;
+        counts[slot] = 0;
+        sums[slot] = 0;
+        mins[slot] = Double.POSITIVE_INFINITY;
+        maxs[slot] = Double.NEGATIVE_INFINITY;
+        lastTimes[slot] = Long.MIN_VALUE;
+        if (sketches[slot] == null) {
+            sketches[slot] = new QuantileSketch();
+        } else {
+            sketches[slot].clear();
+        }
+    }
+
+    void add(int slot, long timestamp, double value) {
+        counts[slot]++;
+        sums[slot] += value;
+        if (value < mins[slot]) {
+            mins[slot] = value;
+        }
+        if (value > maxs[slot]) {
+            maxs[slot] = value;
+        }
+        if (timestamp >= lastTimes[slot]) {
+            lastTimes[slot] = timestamp;
+            lasts[slot] = value;
+        }
+        sketches[slot].add(value);
+    }
+
+    void clear(int slot) {
+        counts[slot] = 0;
+    }
+
+    /**
+     * 是否为已经聚合过的消息中的数据点，不是时记录为最近聚合的位置；
+     * 同一消息可能包含同一序列不同时间的多个数据点，位点相同时再比较时间戳
+     */
+    boolean isDuplicate(int partition, long offset, long timestamp) {
+        if (offset < 0) {
+            return false;
+        }
+        if (partition == this.partition
+                && (offset < lastOffset || offset == lastOffset && timestamp <= lastOffsetTime)) {
+            return true;
+        }
+        this.partition = partition;
+        this.lastOffset = offset;
+        this.lastOffsetTime = timestamp;
+        return false;
+    }
+
+    /**
+     * 丢弃全部未关闭的窗口和位点记录，之后重放的数据重新参与聚合
+     */
+    void reset() {
+        Arrays.fill(counts, 0L);
+        lastOffset = -1L;
+        lastOffsetTime = Long.MIN_VALUE;
+    }
+
+    boolean isEmpty() {
+        for (long count : counts) {
+            if (count > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
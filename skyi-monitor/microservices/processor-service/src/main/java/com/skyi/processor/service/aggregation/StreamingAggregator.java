@@ -0,0 +1,501 @@
+package com.skyi.processor.service.aggregation;
+
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.service.MetricStorageService;
+import com.skyi.processor.service.storage.RejectedPointsException;
+import com.skyi.processor.service.worker.LongLongMap;
+import com.skyi.processor.service.worker.SeriesKey;
+import com.skyi.processor.service.worker.SeriesProcessor;
+import com.skyi.processor.service.worker.SeriesProcessorFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流式预聚合
+ * 数据点到达时即更新所在序列各粒度(默认1m/5m/1h)的滚动窗口，统计count、sum、min、max、last。
+ * 窗口在水位线越过 窗口结束时间 + 宽限期 后关闭并写入存储，指标名为"原指标名_粒度"并带有粒度标记，
+ * value为平均值，其余统计值作为字段；时间戳为窗口起始时间。
+ * 每个窗口还带有p50/p95/p99字段和编码后的分位数草图(sketch字段)，查询时合并草图即可得到任意时间范围、多序列的分位数。
+ * 水位线按Kafka分区分别维护，取该分区见到的最大事件时间(不超过当前时间)，积压或重放时只由事件时间推进；
+ * 分区空闲超过idle-ms后才按 当前时间 - 宽限期 推进。所属窗口已关闭的迟到数据只计数不再聚合，原始数据照常写入。
+ * 每批数据处理中关闭的窗口随这批数据一起写入，写入完成后消费者才提交位点，写入失败的结果在下一次写出时重试。
+ * 投递语义为至少一次：每个序列记录最近聚合的分区位点，重新投递的数据不会重复计入；分区分配后由
+ * {@link com.skyi.processor.service.consumer.WindowRebuildListener}重放可能未关闭的窗口对应的消息重建窗口，
+ * 分区被收回时丢弃该分区序列的未关闭窗口，由新的所属实例重建后输出，不完整的窗口不会覆盖完整的结果。
+ * 作为序列处理器运行在序列工作线程中，窗口状态只由所属线程访问
+ */
+@Slf4j
+@Component
+@Order(100)
+public class StreamingAggregator implements SeriesProcessorFactory {
+
+    /**
+     * 聚合数据中保存分位数草图的字段
+     */
+    public static final String SKETCH_FIELD = "sketch";
+
+    /**
+     * 序列索引中待删除条目的标记
+     */
+    private static final long REMOVED = -2L;
+
+    @Autowired
+    @Lazy
+    private MetricStorageService metricStorageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.processing.aggregation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${processor.processing.aggregation.windows:1m,5m,1h}")
+    private String windows;
+
+    @Value("${processor.processing.aggregation.grace-seconds:60}")
+    private long graceSeconds;
+
+    @Value("${processor.processing.aggregation.series-idle-ms:7200000}")
+    private long seriesIdleMs;
+
+    /**
+     * 分区超过该时长没有数据时，水位线改为按当前时间推进
+     */
+    @Value("${processor.processing.aggregation.idle-ms:30000}")
+    private long idleMs;
+
+    /**
+     * 写入失败等待重试的聚合结果上限，超过后丢弃
+     */
+    @Value("${processor.processing.aggregation.max-retry-rollups:100000}")
+    private int maxRetryRollups;
+
+    private WindowResolution[] resolutions;
+    private Counter latePoints;
+    private Counter duplicatePoints;
+    private Counter emittedWindows;
+    private Counter droppedWindows;
+
+    /**
+     * 正在重放的分区及其重建起始时间，早于该时间的窗口不再打开
+     */
+    private final Map<Integer, Long> rebuildFloors = new ConcurrentHashMap<>();
+
+    /**
+     * 已被收回的分区，工作线程在下一次tick时丢弃这些分区序列的未关闭窗口
+     */
+    private final Set<Integer> revokedPartitions = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        resolutions = Arrays.stream(windows.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(WindowResolution::parse)
+                .toArray(WindowResolution[]::new);
+        latePoints = Counter.builder("processor.aggregation.late.points")
+                .description("所属窗口已关闭的迟到数据点")
+                .register(meterRegistry);
+        duplicatePoints = Counter.builder("processor.aggregation.duplicate.points")
+                .description("重新投递、已聚合过的数据点")
+                .register(meterRegistry);
+        emittedWindows = Counter.builder("processor.aggregation.windows.emitted")
+                .register(meterRegistry);
+        droppedWindows = Counter.builder("processor.aggregation.windows.dropped")
+                .description("分区收回时丢弃的未关闭窗口和无法写入的聚合结果")
+                .register(meterRegistry);
+        log.info("流式预聚合: {}, 窗口: {}, 宽限期: {}秒", enabled ? "启用" : "停用", Arrays.toString(resolutions), graceSeconds);
+    }
+
+    @Override
+    public SeriesProcessor create(int workerIndex) {
+        if (!enabled || resolutions.length == 0) {
+            return (metricData, seriesKey) -> true;
+        }
+        return new Aggregator();
+    }
+
+    /**
+     * 分区分配后需要重建窗口的起始时间，即最大粒度下仍可能未关闭的最早窗口的起始时间；
+     * 从这一时间起的消息重放后，各粒度在此之后开始的窗口都是完整的
+     *
+     * @param now 当前时间(毫秒)
+     * @return 起始时间，预聚合停用时返回Long.MIN_VALUE
+     */
+    public long rebuildFrom(long now) {
+        if (!enabled || resolutions.length == 0) {
+            return Long.MIN_VALUE;
+        }
+        WindowResolution largest = resolutions[0];
+        for (WindowResolution resolution : resolutions) {
+            if (resolution.getMillis() > largest.getMillis()) {
+                largest = resolution;
+            }
+        }
+        return largest.windowStart(now - graceSeconds * 1000L);
+    }
+
+    /**
+     * 宽限期(毫秒)，重放位点按 起始时间 - 宽限期 查找，覆盖事件时间与消息时间的偏差
+     */
+    public long graceMillis() {
+        return graceSeconds * 1000L;
+    }
+
+    /**
+     * 分区已分配给当前实例
+     *
+     * @param partition 分区
+     */
+    public void assigned(int partition) {
+        revokedPartitions.remove(partition);
+        rebuildFloors.remove(partition);
+    }
+
+    /**
+     * 分区从rebuildFrom开始重放，早于该时间开始的窗口缺少数据，不再打开
+     *
+     * @param partition 分区
+     * @param rebuildFrom 重建起始时间
+     */
+    public void rebuilding(int partition, long rebuildFrom) {
+        rebuildFloors.put(partition, rebuildFrom);
+    }
+
+    /**
+     * 分区已被收回
+     *
+     * @param partition 分区
+     */
+    public void revoked(int partition) {
+        rebuildFloors.remove(partition);
+        revokedPartitions.add(partition);
+    }
+
+    /**
+     * 一次性聚合一批原始数据，用于补算历史数据，输出格式与流式聚合一致
+     *
+     * @param rawData 原始数据
+     * @param resolution 窗口粒度
+     * @return 各序列各窗口的聚合结果
+     */
+    public static List<MetricData> aggregate(List<MetricData> rawData, WindowResolution resolution) {
+        // 每个(序列, 窗口)使用单独的状态对象，历史数据不受两个槽位的限制
+        Map<Long, Map<Long, SeriesWindows>> seriesMap = new HashMap<>();
+        List<SeriesWindows> windowList = new ArrayList<>();
+        for (MetricData metricData : rawData) {
+            if (!metricData.hasValue() || !metricData.hasTimestamp()) {
+                continue;
+            }
+            long timestamp = metricData.timestampMillis();
+            long start = resolution.windowStart(timestamp);
+            SeriesWindows windows = seriesMap.computeIfAbsent(SeriesKey.of(metricData), k -> new HashMap<>())
+                    .computeIfAbsent(start, k -> {
+                        SeriesWindows created = new SeriesWindows(metricData, 1);
+                        created.open(0, start);
+                        windowList.add(created);
+                        return created;
+                    });
+            windows.add(0, timestamp, metricData.doubleValue());
+        }
+
+        List<MetricData> result = new ArrayList<>(windowList.size());
+        for (SeriesWindows windows : windowList) {
+            result.add(toRollup(windows, 0, resolution));
+        }
+        return result;
+    }
+
+    static MetricData toRollup(SeriesWindows windows, int slot, WindowResolution resolution) {
+        long count = windows.counts[slot];
+        MetricData rollup = new MetricData()
+                .setMetricName(windows.metricName + "_" + resolution.getLabel())
+                .rollup(resolution.getLabel())
+                .doubleValue(windows.sums[slot] / count)
+                .timestampMillis(windows.starts[slot])
+                .setAssetId(windows.assetId)
+                .setTaskId(windows.taskId)
+                .setInstanceId(windows.instanceId)
+                .tagPairs(windows.tags);
+        rollup.addField("count", count);
+        rollup.addField("sum", windows.sums[slot]);
+        rollup.addField("min", windows.mins[slot]);
+        rollup.addField("max", windows.maxs[slot]);
+        rollup.addField("last", windows.lasts[slot]);
+        QuantileSketch sketch = windows.sketches[slot];
+        rollup.addField("p50", sketch.quantile(0.5));
+        rollup.addField("p95", sketch.quantile(0.95));
+        rollup.addField("p99", sketch.quantile(0.99));
+        rollup.addField(SKETCH_FIELD, sketch.encode());
+        return rollup;
+    }
+
+    /**
+     * 单个工作线程的聚合状态
+     */
+    private final class Aggregator implements SeriesProcessor {
+
+        private final LongLongMap seriesIndex = new LongLongMap();
+        private SeriesWindows[] series = new SeriesWindows[256];
+        private long[] seriesKeys = new long[256];
+        private int[] freeSlots = new int[0];
+        private int freeCount;
+        private int seriesCount;
+
+        /**
+         * 各分区的水位线和最近收到数据的时间，下标为 分区 + 1，下标0用于不是从Kafka消费的数据
+         */
+        private long[] watermarks = new long[0];
+        private long[] arrivals = new long[0];
+
+        private final List<MetricData> pending = new ArrayList<>();
+        private final Queue<MetricData> retries = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger retryCount = new AtomicInteger();
+        private long lastPurge = System.currentTimeMillis();
+
+        @Override
+        public boolean process(MetricData metricData, long seriesKey) {
+            // 重放的数据只用于重建窗口，不再交给后续处理器和存储
+            boolean keep = !metricData.replayed();
+            if (!metricData.hasValue() || !metricData.hasTimestamp()) {
+                return keep;
+            }
+            long timestamp = metricData.timestampMillis();
+            long now = System.currentTimeMillis();
+            int partition = metricData.sourcePartition();
+            int p = partitionIndex(partition);
+            arrivals[p] = now;
+            watermarks[p] = Math.max(watermarks[p], Math.min(timestamp, now));
+            long watermark = watermarks[p];
+
+            SeriesWindows windows = lookup(metricData, seriesKey);
+            windows.lastSeen = now;
+            if (windows.isDuplicate(partition, metricData.sourceOffset(), timestamp)) {
+                duplicatePoints.increment();
+                return keep;
+            }
+            long grace = graceSeconds * 1000L;
+            for (int r = 0; r < resolutions.length; r++) {
+                WindowResolution resolution = resolutions[r];
+                long start = resolution.windowStart(timestamp);
+                if (start + resolution.getMillis() + grace <= watermark) {
+                    latePoints.increment();
+                    continue;
+                }
+                int slot = windows.find(r, start);
+                if (slot < 0) {
+                    if (start < rebuildFloor(partition)) {
+                        // 重建起始时间之前开始的窗口缺少数据，输出会覆盖原先完整的结果
+                        latePoints.increment();
+                        continue;
+                    }
+                    slot = windows.freeOrOldest(r);
+                    if (slot < 0) {
+                        slot = ~slot;
+                        if (windows.starts[slot] > start) {
+                            // 比两个未关闭窗口都早，按迟到处理
+                            latePoints.increment();
+                            continue;
+                        }
+                        emit(windows, slot, resolution);
+                    }
+                    windows.open(slot, start);
+                }
+                windows.add(slot, timestamp, metricData.doubleValue());
+            }
+            return keep;
+        }
+
+        @Override
+        public CompletableFuture<?> flush() {
+            for (MetricData rollup; retryCount.get() > 0 && (rollup = retries.poll()) != null; ) {
+                retryCount.decrementAndGet();
+                pending.add(rollup);
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+            List<MetricData> rollups = new ArrayList<>(pending);
+            pending.clear();
+            return metricStorageService.storeMetricsAsync(rollups).whenComplete((written, ex) -> {
+                if (ex != null) {
+                    retry(rollups, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+            });
+        }
+
+        @Override
+        public void tick(long now) {
+            long grace = graceSeconds * 1000L;
+            for (int p = 0; p < watermarks.length; p++) {
+                if (arrivals[p] > 0 && now - arrivals[p] >= idleMs) {
+                    watermarks[p] = Math.max(watermarks[p], now - grace);
+                }
+            }
+            boolean revoked = !revokedPartitions.isEmpty();
+            for (int i = 0; i < seriesCount; i++) {
+                SeriesWindows windows = series[i];
+                if (windows == null) {
+                    continue;
+                }
+                if (revoked && windows.partition >= 0 && revokedPartitions.contains(windows.partition)) {
+                    drop(windows);
+                    continue;
+                }
+                long watermark = watermark(windows.partition);
+                for (int r = 0; r < resolutions.length; r++) {
+                    for (int slot = r * 2; slot < r * 2 + 2; slot++) {
+                        if (windows.counts[slot] > 0
+                                && windows.starts[slot] + resolutions[r].getMillis() + grace <= watermark) {
+                            emit(windows, slot, resolutions[r]);
+                        }
+                    }
+                }
+            }
+            if (revoked) {
+                for (int partition : revokedPartitions) {
+                    int p = partition + 1;
+                    if (p < watermarks.length) {
+                        watermarks[p] = Long.MIN_VALUE;
+                        arrivals[p] = 0L;
+                    }
+                }
+            }
+            CompletableFuture<?> flushed = flush();
+            if (flushed != null) {
+                flushed.whenComplete((written, ex) -> {
+                    if (ex != null) {
+                        log.error("写入聚合数据失败, 原因: {}", ex.getMessage());
+                    }
+                });
+            }
+            if (now - lastPurge >= seriesIdleMs / 4) {
+                lastPurge = now;
+                purge(now - seriesIdleMs);
+            }
+        }
+
+        private int partitionIndex(int partition) {
+            int index = partition + 1;
+            if (index >= watermarks.length) {
+                int length = Math.max(index + 1, watermarks.length * 2);
+                int from = watermarks.length;
+                watermarks = Arrays.copyOf(watermarks, length);
+                arrivals = Arrays.copyOf(arrivals, length);
+                Arrays.fill(watermarks, from, length, Long.MIN_VALUE);
+            }
+            return index;
+        }
+
+        private long watermark(int partition) {
+            int index = partition + 1;
+            return index < watermarks.length ? watermarks[index] : Long.MIN_VALUE;
+        }
+
+        private long rebuildFloor(int partition) {
+            if (partition < 0 || rebuildFloors.isEmpty()) {
+                return Long.MIN_VALUE;
+            }
+            Long floor = rebuildFloors.get(partition);
+            return floor != null ? floor : Long.MIN_VALUE;
+        }
+
+        private SeriesWindows lookup(MetricData metricData, long seriesKey) {
+            long index = seriesIndex.get(seriesKey, -1L);
+            if (index >= 0) {
+                return series[(int) index];
+            }
+            int slot;
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                if (seriesCount == series.length) {
+                    series = Arrays.copyOf(series, seriesCount * 2);
+                    seriesKeys = Arrays.copyOf(seriesKeys, seriesCount * 2);
+                }
+                slot = seriesCount++;
+            }
+            SeriesWindows windows = new SeriesWindows(metricData, resolutions.length);
+            series[slot] = windows;
+            seriesKeys[slot] = seriesKey;
+            seriesIndex.put(seriesKey, slot);
+            return windows;
+        }
+
+        private void emit(SeriesWindows windows, int slot, WindowResolution resolution) {
+            pending.add(toRollup(windows, slot, resolution));
+            emittedWindows.increment();
+            windows.clear(slot);
+        }
+
+        private void drop(SeriesWindows windows) {
+            for (long count : windows.counts) {
+                if (count > 0) {
+                    droppedWindows.increment();
+                }
+            }
+            windows.reset();
+        }
+
+        /**
+         * 写入失败的结果放回重试队列，由下一次写出重试；被存储拒绝的结果重试不会成功，直接丢弃
+         */
+        private void retry(List<MetricData> rollups, Throwable cause) {
+            if (cause instanceof RejectedPointsException) {
+                log.error("聚合数据被存储拒绝，丢弃: {}, 原因: {}", rollups.size(), cause.getMessage());
+                droppedWindows.increment(rollups.size());
+                return;
+            }
+            if (retryCount.addAndGet(rollups.size()) > maxRetryRollups) {
+                retryCount.addAndGet(-rollups.size());
+                log.error("待重试的聚合数据超过上限，丢弃: {}, 原因: {}", rollups.size(), cause.getMessage());
+                droppedWindows.increment(rollups.size());
+                return;
+            }
+            retries.addAll(rollups);
+        }
+
+        /**
+         * 清理长时间没有数据且窗口均已输出的序列，槽位回收复用
+         */
+        private void purge(long threshold) {
+            int removed = 0;
+            for (int i = 0; i < seriesCount; i++) {
+                SeriesWindows windows = series[i];
+                if (windows != null && windows.lastSeen < threshold && windows.isEmpty()) {
+                    series[i] = null;
+                    seriesIndex.put(seriesKeys[i], REMOVED);
+                    if (freeCount == freeSlots.length) {
+                        freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+                    }
+                    freeSlots[freeCount++] = i;
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                seriesIndex.removeIf((key, index) -> index == REMOVED);
+                log.debug("清理空闲聚合序列: {}个", removed);
+            }
+        }
+    }
+}
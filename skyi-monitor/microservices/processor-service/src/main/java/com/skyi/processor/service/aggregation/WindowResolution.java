@@ -0,0 +1,75 @@
+package com.skyi.processor.service.aggregation;
+
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * 聚合窗口粒度
+ * 由形如30s、1m、5m、1h、1d的字符串解析，label同时用作聚合结果指标名的后缀
+ */
+@Getter
+public final class WindowResolution {
+
+    private final String label;
+
+    private final long millis;
+
+    private WindowResolution(String label, long millis) {
+        this.label = label;
+        this.millis = millis;
+    }
+
+    /**
+     * 解析窗口粒度
+     *
+     * @param text 粒度字符串
+     * @return 窗口粒度
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static WindowResolution parse(String text) {
+        String label = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (label.length() < 2) {
+            throw new IllegalArgumentException("无效的聚合窗口: " + text);
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(label.substring(0, label.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的聚合窗口: " + text);
+        }
+        long unit;
+        switch (label.charAt(label.length() - 1)) {
+            case 's':
+                unit = 1000L;
+                break;
+            case 'm':
+                unit = 60_000L;
+                break;
+            case 'h':
+                unit = 3_600_000L;
+                break;
+            case 'd':
+                unit = 86_400_000L;
+                break;
+            default:
+                throw new IllegalArgumentException("无效的聚合窗口: " + text);
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("无效的聚合窗口: " + text);
+        }
+        return new WindowResolution(label, amount * unit);
+    }
+
+    /**
+     * 时间所在窗口的起始时间
+     */
+    public long windowStart(long timestamp) {
+        return Math.floorDiv(timestamp, millis) * millis;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,108 @@
+package com.skyi.processor.service.alerting;
+
+import com.alibaba.fastjson.JSON;
+import com.skyi.processor.dto.AnomalyEventDTO;
+import com.skyi.processor.dto.ThresholdAlertDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 告警事件发送
+ * 阈值告警发送到threshold-alert主题，基线偏离事件发送到pattern-alert主题，均为JSON，
+ * 消息头__TypeId__分别为thresholdAlert和anomalyEvent，告警服务通过spring.json.type.mapping映射到自己的DTO。
+ * 发送在处理线程池中进行，Kafka不可用时不会阻塞序列工作线程
+ */
+@Slf4j
+@Component
+public class AlertEventPublisher {
+
+    private static final String TYPE_ID_HEADER = "__TypeId__";
+
+    private static final byte[] THRESHOLD_ALERT_TYPE = "thresholdAlert".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] ANOMALY_EVENT_TYPE = "anomalyEvent".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    @Qualifier("processorTaskExecutor")
+    private Executor processorTaskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.kafka.topics.threshold-alert:threshold-alert}")
+    private String thresholdAlertTopic;
+
+    @Value("${processor.kafka.topics.anomaly-event:pattern-alert}")
+    private String anomalyEventTopic;
+
+    private Counter sentCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        sentCounter = Counter.builder("processor.alerting.alerts.sent")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("processor.alerting.alerts.failed")
+                .description("发送失败的告警事件")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 异步发送阈值告警，以资产ID为消息键
+     *
+     * @param alert 阈值告警
+     */
+    public void publish(ThresholdAlertDTO alert) {
+        publish(thresholdAlertTopic, THRESHOLD_ALERT_TYPE, alert.getAssetId(), alert.getMetricName(), alert);
+    }
+
+    /**
+     * 异步发送基线偏离事件，以资产ID为消息键
+     *
+     * @param event 基线偏离事件
+     */
+    public void publish(AnomalyEventDTO event) {
+        publish(anomalyEventTopic, ANOMALY_EVENT_TYPE, event.getAssetId(), event.getMetricName(), event);
+    }
+
+    private void publish(String topic, byte[] typeId, Long assetId, String metricName, Object payload) {
+        try {
+            processorTaskExecutor.execute(() -> send(topic, typeId, assetId, metricName, payload));
+        } catch (RejectedExecutionException e) {
+            failedCounter.increment();
+            log.error("处理线程池已满，丢弃告警事件: topic={}, metricName={}", topic, metricName);
+        }
+    }
+
+    private void send(String topic, byte[] typeId, Long assetId, String metricName, Object payload) {
+        String key = assetId != null ? assetId.toString() : metricName;
+        ProducerRecord<String, String> record = new ProducerRecord<>(topic, key, JSON.toJSONString(payload));
+        record.headers().add(TYPE_ID_HEADER, typeId);
+        try {
+            kafkaTemplate.send(record).addCallback(
+                    result -> sentCounter.increment(),
+                    ex -> {
+                        failedCounter.increment();
+                        log.error("发送告警事件失败: topic={}, metricName={}, 原因: {}", topic, metricName, ex.getMessage());
+                    });
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("发送告警事件失败: topic={}, metricName={}, 原因: {}", topic, metricName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.skyi.processor.service.alerting;
+
+import com.skyi.processor.dto.ThresholdAlertDTO;
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.service.worker.LongLongMap;
+import com.skyi.processor.service.worker.SeriesKey;
+import com.skyi.processor.service.worker.SeriesProcessor;
+import com.skyi.processor.service.worker.SeriesProcessorFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 阈值规则评估
+ * 作为序列处理器在数据到达时逐点评估所属指标的规则，每个(序列, 规则)的状态用一个long保存：
+ * 0为正常，正数为开始超限的时间(等待for-duration)，负数为已触发(取反为开始超限的时间)。
+ * 持续超限达到for-duration时发送一次阈值告警；已触发的规则要等数值回到恢复阈值以内才复位，
+ * 在两个阈值之间波动不会重复告警。时间以数据点的事件时间计算
+ */
+@Slf4j
+@Component
+@Order(200)
+public class ThresholdEvaluator implements SeriesProcessorFactory {
+
+    private static final String EVENT_TYPE = "THRESHOLD_EXCEEDED";
+
+    private static final long NORMAL = 0L;
+
+    private static final long PURGE_INTERVAL_MS = 600_000L;
+
+    @Autowired
+    private ThresholdRuleRegistry ruleRegistry;
+
+    @Autowired
+    private AlertEventPublisher alertPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.alerting.enabled:true}")
+    private boolean enabled;
+
+    private Counter firedCounter;
+    private Counter recoveredCounter;
+
+    @PostConstruct
+    public void init() {
+        firedCounter = Counter.builder("processor.alerting.rules.fired")
+                .description("触发的阈值规则")
+                .register(meterRegistry);
+        recoveredCounter = Counter.builder("processor.alerting.rules.recovered")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public SeriesProcessor create(int workerIndex) {
+        if (!enabled) {
+            return (metricData, seriesKey) -> true;
+        }
+        return new Evaluator();
+    }
+
+    /**
+     * 单个工作线程的规则状态
+     */
+    private final class Evaluator implements SeriesProcessor {
+
+        private final LongLongMap states = new LongLongMap();
+        private long lastPurge = System.currentTimeMillis();
+
+        @Override
+        public boolean process(MetricData metricData, long seriesKey) {
+            if (!metricData.hasValue()) {
+                return true;
+            }
+            ThresholdRule[] rules = ruleRegistry.rulesFor(metricData.getMetricName());
+            if (rules == null) {
+                return true;
+            }
+            double value = metricData.doubleValue();
+            long timestamp = metricData.hasTimestamp() ? metricData.timestampMillis() : System.currentTimeMillis();
+            for (ThresholdRule rule : rules) {
+                evaluate(metricData, value, Math.max(1L, timestamp), rule, SeriesKey.combine(seriesKey, rule.getId()));
+            }
+            return true;
+        }
+
+        @Override
+        public void tick(long now) {
+            if (now - lastPurge >= PURGE_INTERVAL_MS) {
+                lastPurge = now;
+                states.removeIf((key, state) -> state == NORMAL);
+            }
+        }
+
+        private void evaluate(MetricData metricData, double value, long timestamp, ThresholdRule rule, long key) {
+            long state = states.get(key, NORMAL);
+            if (state < 0) {
+                if (rule.isRecovered(value)) {
+                    states.put(key, NORMAL);
+                    recoveredCounter.increment();
+                    log.info("阈值规则恢复: {}, 资产: {}, 当前值: {}", rule, metricData.getAssetId(), value);
+                }
+                return;
+            }
+            if (!rule.isBreached(value)) {
+                if (state != NORMAL) {
+                    states.put(key, NORMAL);
+                }
+                return;
+            }
+            long since = state > 0 ? state : timestamp;
+            if (timestamp - since >= rule.getForMillis()) {
+                states.put(key, -since);
+                fire(metricData, value, timestamp, since, rule);
+            } else if (state == NORMAL) {
+                states.put(key, since);
+            }
+        }
+
+        private void fire(MetricData metricData, double value, long timestamp, long since, ThresholdRule rule) {
+            firedCounter.increment();
+            Map<String, Object> tags = new HashMap<>();
+            for (int i = 0; i < metricData.tagCount(); i++) {
+                tags.put(metricData.tagKey(i), metricData.tagValue(i));
+            }
+            if (metricData.getTaskId() != null) {
+                tags.put("taskId", metricData.getTaskId());
+            }
+            if (metricData.getInstanceId() != null) {
+                tags.put("instanceId", metricData.getInstanceId());
+            }
+            tags.put("direction", rule.getDirection().name());
+            tags.put("ruleSource", rule.getSource());
+
+            ThresholdAlertDTO alert = ThresholdAlertDTO.builder()
+                    .eventType(EVENT_TYPE)
+                    .assetId(metricData.getAssetId())
+                    .metricName(metricData.getMetricName())
+                    .value(value)
+                    .threshold(rule.getThreshold())
+                    .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()))
+                    .duration((int) ((timestamp - since) / 1000))
+                    .severity(rule.getSeverity())
+                    .tags(tags)
+                    .build();
+            log.info("阈值规则触发: {}, 资产: {}, 当前值: {}", rule, metricData.getAssetId(), value);
+            alertPublisher.publish(alert);
+        }
+    }
+}
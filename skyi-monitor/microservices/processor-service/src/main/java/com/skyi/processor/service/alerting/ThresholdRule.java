@@ -0,0 +1,72 @@
+package com.skyi.processor.service.alerting;
+
+import com.skyi.processor.service.worker.SeriesKey;
+import lombok.Getter;
+
+/**
+ * 编译后的阈值规则
+ * 不可变对象，规则表刷新时整体替换。触发与恢复使用不同的阈值(滞回)，
+ * 数值在两个阈值之间波动时不会反复触发
+ */
+@Getter
+public final class ThresholdRule {
+
+    /**
+     * 比较方向
+     */
+    public enum Direction {
+        /**
+         * 高于阈值触发
+         */
+        ABOVE,
+        /**
+         * 低于阈值触发
+         */
+        BELOW
+    }
+
+    private final String metricName;
+    private final Direction direction;
+    private final double threshold;
+    private final double recovery;
+    private final long forMillis;
+    private final String severity;
+    private final String source;
+
+    /**
+     * 规则标识，由规则内容计算，规则表刷新后内容不变的规则保留各序列的状态
+     */
+    private final long id;
+
+    public ThresholdRule(String metricName, Direction direction, double threshold, double recovery,
+                         long forMillis, String severity, String source) {
+        this.metricName = metricName;
+        this.direction = direction;
+        this.threshold = threshold;
+        this.recovery = recovery;
+        this.forMillis = Math.max(0L, forMillis);
+        this.severity = severity;
+        this.source = source;
+        this.id = SeriesKey.hash(metricName + '|' + direction + '|' + threshold + '|' + severity + '|' + source);
+    }
+
+    /**
+     * 数值是否达到触发条件
+     */
+    public boolean isBreached(double value) {
+        return direction == Direction.ABOVE ? value > threshold : value < threshold;
+    }
+
+    /**
+     * 已触发的规则在该数值下是否恢复
+     */
+    public boolean isRecovered(double value) {
+        return direction == Direction.ABOVE ? value <= recovery : value >= recovery;
+    }
+
+    @Override
+    public String toString() {
+        return metricName + (direction == Direction.ABOVE ? " > " : " < ") + threshold
+                + " for " + forMillis / 1000 + "s (" + severity + ", " + source + ")";
+    }
+}
@@ -0,0 +1,40 @@
+package com.skyi.processor.service.alerting;
+
+import lombok.Data;
+
+/**
+ * 配置文件中的阈值规则(processor.alerting.rules)
+ */
+@Data
+public class ThresholdRuleProperties {
+
+    /**
+     * 指标名称
+     */
+    private String metric;
+
+    /**
+     * 比较方向：above或below
+     */
+    private String direction = "above";
+
+    /**
+     * 触发阈值
+     */
+    private Double threshold;
+
+    /**
+     * 恢复阈值，未配置时按滞回比例计算
+     */
+    private Double recovery;
+
+    /**
+     * 持续超限多少秒后触发，未配置时使用默认值
+     */
+    private Long forSeconds;
+
+    /**
+     * 告警级别
+     */
+    private String severity = "WARNING";
+}
@@ -0,0 +1,171 @@
+package com.skyi.processor.service.alerting;
+
+import com.skyi.processor.client.CollectorServiceClient;
+import com.skyi.processor.dto.MetricDefinitionDTO;
+import com.skyi.processor.dto.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 阈值规则表
+ * 规则来自两处：采集服务中指标定义的thresholdMin/thresholdMax(定期拉取)，
+ * 以及配置文件中的processor.alerting.rules。规则按指标名编译为只读的分发表，
+ * 刷新时整体替换，评估时只做一次Map查找，不访问数据库。
+ * 指标定义的规则同时以编码和名称登记，两者都可能作为上报的指标名
+ */
+@Slf4j
+@Component
+public class ThresholdRuleRegistry {
+
+    private static final String SOURCE_DEFINITION = "definition";
+
+    private static final String SOURCE_CONFIG = "config";
+
+    @Autowired
+    private CollectorServiceClient collectorServiceClient;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${processor.alerting.default-for-seconds:60}")
+    private long defaultForSeconds;
+
+    /**
+     * 恢复阈值与触发阈值的相对距离
+     */
+    @Value("${processor.alerting.hysteresis-ratio:0.05}")
+    private double hysteresisRatio;
+
+    @Value("${processor.alerting.definition-severity:WARNING}")
+    private String definitionSeverity;
+
+    private List<ThresholdRule> configRules = Collections.emptyList();
+
+    private List<ThresholdRule> definitionRules = Collections.emptyList();
+
+    private volatile Map<String, ThresholdRule[]> table = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        List<ThresholdRuleProperties> properties = Binder.get(environment)
+                .bind("processor.alerting.rules", Bindable.listOf(ThresholdRuleProperties.class))
+                .orElse(Collections.emptyList());
+        List<ThresholdRule> rules = new ArrayList<>(properties.size());
+        for (ThresholdRuleProperties rule : properties) {
+            if (!StringUtils.hasText(rule.getMetric()) || rule.getThreshold() == null) {
+                log.warn("忽略无效的阈值规则: {}", rule);
+                continue;
+            }
+            ThresholdRule.Direction direction = "below".equalsIgnoreCase(rule.getDirection())
+                    ? ThresholdRule.Direction.BELOW
+                    : ThresholdRule.Direction.ABOVE;
+            long forSeconds = rule.getForSeconds() != null ? rule.getForSeconds() : defaultForSeconds;
+            rules.add(compile(rule.getMetric(), direction, rule.getThreshold(), rule.getRecovery(),
+                    forSeconds, rule.getSeverity(), SOURCE_CONFIG));
+        }
+        configRules = rules;
+        rebuild();
+    }
+
+    /**
+     * 获取指标的全部规则
+     *
+     * @param metricName 指标名称
+     * @return 规则数组，没有规则时返回null
+     */
+    public ThresholdRule[] rulesFor(String metricName) {
+        return metricName != null ? table.get(metricName) : null;
+    }
+
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    /**
+     * 从采集服务拉取指标定义并重建规则表，拉取失败时保留上次的规则
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${processor.alerting.refresh-interval-ms:60000}")
+    public void refresh() {
+        List<MetricDefinitionDTO> definitions;
+        try {
+            Result<List<MetricDefinitionDTO>> result = collectorServiceClient.exportMetrics();
+            if (result == null || !result.isSuccess() || result.getData() == null) {
+                log.warn("获取指标定义失败: {}", result != null ? result.getMessage() : null);
+                return;
+            }
+            definitions = result.getData();
+        } catch (Exception e) {
+            log.warn("获取指标定义失败，继续使用现有阈值规则: {}", e.getMessage());
+            return;
+        }
+
+        List<ThresholdRule> rules = new ArrayList<>();
+        for (MetricDefinitionDTO definition : definitions) {
+            if (definition.getStatus() != null && definition.getStatus() != 1) {
+                continue;
+            }
+            addDefinitionRules(rules, definition.getCode(), definition);
+            if (definition.getName() != null && !definition.getName().equals(definition.getCode())) {
+                addDefinitionRules(rules, definition.getName(), definition);
+            }
+        }
+        definitionRules = rules;
+        rebuild();
+    }
+
+    private void addDefinitionRules(List<ThresholdRule> rules, String metricName, MetricDefinitionDTO definition) {
+        if (!StringUtils.hasText(metricName)) {
+            return;
+        }
+        if (definition.getThresholdMax() != null) {
+            rules.add(compile(metricName, ThresholdRule.Direction.ABOVE, definition.getThresholdMax(), null,
+                    defaultForSeconds, definitionSeverity, SOURCE_DEFINITION));
+        }
+        if (definition.getThresholdMin() != null) {
+            rules.add(compile(metricName, ThresholdRule.Direction.BELOW, definition.getThresholdMin(), null,
+                    defaultForSeconds, definitionSeverity, SOURCE_DEFINITION));
+        }
+    }
+
+    private synchronized void rebuild() {
+        Map<String, List<ThresholdRule>> grouped = new HashMap<>();
+        for (List<ThresholdRule> rules : List.of(definitionRules, configRules)) {
+            for (ThresholdRule rule : rules) {
+                grouped.computeIfAbsent(rule.getMetricName(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+        Map<String, ThresholdRule[]> compiled = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((metricName, rules) -> compiled.put(metricName, rules.toArray(new ThresholdRule[0])));
+        int before = table.size();
+        table = compiled;
+        if (compiled.size() != before) {
+            log.info("阈值规则表已更新: 指标{}个, 指标定义规则{}条, 配置规则{}条",
+                    compiled.size(), definitionRules.size(), configRules.size());
+        }
+    }
+
+    private ThresholdRule compile(String metricName, ThresholdRule.Direction direction, double threshold,
+                                  Double recovery, long forSeconds, String severity, String source) {
+        double margin = Math.abs(threshold) * hysteresisRatio;
+        double recoveryThreshold = recovery != null
+                ? recovery
+                : direction == ThresholdRule.Direction.ABOVE ? threshold - margin : threshold + margin;
+        String level = StringUtils.hasText(severity) ? severity.trim().toUpperCase(Locale.ROOT) : "WARNING";
+        return new ThresholdRule(metricName, direction, threshold, recoveryThreshold, forSeconds * 1000L, level, source);
+    }
+}
@@ -0,0 +1,278 @@
+package com.skyi.processor.service.anomaly;
+
+import com.skyi.processor.dto.AnomalyEventDTO;
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.service.alerting.AlertEventPublisher;
+import com.skyi.processor.service.worker.SeriesProcessor;
+import com.skyi.processor.service.worker.SeriesProcessorFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 基线异常检测
+ * 作为序列处理器为每个序列维护在线基线(EWMA均值/方差，可选按天的季节项，见{@link SeriesBaselines})，
+ * 每个数据点常数时间更新。偏离程度超过阈值时发送一次基线偏离事件，并在数据点上写入anomaly_score字段；
+ * 回落到阈值一半以下才复位，避免在阈值附近反复发送。
+ * 基线定期写入检查点目录，重启后序列首次出现时从检查点恢复，不需要重新预热；
+ * 工作线程只复制基线，序列化和写文件在存储线程池中执行
+ */
+@Slf4j
+@Component
+@Order(300)
+public class AnomalyDetector implements SeriesProcessorFactory {
+
+    /**
+     * 偏离基线的数据点上写入的字段，值为偏离程度
+     */
+    public static final String SCORE_FIELD = "anomaly_score";
+
+    private static final String EVENT_TYPE = "BASELINE_DEVIATION";
+
+    @Autowired
+    private AlertEventPublisher alertPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("storageTaskExecutor")
+    private Executor storageTaskExecutor;
+
+    @Value("${processor.anomaly.enabled:true}")
+    private boolean enabled;
+
+    @Value("${processor.anomaly.alpha:0.05}")
+    private double alpha;
+
+    @Value("${processor.anomaly.seasonal-gamma:0.1}")
+    private double seasonalGamma;
+
+    /**
+     * 一天划分的季节项数量，0表示不使用季节项
+     */
+    @Value("${processor.anomaly.season-buckets:24}")
+    private int seasonBuckets;
+
+    @Value("${processor.anomaly.threshold:4.0}")
+    private double threshold;
+
+    /**
+     * 标准差下限：预测值绝对值的倍数
+     */
+    @Value("${processor.anomaly.min-relative-stddev:0.01}")
+    private double minRelativeStddev;
+
+    /**
+     * 标准差下限：绝对值，用于预测值接近0的序列
+     */
+    @Value("${processor.anomaly.min-stddev:0.001}")
+    private double minStddev;
+
+    @Value("${processor.anomaly.warmup:30}")
+    private int warmup;
+
+    @Value("${processor.anomaly.series-idle-ms:86400000}")
+    private long seriesIdleMs;
+
+    /**
+     * 检查点目录，为空表示不保存基线
+     */
+    @Value("${processor.anomaly.checkpoint-dir:}")
+    private String checkpointDir;
+
+    @Value("${processor.anomaly.checkpoint-interval-ms:300000}")
+    private long checkpointIntervalMs;
+
+    private Counter eventCounter;
+
+    private long zoneOffsetMillis;
+
+    /**
+     * 启动时读取的检查点，过了恢复期后释放
+     */
+    private volatile BaselineCheckpoint restored;
+
+    private long restoreUntil;
+
+    @PostConstruct
+    public void init() {
+        eventCounter = Counter.builder("processor.anomaly.events")
+                .description("发送的基线偏离事件")
+                .register(meterRegistry);
+        zoneOffsetMillis = ZoneId.systemDefault().getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+        if (enabled && StringUtils.hasText(checkpointDir)) {
+            restored = BaselineCheckpoint.load(checkpointPath(), SeriesBaselines.SEASON + Math.max(0, seasonBuckets));
+            restoreUntil = System.currentTimeMillis() + 2 * checkpointIntervalMs;
+            if (restored != null) {
+                log.info("已读取基线检查点, 序列数: {}", restored.size());
+            }
+        }
+    }
+
+    @Override
+    public SeriesProcessor create(int workerIndex) {
+        if (!enabled) {
+            return (metricData, seriesKey) -> true;
+        }
+        return new Detector(workerIndex);
+    }
+
+    private Path checkpointPath() {
+        return Paths.get(checkpointDir);
+    }
+
+    /**
+     * 单个工作线程的基线
+     */
+    private final class Detector implements SeriesProcessor {
+
+        private final int workerIndex;
+        private final SeriesBaselines baselines;
+        private long now = System.currentTimeMillis();
+        private long lastPurge = now;
+        private long lastCheckpoint = now;
+
+        /**
+         * 正在写出的检查点，写完之前不再发起新的写出
+         */
+        private CompletableFuture<Void> pendingCheckpoint = CompletableFuture.completedFuture(null);
+
+        private Detector(int workerIndex) {
+            this.workerIndex = workerIndex;
+            this.baselines = new SeriesBaselines(alpha, seasonalGamma, seasonBuckets, zoneOffsetMillis, threshold,
+                    minRelativeStddev, minStddev, warmup);
+        }
+
+        @Override
+        public boolean process(MetricData metricData, long seriesKey) {
+            double value = metricData.doubleValue();
+            if (!metricData.hasValue() || Double.isNaN(value) || Double.isInfinite(value)) {
+                return true;
+            }
+            BaselineCheckpoint checkpoint = restored;
+            if (checkpoint != null && !baselines.contains(seriesKey)) {
+                checkpoint.copyTo(seriesKey, baselines);
+            }
+            long timestamp = metricData.hasTimestamp() ? metricData.timestampMillis() : now;
+            double score = baselines.update(seriesKey, timestamp, value, now);
+            if (score > threshold) {
+                metricData.addField(SCORE_FIELD, score);
+                if (!baselines.isAnomalous()) {
+                    baselines.setAnomalous(true);
+                    emit(metricData, value, timestamp, score);
+                }
+            } else if (score < threshold / 2 && baselines.isAnomalous()) {
+                baselines.setAnomalous(false);
+            }
+            return true;
+        }
+
+        @Override
+        public void tick(long now) {
+            this.now = now;
+            if (now - lastPurge >= Math.min(seriesIdleMs, 3_600_000L)) {
+                lastPurge = now;
+                int removed = baselines.purge(now - seriesIdleMs);
+                if (removed > 0) {
+                    log.debug("清理空闲序列基线, 工作线程: {}, 清理数: {}, 剩余: {}", workerIndex, removed, baselines.size());
+                }
+            }
+            if (now - lastCheckpoint >= checkpointIntervalMs && pendingCheckpoint.isDone()) {
+                lastCheckpoint = now;
+                checkpointAsync();
+            }
+            if (restored != null && now > restoreUntil) {
+                restored = null;
+            }
+        }
+
+        /**
+         * 停止时等待进行中的写出完成，再同步写出最终的基线
+         */
+        @Override
+        public void close() {
+            if (!StringUtils.hasText(checkpointDir)) {
+                return;
+            }
+            try {
+                pendingCheckpoint.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // 失败已在写出时记录
+            }
+            write(baselines.snapshot());
+        }
+
+        private void checkpointAsync() {
+            if (!StringUtils.hasText(checkpointDir)) {
+                return;
+            }
+            SeriesBaselines.Snapshot snapshot = baselines.snapshot();
+            try {
+                pendingCheckpoint = CompletableFuture.runAsync(() -> write(snapshot), storageTaskExecutor);
+            } catch (RejectedExecutionException e) {
+                log.warn("存储线程池已停止，跳过本次基线检查点, 工作线程: {}", workerIndex);
+            }
+        }
+
+        private void write(SeriesBaselines.Snapshot snapshot) {
+            try {
+                BaselineCheckpoint.write(checkpointPath(), workerIndex, snapshot);
+            } catch (IOException e) {
+                log.error("保存基线检查点失败, 工作线程: {}, 原因: {}", workerIndex, e.getMessage());
+            }
+        }
+
+        private void emit(MetricData metricData, double value, long timestamp, double score) {
+            eventCounter.increment();
+            Map<String, Object> tags = new HashMap<>();
+            for (int i = 0; i < metricData.tagCount(); i++) {
+                tags.put(metricData.tagKey(i), metricData.tagValue(i));
+            }
+            if (metricData.getTaskId() != null) {
+                tags.put("taskId", metricData.getTaskId());
+            }
+            if (metricData.getInstanceId() != null) {
+                tags.put("instanceId", metricData.getInstanceId());
+            }
+
+            AnomalyEventDTO event = AnomalyEventDTO.builder()
+                    .eventType(EVENT_TYPE)
+                    .assetId(metricData.getAssetId())
+                    .metricName(metricData.getMetricName())
+                    .value(value)
+                    .expected(baselines.getLastExpected())
+                    .stddev(baselines.getLastStddev())
+                    .score(score)
+                    .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()))
+                    .severity(score >= 2 * threshold ? "CRITICAL" : "WARNING")
+                    .tags(tags)
+                    .build();
+            log.info("指标偏离基线: {}, 资产: {}, 当前值: {}, 预测值: {}, 偏离: {}",
+                    metricData.getMetricName(), metricData.getAssetId(), value, baselines.getLastExpected(), score);
+            alertPublisher.publish(event);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.skyi.processor.service.anomaly;
+
+import com.skyi.processor.service.worker.LongLongMap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 基线检查点
+ * 每个工作线程把自己的基线写入一个文件(baseline-工作线程序号.bin)，先写临时文件再原子替换。
+ * 启动时读取目录下全部文件合并为只读快照，序列首次出现时从快照复制基线；
+ * 工作线程数变化后序列分配到其他线程也能恢复。多个文件包含同一序列时以较新的文件为准
+ */
+@Slf4j
+final class BaselineCheckpoint {
+
+    private static final int MAGIC = 0x534B4231;
+
+    private static final String PREFIX = "baseline-";
+
+    private static final String SUFFIX = ".bin";
+
+    private final int stride;
+    private final LongLongMap offsets;
+    private final double[] data;
+
+    private BaselineCheckpoint(int stride, LongLongMap offsets, double[] data) {
+        this.stride = stride;
+        this.offsets = offsets;
+        this.data = data;
+    }
+
+    int size() {
+        return offsets.size();
+    }
+
+    /**
+     * 把序列的基线复制到工作线程的基线表
+     *
+     * @return 快照中是否有该序列
+     */
+    boolean copyTo(long key, SeriesBaselines target) {
+        long offset = offsets.get(key, -1L);
+        if (offset < 0) {
+            return false;
+        }
+        target.restore(key, data, (int) offset);
+        return true;
+    }
+
+    /**
+     * 写出工作线程的基线副本
+     */
+    static void write(Path dir, int workerIndex, SeriesBaselines.Snapshot baselines) throws IOException {
+        Files.createDirectories(dir);
+        Path target = dir.resolve(PREFIX + workerIndex + SUFFIX);
+        Path temp = dir.resolve(PREFIX + workerIndex + SUFFIX + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(baselines.getStride());
+            out.writeInt(baselines.size());
+            baselines.writeTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取目录下的全部检查点，结构(季节项数量)与当前配置不一致的文件忽略
+     *
+     * @return 快照，没有可用的检查点时返回null
+     */
+    static BaselineCheckpoint load(Path dir, int stride) {
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.warn("读取基线检查点目录失败: {}, 原因: {}", dir, e.getMessage());
+            return null;
+        }
+        files.sort(Comparator.comparingLong(BaselineCheckpoint::lastModified));
+
+        LongLongMap offsets = new LongLongMap();
+        double[] data = new double[0];
+        int used = 0;
+        for (Path file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                if (in.readInt() != MAGIC || in.readInt() != stride) {
+                    log.warn("基线检查点格式与当前配置不一致，忽略: {}", file);
+                    continue;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long key = in.readLong();
+                    long offset = offsets.get(key, -1L);
+                    if (offset < 0) {
+                        if (used + stride > data.length) {
+                            data = Arrays.copyOf(data, Math.max(data.length * 2, used + stride * Math.max(1024, count)));
+                        }
+                        offset = used;
+                        used += stride;
+                        offsets.put(key, offset);
+                    }
+                    for (int j = 0; j < stride; j++) {
+                        data[(int) offset + j] = in.readDouble();
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("读取基线检查点失败: {}, 原因: {}", file, e.getMessage());
+            }
+        }
+        return offsets.size() > 0 ? new BaselineCheckpoint(stride, offsets, data) : null;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.skyi.processor.service.anomaly;
+
+import com.skyi.processor.service.worker.LongLongMap;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 单个工作线程内全部序列的在线基线
+ * 每个序列占用数组中连续的stride个double：均值、残差方差、样本数、偏离标记，
+ * 之后是按一天等分的季节项(可为0个)。模型为加性季节的Holt-Winters(不含趋势项)：
+ * <pre>
+ * 预测值   p = mean + season[h]
+ * 残差     r = x - p
+ * 均值     mean += alpha * (x - season[h] - mean)
+ * 方差     var = (1 - alpha) * (var + alpha * r'^2)，r'为截断到 ±threshold*标准差 的残差
+ * 季节项   season[h] += gamma * (x - mean - season[h])
+ * </pre>
+ * 每个数据点的更新为常数时间，不分配对象；异常值的残差截断后再更新方差，单个尖峰不会把基线拉宽。
+ * 标准差不低于 预测值的minRelativeStddev倍 与 minStddev 中的较大者，平稳序列的微小波动不会被判为偏离；
+ * 方差的平滑窗口约为1/alpha个样本，样本数达到warmup与该窗口中的较大者后才开始评分。
+ * 非线程安全，只由所属工作线程访问
+ */
+final class SeriesBaselines {
+
+    static final int MEAN = 0;
+    static final int VARIANCE = 1;
+    static final int COUNT = 2;
+    static final int FLAGS = 3;
+    static final int SEASON = 4;
+
+    static final double FLAG_ANOMALOUS = 1.0;
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private static final long REMOVED = -2L;
+
+    /**
+     * 开始评分所需的最少样本数
+     */
+    private static final int MIN_SAMPLES = 10;
+
+    private final double alpha;
+    private final double gamma;
+    private final int seasonBuckets;
+    private final long bucketMillis;
+    private final long zoneOffsetMillis;
+    private final double threshold;
+    private final double minRelativeStddev;
+    private final double minStddev;
+    private final int warmup;
+    private final int stride;
+
+    private final LongLongMap index = new LongLongMap();
+    private double[] data;
+    private long[] keys;
+    private long[] lastSeen;
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+    private int slotCount;
+
+    /**
+     * 最近一次update的序列位置、预测值和标准差，供调用方维护偏离状态和生成事件
+     */
+    private int lastBase;
+    private double lastExpected;
+    private double lastStddev;
+
+    SeriesBaselines(double alpha, double gamma, int seasonBuckets, long zoneOffsetMillis,
+                    double threshold, double minRelativeStddev, double minStddev, int warmup) {
+        this.alpha = alpha;
+        this.gamma = gamma;
+        this.seasonBuckets = Math.max(0, seasonBuckets);
+        this.bucketMillis = this.seasonBuckets > 0 ? DAY_MILLIS / this.seasonBuckets : DAY_MILLIS;
+        this.zoneOffsetMillis = zoneOffsetMillis;
+        this.threshold = threshold;
+        this.minRelativeStddev = Math.max(0, minRelativeStddev);
+        this.minStddev = Math.max(Double.MIN_NORMAL, minStddev);
+        this.warmup = Math.max(Math.max(MIN_SAMPLES, warmup), (int) Math.ceil(1 / alpha));
+        this.stride = SEASON + this.seasonBuckets;
+        int capacity = 1024;
+        this.data = new double[capacity * stride];
+        this.keys = new long[capacity];
+        this.lastSeen = new long[capacity];
+    }
+
+    int getStride() {
+        return stride;
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    double getLastExpected() {
+        return lastExpected;
+    }
+
+    double getLastStddev() {
+        return lastStddev;
+    }
+
+    /**
+     * 序列是否已有基线
+     */
+    boolean contains(long key) {
+        return index.get(key, -1L) >= 0;
+    }
+
+    /**
+     * 用数据点更新序列基线
+     *
+     * @param key 序列键
+     * @param timestamp 事件时间(毫秒)
+     * @param value 数值
+     * @param now 当前时间，用于清理长期无数据的序列
+     * @return 偏离程度(残差 / 标准差)，样本数不足时返回NaN
+     */
+    double update(long key, long timestamp, double value, long now) {
+        int slot = slotOf(key);
+        int base = slot * stride;
+        lastSeen[slot] = now;
+        lastBase = base;
+        double count = data[base + COUNT];
+        if (count == 0) {
+            data[base + MEAN] = value;
+            data[base + VARIANCE] = 0;
+            data[base + COUNT] = 1;
+            lastExpected = value;
+            lastStddev = 0;
+            return Double.NaN;
+        }
+
+        int season = seasonBuckets > 0
+                ? base + SEASON + (int) (Math.floorMod(timestamp + zoneOffsetMillis, DAY_MILLIS) / bucketMillis)
+                : -1;
+        double seasonal = season >= 0 ? data[season] : 0;
+        double mean = data[base + MEAN];
+        double variance = data[base + VARIANCE];
+        double expected = mean + seasonal;
+        double residual = value - expected;
+        double stddev = Math.max(Math.sqrt(variance), Math.max(minRelativeStddev * Math.abs(expected), minStddev));
+        double score = count >= warmup ? Math.abs(residual) / stddev : Double.NaN;
+
+        double bound = threshold * stddev;
+        double clipped = count >= warmup ? Math.max(-bound, Math.min(bound, residual)) : residual;
+        mean += alpha * (value - seasonal - mean);
+        data[base + MEAN] = mean;
+        data[base + VARIANCE] = (1 - alpha) * (variance + alpha * clipped * clipped);
+        if (season >= 0) {
+            data[season] += gamma * (value - mean - seasonal);
+        }
+        data[base + COUNT] = count + 1;
+
+        lastExpected = expected;
+        lastStddev = stddev;
+        return score;
+    }
+
+    /**
+     * 最近一次update的序列是否处于偏离状态
+     */
+    boolean isAnomalous() {
+        return data[lastBase + FLAGS] == FLAG_ANOMALOUS;
+    }
+
+    void setAnomalous(boolean anomalous) {
+        data[lastBase + FLAGS] = anomalous ? FLAG_ANOMALOUS : 0;
+    }
+
+    /**
+     * 从检查点恢复序列基线，序列已存在时不覆盖
+     */
+    void restore(long key, double[] source, int offset) {
+        if (contains(key)) {
+            return;
+        }
+        int base = slotOf(key) * stride;
+        System.arraycopy(source, offset, data, base, stride);
+        data[base + FLAGS] = 0;
+    }
+
+    /**
+     * 清理长时间没有数据的序列，槽位回收复用
+     *
+     * @param idleBefore 最后一次数据早于该时间的序列被清理
+     * @return 清理的序列数
+     */
+    int purge(long idleBefore) {
+        int removed = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (lastSeen[slot] != 0 && lastSeen[slot] < idleBefore) {
+                index.put(keys[slot], REMOVED);
+                lastSeen[slot] = 0;
+                Arrays.fill(data, slot * stride, (slot + 1) * stride, 0);
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+                }
+                freeSlots[freeCount++] = slot;
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            index.removeIf((key, slot) -> slot == REMOVED);
+        }
+        return removed;
+    }
+
+    /**
+     * 复制全部序列的基线，复制后可在其他线程写出，不影响工作线程继续更新
+     */
+    Snapshot snapshot() {
+        int size = index.size();
+        long[] snapshotKeys = new long[size];
+        double[] snapshotData = new double[size * stride];
+        int count = 0;
+        for (int slot = 0; slot < slotCount && count < size; slot++) {
+            if (lastSeen[slot] == 0) {
+                continue;
+            }
+            snapshotKeys[count] = keys[slot];
+            System.arraycopy(data, slot * stride, snapshotData, count * stride, stride);
+            count++;
+        }
+        return new Snapshot(stride, count, snapshotKeys, snapshotData);
+    }
+
+    private int slotOf(long key) {
+        long existing = index.get(key, -1L);
+        if (existing >= 0) {
+            return (int) existing;
+        }
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == keys.length) {
+                int capacity = keys.length * 2;
+                data = Arrays.copyOf(data, capacity * stride);
+                keys = Arrays.copyOf(keys, capacity);
+                lastSeen = Arrays.copyOf(lastSeen, capacity);
+            }
+            slot = slotCount++;
+        }
+        keys[slot] = key;
+        lastSeen[slot] = 1;
+        index.put(key, slot);
+        return slot;
+    }
+
+    /**
+     * 基线的只读副本
+     */
+    static final class Snapshot {
+
+        private final int stride;
+        private final int size;
+        private final long[] keys;
+        private final double[] data;
+
+        private Snapshot(int stride, int size, long[] keys, double[] data) {
+            this.stride = stride;
+            this.size = size;
+            this.keys = keys;
+            this.data = data;
+        }
+
+        int getStride() {
+            return stride;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * 写出全部序列：序列键后接stride个double
+         */
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(keys[i]);
+                int base = i * stride;
+                for (int j = 0; j < stride; j++) {
+                    out.writeDouble(data[base + j]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.skyi.processor.service.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.model.MetricDictionary;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 指标消息解码器
+ * 解码collector-service中MetricWireEncoder产生的二进制消息，格式说明见编码器；
+ * 首字节不是魔数时按旧版JSON消息解析，滚动升级期间新旧采集服务可以同时写入
+ */
+public final class MetricWireDecoder {
+
+    public static final byte MAGIC = (byte) 0xC7;
+
+    /**
+     * 当前支持的最高格式版本
+     */
+    public static final int MAX_VERSION = 2;
+
+    private static final int HAS_TASK_ID = 1;
+    private static final int HAS_INSTANCE_ID = 1 << 1;
+    private static final int HAS_ASSET_ID = 1 << 2;
+    private static final int HAS_VALUE = 1 << 3;
+    private static final int HAS_COLLECT_TIME = 1 << 4;
+    private static final int HAS_CREATE_TIME = 1 << 5;
+
+    private final byte[] data;
+    private int position;
+
+    private MetricWireDecoder(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * 解码一条Kafka消息
+     *
+     * @param message 消息内容
+     * @return 指标数据列表
+     * @throws MetricWireFormatException 二进制消息格式错误或版本不受支持
+     * @throws IllegalArgumentException JSON消息格式错误
+     */
+    public static List<MetricData> decode(byte[] message) {
+        if (message == null || message.length == 0) {
+            return Collections.emptyList();
+        }
+        if (message[0] != MAGIC) {
+            return Collections.singletonList(decodeJson(new String(message, StandardCharsets.UTF_8)));
+        }
+        return new MetricWireDecoder(message).decodeBinary();
+    }
+
+    private List<MetricData> decodeBinary() {
+        position = 1;
+        require(1);
+        int version = data[position++];
+        if (version < 1 || version > MAX_VERSION) {
+            throw new MetricWireFormatException("不支持的指标消息版本: " + version);
+        }
+
+        // 每个字典项至少占1字节长度，数量超过剩余字节时消息已损坏，避免按错误的数量分配内存
+        String[] dictionary = new String[readCount()];
+        for (int i = 0; i < dictionary.length; i++) {
+            int length = readCount();
+            require(length);
+            dictionary[i] = MetricDictionary.intern(new String(data, position, length, StandardCharsets.UTF_8));
+            position += length;
+        }
+
+        if (version == 2) {
+            return readEnvelope(dictionary);
+        }
+
+        int count = readCount();
+        List<MetricData> metrics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            metrics.add(readPoint(dictionary));
+        }
+        return metrics;
+    }
+
+    /**
+     * 解码版本2信封：公共字段只出现一次，逐点展开到每个数据点
+     */
+    private List<MetricData> readEnvelope(String[] dictionary) {
+        int flags = readVarInt();
+        Long taskId = (flags & HAS_TASK_ID) != 0 ? readZigZag() : null;
+        Long instanceId = (flags & HAS_INSTANCE_ID) != 0 ? readZigZag() : null;
+        Long assetId = (flags & HAS_ASSET_ID) != 0 ? readZigZag() : null;
+        long baseTime = (flags & HAS_COLLECT_TIME) != 0 ? readZigZag() : 0L;
+        // 创建时间只用于排查发送延迟，不写入存储
+        readZigZag();
+
+        int count = readCount();
+        List<MetricData> metrics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int pointFlags = readVarInt();
+            MetricData metricData = new MetricData();
+            metricData.setTaskId(taskId);
+            metricData.setInstanceId(instanceId);
+            metricData.setAssetId(assetId);
+            metricData.setMetricName(readEntry(dictionary));
+            if ((pointFlags & HAS_VALUE) != 0) {
+                metricData.doubleValue(readDouble());
+            }
+            if ((pointFlags & HAS_COLLECT_TIME) != 0) {
+                metricData.timestampMillis(baseTime + readZigZag());
+            }
+            metricData.tagPairs(readLabels(dictionary));
+            metrics.add(metricData);
+        }
+        return metrics;
+    }
+
+    private MetricData readPoint(String[] dictionary) {
+        int flags = readVarInt();
+        MetricData metricData = new MetricData();
+        if ((flags & HAS_TASK_ID) != 0) {
+            metricData.setTaskId(readZigZag());
+        }
+        if ((flags & HAS_INSTANCE_ID) != 0) {
+            metricData.setInstanceId(readZigZag());
+        }
+        if ((flags & HAS_ASSET_ID) != 0) {
+            metricData.setAssetId(readZigZag());
+        }
+        metricData.setMetricName(readEntry(dictionary));
+        if ((flags & HAS_VALUE) != 0) {
+            metricData.doubleValue(readDouble());
+        }
+        if ((flags & HAS_COLLECT_TIME) != 0) {
+            metricData.timestampMillis(readZigZag());
+        }
+        if ((flags & HAS_CREATE_TIME) != 0) {
+            // 创建时间只用于排查发送延迟，不写入存储
+            readZigZag();
+        }
+
+        metricData.tagPairs(readLabels(dictionary));
+        return metricData;
+    }
+
+    /**
+     * 读取标签为键值交替数组，键和值直接引用已加入共享字典的消息字典项
+     */
+    private String[] readLabels(String[] dictionary) {
+        int labelCount = readCount();
+        String[] pairs = new String[labelCount * 2];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = readEntry(dictionary);
+        }
+        return pairs;
+    }
+
+    /**
+     * 解析旧版JSON消息，兼容采集服务的字段名(metricValue、collectTime、metricLabels)
+     */
+    private static MetricData decodeJson(String json) {
+        JSONObject object = JSON.parseObject(json);
+        MetricData metricData = new MetricData();
+        metricData.setMetricName(MetricDictionary.intern(object.getString("metricName")));
+        metricData.setAssetId(object.getLong("assetId"));
+        metricData.setTaskId(object.getLong("taskId"));
+        metricData.setInstanceId(object.getLong("instanceId"));
+        metricData.setValue(object.containsKey("value") ? object.getDouble("value") : object.getDouble("metricValue"));
+
+        Long timestamp = object.containsKey("collectTime") ? object.getLong("collectTime") : null;
+        if (timestamp != null) {
+            metricData.timestampMillis(timestamp);
+        } else if (object.containsKey("timestamp")) {
+            metricData.setTimestamp(object.getObject("timestamp", Instant.class));
+        }
+
+        JSONObject tags = object.containsKey("tags") ? object.getJSONObject("tags") : object.getJSONObject("metricLabels");
+        if (tags != null) {
+            tags.forEach((key, value) -> metricData.addTag(key, value != null ? value.toString() : null));
+        }
+        JSONObject fields = object.getJSONObject("fields");
+        if (fields != null) {
+            fields.forEach(metricData::addField);
+        }
+        return metricData;
+    }
+
+    private int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    /**
+     * 读取数量或长度，每项至少占1字节，超过剩余字节数时消息已损坏
+     */
+    private int readCount() {
+        long count = readVarLong();
+        if (count < 0 || count > data.length - position) {
+            throw new MetricWireFormatException("指标消息中的长度超出消息范围: " + count + ", 剩余" + (data.length - position) + "字节");
+        }
+        return (int) count;
+    }
+
+    private String readEntry(String[] dictionary) {
+        long index = readVarLong();
+        if (index < 0 || index >= dictionary.length) {
+            throw new MetricWireFormatException("指标消息中的字典下标越界: " + index + ", 字典大小" + dictionary.length);
+        }
+        return dictionary[(int) index];
+    }
+
+    private void require(int bytes) {
+        if (bytes > data.length - position) {
+            throw new MetricWireFormatException("指标消息不完整，长度: " + data.length + ", 位置: " + position);
+        }
+    }
+
+    private long readZigZag() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new MetricWireFormatException("指标消息中的变长整数格式错误");
+    }
+
+    private double readDouble() {
+        require(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (data[position++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+}
@@ -0,0 +1,12 @@
+package com.skyi.processor.service.codec;
+
+/**
+ * 指标消息格式错误
+ * 消息被截断、长度或字典下标越界、版本不受支持时抛出，重新投递不会成功，消息直接发往死信主题
+ */
+public class MetricWireFormatException extends IllegalArgumentException {
+
+    public MetricWireFormatException(String message) {
+        super(message);
+    }
+}
@@ -1,23 +1,48 @@
 package com.skyi.processor.service.consumer;
 
-import com.alibaba.fastjson.JSON;
 import com.skyi.processor.model.MetricData;
 import com.skyi.processor.service.MetricProcessorService;
+import com.skyi.processor.service.codec.MetricWireDecoder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 指标数据消费者
- * 负责从Kafka中消费指标数据并进行处理
+ * 以批量监听方式消费指标消息，每批消息依次经过三个阶段：
+ * 解析(按分段并行解码)、处理(数据转换)、存储(提交到InfluxDB写入管道)。
+ * 只有本批数据确认写入InfluxDB后才提交位点，进程崩溃不会丢失已拉取但未写入的数据。
+ * 写入失败或超时时抛出异常，由容器的错误处理器按指数退避整批重试有限次数，仍失败则整批发往死信主题；
+ * 被存储拒绝的数据不重试，直接进入死信主题；无法解码的消息单独发往死信主题，其余消息照常处理。
+ * 投递语义为至少一次：重试和重启后的重新投递会再次经过有状态的处理阶段(聚合、基线等)，由这些阶段自行去重。
+ * 解码出的数据点记录来源分区和位点；分区分配后为重建聚合窗口而重放的消息(见{@link WindowRebuildListener})
+ * 只交给预聚合，包含重放消息的批次不提交位点，重放结束前重启会从原来的已提交位点重新开始
  */
 @Slf4j
 @Service
@@ -26,41 +51,56 @@ public class MetricDataConsumer {
     @Autowired
     private MetricProcessorService metricProcessorService;
 
-    @Value("${processor.kafka.batch-size:50}")
-    private int batchSize;
+    @Autowired
+    @Qualifier("processorTaskExecutor")
+    private Executor processorTaskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private DeadLetterPublishingRecoverer deadLetterPublishingRecoverer;
+
+    @Autowired
+    private WindowRebuildListener windowRebuildListener;
 
     /**
-     * 消费单条指标数据
-     *
-     * @param record 消费记录
-     * @param ack 确认对象
+     * 每个并行解码任务处理的消息数
      */
-    @KafkaListener(topics = "${processor.kafka.topics.metric-data}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeMetricData(ConsumerRecord<String, String> record, Acknowledgment ack) {
-        try {
-            String value = record.value();
-            if (!StringUtils.hasText(value)) {
-                log.warn("接收到空消息，忽略处理");
-                ack.acknowledge();
-                return;
-            }
+    @Value("${processor.kafka.parse-chunk-size:100}")
+    private int parseChunkSize;
 
-            log.debug("接收到指标数据消息: {}", value);
-            MetricData metricData = JSON.parseObject(value, MetricData.class);
-            
-            if (metricData != null) {
-                metricProcessorService.processMetric(metricData);
-                log.debug("成功处理指标数据: {}", metricData.getMetricName());
-            }
-            
-            // 确认消息已处理
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("处理指标数据消息失败", e);
-            // 出现异常也确认消息，避免同一消息反复失败
-            // 实际应用中可以考虑重试机制或死信队列
-            ack.acknowledge();
-        }
+    /**
+     * 等待本批数据写入InfluxDB的最长时间
+     */
+    @Value("${processor.kafka.write-timeout-ms:30000}")
+    private long writeTimeoutMs;
+
+    private final Map<TopicPartition, AtomicLong> partitionLags = new ConcurrentHashMap<>();
+
+    private DistributionSummary batchRecordsSummary;
+    private DistributionSummary batchPointsSummary;
+    private Timer endToEndTimer;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void init() {
+        batchRecordsSummary = DistributionSummary.builder("processor.consumer.batch.records")
+                .description("每批拉取的消息数")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchPointsSummary = DistributionSummary.builder("processor.consumer.batch.points")
+                .description("每批解析出的数据点数")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        endToEndTimer = Timer.builder("processor.consumer.e2e.latency")
+                .description("消息写入Kafka到数据写入InfluxDB的耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchTimer = Timer.builder("processor.consumer.batch.duration")
+                .description("单批消息从解析到写入确认的耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     /**
@@ -68,47 +108,136 @@ public class MetricDataConsumer {
      *
      * @param records 消费记录列表
      * @param ack 确认对象
+     * @param consumer 当前消费者，用于读取分区积压
+     * @throws Exception 存储失败或超时，交给容器的错误处理器重试或发往死信主题
      */
-    @KafkaListener(topics = "${processor.kafka.topics.metric-data}", 
-                   groupId = "${spring.kafka.consumer.group-id}", 
+    @KafkaListener(topics = "${processor.kafka.topics.metric-data}",
+                   groupId = "${spring.kafka.consumer.group-id}",
                    id = "batch-consumer")
-    public void consumeMetricDataBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+    public void consumeMetricDataBatch(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack,
+                                       Consumer<?, ?> consumer) throws Exception {
         if (records == null || records.isEmpty()) {
             ack.acknowledge();
             return;
         }
-        
+
+        long start = System.nanoTime();
+        batchRecordsSummary.record(records.size());
         log.debug("批量接收到{}条指标数据消息", records.size());
-        List<MetricData> metricDataList = new ArrayList<>(records.size());
-        
+
+        Set<ConsumerRecord<?, ?>> replayed = windowRebuildListener.replayRecords(records);
+        Map<ConsumerRecord<String, byte[]>, Exception> undecodable = new ConcurrentHashMap<>();
+        List<MetricData> metricDataList = parse(records, replayed, undecodable);
+        batchPointsSummary.record(metricDataList.size());
+
         try {
-            // 解析消息
-            for (ConsumerRecord<String, String> record : records) {
-                String value = record.value();
-                if (StringUtils.hasText(value)) {
-                    try {
-                        MetricData metricData = JSON.parseObject(value, MetricData.class);
-                        if (metricData != null) {
-                            metricDataList.add(metricData);
-                        }
-                    } catch (Exception e) {
-                        log.warn("解析指标数据消息失败: {}", value, e);
-                    }
-                }
-            }
-            
-            // 批量处理
             if (!metricDataList.isEmpty()) {
-                metricProcessorService.processMetrics(metricDataList);
-                log.debug("成功批量处理{}条指标数据", metricDataList.size());
+                metricProcessorService.processAndStoreMetrics(metricDataList)
+                        .get(writeTimeoutMs, TimeUnit.MILLISECONDS);
             }
-            
-            // 确认消息已处理
-            ack.acknowledge();
+        } catch (ExecutionException e) {
+            log.error("批量存储指标数据失败，本批{}条消息交给错误处理器: {}", records.size(), e.getCause().getMessage());
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         } catch (Exception e) {
-            log.error("批量处理指标数据消息失败，共{}条", records.size(), e);
-            // 出现异常也确认消息
+            log.error("批量存储指标数据失败，本批{}条消息交给错误处理器: {}", records.size(), e.getMessage());
+            throw e;
+        }
+
+        // 本批其余数据写入后再发送无法解码的消息，整批重试时不会重复进入死信主题
+        undecodable.forEach((record, e) -> deadLetterPublishingRecoverer.accept(record, e));
+        if (replayed.isEmpty()) {
             ack.acknowledge();
+        } else {
+            log.debug("本批包含{}条重放消息，不提交位点", replayed.size());
         }
+        long now = System.currentTimeMillis();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (record.timestamp() > 0 && !replayed.contains(record)) {
+                endToEndTimer.record(Math.max(0L, now - record.timestamp()), TimeUnit.MILLISECONDS);
+            }
+        }
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        updateLag(records, consumer);
+        log.debug("成功批量处理{}条消息，{}个数据点", records.size(), metricDataList.size());
+    }
+
+    /**
+     * 解析阶段：消息较多时按分段在处理线程池中并行解码，结果保持消息顺序；
+     * 无法解码的消息放入undecodable后跳过，由调用方发往死信主题，避免一条坏消息阻塞整个分区；
+     * 重放的消息第一次消费时已经处理过死信，解码失败时直接跳过
+     */
+    private List<MetricData> parse(List<ConsumerRecord<String, byte[]>> records, Set<ConsumerRecord<?, ?>> replayed,
+                                   Map<ConsumerRecord<String, byte[]>, Exception> undecodable) {
+        int chunkSize = Math.max(1, parseChunkSize);
+        if (records.size() <= chunkSize) {
+            return decode(records, replayed, undecodable);
+        }
+
+        List<CompletableFuture<List<MetricData>>> chunks = new ArrayList<>();
+        for (int from = 0; from < records.size(); from += chunkSize) {
+            List<ConsumerRecord<String, byte[]>> chunk = records.subList(from, Math.min(from + chunkSize, records.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> decode(chunk, replayed, undecodable), processorTaskExecutor));
+        }
+        List<MetricData> metricDataList = new ArrayList<>(records.size() * 4);
+        for (CompletableFuture<List<MetricData>> chunk : chunks) {
+            metricDataList.addAll(chunk.join());
+        }
+        return metricDataList;
+    }
+
+    private List<MetricData> decode(List<ConsumerRecord<String, byte[]>> records, Set<ConsumerRecord<?, ?>> replayed,
+                                    Map<ConsumerRecord<String, byte[]>, Exception> undecodable) {
+        List<MetricData> metricDataList = new ArrayList<>(records.size() * 4);
+        for (ConsumerRecord<String, byte[]> record : records) {
+            byte[] value = record.value();
+            if (value == null || value.length == 0) {
+                continue;
+            }
+            boolean replay = !replayed.isEmpty() && replayed.contains(record);
+            try {
+                List<MetricData> decoded = MetricWireDecoder.decode(value);
+                for (MetricData metricData : decoded) {
+                    metricData.source(record.partition(), record.offset(), replay);
+                }
+                metricDataList.addAll(decoded);
+            } catch (Exception e) {
+                if (replay) {
+                    continue;
+                }
+                log.warn("解析指标数据消息失败，将发送到死信主题, partition={}, offset={}, 原因: {}",
+                        record.partition(), record.offset(), e.getMessage());
+                undecodable.put(record, e);
+            }
+        }
+        return metricDataList;
+    }
+
+    /**
+     * 更新本批涉及分区的消费积压，首次出现的分区注册按分区区分的指标
+     */
+    private void updateLag(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        if (consumer == null) {
+            return;
+        }
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            partitions.add(new TopicPartition(record.topic(), record.partition()));
+        }
+        for (TopicPartition partition : partitions) {
+            OptionalLong lag = consumer.currentLag(partition);
+            if (lag.isPresent()) {
+                partitionLags.computeIfAbsent(partition, this::registerLagGauge).set(lag.getAsLong());
+            }
+        }
+    }
+
+    private AtomicLong registerLagGauge(TopicPartition partition) {
+        AtomicLong lag = new AtomicLong();
+        Gauge.builder("processor.consumer.lag", lag, AtomicLong::get)
+                .description("分区未消费的消息数")
+                .tag("topic", partition.topic())
+                .tag("partition", String.valueOf(partition.partition()))
+                .register(meterRegistry);
+        return lag;
     }
-} 
\ No newline at end of file
+}
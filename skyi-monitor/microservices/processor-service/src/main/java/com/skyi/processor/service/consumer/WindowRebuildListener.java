@@ -0,0 +1,123 @@
+package com.skyi.processor.service.consumer;
+
+import com.skyi.processor.service.aggregation.StreamingAggregator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分区再均衡时重建预聚合窗口
+ * 分区分配后把位点回退到预聚合仍可能未关闭的最早窗口(见{@link StreamingAggregator#rebuildFrom})处，
+ * 重放已提交位点之前的消息；重放的数据只交给预聚合，不再写入存储，也不会再次触发告警。
+ * 分区被收回时通知预聚合丢弃该分区序列的未关闭窗口，由新的所属实例重建后输出。
+ * 积压超过最大窗口时回退位点晚于已提交位点，不再重放，积压处第一个窗口可能不完整
+ */
+@Slf4j
+@Component
+public class WindowRebuildListener implements ConsumerAwareRebalanceListener {
+
+    @Autowired
+    private StreamingAggregator streamingAggregator;
+
+    /**
+     * 正在重放的分区及重放结束位点(分配时的已提交位点)
+     */
+    private final Map<TopicPartition, Long> replayUntil = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            streamingAggregator.assigned(partition.partition());
+        }
+        long rebuildFrom = streamingAggregator.rebuildFrom(System.currentTimeMillis());
+        if (rebuildFrom == Long.MIN_VALUE || partitions.isEmpty()) {
+            return;
+        }
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+            Map<TopicPartition, Long> times = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                times.put(partition, rebuildFrom - streamingAggregator.graceMillis());
+            }
+            Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(times);
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata position = committed.get(partition);
+                OffsetAndTimestamp replayFrom = offsets.get(partition);
+                if (position == null || replayFrom == null || replayFrom.offset() >= position.offset()) {
+                    continue;
+                }
+                consumer.seek(partition, replayFrom.offset());
+                replayUntil.put(partition, position.offset());
+                streamingAggregator.rebuilding(partition.partition(), rebuildFrom);
+                log.info("重放分区重建聚合窗口: {}, 位点: {} - {}", partition, replayFrom.offset(), position.offset());
+            }
+        } catch (KafkaException e) {
+            log.warn("查询重放位点失败，不重建聚合窗口: {}, 原因: {}", partitions, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        revoke(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        revoke(partitions);
+    }
+
+    /**
+     * 找出本批中重放的消息，并移除已重放完成的分区；只在消费线程中调用
+     *
+     * @param records 本批消息
+     * @return 重放的消息，没有时返回空集合
+     */
+    public Set<ConsumerRecord<?, ?>> replayRecords(List<? extends ConsumerRecord<?, ?>> records) {
+        if (replayUntil.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<ConsumerRecord<?, ?>> replayed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<TopicPartition, Long> finished = new HashMap<>();
+        for (ConsumerRecord<?, ?> record : records) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            Long until = replayUntil.get(partition);
+            if (until == null) {
+                continue;
+            }
+            if (record.offset() < until) {
+                replayed.add(record);
+            } else {
+                finished.put(partition, until);
+            }
+        }
+        finished.forEach((partition, until) -> {
+            replayUntil.remove(partition, until);
+            log.info("分区重放完成: {}", partition);
+        });
+        return replayed;
+    }
+
+    private void revoke(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            replayUntil.remove(partition);
+            streamingAggregator.revoked(partition.partition());
+        }
+    }
+}
@@ -0,0 +1,602 @@
+package com.skyi.processor.service.impl;
+
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.service.MetricStorageService;
+import com.skyi.processor.service.aggregation.MetricAggregations;
+import com.skyi.processor.service.aggregation.QuantileSketch;
+import com.skyi.processor.service.aggregation.WindowResolution;
+import com.skyi.processor.service.tsdb.SeriesColumn;
+import com.skyi.processor.service.tsdb.TimeSeriesStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 嵌入式指标存储服务实现类
+ * 使用进程内的列式时序存储({@link TimeSeriesStore})保存指标数据，不依赖外部数据库，
+ * processor.storage.engine为embedded时替代InfluxDB实现启用，适合边缘部署和本地压测。
+ * 与InfluxDB实现的行为保持一致：
+ * <ul>
+ * <li>assetId、taskId、instanceId作为标签保存，查询按标签过滤</li>
+ * <li>聚合查询按聚合间隔对齐到整点窗口，结果时间戳为窗口结束时间；
+ *     聚合间隔是某个预聚合粒度的整数倍时从"指标名_粒度"的max/min/sum/count字段再聚合</li>
+ * <li>保留时长沿用processor.processing.retention-policies，原始数据和各粒度分别过期</li>
+ * </ul>
+ * 只保存数值字段，预聚合数据中的分位数草图不保存，分位数查询使用原始数据计算
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "processor.storage.engine", havingValue = "embedded")
+public class EmbeddedMetricStorageServiceImpl implements MetricStorageService {
+
+    private static final String RAW_TIER = "raw";
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.storage.embedded.dir:./data/tsdb}")
+    private String dir;
+
+    @Value("${processor.storage.embedded.partition-duration:2h}")
+    private String partitionDuration;
+
+    @Value("${processor.storage.embedded.compact-min-blocks:8}")
+    private int compactMinBlocks;
+
+    @Value("${processor.storage.embedded.head-max-mb:256}")
+    private long headMaxMb;
+
+    @Value("${processor.processing.aggregation.enabled:true}")
+    private boolean aggregationEnabled;
+
+    @Value("${processor.processing.aggregation.windows:1m,5m,1h}")
+    private String aggregationWindows;
+
+    private TimeSeriesStore store;
+
+    /**
+     * 预聚合粒度，由粗到细排列
+     */
+    private WindowResolution[] resolutions;
+
+    private final Map<String, Long> retentionByLabel = new HashMap<>();
+    private long rawRetentionMillis;
+
+    private Counter writtenCounter;
+
+    @PostConstruct
+    public void init() {
+        Map<String, String> policies = Binder.get(environment)
+                .bind("processor.processing.retention-policies", Bindable.mapOf(String.class, String.class))
+                .orElse(Collections.emptyMap());
+        rawRetentionMillis = retentionMillis(policies.get(RAW_TIER));
+        resolutions = !aggregationEnabled ? new WindowResolution[0] : Arrays.stream(aggregationWindows.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(WindowResolution::parse)
+                .sorted(Comparator.comparingLong(WindowResolution::getMillis).reversed())
+                .toArray(WindowResolution[]::new);
+        for (WindowResolution resolution : resolutions) {
+            String policy = policies.get(resolution.getLabel());
+            retentionByLabel.put(resolution.getLabel(), policy != null ? retentionMillis(policy) : rawRetentionMillis);
+        }
+
+        try {
+            store = new TimeSeriesStore(Paths.get(dir), WindowResolution.parse(partitionDuration).getMillis(),
+                    compactMinBlocks, this::retentionFor);
+        } catch (IOException e) {
+            throw new IllegalStateException("打开嵌入式时序存储失败: " + dir, e);
+        }
+
+        writtenCounter = Counter.builder("processor.tsdb.points.written")
+                .register(meterRegistry);
+        Gauge.builder("processor.tsdb.head.bytes", store, TimeSeriesStore::getHeadBytes)
+                .description("内存中尚未写入数据块的数据大小")
+                .register(meterRegistry);
+        Gauge.builder("processor.tsdb.disk.bytes", store, TimeSeriesStore::getDiskBytes)
+                .description("数据块文件总大小")
+                .register(meterRegistry);
+        Gauge.builder("processor.tsdb.blocks", store, TimeSeriesStore::getBlockCount)
+                .register(meterRegistry);
+        Gauge.builder("processor.tsdb.columns", store, TimeSeriesStore::getColumnCount)
+                .description("序列字段数")
+                .register(meterRegistry);
+        log.info("使用嵌入式时序存储: {}, 分区时长: {}, 预聚合粒度: {}", dir, partitionDuration, Arrays.toString(resolutions));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /**
+     * 定期把内存中的数据写入数据块
+     */
+    @Scheduled(initialDelayString = "${processor.storage.embedded.flush-interval-ms:60000}",
+            fixedDelayString = "${processor.storage.embedded.flush-interval-ms:60000}")
+    public void flush() {
+        store.flush();
+    }
+
+    /**
+     * 后台合并数据块、应用删除、清理过期数据
+     */
+    @Scheduled(initialDelayString = "${processor.storage.embedded.compaction-interval-ms:300000}",
+            fixedDelayString = "${processor.storage.embedded.compaction-interval-ms:300000}")
+    public void compact() {
+        long start = System.currentTimeMillis();
+        store.compact(start);
+        log.debug("数据块压缩完成, 耗时: {}ms, 数据块: {}, 磁盘占用: {}字节",
+                System.currentTimeMillis() - start, store.getBlockCount(), store.getDiskBytes());
+    }
+
+    @Override
+    public boolean storeMetric(MetricData metricData) {
+        if (!isValidMetricData(metricData)) {
+            log.warn("无效的指标数据，跳过存储");
+            return false;
+        }
+        try {
+            return write(Collections.singletonList(metricData)) > 0;
+        } catch (IOException e) {
+            log.error("存储指标数据失败: {}, 原因: {}", metricData.getMetricName(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public int storeMetrics(List<MetricData> metricDataList) {
+        if (CollectionUtils.isEmpty(metricDataList)) {
+            return 0;
+        }
+        try {
+            return write(metricDataList);
+        } catch (IOException e) {
+            log.error("批量存储指标数据失败: {} 条, 错误: {}", metricDataList.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 批量存储指标数据，数据点在调用线程中写入内存和预写日志，日志落盘后完成；
+     * 并发写入的批次共用一次落盘
+     */
+    @Override
+    public CompletableFuture<Integer> storeMetricsAsync(List<MetricData> metricDataList) {
+        if (CollectionUtils.isEmpty(metricDataList)) {
+            return CompletableFuture.completedFuture(0);
+        }
+        try {
+            return CompletableFuture.completedFuture(write(metricDataList));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public List<MetricData> queryMetrics(String metricName, Map<String, String> tags,
+                                         Instant startTime, Instant endTime) {
+        return queryMetrics(metricName, tags, startTime, endTime, 0);
+    }
+
+    /**
+     * 查询指标数据，结果按序列分组、组内按时间排序；limit对每个序列分别生效，与InfluxDB的limit一致
+     */
+    @Override
+    public List<MetricData> queryMetrics(String metricName, Map<String, String> tags,
+                                         Instant startTime, Instant endTime, int limit) {
+        if (StringUtils.isEmpty(metricName)) {
+            log.warn("指标名称不能为空");
+            return Collections.emptyList();
+        }
+
+        // 默认查询最近1小时数据
+        long end = endTime != null ? endTime.toEpochMilli() : System.currentTimeMillis() + 1;
+        long start = startTime != null ? startTime.toEpochMilli() : end - 3_600_000L;
+        List<MetricData> result = new ArrayList<>();
+        for (SeriesColumn column : store.columns(metricName, TimeSeriesStore.VALUE_FIELD, tags)) {
+            int[] count = new int[1];
+            store.scan(column, start, end, (timestamp, value) -> {
+                result.add(toMetricData(column, metricName, timestamp, value));
+                return limit <= 0 || ++count[0] < limit;
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public List<MetricData> queryAggregatedMetrics(String metricName, Map<String, String> tags,
+                                                   Instant startTime, Instant endTime,
+                                                   String aggregationType, int timeInterval) {
+        if (StringUtils.isEmpty(metricName) || StringUtils.isEmpty(aggregationType)) {
+            log.warn("查询聚合指标数据参数无效: 指标名称={}, 聚合类型={}", metricName, aggregationType);
+            return Collections.emptyList();
+        }
+
+        if (startTime == null || endTime == null) {
+            // 默认查询最近1天的数据
+            endTime = Instant.now();
+            startTime = endTime.minus(1, ChronoUnit.DAYS);
+        }
+
+        if (timeInterval <= 0) {
+            // 默认按1小时聚合
+            timeInterval = 3600;
+        }
+
+        String type = aggregationType.trim().toLowerCase();
+        long start = startTime.toEpochMilli();
+        long end = endTime.toEpochMilli();
+        long interval = timeInterval * 1000L;
+
+        // 聚合间隔是某个预聚合粒度的整数倍时，从该粒度的数据再聚合，数据量按粒度成倍减少
+        WindowResolution resolution = selectRollup(start, interval);
+        if (resolution != null && isRollupType(type)) {
+            List<MetricData> result = queryRollup(metricName, tags, start, end, type, interval, resolution);
+            if (!result.isEmpty()) {
+                log.debug("查询聚合指标数据完成: 指标名称={}, 聚合类型={}, 粒度={}, 结果数量={}",
+                        metricName, aggregationType, resolution, result.size());
+                return result;
+            }
+        }
+
+        Double quantile = MetricAggregations.parseQuantile(type);
+        if (quantile == null && !isRawType(type)) {
+            log.warn("不支持的聚合类型: {}", aggregationType);
+            return Collections.emptyList();
+        }
+        List<MetricData> result = new ArrayList<>();
+        for (SeriesColumn column : store.columns(metricName, TimeSeriesStore.VALUE_FIELD, tags)) {
+            WindowAccumulator window = new WindowAccumulator(type, quantile);
+            long[] current = {Long.MIN_VALUE};
+            store.scan(column, start, end, (timestamp, value) -> {
+                long windowStart = Math.floorDiv(timestamp, interval) * interval;
+                if (windowStart != current[0]) {
+                    if (!window.isEmpty()) {
+                        result.add(toMetricData(column, metricName, Math.min(current[0] + interval, end), window.result()));
+                    }
+                    window.reset();
+                    current[0] = windowStart;
+                }
+                window.add(value);
+                return true;
+            });
+            if (!window.isEmpty()) {
+                result.add(toMetricData(column, metricName, Math.min(current[0] + interval, end), window.result()));
+            }
+        }
+        log.debug("查询聚合指标数据完成: 指标名称={}, 聚合类型={}, 结果数量={}", metricName, aggregationType, result.size());
+        return result;
+    }
+
+    @Override
+    public Double aggregateMetrics(List<MetricData> metricDataList, String aggregationType) {
+        return MetricAggregations.aggregate(metricDataList, aggregationType);
+    }
+
+    @Override
+    public Double queryQuantile(String metricName, Map<String, String> tags,
+                                Instant startTime, Instant endTime, double quantile) {
+        if (StringUtils.isEmpty(metricName) || quantile < 0 || quantile > 1) {
+            log.warn("查询分位数参数无效: 指标名称={}, 分位={}", metricName, quantile);
+            return null;
+        }
+
+        if (startTime == null || endTime == null) {
+            // 默认查询最近1天的数据
+            endTime = Instant.now();
+            startTime = endTime.minus(1, ChronoUnit.DAYS);
+        }
+
+        QuantileSketch sketch = new QuantileSketch();
+        for (SeriesColumn column : store.columns(metricName, TimeSeriesStore.VALUE_FIELD, tags)) {
+            store.scan(column, startTime.toEpochMilli(), endTime.toEpochMilli(), (timestamp, value) -> {
+                sketch.add(value);
+                return true;
+            });
+        }
+        return sketch.isEmpty() ? null : sketch.quantile(quantile);
+    }
+
+    /**
+     * 删除指标数据
+     *
+     * @return 删除的数据点数(各字段分别计数)
+     */
+    @Override
+    public int deleteMetrics(String metricName, Map<String, String> tags,
+                             Instant startTime, Instant endTime) {
+        if (StringUtils.isEmpty(metricName)) {
+            log.warn("删除指标数据参数无效: 指标名称为空");
+            return 0;
+        }
+
+        if (startTime == null || endTime == null) {
+            log.warn("删除指标数据参数无效: 时间范围未指定");
+            return 0;
+        }
+
+        try {
+            long deleted = store.delete(store.columns(metricName, null, tags), startTime.toEpochMilli(), endTime.toEpochMilli());
+            log.info("成功删除指标数据: 指标名称={}, 时间范围: {} - {}, 数据点数: {}", metricName, startTime, endTime, deleted);
+            return (int) Math.min(deleted, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            log.error("删除指标数据失败: 指标名称={}, 错误: {}", metricName, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 写入有效的数据点并等待预写日志落盘，内存中的数据超过上限时立即写入数据块
+     *
+     * @return 写入的数据点数
+     */
+    private int write(List<MetricData> metricDataList) throws IOException {
+        long now = System.currentTimeMillis();
+        int written = 0;
+        for (MetricData metricData : metricDataList) {
+            if (isValidMetricData(metricData) && store.write(metricData, now) > 0) {
+                written++;
+            }
+        }
+        store.sync();
+        writtenCounter.increment(written);
+        if (store.getHeadBytes() > headMaxMb * 1024 * 1024) {
+            log.debug("内存数据超过上限，提前写入数据块: {}字节", store.getHeadBytes());
+            store.tryFlush();
+        }
+        return written;
+    }
+
+    /**
+     * 从预聚合数据计算：max、min、sum取窗口同名字段再聚合，count为count字段之和，平均值为sum之和除以count之和
+     */
+    private List<MetricData> queryRollup(String metricName, Map<String, String> tags, long start, long end,
+                                         String type, long interval, WindowResolution resolution) {
+        String measurement = metricName + "_" + resolution.getLabel();
+        boolean mean = "mean".equals(type) || "avg".equals(type);
+        String field = mean ? "sum" : type;
+        Map<List<String>, SeriesColumn> counts = new HashMap<>();
+        if (mean) {
+            for (SeriesColumn column : store.columns(measurement, "count", tags)) {
+                counts.put(Arrays.asList(column.tagPairs()), column);
+            }
+        }
+
+        List<MetricData> result = new ArrayList<>();
+        for (SeriesColumn column : store.columns(measurement, field, tags)) {
+            // 窗口起始时间 -> {字段聚合值, count之和}
+            TreeMap<Long, double[]> windows = new TreeMap<>();
+            store.scan(column, start, end, (timestamp, value) -> {
+                double[] window = windows.get(Math.floorDiv(timestamp, interval) * interval);
+                if (window == null) {
+                    windows.put(Math.floorDiv(timestamp, interval) * interval, new double[]{value, 0});
+                } else if ("max".equals(type)) {
+                    window[0] = Math.max(window[0], value);
+                } else if ("min".equals(type)) {
+                    window[0] = Math.min(window[0], value);
+                } else {
+                    window[0] += value;
+                }
+                return true;
+            });
+            SeriesColumn count = mean ? counts.get(Arrays.asList(column.tagPairs())) : null;
+            if (mean) {
+                if (count == null) {
+                    continue;
+                }
+                store.scan(count, start, end, (timestamp, value) -> {
+                    double[] window = windows.get(Math.floorDiv(timestamp, interval) * interval);
+                    if (window != null) {
+                        window[1] += value;
+                    }
+                    return true;
+                });
+            }
+            windows.forEach((windowStart, window) -> {
+                if (mean && window[1] <= 0) {
+                    return;
+                }
+                result.add(toMetricData(column, metricName, Math.min(windowStart + interval, end),
+                        mean ? window[0] / window[1] : window[0]));
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 选择可用于聚合查询的最粗预聚合粒度：聚合间隔是其整数倍，且保留时长覆盖查询起始时间
+     */
+    private WindowResolution selectRollup(long start, long interval) {
+        long now = System.currentTimeMillis();
+        for (WindowResolution resolution : resolutions) {
+            if (resolution.getMillis() > interval || interval % resolution.getMillis() != 0) {
+                continue;
+            }
+            long retention = retentionByLabel.get(resolution.getLabel());
+            if (retention > 0 && start < now - retention) {
+                continue;
+            }
+            return resolution;
+        }
+        return null;
+    }
+
+    /**
+     * 指标的保留时长，"原指标名_粒度"形式的聚合指标使用该粒度的保留策略
+     */
+    private long retentionFor(String measurement) {
+        for (WindowResolution resolution : resolutions) {
+            if (measurement.endsWith("_" + resolution.getLabel())) {
+                return retentionByLabel.get(resolution.getLabel());
+            }
+        }
+        return rawRetentionMillis;
+    }
+
+    private static boolean isRollupType(String type) {
+        switch (type) {
+            case "mean":
+            case "avg":
+            case "max":
+            case "min":
+            case "sum":
+            case "count":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isRawType(String type) {
+        return isRollupType(type) || "first".equals(type) || "last".equals(type);
+    }
+
+    /**
+     * 解析保留时长，格式与聚合粒度相同(如7d、12h)，未配置时为0表示永久保留
+     */
+    private static long retentionMillis(String policy) {
+        return policy == null || policy.trim().isEmpty() ? 0L : WindowResolution.parse(policy).getMillis();
+    }
+
+    /**
+     * 检查指标数据是否有效
+     */
+    private boolean isValidMetricData(MetricData metricData) {
+        return metricData != null &&
+               !StringUtils.isEmpty(metricData.getMetricName()) &&
+               metricData.hasValue() &&
+               !Double.isNaN(metricData.doubleValue()) &&
+               !Double.isInfinite(metricData.doubleValue());
+    }
+
+    private MetricData toMetricData(SeriesColumn column, String metricName, long timestamp, double value) {
+        MetricData metricData = new MetricData()
+                .setMetricName(metricName)
+                .doubleValue(value)
+                .timestampMillis(timestamp)
+                .tagPairs(column.tagPairs());
+        metricData.setAssetId(parseId(column, "assetId"));
+        metricData.setTaskId(parseId(column, "taskId"));
+        metricData.setInstanceId(parseId(column, "instanceId"));
+        return metricData;
+    }
+
+    private Long parseId(SeriesColumn column, String key) {
+        String value = column.tag(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("无法解析{}: {}", key, value);
+            return null;
+        }
+    }
+
+    /**
+     * 单个窗口内原始数据的聚合
+     */
+    private static final class WindowAccumulator {
+
+        private final String type;
+        private final Double quantile;
+        private final QuantileSketch sketch;
+        private double sum;
+        private double max;
+        private double min;
+        private double first;
+        private double last;
+        private long count;
+
+        private WindowAccumulator(String type, Double quantile) {
+            this.type = type;
+            this.quantile = quantile;
+            this.sketch = quantile != null ? new QuantileSketch() : null;
+        }
+
+        private void add(double value) {
+            if (count == 0) {
+                max = value;
+                min = value;
+                first = value;
+            } else {
+                max = Math.max(max, value);
+                min = Math.min(min, value);
+            }
+            sum += value;
+            last = value;
+            count++;
+            if (sketch != null) {
+                sketch.add(value);
+            }
+        }
+
+        private boolean isEmpty() {
+            return count == 0;
+        }
+
+        private void reset() {
+            sum = 0;
+            count = 0;
+            if (sketch != null) {
+                sketch.clear();
+            }
+        }
+
+        private double result() {
+            if (quantile != null) {
+                return sketch.quantile(quantile);
+            }
+            switch (type) {
+                case "max":
+                    return max;
+                case "min":
+                    return min;
+                case "sum":
+                    return sum;
+                case "count":
+                    return count;
+                case "first":
+                    return first;
+                case "last":
+                    return last;
+                default:
+                    return sum / count;
+            }
+        }
+    }
+}
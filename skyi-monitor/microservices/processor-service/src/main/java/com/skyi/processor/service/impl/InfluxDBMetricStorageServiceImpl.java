@@ -2,18 +2,21 @@ package com.skyi.processor.service.impl;
 
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.QueryApi;
-import com.influxdb.client.WriteApi;
 import com.influxdb.client.domain.DeletePredicateRequest;
-import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.client.write.Point;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
 import com.skyi.processor.model.MetricData;
 import com.skyi.processor.service.MetricStorageService;
+import com.skyi.processor.service.aggregation.MetricAggregations;
+import com.skyi.processor.service.aggregation.QuantileSketch;
+import com.skyi.processor.service.aggregation.StreamingAggregator;
+import com.skyi.processor.service.aggregation.WindowResolution;
+import com.skyi.processor.service.storage.InfluxDBWritePipeline;
+import com.skyi.processor.service.storage.RetentionManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
@@ -27,125 +30,81 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * InfluxDB指标存储服务实现类
- * 使用InfluxDB时序数据库实现指标数据的存储和查询
+ * 使用InfluxDB时序数据库实现指标数据的存储和查询，processor.storage.engine为influxdb(默认)时启用
  */
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "processor.storage.engine", havingValue = "influxdb", matchIfMissing = true)
 public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
 
     @Autowired
     private InfluxDBClient influxDBClient;
     
-    @Autowired
-    @Qualifier("influxDBBucket")
-    private String influxDBBucket;
-    
     @Autowired
     @Qualifier("influxDBOrg")
     private String influxDBOrg;
     
-    // 硬编码默认值，用于测试
-    private static final int BATCH_SIZE = 1000;
-    private static final String RAW_RETENTION = "7d";
-    
     @Autowired
-    @Qualifier("storageTaskExecutor")
-    private org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor storageTaskExecutor;
+    private InfluxDBWritePipeline writePipeline;
+
+    @Autowired
+    private RetentionManager retentionManager;
 
     @Override
     public boolean storeMetric(MetricData metricData) {
-        if (metricData == null || StringUtils.isEmpty(metricData.getMetricName())) {
+        if (!isValidMetricData(metricData)) {
             log.warn("无效的指标数据，跳过存储");
             return false;
         }
         
-        try {
-            Point point = Point.measurement(metricData.getMetricName())
-                    .time(metricData.getTimestamp().toEpochMilli(), WritePrecision.MS)
-                    .addField("value", metricData.getValue());
-            
-            // 添加所有标签
-            if (metricData.getTags() != null) {
-                metricData.getTags().forEach((key, value) -> {
-                    if (key != null && value != null) {
-                        point.addTag(key, value);
-                    }
-                });
-            }
-            
-            // 添加所有额外字段
-            if (metricData.getFields() != null) {
-                metricData.getFields().forEach((key, value) -> {
-                    if (key != null && value != null) {
-                        if (value instanceof Number) {
-                            point.addField(key, (Number) value);
-                        } else if (value instanceof Boolean) {
-                            point.addField(key, (Boolean) value);
-                        } else {
-                            point.addField(key, value.toString());
-                        }
-                    }
-                });
-            }
-            
-            try (WriteApi writeApi = influxDBClient.getWriteApi()) {
-                writeApi.writePoint(influxDBBucket, influxDBOrg, point);
-            }
-            log.debug("成功存储指标: {}", metricData.getMetricName());
-            return true;
-        } catch (Exception e) {
-            log.error("存储指标失败: {}, 原因: {}", metricData.getMetricName(), e.getMessage(), e);
+        CompletableFuture<Integer> future = writePipeline.submit(Collections.singletonList(metricData));
+        if (future.isCompletedExceptionally()) {
             return false;
         }
+        log.debug("指标已提交写入: {}", metricData.getMetricName());
+        return true;
     }
 
+    /**
+     * 批量存储指标数据
+     * 数据点提交到写入管道后立即返回，写入结果由管道异步回调记录
+     *
+     * @return 已提交写入的数据条数，缓冲区已满被丢弃时返回0
+     */
     @Override
-    @Async("storageTaskExecutor")
     public int storeMetrics(List<MetricData> metricDataList) {
         if (CollectionUtils.isEmpty(metricDataList)) {
             return 0;
         }
-
-        int successCount = 0;
-        try (WriteApi writeApi = influxDBClient.getWriteApi()) {
-            // 过滤掉无效的数据
-            List<MetricData> validDataList = metricDataList.stream()
-                    .filter(this::isValidMetricData)
-                    .collect(Collectors.toList());
-            
-            if (validDataList.isEmpty()) {
-                return 0;
+        
+        CompletableFuture<Integer> future = storeMetricsAsync(metricDataList);
+        future.whenComplete((written, ex) -> {
+            if (ex != null) {
+                log.error("批量存储指标数据失败: {} 条, 错误: {}", metricDataList.size(), ex.getMessage());
+            } else {
+                log.debug("成功批量存储指标数据: 总计 {}/{} 条", written, metricDataList.size());
             }
-            
-            // 按批次处理数据，避免一次性处理太多数据
-            int totalSize = validDataList.size();
-            for (int i = 0; i < totalSize; i += BATCH_SIZE) {
-                int endIndex = Math.min(i + BATCH_SIZE, totalSize);
-                List<MetricData> batch = validDataList.subList(i, endIndex);
-                
-                // 转换为Point对象并写入
-                List<Point> points = batch.stream()
-                        .map(this::convertToPoint)
-                        .collect(Collectors.toList());
-                
-                writeApi.writePoints(influxDBBucket, influxDBOrg, points);
-                successCount += batch.size();
-                
-                log.debug("成功存储批次指标数据: {}/{}", successCount, totalSize);
+        });
+        return future.isCompletedExceptionally() ? 0 : (int) metricDataList.stream().filter(this::isValidMetricData).count();
+    }
+
+    @Override
+    public CompletableFuture<Integer> storeMetricsAsync(List<MetricData> metricDataList) {
+        if (CollectionUtils.isEmpty(metricDataList)) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        List<MetricData> points = new ArrayList<>(metricDataList.size());
+        for (MetricData metricData : metricDataList) {
+            if (isValidMetricData(metricData)) {
+                points.add(metricData);
             }
-            
-            log.info("成功批量存储指标数据: 总计 {}/{} 条", successCount, metricDataList.size());
-            return successCount;
-        } catch (Exception e) {
-            log.error("批量存储指标数据失败: {}/{} 条, 错误: {}", 
-                    successCount, metricDataList.size(), e.getMessage(), e);
-            return successCount;
         }
+        return writePipeline.submit(points);
     }
 
     @Override
@@ -163,7 +122,7 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
         }
         
         try {
-            String fluxQuery = buildFluxQuery(metricName, tags, startTime, endTime, limit);
+            String fluxQuery = buildFluxQuery(metricName, null, tags, startTime, endTime, limit);
             List<FluxTable> tables = influxDBClient.getQueryApi().query(fluxQuery, influxDBOrg);
             return convertFluxTablesToMetricData(tables);
         } catch (Exception e) {
@@ -174,13 +133,17 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
     
     /**
      * 构建Flux查询语句
+     *
+     * @param resolution 预聚合粒度，查询"指标名_粒度"所在的存储桶；为null时查询原始数据
      */
-    private String buildFluxQuery(String metricName, Map<String, String> tags, 
+    private String buildFluxQuery(String metricName, WindowResolution resolution, Map<String, String> tags, 
                                  Instant startTime, Instant endTime, int limit) {
         StringBuilder queryBuilder = new StringBuilder();
+        String measurement = resolution != null ? metricName + "_" + resolution.getLabel() : metricName;
+        String bucket = resolution != null ? retentionManager.bucketFor(resolution) : retentionManager.getRawBucket();
         
         // 基本查询语句
-        queryBuilder.append("from(bucket: \"").append(influxDBBucket).append("\") ");
+        queryBuilder.append("from(bucket: \"").append(bucket).append("\") ");
         
         // 添加时间范围
         if (startTime != null && endTime != null) {
@@ -195,7 +158,7 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
         
         // 添加指标名称过滤
         queryBuilder.append("|> filter(fn: (r) => r._measurement == \"")
-                  .append(metricName).append("\") ");
+                  .append(measurement).append("\") ");
         
         // 添加标签过滤
         if (tags != null && !tags.isEmpty()) {
@@ -237,6 +200,30 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
             log.debug("聚合间隔未指定，使用默认间隔: {}秒", timeInterval);
         }
 
+        // 聚合间隔是某个预聚合粒度的整数倍时，从该粒度的存储桶中再聚合，数据量按粒度成倍减少
+        WindowResolution resolution = retentionManager.selectRollup(startTime, timeInterval * 1000L, true);
+        String rollupQuery = resolution != null
+                ? buildRollupFluxQuery(metricName, tags, startTime, endTime, aggregationType, timeInterval, resolution)
+                : null;
+        if (rollupQuery != null) {
+            try {
+                log.debug("执行{}粒度聚合Flux查询: {}", resolution, rollupQuery);
+                List<MetricData> result = convertFluxTablesToMetricData(
+                        influxDBClient.getQueryApi().query(rollupQuery, influxDBOrg));
+                result.forEach(metricData -> metricData.setMetricName(metricName));
+                if (!result.isEmpty()) {
+                    log.debug("查询聚合指标数据完成: 指标名称={}, 聚合类型={}, 粒度={}, 结果数量={}", 
+                            metricName, aggregationType, resolution, result.size());
+                    return result;
+                }
+                // 预聚合刚启用或存储桶保留时长短于配置时没有数据，使用原始数据
+                log.debug("{}粒度聚合数据为空，改为查询原始数据: 指标名称={}", resolution, metricName);
+            } catch (Exception e) {
+                log.error("查询{}粒度聚合数据失败，改为查询原始数据: 指标名称={}, 错误: {}", 
+                        resolution, metricName, e.getMessage());
+            }
+        }
+
         try {
             QueryApi queryApi = influxDBClient.getQueryApi();
             
@@ -246,7 +233,7 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
                     "from(bucket: \"%s\") " +
                     "|> range(start: %s, stop: %s) " +
                     "|> filter(fn: (r) => r._measurement == \"%s\") ",
-                    influxDBBucket, 
+                    retentionManager.getRawBucket(), 
                     startTime.toString(), 
                     endTime.toString(), 
                     metricName
@@ -286,46 +273,105 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
         }
     }
 
-    @Override
-    public Double aggregateMetrics(List<MetricData> metricDataList, String aggregationType) {
-        if (CollectionUtils.isEmpty(metricDataList)) {
-            return null;
-        }
-        
-        // 提取值列表
-        List<Double> values = metricDataList.stream()
-                .map(MetricData::getValue)
-                .filter(v -> v != null)
-                .collect(Collectors.toList());
-        
-        if (values.isEmpty()) {
-            return null;
-        }
-        
-        // 根据聚合类型执行不同的计算
+    /**
+     * 构建基于预聚合数据的Flux查询：max、min、sum、count分别取窗口的同名字段再聚合，
+     * 平均值由sum之和除以count之和得到
+     *
+     * @return Flux查询语句，聚合类型无法由预聚合数据计算时返回null
+     */
+    private String buildRollupFluxQuery(String metricName, Map<String, String> tags, Instant startTime, Instant endTime,
+                                        String aggregationType, int timeInterval, WindowResolution resolution) {
+        String field;
+        String fn;
         switch (aggregationType.toLowerCase()) {
             case "mean":
             case "avg":
-                return values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                
+                field = null;
+                fn = "sum";
+                break;
             case "max":
-                return values.stream().mapToDouble(Double::doubleValue).max().orElse(0.0);
-                
             case "min":
-                return values.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-                
             case "sum":
-                return values.stream().mapToDouble(Double::doubleValue).sum();
-                
+                field = aggregationType.toLowerCase();
+                fn = field;
+                break;
             case "count":
-                return (double) values.size();
-                
+                field = "count";
+                fn = "sum";
+                break;
             default:
-                log.warn("不支持的聚合类型: {}, 使用平均值代替", aggregationType);
-                return values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+                return null;
+        }
+        
+        StringBuilder queryBuilder = new StringBuilder(buildFluxQuery(
+                metricName, resolution, tags, startTime, endTime, 0));
+        if (field != null) {
+            queryBuilder.append("|> filter(fn: (r) => r._field == \"").append(field).append("\") ");
+        } else {
+            queryBuilder.append("|> filter(fn: (r) => r._field == \"sum\" or r._field == \"count\") ");
         }
+        queryBuilder.append("|> aggregateWindow(every: ").append(timeInterval)
+                .append("s, fn: ").append(fn).append(", createEmpty: false) ");
+        if (field == null) {
+            queryBuilder.append("|> pivot(rowKey: [\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\") ")
+                    .append("|> map(fn: (r) => ({r with _value: r.sum / float(v: r.count)})) ");
+        }
+        return queryBuilder.toString();
+    }
+
+    @Override
+    public Double aggregateMetrics(List<MetricData> metricDataList, String aggregationType) {
+        return MetricAggregations.aggregate(metricDataList, aggregationType);
     }
 
+    @Override
+    public Double queryQuantile(String metricName, Map<String, String> tags,
+                                Instant startTime, Instant endTime, double quantile) {
+        if (StringUtils.isEmpty(metricName) || quantile < 0 || quantile > 1) {
+            log.warn("查询分位数参数无效: 指标名称={}, 分位={}", metricName, quantile);
+            return null;
+        }
+        
+        if (startTime == null || endTime == null) {
+            // 默认查询最近1天的数据
+            endTime = Instant.now();
+            startTime = endTime.minus(1, ChronoUnit.DAYS);
+        }
+        
+        // 选择不超过查询时长的最粗粒度，预聚合数据的时间戳为窗口起始时间，结果按所选粒度对齐
+        WindowResolution resolution = retentionManager.selectRollup(startTime,
+                endTime.toEpochMilli() - startTime.toEpochMilli(), false);
+        if (resolution != null) {
+            try {
+                String fluxQuery = buildFluxQuery(metricName, resolution, tags, startTime, endTime, 0)
+                        + "|> filter(fn: (r) => r._field == \"" + StreamingAggregator.SKETCH_FIELD + "\") ";
+                QuantileSketch sketch = new QuantileSketch();
+                for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, influxDBOrg)) {
+                    for (FluxRecord record : table.getRecords()) {
+                        MetricAggregations.mergeSketch(sketch, record.getValue(), metricName);
+                    }
+                }
+                if (!sketch.isEmpty()) {
+                    log.debug("合并{}粒度分位数草图: 指标名称={}, 数据点数={}", resolution, metricName, sketch.getCount());
+                    return sketch.quantile(quantile);
+                }
+            } catch (Exception e) {
+                log.error("查询分位数草图失败: 指标名称={}, 错误: {}", metricName, e.getMessage(), e);
+            }
+        }
+        
+        // 没有预聚合数据时使用原始数据
+        try {
+            String fluxQuery = buildFluxQuery(metricName, null, tags, startTime, endTime, 0)
+                    + "|> filter(fn: (r) => r._field == \"value\") ";
+            List<FluxTable> tables = influxDBClient.getQueryApi().query(fluxQuery, influxDBOrg);
+            return MetricAggregations.quantile(convertFluxTablesToMetricData(tables), quantile);
+        } catch (Exception e) {
+            log.error("查询分位数失败: 指标名称={}, 错误: {}", metricName, e.getMessage(), e);
+            return null;
+        }
+    }
+    
     @Override
     public int deleteMetrics(String metricName, Map<String, String> tags, 
                             Instant startTime, Instant endTime) {
@@ -369,7 +415,7 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
             }
             
             // 执行删除操作
-            influxDBClient.getDeleteApi().delete(request, influxDBBucket, influxDBOrg);
+            influxDBClient.getDeleteApi().delete(request, retentionManager.getRawBucket(), influxDBOrg);
             log.info("成功删除指标数据: 指标名称={}, 时间范围: {} - {}", metricName, startTime, endTime);
             
             // InfluxDB API不返回删除的记录数，这里返回1表示操作成功
@@ -386,59 +432,9 @@ public class InfluxDBMetricStorageServiceImpl implements MetricStorageService {
     private boolean isValidMetricData(MetricData metricData) {
         return metricData != null && 
                !StringUtils.isEmpty(metricData.getMetricName()) && 
-               metricData.getValue() != null && 
-               !Double.isNaN(metricData.getValue()) && 
-               !Double.isInfinite(metricData.getValue());
-    }
-    
-    /**
-     * 将MetricData转换为InfluxDB的Point对象
-     */
-    private Point convertToPoint(MetricData metricData) {
-        Point point = Point.measurement(metricData.getMetricName())
-                .time(metricData.getTimestamp().toEpochMilli(), WritePrecision.MS)
-                .addField("value", metricData.getValue());
-
-        // 添加所有字段
-        Map<String, Object> fields = metricData.getFields();
-        if (fields != null && !fields.isEmpty()) {
-            fields.forEach((key, value) -> {
-                if (value != null) {
-                    if (value instanceof Number) {
-                        point.addField(key, (Number) value);
-                    } else if (value instanceof Boolean) {
-                        point.addField(key, (Boolean) value);
-                    } else {
-                        point.addField(key, value.toString());
-                    }
-                }
-            });
-        }
-
-        // 添加标签
-        if (metricData.getAssetId() != null) {
-            point.addTag("assetId", metricData.getAssetId().toString());
-        }
-        
-        if (metricData.getTaskId() != null) {
-            point.addTag("taskId", metricData.getTaskId().toString());
-        }
-        
-        if (metricData.getInstanceId() != null) {
-            point.addTag("instanceId", metricData.getInstanceId().toString());
-        }
-
-        // 添加其他标签
-        Map<String, String> tags = metricData.getTags();
-        if (tags != null && !tags.isEmpty()) {
-            tags.forEach((key, value) -> {
-                if (!StringUtils.isEmpty(key) && !StringUtils.isEmpty(value)) {
-                    point.addTag(key, value);
-                }
-            });
-        }
-
-        return point;
+               metricData.hasValue() && 
+               !Double.isNaN(metricData.doubleValue()) && 
+               !Double.isInfinite(metricData.doubleValue());
     }
     
     /**
@@ -3,24 +3,25 @@ package com.skyi.processor.service.impl;
 import com.skyi.processor.model.MetricData;
 import com.skyi.processor.service.MetricProcessorService;
 import com.skyi.processor.service.MetricStorageService;
+import com.skyi.processor.service.aggregation.StreamingAggregator;
+import com.skyi.processor.service.aggregation.WindowResolution;
+import com.skyi.processor.service.alerting.ThresholdRule;
+import com.skyi.processor.service.alerting.ThresholdRuleRegistry;
+import com.skyi.processor.service.anomaly.AnomalyDetector;
+import com.skyi.processor.service.worker.SeriesWorkerPool;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.stream.Collectors;
 
 /**
  * 指标处理服务实现类
@@ -35,22 +36,21 @@ public class MetricProcessorServiceImpl implements MetricProcessorService {
     private final MetricStorageService metricStorageService;
     
     /**
-     * 指标阈值配置，用于异常检测
-     * key: 指标名称, value: Map<String, Double>，内部map为阈值配置
-     * 内部map的键为"min"和"max"，值为最小值和最大值
+     * 序列亲和的工作线程池，有状态的处理按序列在固定线程中顺序执行
      */
-    private final Map<String, Map<String, Double>> metricThresholds = new ConcurrentHashMap<>();
-    
-    private final Executor processorThreadPool;
+    private final SeriesWorkerPool seriesWorkerPool;
     
     /**
-     * 构造函数，使用@Qualifier指定线程池
+     * 阈值规则表，用于异常检测
      */
+    private final ThresholdRuleRegistry thresholdRuleRegistry;
+    
     @Autowired
-    public MetricProcessorServiceImpl(MetricStorageService metricStorageService, 
-                                    @Qualifier("processorTaskExecutor") Executor processorThreadPool) {
+    public MetricProcessorServiceImpl(MetricStorageService metricStorageService, SeriesWorkerPool seriesWorkerPool,
+                                      ThresholdRuleRegistry thresholdRuleRegistry) {
         this.metricStorageService = metricStorageService;
-        this.processorThreadPool = processorThreadPool;
+        this.seriesWorkerPool = seriesWorkerPool;
+        this.thresholdRuleRegistry = thresholdRuleRegistry;
     }
     
     /**
@@ -61,17 +61,11 @@ public class MetricProcessorServiceImpl implements MetricProcessorService {
         try {
             log.debug("处理指标数据: {}", metricData);
             
-            // 执行数据处理逻辑
-            MetricData processedData = processMetricData(metricData);
-            
-            // 异步存储处理后的数据
-            CompletableFuture.runAsync(() -> {
-                try {
-                    metricStorageService.storeMetric(processedData);
-                } catch (Exception e) {
-                    log.error("存储指标数据失败: {}", processedData.getMetricName(), e);
+            processAndStoreMetrics(Collections.singletonList(metricData)).whenComplete((written, ex) -> {
+                if (ex != null) {
+                    log.error("存储指标数据失败: {}", metricData.getMetricName(), ex);
                 }
-            }, processorThreadPool);
+            });
         } catch (Exception e) {
             log.error("处理指标数据失败: {}", metricData.getMetricName(), e);
         }
@@ -96,50 +90,41 @@ public class MetricProcessorServiceImpl implements MetricProcessorService {
     public void processBatchMetrics(List<MetricData> metricDataList) {
         log.debug("批量处理指标数据, 数量: {}", metricDataList.size());
         
-        // 处理每条指标数据
-        List<MetricData> processedDataList = metricDataList.stream()
-                .map(this::processMetricData)
-                .collect(Collectors.toList());
-        
-        // 批量存储处理后的数据
-        CompletableFuture.runAsync(() -> {
-            try {
-                metricStorageService.storeMetrics(processedDataList);
-            } catch (Exception e) {
-                log.error("批量存储指标数据失败, 数量: {}", processedDataList.size(), e);
+        processAndStoreMetrics(metricDataList).whenComplete((written, ex) -> {
+            if (ex != null) {
+                log.error("批量存储指标数据失败, 数量: {}", metricDataList.size(), ex);
             }
-        }, processorThreadPool);
+        });
     }
-
+    
     /**
-     * 数据校验
+     * 处理并存储一批指标数据
+     * 有状态的序列处理在序列工作线程中按序执行，其余转换在工作线程完成后执行，存储由写入管道批量完成
      */
-    private void validateMetricData(MetricData metricData) {
-        if (metricData == null) {
-            throw new IllegalArgumentException("指标数据不能为空");
-        }
-        
-        if (StringUtils.isBlank(metricData.getMetricName())) {
-            throw new IllegalArgumentException("指标名称不能为空");
-        }
-        
-        if (metricData.getValue() == null) {
-            throw new IllegalArgumentException("指标值不能为空");
-        }
-        
-        if (metricData.getTimestamp() == null) {
-            log.warn("指标时间戳为空，使用当前时间: {}", metricData.getMetricName());
-            metricData.setTimestamp(Instant.now());
+    @Override
+    public CompletableFuture<Integer> processAndStoreMetrics(List<MetricData> metricDataList) {
+        List<MetricData> validDataList = new ArrayList<>(metricDataList.size());
+        for (MetricData metricData : metricDataList) {
+            if (isValidMetricData(metricData)) {
+                validDataList.add(metricData);
+            }
         }
+        return seriesWorkerPool.process(validDataList).thenCompose(keptDataList -> {
+            List<MetricData> processedDataList = new ArrayList<>(keptDataList.size());
+            for (MetricData metricData : keptDataList) {
+                processedDataList.add(processMetricData(metricData));
+            }
+            return metricStorageService.storeMetricsAsync(processedDataList);
+        });
     }
-    
+
     /**
      * 检查指标数据是否有效
      */
     private boolean isValidMetricData(MetricData metricData) {
         return metricData != null && 
                StringUtils.isNotBlank(metricData.getMetricName()) && 
-               metricData.getValue() != null;
+               metricData.hasValue();
     }
     
     @Override
@@ -281,72 +266,38 @@ public class MetricProcessorServiceImpl implements MetricProcessorService {
     
     /**
      * 检测异常值
+     * 按阈值规则表中该指标的规则即时判断，不考虑持续时间；持续超限告警由流式阈值评估负责
      */
     @Override
     public boolean detectAnomaly(MetricData metricData) {
-        if (metricData == null || metricData.getValue() == null) {
+        if (metricData == null || !metricData.hasValue()) {
             return false;
         }
         
-        String metricName = metricData.getMetricName();
-        double value = metricData.getValue();
-        
-        // 获取指标的阈值配置
-        Map<String, Double> thresholds = metricThresholds.get(metricName);
-        if (thresholds == null) {
-            // 使用默认阈值
-            thresholds = getDefaultThresholds(metricName);
+        if (metricData.getFields().containsKey(AnomalyDetector.SCORE_FIELD)) {
+            log.debug("指标{}值{}偏离基线", metricData.getMetricName(), metricData.doubleValue());
+            return true;
         }
         
-        // 检查是否超出阈值
-        Double minThreshold = thresholds.get("min");
-        Double maxThreshold = thresholds.get("max");
-        
-        boolean isAnomaly = false;
-        if (minThreshold != null && value < minThreshold) {
-            log.debug("指标{}值{}低于最小阈值{}", metricName, value, minThreshold);
-            isAnomaly = true;
-        } else if (maxThreshold != null && value > maxThreshold) {
-            log.debug("指标{}值{}超过最大阈值{}", metricName, value, maxThreshold);
-            isAnomaly = true;
+        ThresholdRule[] rules = thresholdRuleRegistry.rulesFor(metricData.getMetricName());
+        if (rules == null) {
+            return false;
         }
         
-        return isAnomaly;
-    }
-    
-    /**
-     * 获取指标的默认阈值
-     */
-    private Map<String, Double> getDefaultThresholds(String metricName) {
-        Map<String, Double> thresholds = new HashMap<>();
-        
-        switch (metricName) {
-            case "cpu_usage":
-                thresholds.put("min", 0.0);
-                thresholds.put("max", 90.0);
-                break;
-                
-            case "memory_usage":
-                thresholds.put("min", 0.0);
-                thresholds.put("max", 90.0);
-                break;
-                
-            case "disk_usage":
-                thresholds.put("min", 0.0);
-                thresholds.put("max", 85.0);
-                break;
-                
-            default:
-                // 默认阈值
-                thresholds.put("min", null);  // 不设置最小阈值
-                thresholds.put("max", null);  // 不设置最大阈值
+        double value = metricData.doubleValue();
+        for (ThresholdRule rule : rules) {
+            if (rule.isBreached(value)) {
+                log.debug("指标{}值{}超出阈值规则: {}", metricData.getMetricName(), value, rule);
+                return true;
+            }
         }
-        
-        return thresholds;
+        return false;
     }
     
     /**
-     * 聚合指标数据
+     * 补算聚合指标数据
+     * 日常聚合由流式预聚合在数据到达时完成，这里只用于手动补算最近两个间隔的历史窗口，
+     * 输出与流式聚合相同的指标名和字段
      */
     @Override
     public void aggregateMetrics(String metricName, int interval) {
@@ -356,13 +307,16 @@ public class MetricProcessorServiceImpl implements MetricProcessorService {
         }
         
         try {
-            log.info("开始聚合指标数据: metricName={}, interval={}分钟", metricName, interval);
+            log.info("开始补算聚合指标数据: metricName={}, interval={}分钟", metricName, interval);
+            
+            WindowResolution resolution = interval % 60 == 0
+                    ? WindowResolution.parse(interval / 60 + "h")
+                    : WindowResolution.parse(interval + "m");
             
-            // 计算时间范围
-            Instant endTime = Instant.now();
-            Instant startTime = endTime.minus(interval * 2, ChronoUnit.MINUTES);
+            // 只补算已结束的窗口
+            Instant endTime = Instant.ofEpochMilli(resolution.windowStart(System.currentTimeMillis()));
+            Instant startTime = endTime.minus(interval * 2L, ChronoUnit.MINUTES);
             
-            // 查询原始数据
             List<MetricData> rawData = metricStorageService.queryMetrics(
                     metricName, null, startTime, endTime);
             
@@ -371,130 +325,16 @@ public class MetricProcessorServiceImpl implements MetricProcessorService {
                 return;
             }
             
-            // 按资产ID和标签分组
-            Map<String, List<MetricData>> groupedData = rawData.stream()
-                    .collect(Collectors.groupingBy(this::getMetricGroupKey));
-            
-            // 对每个分组进行聚合计算
-            List<MetricData> aggregatedDataList = new ArrayList<>();
-            
-            for (Map.Entry<String, List<MetricData>> entry : groupedData.entrySet()) {
-                List<MetricData> groupData = entry.getValue();
-                
-                // 计算聚合值（平均值、最大值、最小值）
-                double avgValue = groupData.stream()
-                        .mapToDouble(MetricData::getValue)
-                        .average()
-                        .orElse(0.0);
-                
-                double maxValue = groupData.stream()
-                        .mapToDouble(MetricData::getValue)
-                        .max()
-                        .orElse(0.0);
-                
-                double minValue = groupData.stream()
-                        .mapToDouble(MetricData::getValue)
-                        .min()
-                        .orElse(0.0);
-                
-                // 创建聚合数据点
-                if (!groupData.isEmpty()) {
-                    MetricData template = groupData.get(0);
-                    
-                    // 平均值
-                    MetricData avgMetric = new MetricData()
-                            .setMetricName(metricName + "_" + interval + "m_avg")
-                            .setValue(avgValue)
-                            .setTimestamp(endTime)
-                            .setAssetId(template.getAssetId())
-                            .setTaskId(template.getTaskId());
-                    
-                    // 复制标签
-                    template.getTags().forEach(avgMetric::addTag);
-                    avgMetric.addTag("aggregation", "avg");
-                    avgMetric.addTag("interval", interval + "m");
-                    
-                    // 添加到聚合列表
-                    aggregatedDataList.add(avgMetric);
-                    
-                    // 最大值
-                    MetricData maxMetric = new MetricData()
-                            .setMetricName(metricName + "_" + interval + "m_max")
-                            .setValue(maxValue)
-                            .setTimestamp(endTime)
-                            .setAssetId(template.getAssetId())
-                            .setTaskId(template.getTaskId());
-                    
-                    template.getTags().forEach(maxMetric::addTag);
-                    maxMetric.addTag("aggregation", "max");
-                    maxMetric.addTag("interval", interval + "m");
-                    
-                    aggregatedDataList.add(maxMetric);
-                    
-                    // 最小值
-                    MetricData minMetric = new MetricData()
-                            .setMetricName(metricName + "_" + interval + "m_min")
-                            .setValue(minValue)
-                            .setTimestamp(endTime)
-                            .setAssetId(template.getAssetId())
-                            .setTaskId(template.getTaskId());
-                    
-                    template.getTags().forEach(minMetric::addTag);
-                    minMetric.addTag("aggregation", "min");
-                    minMetric.addTag("interval", interval + "m");
-                    
-                    aggregatedDataList.add(minMetric);
-                }
-            }
-            
-            // 存储聚合数据
+            List<MetricData> aggregatedDataList = StreamingAggregator.aggregate(rawData, resolution);
             if (!aggregatedDataList.isEmpty()) {
                 metricStorageService.storeMetrics(aggregatedDataList);
-                log.info("成功聚合并存储指标数据: metricName={}, interval={}分钟, 共{}个聚合数据点",
+                log.info("成功补算聚合指标数据: metricName={}, interval={}分钟, 共{}个聚合数据点",
                         metricName, interval, aggregatedDataList.size());
             }
-            
         } catch (Exception e) {
             log.error("聚合指标数据失败: metricName={}, interval={}分钟", metricName, interval, e);
         }
     }
-    
-    /**
-     * 获取指标分组键
-     * 按资产ID和重要标签进行分组
-     */
-    private String getMetricGroupKey(MetricData metricData) {
-        StringBuilder key = new StringBuilder();
-        
-        // 添加资产ID
-        key.append("asset_").append(metricData.getAssetId()).append("_");
-        
-        // 添加重要标签
-        Map<String, String> tags = metricData.getTags();
-        if (tags != null) {
-            if (tags.containsKey("host")) {
-                key.append("host_").append(tags.get("host")).append("_");
-            }
-            
-            if (tags.containsKey("core")) {
-                key.append("core_").append(tags.get("core")).append("_");
-            }
-            
-            if (tags.containsKey("mount_point")) {
-                key.append("mount_").append(tags.get("mount_point")).append("_");
-            }
-            
-            if (tags.containsKey("interface")) {
-                key.append("if_").append(tags.get("interface")).append("_");
-            }
-            
-            if (tags.containsKey("direction")) {
-                key.append("dir_").append(tags.get("direction"));
-            }
-        }
-        
-        return key.toString();
-    }
 
     /**
      * 处理单条指标数据
@@ -507,18 +347,15 @@ public class MetricProcessorServiceImpl implements MetricProcessorService {
         // 根据业务需求进行数据处理
         // 例如：单位转换、阈值检查、数据清洗等
         
-        // 添加处理时间标签
-        metricData.addTag("processed_time", System.currentTimeMillis() + "");
-        
         // 示例：对某些特定指标进行特殊处理
         if ("cpu_usage".equals(metricData.getMetricName())) {
             // CPU使用率需要确保在0-100范围内
-            Double value = metricData.getValue();
-            if (value != null) {
+            if (metricData.hasValue()) {
+                double value = metricData.doubleValue();
                 if (value > 100) {
-                    metricData.setValue(100.0);
+                    metricData.doubleValue(100);
                 } else if (value < 0) {
-                    metricData.setValue(0.0);
+                    metricData.doubleValue(0);
                 }
             }
         }
@@ -0,0 +1,587 @@
+package com.skyi.processor.service.storage;
+
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.WriteApiBlocking;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.exceptions.InfluxException;
+import com.skyi.processor.model.MetricData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InfluxDB写入管道
+ * 整个服务共用一个写入线程和一个阻塞写入API：调用方线程把数据点编码为行协议后进入有界缓冲区，
+ * 写入线程凑满batch-size或到达flush-interval(加随机抖动)后按存储桶合并，每个桶一次HTTP请求写入；
+ * 数据点所在的桶由{@link RetentionManager}决定。
+ * 启用溢写日志({@link SpillLog})时，缓冲区已满、重试后仍写入失败的批次以及溢写日志中尚有积压时的新批次
+ * 追加到本地磁盘，调用方不等待缓冲区；InfluxDB恢复后写入线程在空闲时按顺序重放，直到积压清空再回到内存缓冲区。
+ * 未启用溢写或溢写日志已满时，缓冲区满的调用方最多等待offer-timeout-ms，仍无空间则丢弃并计数，不会无限堆积内存。
+ * 每次提交返回CompletableFuture，写入成功或已写入溢写日志时完成为数据点数，失败或丢弃时异常完成。
+ * 多个调用方合并的请求被InfluxDB拒绝(4xx)时逐个调用方重新写入，只有数据被拒绝的调用方以{@link RejectedPointsException}失败
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "processor.storage.engine", havingValue = "influxdb", matchIfMissing = true)
+public class InfluxDBWritePipeline {
+
+    @Autowired
+    private InfluxDBClient influxDBClient;
+
+    @Autowired
+    private RetentionManager retentionManager;
+
+    @Autowired
+    @Qualifier("influxDBOrg")
+    private String influxDBOrg;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${processor.storage.influxdb.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${processor.storage.influxdb.flush-interval:1000}")
+    private long flushInterval;
+
+    @Value("${processor.storage.influxdb.jitter-interval:100}")
+    private long jitterInterval;
+
+    @Value("${processor.storage.influxdb.buffer-limit:50000}")
+    private int bufferLimit;
+
+    @Value("${processor.storage.influxdb.offer-timeout-ms:1000}")
+    private long offerTimeoutMs;
+
+    @Value("${processor.storage.influxdb.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${processor.storage.influxdb.retry-interval:1000}")
+    private long retryInterval;
+
+    @Value("${processor.storage.spill.enabled:true}")
+    private boolean spillEnabled;
+
+    @Value("${processor.storage.spill.dir:./data/spill}")
+    private String spillDir;
+
+    @Value("${processor.storage.spill.segment-size-mb:64}")
+    private int spillSegmentSizeMb;
+
+    @Value("${processor.storage.spill.max-size-mb:2048}")
+    private long spillMaxSizeMb;
+
+    /**
+     * 重放失败后再次尝试的最长间隔
+     */
+    private static final long MAX_REPLAY_BACKOFF_MS = 30000L;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 写入线程合并请求体用，只在写入线程中访问
+     */
+    private final StringBuilder body = new StringBuilder(64 * 1024);
+
+    private Semaphore capacity;
+    private WriteApiBlocking writeApi;
+    private SpillLog spillLog;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    /**
+     * 重放退避，只在写入线程中访问
+     */
+    private long replayNotBefore;
+    private long replayBackoff;
+
+    private Timer writeTimer;
+    private Counter writtenCounter;
+    private Counter failedCounter;
+    private Counter droppedCounter;
+    private Counter spilledCounter;
+    private Counter replayedCounter;
+
+    @PostConstruct
+    public void start() {
+        batchSize = Math.max(1, batchSize);
+        bufferLimit = Math.max(bufferLimit, batchSize * 2);
+        capacity = new Semaphore(bufferLimit);
+        writeApi = influxDBClient.getWriteApiBlocking();
+
+        Gauge.builder("processor.influxdb.buffer.size", this, p -> p.bufferLimit - p.capacity.availablePermits())
+                .description("等待写入InfluxDB的数据点数")
+                .register(meterRegistry);
+        writeTimer = Timer.builder("processor.influxdb.write.latency")
+                .description("InfluxDB批量写入耗时")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("processor.influxdb.points.written")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("processor.influxdb.points.failed")
+                .description("重试后仍写入失败的数据点")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("processor.influxdb.points.dropped")
+                .description("缓冲区已满被丢弃的数据点")
+                .register(meterRegistry);
+        spilledCounter = Counter.builder("processor.influxdb.points.spilled")
+                .description("写入溢写日志的数据点")
+                .register(meterRegistry);
+        replayedCounter = Counter.builder("processor.influxdb.points.replayed")
+                .description("从溢写日志重放写入的数据点")
+                .register(meterRegistry);
+        openSpillLog();
+
+        running = true;
+        writerThread = new Thread(this::runLoop, "influxdb-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("InfluxDB写入管道已启动, 批量大小: {}, 刷新间隔: {}ms, 缓冲上限: {}", batchSize, flushInterval, bufferLimit);
+    }
+
+    /**
+     * 提交数据点，超过batch-size的提交拆成多段分别编码入队
+     * 调用方需保证指标名非空、value为有限值
+     *
+     * @param points 数据点
+     * @return 全部写入成功时完成为写入点数；任一段被丢弃或写入失败时异常完成
+     */
+    public CompletableFuture<Integer> submit(List<MetricData> points) {
+        if (points == null || points.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        Map<String, List<MetricData>> byBucket = groupByBucket(points);
+        if (byBucket.size() == 1 && points.size() <= batchSize) {
+            return enqueue(byBucket.keySet().iterator().next(), points);
+        }
+
+        List<CompletableFuture<Integer>> parts = new ArrayList<>();
+        for (Map.Entry<String, List<MetricData>> entry : byBucket.entrySet()) {
+            List<MetricData> bucketPoints = entry.getValue();
+            for (int from = 0; from < bucketPoints.size(); from += batchSize) {
+                parts.add(enqueue(entry.getKey(), bucketPoints.subList(from, Math.min(from + batchSize, bucketPoints.size()))));
+            }
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                .thenApply(v -> parts.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    /**
+     * 当前缓冲区中等待写入的数据点数
+     */
+    public int getBufferedPoints() {
+        return bufferLimit - capacity.availablePermits();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            // 不中断写入线程，避免打断进行中的HTTP请求；线程在下一次轮询超时后写完剩余数据退出
+            writerThread.join(flushInterval + jitterInterval + 10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (spillLog != null) {
+            spillLog.close();
+        }
+        log.info("InfluxDB写入管道已停止, 剩余未写入数据点: {}", getBufferedPoints());
+    }
+
+    private void openSpillLog() {
+        if (!spillEnabled) {
+            return;
+        }
+        long segmentBytes = Math.min(Math.max(1, spillSegmentSizeMb), 1024) * 1024L * 1024L;
+        try {
+            spillLog = new SpillLog(Paths.get(spillDir), segmentBytes, Math.max(1, spillMaxSizeMb) * 1024L * 1024L);
+        } catch (IOException e) {
+            log.error("打开溢写日志失败，InfluxDB不可用时将丢弃数据, 目录: {}, 原因: {}", spillDir, e.getMessage());
+            return;
+        }
+        SpillLog spill = spillLog;
+        Gauge.builder("processor.influxdb.spill.bytes", spill, SpillLog::getSizeBytes)
+                .description("溢写日志占用的磁盘空间")
+                .register(meterRegistry);
+        Gauge.builder("processor.influxdb.spill.corrupted", spill, SpillLog::getCorruptedRecords)
+                .description("校验失败被丢弃的溢写记录")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按存储桶分组，全部属于同一个桶时(通常如此)不复制列表
+     */
+    private Map<String, List<MetricData>> groupByBucket(List<MetricData> points) {
+        String first = retentionManager.bucketFor(points.get(0));
+        int i = 1;
+        while (i < points.size() && first.equals(retentionManager.bucketFor(points.get(i)))) {
+            i++;
+        }
+        Map<String, List<MetricData>> byBucket = new LinkedHashMap<>();
+        if (i == points.size()) {
+            byBucket.put(first, points);
+            return byBucket;
+        }
+        byBucket.put(first, new ArrayList<>(points.subList(0, i)));
+        for (; i < points.size(); i++) {
+            MetricData point = points.get(i);
+            byBucket.computeIfAbsent(retentionManager.bucketFor(point), k -> new ArrayList<>()).add(point);
+        }
+        return byBucket;
+    }
+
+    private CompletableFuture<Integer> enqueue(String bucket, List<MetricData> points) {
+        int size = points.size();
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        String lines;
+        try {
+            lines = LineProtocolEncoder.encode(points);
+        } catch (RuntimeException e) {
+            failedCounter.increment(size);
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        boolean acquired = false;
+        if (spillLog != null && running) {
+            // 溢写日志有积压时新数据也进入溢写日志，保证按顺序写入
+            acquired = spillLog.isEmpty() && capacity.tryAcquire(size);
+            if (!acquired && spillLog.append(bucket, lines, size)) {
+                spilledCounter.increment(size);
+                future.complete(size);
+                return future;
+            }
+        }
+        try {
+            acquired = acquired || running && capacity.tryAcquire(size, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!acquired) {
+            droppedCounter.increment(size);
+            log.warn("InfluxDB写入缓冲区已满，丢弃数据点: {}", size);
+            future.completeExceptionally(new RejectedExecutionException("InfluxDB写入缓冲区已满"));
+            return future;
+        }
+        queue.add(new PendingWrite(bucket, lines, size, future));
+        return future;
+    }
+
+    private void runLoop() {
+        List<PendingWrite> pending = new ArrayList<>();
+        int pendingPoints = 0;
+        long deadline = nextDeadline();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                long wait = isReplayable() ? 0L : deadline - System.currentTimeMillis();
+                PendingWrite write = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                if (write != null) {
+                    pending.add(write);
+                    pendingPoints += write.size;
+                    // 已在队列中的数据一次取完，减少唤醒次数
+                    while (pendingPoints < batchSize && (write = queue.poll()) != null) {
+                        pending.add(write);
+                        pendingPoints += write.size;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (pendingPoints >= batchSize || System.currentTimeMillis() >= deadline || !running) {
+                if (!pending.isEmpty()) {
+                    flush(pending);
+                    pending.clear();
+                    pendingPoints = 0;
+                }
+                deadline = nextDeadline();
+                if (spillLog != null) {
+                    spillLog.force();
+                }
+            }
+            if (pending.isEmpty() && queue.isEmpty() && isReplayable()) {
+                replay();
+            }
+        }
+    }
+
+    /**
+     * 内存缓冲区空闲、溢写日志有积压且不在退避期内时重放
+     */
+    private boolean isReplayable() {
+        return running && spillLog != null && !spillLog.isEmpty() && System.currentTimeMillis() >= replayNotBefore;
+    }
+
+    /**
+     * 重放溢写日志中最早的一批数据，每个存储桶一次请求、不重试；失败后按指数退避再次尝试，
+     * 期间新数据继续进入溢写日志。被InfluxDB拒绝的数据重放多少次都不会成功，计为失败后跳过
+     */
+    private void replay() {
+        List<SpillLog.Record> records = spillLog.peek(batchSize);
+        if (records.isEmpty()) {
+            if (!spillLog.isEmpty()) {
+                // 没有读到记录但仍有积压时等待下一个刷新周期，避免写入线程空转
+                replayNotBefore = System.currentTimeMillis() + flushInterval;
+            }
+            return;
+        }
+        int points = 0;
+        int rejected = 0;
+        Exception failure = null;
+        int from = 0;
+        while (from < records.size() && failure == null) {
+            String bucket = records.get(from).bucket;
+            int to = from;
+            int bucketPoints = 0;
+            body.setLength(0);
+            while (to < records.size() && bucket.equals(records.get(to).bucket)) {
+                if (body.length() > 0) {
+                    body.append('\n');
+                }
+                body.append(records.get(to).lines);
+                bucketPoints += records.get(to).points;
+                to++;
+            }
+            failure = send(bucket, body.toString(), bucketPoints, 0);
+            if (failure != null && !isRetriable(failure)) {
+                log.error("溢写日志中的数据被InfluxDB拒绝，跳过数据点: {}，存储桶: {}，原因: {}",
+                        bucketPoints, bucket, failure.getMessage());
+                rejected += bucketPoints;
+                failure = null;
+            } else {
+                points += bucketPoints;
+            }
+            from = to;
+        }
+        if (body.capacity() > 4 * 1024 * 1024) {
+            body.setLength(0);
+            body.trimToSize();
+        }
+
+        if (failure == null) {
+            spillLog.commit();
+            replayedCounter.increment(points);
+            writtenCounter.increment(points);
+            failedCounter.increment(rejected);
+            replayBackoff = 0L;
+            log.debug("从溢写日志重放数据点: {}", points);
+        } else {
+            replayBackoff = Math.min(MAX_REPLAY_BACKOFF_MS, Math.max(retryInterval, replayBackoff * 2));
+            replayNotBefore = System.currentTimeMillis() + replayBackoff;
+            log.warn("从溢写日志重放失败，{}ms后重试，积压: {}字节，原因: {}",
+                    replayBackoff, spillLog.getSizeBytes(), failure.getMessage());
+        }
+    }
+
+    private void flush(List<PendingWrite> pending) {
+        String bucket = pending.get(0).bucket;
+        boolean single = true;
+        for (PendingWrite write : pending) {
+            single &= bucket.equals(write.bucket);
+        }
+        if (single) {
+            write(bucket, pending);
+            return;
+        }
+        Map<String, List<PendingWrite>> byBucket = new LinkedHashMap<>();
+        for (PendingWrite write : pending) {
+            byBucket.computeIfAbsent(write.bucket, k -> new ArrayList<>()).add(write);
+        }
+        byBucket.forEach(this::write);
+    }
+
+    private void write(String bucket, List<PendingWrite> pending) {
+        int pendingPoints = 0;
+        body.setLength(0);
+        for (PendingWrite write : pending) {
+            pendingPoints += write.size;
+            if (body.length() > 0) {
+                body.append('\n');
+            }
+            body.append(write.lines);
+        }
+        String records = body.toString();
+        if (body.capacity() > 4 * 1024 * 1024) {
+            body.setLength(0);
+            body.trimToSize();
+        }
+
+        // 启用溢写时失败的批次直接进入溢写日志，由重放代替重试，调用方不用等待退避
+        Exception failure = send(bucket, records, pendingPoints, spillLog != null ? 0 : maxRetries);
+        capacity.release(pendingPoints);
+        if (failure == null) {
+            writtenCounter.increment(pendingPoints);
+            log.debug("写入InfluxDB成功，数据点: {}", pendingPoints);
+            pending.forEach(write -> write.future.complete(write.size));
+            return;
+        }
+        if (!isRetriable(failure) && pending.size() > 1) {
+            isolate(bucket, pending);
+            return;
+        }
+        fail(bucket, pending, failure);
+    }
+
+    /**
+     * 合并请求被拒绝时逐个调用方重新写入，只让数据被拒绝的调用方失败；
+     * InfluxDB部分写入时其余有效的行已经写入，重新写入相同时间戳的数据点结果不变
+     */
+    private void isolate(String bucket, List<PendingWrite> pending) {
+        List<PendingWrite> retriable = new ArrayList<>();
+        Exception retriableFailure = null;
+        for (PendingWrite write : pending) {
+            Exception failure = send(bucket, write.lines, write.size, 0);
+            if (failure == null) {
+                writtenCounter.increment(write.size);
+                write.future.complete(write.size);
+            } else if (isRetriable(failure)) {
+                retriable.add(write);
+                retriableFailure = failure;
+            } else {
+                fail(bucket, new ArrayList<>(List.of(write)), failure);
+            }
+        }
+        if (!retriable.isEmpty()) {
+            fail(bucket, retriable, retriableFailure);
+        }
+    }
+
+    /**
+     * 写入失败的批次：可重试的错误进入溢写日志，否则按失败完成；被拒绝的数据以{@link RejectedPointsException}完成
+     */
+    private void fail(String bucket, List<PendingWrite> pending, Exception failure) {
+        boolean retriable = isRetriable(failure);
+        if (retriable && spill(pending)) {
+            log.warn("写入InfluxDB失败，数据点已写入溢写日志: {}，存储桶: {}，原因: {}",
+                    pending.stream().mapToInt(write -> write.size).sum(), bucket, failure.getMessage());
+            return;
+        }
+        int failedPoints = pending.stream().mapToInt(write -> write.size).sum();
+        failedCounter.increment(failedPoints);
+        log.error("写入InfluxDB失败，放弃数据点: {}，存储桶: {}，原因: {}", failedPoints, bucket, failure.getMessage(), failure);
+        Exception cause = retriable ? failure : new RejectedPointsException("InfluxDB拒绝写入: " + failure.getMessage(), failure);
+        pending.forEach(write -> write.future.completeExceptionally(cause));
+    }
+
+    /**
+     * 把写入失败的批次追加到溢写日志，溢写日志已满时剩余批次按失败处理
+     *
+     * @return 是否全部写入溢写日志
+     */
+    private boolean spill(List<PendingWrite> pending) {
+        if (spillLog == null) {
+            return false;
+        }
+        int index = 0;
+        while (index < pending.size() && spillLog.append(pending.get(index).bucket, pending.get(index).lines, pending.get(index).size)) {
+            PendingWrite write = pending.get(index++);
+            spilledCounter.increment(write.size);
+            write.future.complete(write.size);
+        }
+        if (index == pending.size()) {
+            return true;
+        }
+        // 已写入溢写日志的批次从列表中移除，剩余的由调用方按失败处理
+        pending.subList(0, index).clear();
+        return false;
+    }
+
+    /**
+     * 写入一个存储桶，可重试的错误按指数退避重试
+     *
+     * @return 最后一次失败的异常，成功时为null
+     */
+    private Exception send(String bucket, String records, int pendingPoints, int retries) {
+        Exception failure = null;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            long start = System.nanoTime();
+            try {
+                writeApi.writeRecord(bucket, influxDBOrg, WritePrecision.MS, records);
+                writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                failure = null;
+                break;
+            } catch (Exception e) {
+                writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                failure = e;
+                if (!isRetriable(e) || attempt == retries) {
+                    break;
+                }
+                log.warn("写入InfluxDB失败，{}ms后第{}次重试，存储桶: {}，数据点: {}，原因: {}",
+                        retryInterval << attempt, attempt + 1, bucket, pendingPoints, e.getMessage());
+                if (!sleep(retryInterval << attempt)) {
+                    break;
+                }
+            }
+        }
+
+        return failure;
+    }
+
+    /**
+     * 4xx错误(限流429除外)说明数据本身有问题，重试无意义
+     */
+    private boolean isRetriable(Exception e) {
+        if (e instanceof InfluxException) {
+            int status = ((InfluxException) e).status();
+            return status == 0 || status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long nextDeadline() {
+        long jitter = jitterInterval > 0 ? ThreadLocalRandom.current().nextLong(jitterInterval + 1) : 0L;
+        return System.currentTimeMillis() + flushInterval + jitter;
+    }
+
+    private static final class PendingWrite {
+
+        private final String bucket;
+        private final String lines;
+        private final int size;
+        private final CompletableFuture<Integer> future;
+
+        private PendingWrite(String bucket, String lines, int size, CompletableFuture<Integer> future) {
+            this.bucket = bucket;
+            this.lines = lines;
+            this.size = size;
+            this.future = future;
+        }
+    }
+}
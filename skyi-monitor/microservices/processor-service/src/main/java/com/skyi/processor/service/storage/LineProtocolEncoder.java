@@ -0,0 +1,244 @@
+package com.skyi.processor.service.storage;
+
+import com.skyi.processor.model.MetricData;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InfluxDB行协议编码器
+ * 直接把MetricData写成行协议文本，不经过Point对象和标签、字段Map的复制：
+ * <pre>
+ * measurement,assetId=1,instanceId=2,taskId=3,tagA=x value=1.5,fieldB=2i 1700000000000
+ * </pre>
+ * 标签按键排序(与InfluxDB存储顺序一致，写入时无需再排序)，assetId/taskId/instanceId作为标签写入，
+ * 同名的自定义标签优先；时间戳精度为毫秒。
+ * 指标名和标签键的转义结果缓存复用，每个线程复用一个StringBuilder和标签排序数组
+ */
+public final class LineProtocolEncoder {
+
+    private static final int MAX_CACHED_NAMES = 10000;
+
+    private static final int MAX_RETAINED_BUILDER = 1 << 20;
+
+    private static final String VALUE_FIELD = "value";
+
+    private static final Map<String, String> MEASUREMENTS = new ConcurrentHashMap<>();
+
+    private static final Map<String, String> KEYS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<LineProtocolEncoder> LOCAL = ThreadLocal.withInitial(LineProtocolEncoder::new);
+
+    private StringBuilder builder = new StringBuilder(4096);
+    private String[] tagKeys = new String[16];
+    private String[] tagValues = new String[16];
+    private int tagCount;
+
+    private LineProtocolEncoder() {
+    }
+
+    /**
+     * 编码一批指标数据，每个数据点一行
+     * 调用方需保证指标名非空、value为有限值
+     *
+     * @param metricDataList 指标数据
+     * @return 行协议文本
+     */
+    public static String encode(List<MetricData> metricDataList) {
+        return LOCAL.get().encodeBatch(metricDataList);
+    }
+
+    private String encodeBatch(List<MetricData> metricDataList) {
+        try {
+            for (int i = 0; i < metricDataList.size(); i++) {
+                if (i > 0) {
+                    builder.append('\n');
+                }
+                appendLine(metricDataList.get(i));
+            }
+            return builder.toString();
+        } finally {
+            builder.setLength(0);
+            Arrays.fill(tagValues, 0, tagCount, null);
+            tagCount = 0;
+            // 偶发的超大批次不长期占用线程缓冲区
+            if (builder.capacity() > MAX_RETAINED_BUILDER) {
+                builder = new StringBuilder(4096);
+            }
+        }
+    }
+
+    private void appendLine(MetricData metricData) {
+        builder.append(cached(MEASUREMENTS, metricData.getMetricName(), true));
+
+        collectTags(metricData);
+        for (int i = 0; i < tagCount; i++) {
+            builder.append(',').append(cached(KEYS, tagKeys[i], false)).append('=');
+            appendEscaped(tagValues[i], false);
+        }
+
+        builder.append(' ');
+        Map<String, Object> fields = metricData.getFields();
+        boolean first = true;
+        if (!fields.containsKey(VALUE_FIELD)) {
+            builder.append(VALUE_FIELD).append('=');
+            appendDouble(metricData.doubleValue());
+            first = false;
+        }
+        if (!fields.isEmpty()) {
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                if (field.getKey() == null || field.getKey().isEmpty() || !isWritable(field.getValue())) {
+                    continue;
+                }
+                if (!first) {
+                    builder.append(',');
+                }
+                builder.append(cached(KEYS, field.getKey(), false)).append('=');
+                appendFieldValue(field.getValue());
+                first = false;
+            }
+        }
+
+        long timestamp = metricData.hasTimestamp() ? metricData.timestampMillis() : System.currentTimeMillis();
+        builder.append(' ').append(timestamp);
+    }
+
+    /**
+     * 收集标签并按键排序，自定义标签覆盖同名的ID标签，空键或空值的标签忽略
+     */
+    private void collectTags(MetricData metricData) {
+        Arrays.fill(tagValues, 0, tagCount, null);
+        tagCount = 0;
+        if (metricData.getAssetId() != null && metricData.tag("assetId") == null) {
+            addTag("assetId", metricData.getAssetId().toString());
+        }
+        if (metricData.getTaskId() != null && metricData.tag("taskId") == null) {
+            addTag("taskId", metricData.getTaskId().toString());
+        }
+        if (metricData.getInstanceId() != null && metricData.tag("instanceId") == null) {
+            addTag("instanceId", metricData.getInstanceId().toString());
+        }
+        String[] tags = metricData.tagPairs();
+        for (int i = 0; i < tags.length; i += 2) {
+            addTag(tags[i], tags[i + 1]);
+        }
+    }
+
+    /**
+     * 插入排序加入标签，单个数据点的标签通常不超过十个
+     */
+    private void addTag(String key, String value) {
+        if (key == null || key.isEmpty() || value == null || value.isEmpty()) {
+            return;
+        }
+        if (tagCount == tagKeys.length) {
+            tagKeys = Arrays.copyOf(tagKeys, tagCount * 2);
+            tagValues = Arrays.copyOf(tagValues, tagCount * 2);
+        }
+        int i = tagCount++;
+        while (i > 0 && tagKeys[i - 1].compareTo(key) > 0) {
+            tagKeys[i] = tagKeys[i - 1];
+            tagValues[i] = tagValues[i - 1];
+            i--;
+        }
+        tagKeys[i] = key;
+        tagValues[i] = value;
+    }
+
+    private boolean isWritable(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return !Double.isNaN(d) && !Double.isInfinite(d);
+        }
+        return true;
+    }
+
+    private void appendFieldValue(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            appendDouble(((Number) value).doubleValue());
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            builder.append(((Number) value).longValue()).append('i');
+        } else if (value instanceof Number) {
+            appendDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            builder.append(((Boolean) value).booleanValue());
+        } else {
+            builder.append('"');
+            String text = value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    builder.append('\\');
+                }
+                builder.append(c);
+            }
+            builder.append('"');
+        }
+    }
+
+    private void appendDouble(double value) {
+        // 整数值省略小数部分，与InfluxDB客户端的输出一致
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            builder.append((long) value);
+        } else {
+            builder.append(value);
+        }
+    }
+
+    /**
+     * 转义规则与InfluxDB客户端的Point一致：空格、逗号(以及键和标签值中的等号)前加反斜杠，控制字符写成转义序列
+     */
+    private void appendEscaped(String value, boolean measurement) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case ' ':
+                case ',':
+                    builder.append('\\').append(c);
+                    break;
+                case '=':
+                    if (!measurement) {
+                        builder.append('\\');
+                    }
+                    builder.append(c);
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * 获取转义后的指标名或标签/字段键，无需转义时返回原字符串
+     */
+    private String cached(Map<String, String> cache, String name, boolean measurement) {
+        String escaped = cache.get(name);
+        if (escaped != null) {
+            return escaped;
+        }
+        int mark = builder.length();
+        appendEscaped(name, measurement);
+        escaped = builder.length() - mark == name.length() ? name : builder.substring(mark);
+        builder.setLength(mark);
+        if (cache.size() >= MAX_CACHED_NAMES) {
+            cache.clear();
+        }
+        cache.put(name, escaped);
+        return escaped;
+    }
+}
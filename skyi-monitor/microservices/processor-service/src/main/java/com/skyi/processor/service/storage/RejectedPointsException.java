@@ -0,0 +1,12 @@
+package com.skyi.processor.service.storage;
+
+/**
+ * 数据点被存储拒绝
+ * InfluxDB以4xx(限流429除外)拒绝写入时抛出，说明数据本身有问题，重试或重新投递都不会成功
+ */
+public class RejectedPointsException extends RuntimeException {
+
+    public RejectedPointsException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,244 @@
+package com.skyi.processor.service.storage;
+
+import com.influxdb.client.BucketsApi;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.domain.Bucket;
+import com.influxdb.client.domain.BucketRetentionRules;
+import com.influxdb.client.domain.Organization;
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.service.aggregation.WindowResolution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 分层保留管理
+ * 按processor.processing.retention-policies为原始数据和每个预聚合粒度各使用一个存储桶：
+ * 原始数据写入配置的bucket，粒度为1m的聚合数据(指标名"原指标名_1m")写入"bucket_1m"，依此类推，
+ * 每个桶按各自的保留时长自动过期。没有保留策略的粒度与原始数据共用一个桶。
+ * 写入时按数据点上由预聚合设置的粒度标记({@link MetricData#rollup()})选择存储桶，不依据指标名后缀，
+ * 名称恰好以"_1m"等结尾的原始指标仍写入原始数据桶。
+ * 存储桶在启动后及之后每隔check-interval-ms检查一次，不存在时创建；已存在的存储桶保留原有保留时长，
+ * 缩短保留时长会立即删除超出范围的历史数据，仅在开启update-existing时才按配置更新。
+ * 查询时选择满足时间粒度、且保留时长覆盖查询起始时间的最粗粒度
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "processor.storage.engine", havingValue = "influxdb", matchIfMissing = true)
+public class RetentionManager {
+
+    private static final String RAW_TIER = "raw";
+
+    @Autowired
+    private InfluxDBClient influxDBClient;
+
+    @Autowired
+    @Qualifier("influxDBBucket")
+    private String influxDBBucket;
+
+    @Autowired
+    @Qualifier("influxDBOrg")
+    private String influxDBOrg;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${processor.processing.aggregation.enabled:true}")
+    private boolean aggregationEnabled;
+
+    @Value("${processor.processing.aggregation.windows:1m,5m,1h}")
+    private String aggregationWindows;
+
+    @Value("${processor.storage.retention.update-existing:false}")
+    private boolean updateExisting;
+
+    private Tier rawTier;
+
+    /**
+     * 预聚合粒度对应的层级，由粗到细排列
+     */
+    private Tier[] rollupTiers;
+
+    private final Map<String, Tier> tiersByLabel = new HashMap<>();
+
+    private volatile boolean provisioned;
+
+    @PostConstruct
+    public void init() {
+        Map<String, String> policies = Binder.get(environment)
+                .bind("processor.processing.retention-policies", Bindable.mapOf(String.class, String.class))
+                .orElse(Collections.emptyMap());
+
+        rawTier = new Tier(null, influxDBBucket, retentionMillis(policies.get(RAW_TIER)));
+        rollupTiers = !aggregationEnabled ? new Tier[0] : Arrays.stream(aggregationWindows.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(WindowResolution::parse)
+                .sorted(Comparator.comparingLong(WindowResolution::getMillis).reversed())
+                .map(resolution -> {
+                    String policy = policies.get(resolution.getLabel());
+                    if (policy == null) {
+                        log.warn("聚合粒度{}未配置保留策略，与原始数据共用存储桶", resolution);
+                        return new Tier(resolution, rawTier.bucket, rawTier.retentionMillis);
+                    }
+                    return new Tier(resolution, influxDBBucket + "_" + resolution.getLabel(), retentionMillis(policy));
+                })
+                .toArray(Tier[]::new);
+        for (Tier tier : rollupTiers) {
+            tiersByLabel.put(tier.resolution.getLabel(), tier);
+        }
+        log.info("存储分层: 原始数据 -> {}({}), 聚合数据 -> {}", rawTier.bucket, policies.get(RAW_TIER), Arrays.toString(rollupTiers));
+    }
+
+    /**
+     * 数据点写入的存储桶，预聚合结果写入其粒度所在的桶，其余为原始数据桶
+     */
+    public String bucketFor(MetricData metricData) {
+        String rollup = metricData.rollup();
+        if (rollup == null) {
+            return rawTier.bucket;
+        }
+        Tier tier = tiersByLabel.get(rollup);
+        return tier != null ? tier.bucket : rawTier.bucket;
+    }
+
+    /**
+     * 预聚合粒度所在的存储桶
+     */
+    public String bucketFor(WindowResolution resolution) {
+        Tier tier = tiersByLabel.get(resolution.getLabel());
+        return tier != null ? tier.bucket : rawTier.bucket;
+    }
+
+    /**
+     * 原始数据所在的存储桶
+     */
+    public String getRawBucket() {
+        return rawTier.bucket;
+    }
+
+    /**
+     * 选择可用于查询的最粗预聚合粒度
+     *
+     * @param startTime 查询起始时间，所选粒度的保留时长需覆盖该时间
+     * @param intervalMillis 查询要求的时间粒度，所选粒度不超过该值
+     * @param aligned 是否要求查询粒度是所选粒度的整数倍
+     * @return 预聚合粒度，没有满足条件的粒度时返回null(使用原始数据)
+     */
+    public WindowResolution selectRollup(Instant startTime, long intervalMillis, boolean aligned) {
+        long now = System.currentTimeMillis();
+        for (Tier tier : rollupTiers) {
+            long millis = tier.resolution.getMillis();
+            if (millis > intervalMillis || (aligned && intervalMillis % millis != 0)) {
+                continue;
+            }
+            if (tier.retentionMillis > 0 && startTime.toEpochMilli() < now - tier.retentionMillis) {
+                continue;
+            }
+            return tier.resolution;
+        }
+        return null;
+    }
+
+    /**
+     * 创建缺失的存储桶，开启update-existing时同步已有存储桶的保留时长，InfluxDB不可用时下次检查重试
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${processor.storage.retention.check-interval-ms:600000}")
+    public void provisionBuckets() {
+        try {
+            String orgId = influxDBClient.getOrganizationsApi().findOrganizations().stream()
+                    .filter(org -> influxDBOrg.equals(org.getName()))
+                    .map(Organization::getId)
+                    .findFirst()
+                    .orElse(null);
+            if (orgId == null) {
+                log.error("InfluxDB组织不存在: {}", influxDBOrg);
+                return;
+            }
+
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            buckets.put(rawTier.bucket, rawTier.retentionMillis);
+            for (Tier tier : rollupTiers) {
+                buckets.putIfAbsent(tier.bucket, tier.retentionMillis);
+            }
+            BucketsApi bucketsApi = influxDBClient.getBucketsApi();
+            for (Map.Entry<String, Long> entry : buckets.entrySet()) {
+                provision(bucketsApi, orgId, entry.getKey(), entry.getValue());
+            }
+            if (!provisioned) {
+                provisioned = true;
+                log.info("存储桶检查完成: {}", buckets.keySet());
+            }
+        } catch (Exception e) {
+            log.error("检查InfluxDB存储桶失败: {}", e.getMessage());
+        }
+    }
+
+    private void provision(BucketsApi bucketsApi, String orgId, String name, long retentionMillis) {
+        int everySeconds = (int) (retentionMillis / 1000);
+        Bucket bucket = bucketsApi.findBucketByName(name);
+        if (bucket == null) {
+            BucketRetentionRules rule = new BucketRetentionRules().everySeconds(everySeconds);
+            bucketsApi.createBucket(name, rule, orgId);
+            log.info("创建存储桶: {}, 保留{}秒", name, everySeconds);
+            return;
+        }
+        List<BucketRetentionRules> rules = bucket.getRetentionRules();
+        Integer current = rules == null || rules.isEmpty() ? Integer.valueOf(0) : rules.get(0).getEverySeconds();
+        if (Objects.equals(current, everySeconds)) {
+            return;
+        }
+        if (!updateExisting) {
+            if (!provisioned) {
+                log.warn("存储桶保留时长与配置不一致，保持现有设置: {}, 当前{}秒, 配置{}秒", name, current, everySeconds);
+            }
+            return;
+        }
+        bucket.setRetentionRules(Collections.singletonList(new BucketRetentionRules().everySeconds(everySeconds)));
+        bucketsApi.updateBucket(bucket);
+        log.info("更新存储桶保留时长: {}, {}秒 -> {}秒", name, current, everySeconds);
+    }
+
+    /**
+     * 解析保留时长，格式与聚合粒度相同(如7d、12h)，未配置时为0表示永久保留
+     */
+    private static long retentionMillis(String policy) {
+        return policy == null || policy.trim().isEmpty() ? 0L : WindowResolution.parse(policy).getMillis();
+    }
+
+    private static final class Tier {
+
+        private final WindowResolution resolution;
+        private final String bucket;
+        private final long retentionMillis;
+
+        private Tier(WindowResolution resolution, String bucket, long retentionMillis) {
+            this.resolution = resolution;
+            this.bucket = bucket;
+            this.retentionMillis = retentionMillis;
+        }
+
+        @Override
+        public String toString() {
+            return resolution + ":" + bucket;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package com.skyi.processor.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * 写入溢写日志
+ * InfluxDB变慢或不可用时，已编码的行协议批次追加到本地的内存映射段文件，恢复后按写入顺序重放。
+ * 目录下每个段文件(序号.seg)预分配固定大小，记录格式为：
+ * <pre>
+ * int 长度 | int CRC32C | 载荷(short 存储桶长度, 存储桶, int 数据点数, 行协议文本)
+ * </pre>
+ * 先写载荷和校验值，最后写长度，长度为0表示段内数据结束，进程中途退出时不完整的记录会被忽略；
+ * 校验失败时该记录之前的数据照常重放，之后整个段改名为 序号.seg.corrupt 隔离，不再重放也不计入总大小，
+ * 活动段出现校验失败时先关闭，之后的追加使用新段。
+ * 追加可以在任意线程调用；读取(peek/commit)只由写入线程调用，活动段读到已追加完成的位置为止，
+ * 全部读完后删除活动段，之后的追加使用新段。
+ * 已读取但未提交的记录在进程重启后会再次重放，InfluxDB对相同序列和时间戳的数据覆盖写入，重复写入无副作用
+ */
+@Slf4j
+final class SpillLog {
+
+    private static final String SUFFIX = ".seg";
+
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private static final int HEADER_BYTES = 8;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long maxBytes;
+
+    /**
+     * 全部未重放完的段，最后一个可能是活动段
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private Segment active;
+    private MappedByteBuffer writeBuffer;
+    private long nextSequence;
+    private long totalBytes;
+    private boolean dirty;
+    private boolean closed;
+
+    /**
+     * 读取位置，只由写入线程访问
+     */
+    private Segment readSegment;
+    private ByteBuffer readBuffer;
+    private int readLimit;
+    private int readPosition;
+    private int peekPosition;
+    private int corruptPosition = -1;
+
+    /**
+     * 校验失败的记录数，写入线程更新、监控线程读取
+     */
+    private volatile long corruptedRecords;
+
+    SpillLog(Path dir, long segmentBytes, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = Math.max(maxBytes, segmentBytes);
+        Files.createDirectories(dir);
+        List<Segment> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    long sequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                    existing.add(new Segment(sequence, file, Files.size(file)));
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的溢写文件: {}", file);
+                }
+            }
+        }
+        existing.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        for (Segment segment : existing) {
+            segments.addLast(segment);
+            totalBytes += segment.bytes;
+            nextSequence = segment.sequence + 1;
+        }
+        if (!segments.isEmpty()) {
+            log.info("发现未重放的溢写段: {}个, 共{}字节", segments.size(), totalBytes);
+        }
+    }
+
+    /**
+     * 追加一个批次
+     *
+     * @param bucket 存储桶
+     * @param lines 行协议文本
+     * @param points 数据点数
+     * @return 是否写入成功，超过总大小上限或已关闭时返回false
+     */
+    synchronized boolean append(String bucket, String lines, int points) {
+        if (closed) {
+            return false;
+        }
+        byte[] bucketBytes = bucket.getBytes(StandardCharsets.UTF_8);
+        byte[] lineBytes = lines.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + bucketBytes.length + 4 + lineBytes.length;
+        try {
+            if (active == null || writeBuffer.remaining() < HEADER_BYTES + length + 4) {
+                if (!rotate(HEADER_BYTES + length + 4)) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            log.error("创建溢写段失败, 目录: {}, 原因: {}", dir, e.getMessage());
+            return false;
+        }
+
+        int start = writeBuffer.position();
+        writeBuffer.position(start + HEADER_BYTES);
+        writeBuffer.putShort((short) bucketBytes.length);
+        writeBuffer.put(bucketBytes);
+        writeBuffer.putInt(points);
+        writeBuffer.put(lineBytes);
+        writeBuffer.putInt(start + 4, crc(writeBuffer, start + HEADER_BYTES, length));
+        writeBuffer.putInt(start, length);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * 是否还有未重放的数据
+     */
+    synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * 未重放数据占用的磁盘空间(按段文件大小计)
+     */
+    synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    long getCorruptedRecords() {
+        return corruptedRecords;
+    }
+
+    /**
+     * 读取最早的一批记录，数据点数达到maxPoints或读完当前段为止；
+     * 调用commit后才会前移读取位置，否则下次peek返回相同的记录
+     *
+     * @param maxPoints 最多读取的数据点数，至少返回一条记录
+     * @return 记录列表，没有数据时为空
+     */
+    List<Record> peek(int maxPoints) {
+        while (true) {
+            Segment head;
+            boolean sealed;
+            synchronized (this) {
+                head = segments.peekFirst();
+                if (head == null) {
+                    return Collections.emptyList();
+                }
+                sealed = head != active;
+                if (readSegment != head && !sealed) {
+                    readBuffer = writeBuffer.duplicate();
+                    readSegment = head;
+                    readPosition = 0;
+                    corruptPosition = -1;
+                }
+                if (!sealed) {
+                    readLimit = writeBuffer.position();
+                }
+            }
+            try {
+                if (readSegment != head) {
+                    readBuffer = map(head.path, FileChannel.MapMode.READ_ONLY, head.bytes);
+                    readSegment = head;
+                    readPosition = 0;
+                    corruptPosition = -1;
+                }
+                if (sealed) {
+                    readLimit = readBuffer.capacity();
+                }
+            } catch (IOException e) {
+                log.error("读取溢写段失败，丢弃该段: {}, 原因: {}", head.path, e.getMessage());
+                remove(head);
+                continue;
+            }
+
+            List<Record> records = new ArrayList<>();
+            int points = 0;
+            int position = readPosition;
+            while (points < maxPoints) {
+                Record record = readRecord(position);
+                if (record == null) {
+                    break;
+                }
+                records.add(record);
+                points += record.points;
+                position += HEADER_BYTES + record.length;
+            }
+            if (records.isEmpty()) {
+                if (corruptPosition == position) {
+                    // 段内剩余数据无法解析，活动段也不会再读到新的记录
+                    synchronized (this) {
+                        if (head == active) {
+                            seal();
+                        }
+                    }
+                    quarantine(head);
+                    continue;
+                }
+                if (!sealed) {
+                    // 活动段已读完
+                    peekPosition = readPosition;
+                    commit();
+                    return records;
+                }
+                // 当前段已读完
+                remove(head);
+                continue;
+            }
+            peekPosition = position;
+            return records;
+        }
+    }
+
+    /**
+     * 确认上一次peek返回的记录已写入，前移读取位置；已封存的段读完时在下一次peek中删除，
+     * 活动段全部读完时立即删除，之后isEmpty返回true
+     */
+    void commit() {
+        readPosition = peekPosition;
+        Segment caughtUp = null;
+        synchronized (this) {
+            if (readSegment != null && readSegment == active && readPosition == writeBuffer.position()) {
+                caughtUp = active;
+                seal();
+            }
+        }
+        if (caughtUp != null) {
+            remove(caughtUp);
+        }
+    }
+
+    /**
+     * 把活动段的修改刷到磁盘
+     */
+    synchronized void force() {
+        if (dirty && writeBuffer != null) {
+            writeBuffer.force();
+            dirty = false;
+        }
+    }
+
+    synchronized void close() {
+        force();
+        closed = true;
+        active = null;
+        writeBuffer = null;
+    }
+
+    private Record readRecord(int position) {
+        if (position + HEADER_BYTES > readLimit) {
+            return null;
+        }
+        int length = readBuffer.getInt(position);
+        if (length == 0) {
+            return null;
+        }
+        if (length < 6 || position + HEADER_BYTES + length > readLimit) {
+            corrupted(position);
+            return null;
+        }
+        if (crc(readBuffer, position + HEADER_BYTES, length) != readBuffer.getInt(position + 4)) {
+            corrupted(position);
+            return null;
+        }
+        int offset = position + HEADER_BYTES;
+        int bucketLength = readBuffer.getShort(offset);
+        if (bucketLength < 0 || 6 + bucketLength > length) {
+            corrupted(position);
+            return null;
+        }
+        byte[] bucketBytes = new byte[bucketLength];
+        slice(readBuffer, offset + 2, bucketLength).get(bucketBytes);
+        int points = readBuffer.getInt(offset + 2 + bucketLength);
+        byte[] lineBytes = new byte[length - 6 - bucketLength];
+        slice(readBuffer, offset + 6 + bucketLength, lineBytes.length).get(lineBytes);
+        return new Record(new String(bucketBytes, StandardCharsets.UTF_8),
+                new String(lineBytes, StandardCharsets.UTF_8), points, length);
+    }
+
+    private void corrupted(int position) {
+        if (position == corruptPosition) {
+            return;
+        }
+        corruptPosition = position;
+        corruptedRecords++;
+        log.error("溢写记录校验失败，隔离段内剩余数据: {}, 位置: {}", readSegment.path, position);
+    }
+
+    /**
+     * 关闭当前活动段并创建新段，新段至少能容纳minBytes
+     */
+    private boolean rotate(int minBytes) throws IOException {
+        long size = Math.max(segmentBytes, minBytes);
+        if (totalBytes + size > maxBytes) {
+            return false;
+        }
+        seal();
+        Path path = dir.resolve(String.format("%020d%s", nextSequence, SUFFIX));
+        MappedByteBuffer buffer = map(path, FileChannel.MapMode.READ_WRITE, size);
+        active = new Segment(nextSequence++, path, size);
+        writeBuffer = buffer;
+        segments.addLast(active);
+        totalBytes += size;
+        return true;
+    }
+
+    private void seal() {
+        if (active == null) {
+            return;
+        }
+        if (dirty) {
+            writeBuffer.force();
+            dirty = false;
+        }
+        active = null;
+        writeBuffer = null;
+    }
+
+    /**
+     * 把段改名隔离，保留文件供排查；改名失败时直接删除
+     */
+    private void quarantine(Segment segment) {
+        detach(segment);
+        Path target = segment.path.resolveSibling(segment.path.getFileName() + CORRUPT_SUFFIX);
+        try {
+            Files.move(segment.path, target, StandardCopyOption.REPLACE_EXISTING);
+            log.warn("溢写段已隔离: {}", target);
+        } catch (IOException e) {
+            log.warn("隔离溢写段失败，删除该段: {}, 原因: {}", segment.path, e.getMessage());
+            delete(segment);
+        }
+    }
+
+    private void remove(Segment segment) {
+        detach(segment);
+        delete(segment);
+    }
+
+    private void detach(Segment segment) {
+        synchronized (this) {
+            segments.remove(segment);
+            totalBytes -= segment.bytes;
+        }
+        if (readSegment == segment) {
+            readSegment = null;
+            readBuffer = null;
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("删除溢写段失败: {}, 原因: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(slice(buffer, offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice;
+    }
+
+    private static MappedByteBuffer map(Path path, FileChannel.MapMode mode, long size) throws IOException {
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return channel.map(mode, 0, Math.min(size, channel.size()));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(mode, 0, size);
+        }
+    }
+
+    /**
+     * 溢写的一个批次
+     */
+    static final class Record {
+
+        final String bucket;
+        final String lines;
+        final int points;
+        private final int length;
+
+        private Record(String bucket, String lines, int points, int length) {
+            this.bucket = bucket;
+            this.lines = lines;
+            this.points = points;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long sequence;
+        private final Path path;
+        private final long bytes;
+
+        private Segment(long sequence, Path path, long bytes) {
+            this.sequence = sequence;
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.skyi.processor.service.tsdb;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 不可变数据块文件
+ * 保存一个时间分区内若干列的压缩数据，写入后只读，以内存映射方式访问，数据页由操作系统按需加载和回收。
+ * 文件格式(大端字节序)：
+ * <pre>
+ * 头部:   int 魔数 | int 版本 | long 分区起始时间 | long 序号 | long 已应用的删除标记 | int 列数
+ * 索引:   按列ID排序，每列 int 列ID | int 数据点数 | long 最小时间戳 | long 最大时间戳 | int 偏移 | int 长度
+ * 数据:   各列的压缩数据({@link ChunkEncoder})
+ * </pre>
+ * 序号表示数据的新旧，同一时间戳出现在多个数据块中时以序号大的为准；压缩合并后的数据块沿用输入中最大的序号。
+ * 先写临时文件并刷盘，再原子重命名，进程中途退出不会留下不完整的数据块
+ */
+final class BlockFile {
+
+    static final String SUFFIX = ".blk";
+
+    private static final int MAGIC = 0x534B5453;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 36;
+
+    private static final int ENTRY_BYTES = 32;
+
+    private final Path path;
+    private final long partitionStart;
+    private final long sequence;
+    private final long tombstoneWatermark;
+    private final ByteBuffer buffer;
+    private final int[] columnIds;
+    private final int[] counts;
+    private final long[] minTimestamps;
+    private final long[] maxTimestamps;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final long sizeBytes;
+
+    private BlockFile(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        this.sizeBytes = buffer.capacity();
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("数据块格式错误: " + path);
+        }
+        partitionStart = buffer.getLong(8);
+        sequence = buffer.getLong(16);
+        tombstoneWatermark = buffer.getLong(24);
+        int count = buffer.getInt(32);
+        if (count < 0 || HEADER_BYTES + (long) count * ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("数据块索引损坏: " + path);
+        }
+        columnIds = new int[count];
+        counts = new int[count];
+        minTimestamps = new long[count];
+        maxTimestamps = new long[count];
+        offsets = new int[count];
+        lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            int entry = HEADER_BYTES + i * ENTRY_BYTES;
+            columnIds[i] = buffer.getInt(entry);
+            counts[i] = buffer.getInt(entry + 4);
+            minTimestamps[i] = buffer.getLong(entry + 8);
+            maxTimestamps[i] = buffer.getLong(entry + 16);
+            offsets[i] = buffer.getInt(entry + 24);
+            lengths[i] = buffer.getInt(entry + 28);
+            if (offsets[i] < 0 || lengths[i] < 0 || (long) offsets[i] + lengths[i] > buffer.capacity()) {
+                throw new IOException("数据块索引损坏: " + path);
+            }
+        }
+    }
+
+    /**
+     * 写出数据块并映射
+     *
+     * @param chunks 各列的压缩数据，按列ID排序
+     */
+    static BlockFile write(Path path, long partitionStart, long sequence, long tombstoneWatermark,
+                           List<Chunk> chunks) throws IOException {
+        long size = HEADER_BYTES + (long) chunks.size() * ENTRY_BYTES;
+        for (Chunk chunk : chunks) {
+            size += chunk.data.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("数据块超过2GB: " + path);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(partitionStart);
+            out.writeLong(sequence);
+            out.writeLong(tombstoneWatermark);
+            out.writeInt(chunks.size());
+            int offset = HEADER_BYTES + chunks.size() * ENTRY_BYTES;
+            for (Chunk chunk : chunks) {
+                out.writeInt(chunk.columnId);
+                out.writeInt(chunk.count);
+                out.writeLong(chunk.minTimestamp);
+                out.writeLong(chunk.maxTimestamp);
+                out.writeInt(offset);
+                out.writeInt(chunk.data.length);
+                offset += chunk.data.length;
+            }
+            for (Chunk chunk : chunks) {
+                out.write(chunk.data);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    /**
+     * 映射已有的数据块文件
+     */
+    static BlockFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BlockFile(path, buffer);
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getPartitionStart() {
+        return partitionStart;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getTombstoneWatermark() {
+        return tombstoneWatermark;
+    }
+
+    long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    int columnCount() {
+        return columnIds.length;
+    }
+
+    int columnId(int index) {
+        return columnIds[index];
+    }
+
+    int count(int index) {
+        return counts[index];
+    }
+
+    long minTimestamp(int index) {
+        return minTimestamps[index];
+    }
+
+    long maxTimestamp(int index) {
+        return maxTimestamps[index];
+    }
+
+    /**
+     * 查找列在索引中的位置
+     *
+     * @return 下标，数据块中没有该列时返回-1
+     */
+    int indexOf(int columnId) {
+        int low = 0;
+        int high = columnIds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (columnIds[mid] < columnId) {
+                low = mid + 1;
+            } else if (columnIds[mid] > columnId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 列的数据是否与时间范围[start, end)有交集
+     */
+    boolean overlaps(int index, long start, long end) {
+        return minTimestamps[index] < end && maxTimestamps[index] >= start;
+    }
+
+    ChunkDecoder decoder(int index) {
+        return new ChunkDecoder(buffer, offsets[index], counts[index]);
+    }
+
+    /**
+     * 复制列的压缩数据
+     */
+    byte[] data(int index) {
+        byte[] data = new byte[lengths[index]];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offsets[index]);
+        slice.get(data);
+        return data;
+    }
+
+    /**
+     * 一列的压缩数据
+     */
+    static final class Chunk {
+
+        final int columnId;
+        final int count;
+        final long minTimestamp;
+        final long maxTimestamp;
+        final byte[] data;
+
+        Chunk(int columnId, int count, long minTimestamp, long maxTimestamp, byte[] data) {
+            this.columnId = columnId;
+            this.count = count;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.data = data;
+        }
+
+        static Chunk of(int columnId, ChunkEncoder encoder) {
+            return new Chunk(columnId, encoder.getCount(), encoder.getFirstTimestamp(), encoder.getLastTimestamp(),
+                    encoder.toBytes());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.skyi.processor.service.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 数据块解码器，编码格式见{@link ChunkEncoder}
+ * 按顺序读取数据点，数据可以来自内存映射的数据块文件或内存中的字节数组。非线程安全
+ */
+final class ChunkDecoder {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int count;
+    private int read;
+
+    /**
+     * 相对数据块起始位置的读取位置(位)
+     */
+    private long bitPosition;
+
+    private long timestamp;
+    private long delta;
+    private long valueBits;
+    private int leading;
+    private int trailing;
+
+    /**
+     * @param buffer 数据所在的缓冲区，不修改其位置
+     * @param offset 数据块起始位置
+     * @param count 数据点数
+     */
+    ChunkDecoder(ByteBuffer buffer, int offset, int count) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.count = count;
+    }
+
+    ChunkDecoder(byte[] bytes, int count) {
+        this(ByteBuffer.wrap(bytes), 0, count);
+    }
+
+    /**
+     * 读取下一个数据点
+     *
+     * @return 已读完时返回false
+     */
+    boolean next() {
+        if (read >= count) {
+            return false;
+        }
+        if (read == 0) {
+            timestamp = readBits(64);
+            valueBits = readBits(64);
+        } else {
+            delta += readTimestamp();
+            timestamp += delta;
+            readValue();
+        }
+        read++;
+        return true;
+    }
+
+    long timestamp() {
+        return timestamp;
+    }
+
+    double value() {
+        return Double.longBitsToDouble(valueBits);
+    }
+
+    private long readTimestamp() {
+        if (readBit() == 0) {
+            return 0;
+        }
+        if (readBit() == 0) {
+            return signed(readBits(7), 7);
+        }
+        if (readBit() == 0) {
+            return signed(readBits(9), 9);
+        }
+        if (readBit() == 0) {
+            return signed(readBits(12), 12);
+        }
+        if (readBit() == 0) {
+            return signed(readBits(32), 32);
+        }
+        return readBits(64);
+    }
+
+    private void readValue() {
+        if (readBit() == 0) {
+            return;
+        }
+        if (readBit() == 1) {
+            leading = (int) readBits(5);
+            int significant = (int) readBits(6) + 1;
+            trailing = 64 - leading - significant;
+        }
+        valueBits ^= readBits(64 - leading - trailing) << trailing;
+    }
+
+    private int readBit() {
+        return (int) readBits(1);
+    }
+
+    /**
+     * 读取n位(1到64)，按无符号数返回；一次读取8字节，跨越时再补1字节
+     */
+    private long readBits(int n) {
+        int index = offset + (int) (bitPosition >>> 3);
+        int shift = (int) (bitPosition & 7);
+        bitPosition += n;
+        long result = (word(index) << shift) >>> (64 - n);
+        int extra = shift + n - 64;
+        if (extra > 0) {
+            result |= (byteAt(index + 8) & 0xFFL) >>> (8 - extra);
+        }
+        return result;
+    }
+
+    /**
+     * 从index开始的8字节(大端)，超出缓冲区的部分补0
+     */
+    private long word(int index) {
+        if (index + 8 <= buffer.limit()) {
+            return buffer.getLong(index);
+        }
+        long word = 0;
+        for (int i = 0; i < 8; i++) {
+            word = (word << 8) | (byteAt(index + i) & 0xFFL);
+        }
+        return word;
+    }
+
+    private byte byteAt(int index) {
+        return index < buffer.limit() ? buffer.get(index) : 0;
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+}
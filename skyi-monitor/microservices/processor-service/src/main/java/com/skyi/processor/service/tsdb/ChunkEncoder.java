@@ -0,0 +1,155 @@
+package com.skyi.processor.service.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * 数据块编码器
+ * 按Gorilla论文的方式压缩单个列(序列的一个字段)按时间递增的数据点：
+ * <pre>
+ * 时间戳: 第一个点64位原值，之后按二阶差分(本次间隔-上次间隔)编码
+ *   0                  差分为0
+ *   10   + 7位         [-64, 63]
+ *   110  + 9位         [-256, 255]
+ *   1110 + 12位        [-2048, 2047]
+ *   11110 + 32位       int范围
+ *   11111 + 64位       其余
+ * 数值: 第一个点64位原值，之后与上一个值的位模式异或
+ *   0                  与上一个值相同
+ *   10 + 有效位         前导零、末尾零不少于上一个窗口时沿用窗口
+ *   11 + 5位前导零 + 6位(有效位数-1) + 有效位
+ * </pre>
+ * 采集间隔固定的序列时间戳通常只占1位，缓慢变化的数值占十几位，平均每个点约1-3字节。
+ * 只接受时间戳严格递增的数据，乱序和重复时间戳的数据点由调用方另行处理。非线程安全
+ */
+final class ChunkEncoder {
+
+    private long[] words = new long[4];
+    private int bitCount;
+    private int count;
+
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeading = -1;
+    private int lastTrailing;
+
+    /**
+     * 追加数据点
+     *
+     * @return 时间戳不大于上一个点时返回false，数据点未写入
+     */
+    boolean append(long timestamp, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            writeBits(timestamp, 64);
+            writeBits(valueBits, 64);
+            firstTimestamp = timestamp;
+        } else {
+            if (timestamp <= lastTimestamp) {
+                return false;
+            }
+            long delta = timestamp - lastTimestamp;
+            writeTimestamp(delta - lastDelta);
+            writeValue(valueBits ^ lastValueBits);
+            lastDelta = delta;
+        }
+        lastTimestamp = timestamp;
+        lastValueBits = valueBits;
+        count++;
+        return true;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * 编码器占用的内存(字节)
+     */
+    int capacityBytes() {
+        return words.length << 3;
+    }
+
+    /**
+     * 已编码的数据，按大端字节序
+     */
+    byte[] toBytes() {
+        byte[] bytes = new byte[(bitCount + 7) >>> 3];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3)));
+        }
+        return bytes;
+    }
+
+    private void writeTimestamp(long dod) {
+        if (dod == 0) {
+            writeBits(0, 1);
+        } else if (dod >= -64 && dod <= 63) {
+            writeBits(0b10, 2);
+            writeBits(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            writeBits(0b110, 3);
+            writeBits(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            writeBits(0b1110, 4);
+            writeBits(dod, 12);
+        } else if (dod >= Integer.MIN_VALUE && dod <= Integer.MAX_VALUE) {
+            writeBits(0b11110, 5);
+            writeBits(dod, 32);
+        } else {
+            writeBits(0b11111, 5);
+            writeBits(dod, 64);
+        }
+    }
+
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+            return;
+        }
+        int significant = 64 - leading - trailing;
+        writeBits(0b11, 2);
+        writeBits(leading, 5);
+        writeBits(significant - 1, 6);
+        writeBits(xor >>> trailing, significant);
+        lastLeading = leading;
+        lastTrailing = trailing;
+    }
+
+    /**
+     * 写入value的低n位(1到64)
+     */
+    private void writeBits(long value, int n) {
+        int word = bitCount >>> 6;
+        if (word + 1 >= words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        if (n < 64) {
+            value &= (1L << n) - 1;
+        }
+        int free = 64 - (bitCount & 63);
+        if (n <= free) {
+            words[word] |= value << (free - n);
+        } else {
+            words[word] |= value >>> (n - free);
+            words[word + 1] |= value << (64 - (n - free));
+        }
+        bitCount += n;
+    }
+}
@@ -0,0 +1,166 @@
+package com.skyi.processor.service.tsdb;
+
+import com.skyi.processor.model.MetricDictionary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+
+/**
+ * 列注册表
+ * 为每个列分配递增的ID，数据块中只保存列ID。新列追加到注册文件，记录格式为：
+ * <pre>
+ * int ID | long 键 | UTF 指标名 | UTF 字段 | short 标签数 | UTF 标签键, UTF 标签值...
+ * </pre>
+ * 启动时顺序读取，末尾不完整的记录(进程在写入中途退出)截掉
+ */
+@Slf4j
+final class ColumnRegistry {
+
+    private static final int MAGIC = 0x534B4331;
+
+    private final Path file;
+    private final ToLongFunction<String> retention;
+    private final Map<Long, SeriesColumn> byKey = new ConcurrentHashMap<>();
+    private final Map<String, List<SeriesColumn>> byMeasurement = new ConcurrentHashMap<>();
+    private volatile SeriesColumn[] byId = new SeriesColumn[1024];
+    private volatile int size;
+    private FileChannel channel;
+    private DataOutputStream out;
+    private boolean dirty;
+
+    /**
+     * @param file 注册文件
+     * @param retention 指标名对应的保留时长(毫秒)
+     */
+    ColumnRegistry(Path file, ToLongFunction<String> retention) throws IOException {
+        this.file = file;
+        this.retention = retention;
+        long valid = 0;
+        if (Files.exists(file)) {
+            byte[] bytes = Files.readAllBytes(file);
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                if (bytes.length >= 4 && in.readInt() != MAGIC) {
+                    throw new IOException("列注册文件格式错误: " + file);
+                }
+                valid = Math.min(bytes.length, 4);
+                while (in.available() > 0) {
+                    int id = in.readInt();
+                    long key = in.readLong();
+                    String measurement = in.readUTF();
+                    String field = in.readUTF();
+                    String[] tags = new String[in.readShort() * 2];
+                    for (int i = 0; i < tags.length; i++) {
+                        tags[i] = MetricDictionary.intern(in.readUTF());
+                    }
+                    add(new SeriesColumn(id, key, MetricDictionary.intern(measurement), MetricDictionary.intern(field),
+                            tags, retention.applyAsLong(measurement)));
+                    valid = bytes.length - in.available();
+                }
+            } catch (EOFException e) {
+                log.warn("列注册文件末尾记录不完整，已截断: {}, 有效长度: {}", file, valid);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        if (valid == 0) {
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+    }
+
+    SeriesColumn get(long key) {
+        return byKey.get(key);
+    }
+
+    SeriesColumn get(int id) {
+        SeriesColumn[] columns = byId;
+        return id >= 0 && id < columns.length ? columns[id] : null;
+    }
+
+    /**
+     * 注册新列，并发注册同一个键时返回先注册的列
+     *
+     * @param tags 标签数组(键值交替，按键排序)
+     */
+    synchronized SeriesColumn register(long key, String measurement, String field, String[] tags) throws IOException {
+        SeriesColumn existing = byKey.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        SeriesColumn column = new SeriesColumn(size, key, measurement, field, tags, retention.applyAsLong(measurement));
+        out.writeInt(column.getId());
+        out.writeLong(key);
+        out.writeUTF(measurement);
+        out.writeUTF(field);
+        out.writeShort(tags.length / 2);
+        for (String tag : tags) {
+            out.writeUTF(tag);
+        }
+        out.flush();
+        dirty = true;
+        add(column);
+        return column;
+    }
+
+    /**
+     * 把新注册的列落盘，预写日志中引用的列ID在重放时必须能找到
+     */
+    synchronized void force() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    /**
+     * 指标的全部列
+     */
+    List<SeriesColumn> columns(String measurement) {
+        List<SeriesColumn> columns = byMeasurement.get(measurement);
+        return columns != null ? columns : Collections.emptyList();
+    }
+
+    int size() {
+        return size;
+    }
+
+    synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("关闭列注册文件失败: {}, 原因: {}", file, e.getMessage());
+        }
+    }
+
+    private void add(SeriesColumn column) {
+        SeriesColumn[] columns = byId;
+        if (column.getId() >= columns.length) {
+            columns = Arrays.copyOf(columns, Math.max(columns.length * 2, column.getId() + 1));
+        }
+        columns[column.getId()] = column;
+        byId = columns;
+        size = Math.max(size, column.getId() + 1);
+        byMeasurement.computeIfAbsent(column.getMeasurement(), k -> new CopyOnWriteArrayList<>()).add(column);
+        byKey.put(column.getKey(), column);
+    }
+}
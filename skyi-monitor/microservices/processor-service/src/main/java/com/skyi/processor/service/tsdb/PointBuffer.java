@@ -0,0 +1,158 @@
+package com.skyi.processor.service.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * 单个列的未压缩数据点
+ * 用于乱序数据、查询时合并多个数据块以及压缩时重写数据块。
+ * 按追加顺序区分新旧：排序后同一时间戳只保留最后追加的值。非线程安全
+ */
+final class PointBuffer {
+
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    PointBuffer() {
+        this(16);
+    }
+
+    PointBuffer(int capacity) {
+        timestamps = new long[Math.max(capacity, 1)];
+        values = new double[timestamps.length];
+    }
+
+    void add(long timestamp, double value) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * 追加数据块中的全部数据点
+     */
+    void addAll(ChunkDecoder decoder) {
+        while (decoder.next()) {
+            add(decoder.timestamp(), decoder.value());
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    double value(int index) {
+        return values[index];
+    }
+
+    int capacityBytes() {
+        return timestamps.length << 4;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * 按时间戳稳定排序并去重，同一时间戳保留最后追加的值；已有序时不移动数据
+     */
+    void sortAndDedup() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = timestamps[i] > timestamps[i - 1];
+        }
+        if (sorted) {
+            return;
+        }
+        long[] tsTemp = new long[size];
+        double[] valueTemp = new double[size];
+        mergeSort(0, size, tsTemp, valueTemp);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique > 0 && timestamps[unique - 1] == timestamps[i]) {
+                values[unique - 1] = values[i];
+            } else {
+                timestamps[unique] = timestamps[i];
+                values[unique] = values[i];
+                unique++;
+            }
+        }
+        size = unique;
+    }
+
+    /**
+     * 按时间范围删除数据点
+     *
+     * @return 删除的数据点数
+     */
+    int removeRange(long start, long end) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (timestamps[i] < start || timestamps[i] >= end) {
+                timestamps[kept] = timestamps[i];
+                values[kept] = values[i];
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * 压缩为数据块，要求已排序去重
+     */
+    ChunkEncoder encode() {
+        ChunkEncoder encoder = new ChunkEncoder();
+        for (int i = 0; i < size; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+        return encoder;
+    }
+
+    private void mergeSort(int from, int to, long[] tsTemp, double[] valueTemp) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                long ts = timestamps[i];
+                double value = values[i];
+                int j = i;
+                while (j > from && timestamps[j - 1] > ts) {
+                    timestamps[j] = timestamps[j - 1];
+                    values[j] = values[j - 1];
+                    j--;
+                }
+                timestamps[j] = ts;
+                values[j] = value;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(from, mid, tsTemp, valueTemp);
+        mergeSort(mid, to, tsTemp, valueTemp);
+        if (timestamps[mid - 1] <= timestamps[mid]) {
+            return;
+        }
+        System.arraycopy(timestamps, from, tsTemp, from, to - from);
+        System.arraycopy(values, from, valueTemp, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            // 相等时先取左半部分，保持追加顺序
+            if (right >= to || (left < mid && tsTemp[left] <= tsTemp[right])) {
+                timestamps[i] = tsTemp[left];
+                values[i] = valueTemp[left++];
+            } else {
+                timestamps[i] = tsTemp[right];
+                values[i] = valueTemp[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.skyi.processor.service.tsdb;
+
+/**
+ * 列：一个序列(指标名+标签集合)的一个字段，是存储和压缩的基本单位
+ * 标签包含assetId、taskId、instanceId，与写入InfluxDB的标签一致
+ */
+public final class SeriesColumn {
+
+    private final int id;
+    private final long key;
+    private final String measurement;
+    private final String field;
+    private final String[] tags;
+    private final long retentionMillis;
+
+    SeriesColumn(int id, long key, String measurement, String field, String[] tags, long retentionMillis) {
+        this.id = id;
+        this.key = key;
+        this.measurement = measurement;
+        this.field = field;
+        this.tags = tags;
+        this.retentionMillis = retentionMillis;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    long getKey() {
+        return key;
+    }
+
+    public String getMeasurement() {
+        return measurement;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * 标签数组(键值交替，按键排序)，调用方不能修改
+     */
+    public String[] tagPairs() {
+        return tags;
+    }
+
+    /**
+     * 按键查找标签值
+     *
+     * @return 标签值，不存在时返回null
+     */
+    public String tag(String key) {
+        for (int i = 0; i < tags.length; i += 2) {
+            if (tags[i].equals(key)) {
+                return tags[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 保留时长(毫秒)，0表示永久保留
+     */
+    long getRetentionMillis() {
+        return retentionMillis;
+    }
+}
@@ -0,0 +1,1041 @@
+package com.skyi.processor.service.tsdb;
+
+import com.skyi.processor.model.MetricData;
+import com.skyi.processor.model.MetricDictionary;
+import com.skyi.processor.service.worker.LongLongMap;
+import com.skyi.processor.service.worker.SeriesKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * 嵌入式列式时序存储
+ * 每个序列的每个字段是一列({@link SeriesColumn})，数据按时间划分为固定长度的分区：
+ * <ul>
+ * <li>写入：数据点追加到内存中该列当前分区的压缩块({@link ChunkEncoder})，乱序数据单独缓存</li>
+ * <li>刷盘：定期(或内存超过上限时)把内存中的全部块按分区写成不可变的数据块文件({@link BlockFile})并映射</li>
+ * <li>查询：按时间范围定位分区，在各数据块的列索引中二分查找，只解码时间范围有交集的块</li>
+ * <li>压缩：后台把同一分区的多个小数据块合并为一个，同时应用删除标记、丢弃超过保留时长的列</li>
+ * </ul>
+ * 删除不修改数据块，而是记录删除标记(列、时间范围、生效的数据块序号上限)，查询时过滤，压缩时真正移除。
+ * 写入内存的数据点同时追加到预写日志({@link WriteAheadLog})，{@link #sync}返回后即使进程异常退出也不会丢失，
+ * 启动时重放尚未写入数据块的日志。
+ * 写入、查询可以在任意线程并发调用
+ */
+@Slf4j
+public class TimeSeriesStore {
+
+    /**
+     * 数据点的主字段
+     */
+    public static final String VALUE_FIELD = "value";
+
+    private static final String COLUMNS_FILE = "columns.dat";
+
+    private static final String TOMBSTONES_FILE = "tombstones.dat";
+
+    private static final String WAL_DIR = "wal";
+
+    private static final int TOMBSTONE_MAGIC = 0x534B5431;
+
+    private static final int STRIPES = 64;
+
+    private final Path dir;
+    private final long partitionMillis;
+    private final int compactMinBlocks;
+    private final ColumnRegistry registry;
+    private final HeadStripe[] stripes = new HeadStripe[STRIPES];
+    private final LongAdder headBytes = new LongAdder();
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final AtomicLong nextFileId = new AtomicLong(1);
+
+    /**
+     * 保护partitions、frozen和tombstones；查询持读锁取快照，刷盘、压缩和删除发布结果时持写锁
+     */
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 写入时持读锁，同时追加预写日志和内存；刷盘时持写锁切换日志段并移出内存数据，
+     * 保证旧段中的数据点都在移出的块中
+     */
+    private final ReentrantReadWriteLock walLock = new ReentrantReadWriteLock();
+    private final WriteAheadLog wal;
+    private final Object compactLock = new Object();
+
+    /**
+     * 分区起始时间 -> 数据块，按序号递增排列
+     */
+    private final TreeMap<Long, List<BlockFile>> partitions = new TreeMap<>();
+
+    /**
+     * 已从内存移出、正在写入数据块的块，写入失败时保留到下次刷盘
+     */
+    private List<HeadChunk> frozen = Collections.emptyList();
+
+    private final Map<Integer, List<Tombstone>> tombstones = new HashMap<>();
+    private long nextTombstoneId = 1;
+
+    /**
+     * 打开存储目录，读取列注册表、删除标记和已有的数据块
+     *
+     * @param dir 数据目录
+     * @param partitionMillis 分区时长
+     * @param compactMinBlocks 分区内数据块达到该数量时合并
+     * @param retention 指标名对应的保留时长(毫秒)，0表示永久保留
+     */
+    public TimeSeriesStore(Path dir, long partitionMillis, int compactMinBlocks,
+                           ToLongFunction<String> retention) throws IOException {
+        this.dir = dir;
+        this.partitionMillis = partitionMillis;
+        this.compactMinBlocks = Math.max(2, compactMinBlocks);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new HeadStripe();
+        }
+        Files.createDirectories(dir);
+        registry = new ColumnRegistry(dir.resolve(COLUMNS_FILE), retention);
+        long maxSequence = loadTombstones();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(BlockFile.SUFFIX)) {
+                    maxSequence = Math.max(maxSequence, openBlock(file));
+                }
+            }
+        }
+        partitions.values().forEach(blocks -> blocks.sort(Comparator.comparingLong(BlockFile::getSequence)));
+        nextSequence.set(maxSequence + 1);
+        wal = new WriteAheadLog(dir.resolve(WAL_DIR));
+        long replayed = wal.replay((columnId, timestamp, value) -> {
+            if (registry.get(columnId) != null) {
+                appendHead(columnId, timestamp, value);
+            }
+        });
+        log.info("嵌入式时序存储已打开: {}, 列数: {}, 分区数: {}, 数据块数: {}, 重放预写日志数据点: {}",
+                dir, registry.size(), partitions.size(), getBlockCount(), replayed);
+    }
+
+    /**
+     * 写入数据点的主字段和数值类型的额外字段，没有时间戳时使用now
+     *
+     * @return 写入的字段数，数值无效或超过保留时长的字段不写入
+     */
+    public int write(MetricData metricData, long now) throws IOException {
+        walLock.readLock().lock();
+        try {
+            return writeLocked(metricData, now);
+        } finally {
+            walLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待此前写入的数据点全部写入预写日志并落盘
+     *
+     * @throws IOException 落盘失败，数据点仍在内存中，但进程异常退出时可能丢失
+     */
+    public void sync() throws IOException {
+        registry.force();
+        wal.sync();
+    }
+
+    private int writeLocked(MetricData metricData, long now) throws IOException {
+        long seriesKey = seriesKey(metricData);
+        long timestamp = metricData.hasTimestamp() ? metricData.timestampMillis() : now;
+        Map<String, Object> fields = metricData.getFields();
+        Object value = fields.get(VALUE_FIELD);
+        int written = append(metricData, seriesKey, VALUE_FIELD, timestamp,
+                value instanceof Number ? ((Number) value).doubleValue() : metricData.doubleValue(), now) ? 1 : 0;
+        if (!fields.isEmpty()) {
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                String name = field.getKey();
+                if (name == null || name.isEmpty() || VALUE_FIELD.equals(name) || !(field.getValue() instanceof Number)) {
+                    continue;
+                }
+                if (append(metricData, seriesKey, name, timestamp, ((Number) field.getValue()).doubleValue(), now)) {
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 查找指标的列
+     *
+     * @param measurement 指标名
+     * @param field 字段名，为null时返回全部字段
+     * @param tags 标签条件，值为空的条件忽略
+     */
+    public List<SeriesColumn> columns(String measurement, String field, Map<String, String> tags) {
+        List<SeriesColumn> result = new ArrayList<>();
+        for (SeriesColumn column : registry.columns(measurement)) {
+            if (field != null && !field.equals(column.getField())) {
+                continue;
+            }
+            boolean matched = true;
+            if (tags != null) {
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    if (tag.getKey() != null && tag.getValue() != null && !tag.getValue().isEmpty()
+                            && !tag.getValue().equals(column.tag(tag.getKey()))) {
+                        matched = false;
+                        break;
+                    }
+                }
+            }
+            if (matched) {
+                result.add(column);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按时间顺序读取列在[start, end)内的数据点，同一时间戳只返回最后写入的值
+     */
+    public void scan(SeriesColumn column, long start, long end, PointVisitor visitor) {
+        if (start >= end) {
+            return;
+        }
+        PointBuffer points = collect(column.getId(), start, end);
+        points.sortAndDedup();
+        for (int i = 0; i < points.size(); i++) {
+            long timestamp = points.timestamp(i);
+            if (timestamp >= start && timestamp < end && !visitor.accept(timestamp, points.value(i))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 删除列在[start, end)内的数据，先把内存中的数据写入数据块，再记录删除标记
+     *
+     * @return 删除的数据点数
+     * @throws IOException 数据块或删除标记写入失败
+     */
+    public long delete(List<SeriesColumn> columns, long start, long end) throws IOException {
+        if (columns.isEmpty() || start >= end) {
+            return 0;
+        }
+        flushLock.lock();
+        try {
+            if (!flushLocked()) {
+                throw new IOException("内存数据写入数据块失败");
+            }
+            long deleted = 0;
+            for (SeriesColumn column : columns) {
+                long[] count = new long[1];
+                scan(column, start, end, (timestamp, value) -> {
+                    count[0]++;
+                    return true;
+                });
+                deleted += count[0];
+            }
+            indexLock.writeLock().lock();
+            try {
+                long maxSequence = nextSequence.get() - 1;
+                long firstId = nextTombstoneId;
+                for (SeriesColumn column : columns) {
+                    tombstones.computeIfAbsent(column.getId(), k -> new ArrayList<>())
+                            .add(new Tombstone(nextTombstoneId++, column.getId(), start, end, maxSequence));
+                }
+                try {
+                    saveTombstones();
+                } catch (IOException e) {
+                    tombstones.values().forEach(list -> list.removeIf(tombstone -> tombstone.id >= firstId));
+                    throw e;
+                }
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            return deleted;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 把内存中的数据写入数据块
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 没有其他线程在刷盘时刷盘，供写入线程在内存超过上限时调用
+     */
+    public void tryFlush() {
+        if (flushLock.tryLock()) {
+            try {
+                flushLocked();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 合并分区内的数据块，应用删除标记并丢弃超过保留时长的列
+     *
+     * @param now 当前时间
+     */
+    public void compact(long now) {
+        synchronized (compactLock) {
+            Map<Long, List<BlockFile>> snapshot = new TreeMap<>();
+            Map<Integer, List<Tombstone>> deletes = new HashMap<>();
+            long watermark;
+            indexLock.readLock().lock();
+            try {
+                partitions.forEach((partition, blocks) -> snapshot.put(partition, new ArrayList<>(blocks)));
+                tombstones.forEach((columnId, list) -> deletes.put(columnId, new ArrayList<>(list)));
+                watermark = nextTombstoneId - 1;
+            } finally {
+                indexLock.readLock().unlock();
+            }
+
+            for (Map.Entry<Long, List<BlockFile>> entry : snapshot.entrySet()) {
+                long partition = entry.getKey();
+                List<BlockFile> blocks = entry.getValue();
+                try {
+                    if (isExpired(blocks, now)) {
+                        replace(partition, blocks, null);
+                        log.info("分区数据超过保留时长，已删除: {}", partition);
+                        continue;
+                    }
+                    boolean closed = partition + 2 * partitionMillis <= now;
+                    if (blocks.size() >= compactMinBlocks || (closed && blocks.size() > 1)) {
+                        List<BlockFile> inputs = blocks;
+                        long others = 0;
+                        for (int i = 1; i < blocks.size(); i++) {
+                            others += blocks.get(i).getSizeBytes();
+                        }
+                        if (!closed && blocks.get(0).getSizeBytes() > others) {
+                            // 未结束的分区不反复重写已合并的大数据块
+                            inputs = blocks.subList(1, blocks.size());
+                        }
+                        if (inputs.size() > 1) {
+                            replace(partition, inputs, rewrite(partition, inputs, deletes, watermark, now));
+                            continue;
+                        }
+                    }
+                    for (BlockFile block : blocks) {
+                        if (needsRewrite(block, deletes, watermark, now)) {
+                            List<BlockFile> inputs = Collections.singletonList(block);
+                            replace(partition, inputs, rewrite(partition, inputs, deletes, watermark, now));
+                        }
+                    }
+                } catch (IOException e) {
+                    log.error("压缩分区失败: {}, 原因: {}", partition, e.getMessage());
+                }
+            }
+            purgeTombstones();
+        }
+    }
+
+    /**
+     * 写入内存中的数据并关闭
+     */
+    public void close() {
+        flush();
+        wal.close();
+        registry.close();
+    }
+
+    /**
+     * 内存中尚未写入数据块的数据大小(字节，按分配的容量估算)
+     */
+    public long getHeadBytes() {
+        return headBytes.sum();
+    }
+
+    public int getColumnCount() {
+        return registry.size();
+    }
+
+    public int getBlockCount() {
+        indexLock.readLock().lock();
+        try {
+            return partitions.values().stream().mapToInt(List::size).sum();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 数据块文件总大小(字节)
+     */
+    public long getDiskBytes() {
+        indexLock.readLock().lock();
+        try {
+            return partitions.values().stream().flatMap(List::stream).mapToLong(BlockFile::getSizeBytes).sum();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private boolean append(MetricData metricData, long seriesKey, String field, long timestamp, double value, long now)
+            throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return false;
+        }
+        long key = SeriesKey.combine(seriesKey, SeriesKey.hash(field));
+        SeriesColumn column = registry.get(key);
+        if (column == null) {
+            column = registry.register(key, metricData.getMetricName(), MetricDictionary.intern(field), columnTags(metricData));
+        }
+        if (column.getRetentionMillis() > 0 && timestamp < now - column.getRetentionMillis()) {
+            return false;
+        }
+        wal.append(column.getId(), timestamp, value);
+        appendHead(column.getId(), timestamp, value);
+        return true;
+    }
+
+    private void appendHead(int columnId, long timestamp, double value) {
+        HeadStripe stripe = stripes[columnId & (STRIPES - 1)];
+        int grown;
+        synchronized (stripe) {
+            grown = stripe.append(Math.floorDiv(timestamp, partitionMillis), columnId, timestamp, value);
+        }
+        if (grown != 0) {
+            headBytes.add(grown);
+        }
+    }
+
+    /**
+     * 把内存中的块移出并写成数据块，写入失败的块留在frozen中，查询仍可读取
+     *
+     * @return 是否全部写入
+     */
+    private boolean flushLocked() {
+        List<HeadChunk> pending;
+        long walSegment;
+        indexLock.writeLock().lock();
+        walLock.writeLock().lock();
+        try {
+            walSegment = wal.roll();
+            pending = new ArrayList<>(frozen);
+            for (HeadStripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.drainTo(pending);
+                }
+            }
+            frozen = pending;
+        } catch (IOException e) {
+            log.error("切换预写日志失败，数据保留在内存中下次重试, 目录: {}, 原因: {}", dir, e.getMessage());
+            return false;
+        } finally {
+            walLock.writeLock().unlock();
+            indexLock.writeLock().unlock();
+        }
+        if (pending.isEmpty()) {
+            wal.truncate(walSegment);
+            return true;
+        }
+
+        // 上次写入失败留下的块排在前面，稳定排序后同一列的块按新旧相邻
+        List<HeadChunk> sorted = new ArrayList<>(pending);
+        sorted.sort(Comparator.comparingLong((HeadChunk chunk) -> chunk.partition).thenComparingInt(chunk -> chunk.columnId));
+        long watermark = nextTombstoneId - 1;
+        List<BlockFile> written = new ArrayList<>();
+        long bytes = 0;
+        try {
+            int i = 0;
+            while (i < sorted.size()) {
+                long partition = sorted.get(i).partition;
+                List<BlockFile.Chunk> chunks = new ArrayList<>();
+                while (i < sorted.size() && sorted.get(i).partition == partition) {
+                    HeadChunk first = sorted.get(i++);
+                    bytes += first.bytes();
+                    if (i < sorted.size() && sorted.get(i).partition == partition && sorted.get(i).columnId == first.columnId) {
+                        PointBuffer points = new PointBuffer();
+                        first.copyTo(points);
+                        while (i < sorted.size() && sorted.get(i).partition == partition
+                                && sorted.get(i).columnId == first.columnId) {
+                            bytes += sorted.get(i).bytes();
+                            sorted.get(i++).copyTo(points);
+                        }
+                        points.sortAndDedup();
+                        chunks.add(BlockFile.Chunk.of(first.columnId, points.encode()));
+                    } else {
+                        chunks.add(first.seal());
+                    }
+                }
+                long partitionStart = partition * partitionMillis;
+                written.add(BlockFile.write(newBlockPath(partitionStart), partitionStart,
+                        nextSequence.getAndIncrement(), watermark, chunks));
+            }
+        } catch (IOException e) {
+            log.error("写入数据块失败，数据保留在内存中下次重试, 目录: {}, 原因: {}", dir, e.getMessage());
+            written.forEach(block -> deleteFile(block.getPath()));
+            return false;
+        }
+
+        indexLock.writeLock().lock();
+        try {
+            for (BlockFile block : written) {
+                partitions.computeIfAbsent(block.getPartitionStart(), k -> new ArrayList<>()).add(block);
+            }
+            frozen = Collections.emptyList();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        wal.truncate(walSegment);
+        headBytes.add(-bytes);
+        log.debug("内存数据已写入数据块: {}个, 块数: {}", written.size(), pending.size());
+        return true;
+    }
+
+    /**
+     * 收集列在时间范围内的数据点，按数据新旧追加：数据块按序号，然后是正在写入的块和内存中的块
+     */
+    private PointBuffer collect(int columnId, long start, long end) {
+        List<BlockFile> blocks = new ArrayList<>();
+        List<HeadChunk> frozenChunks;
+        List<Tombstone> deletes;
+        PointBuffer live = new PointBuffer();
+        long firstPartition = Math.floorDiv(start, partitionMillis);
+        long lastPartition = Math.floorDiv(end - 1, partitionMillis);
+        indexLock.readLock().lock();
+        try {
+            partitions.subMap(firstPartition * partitionMillis, true, lastPartition * partitionMillis, true)
+                    .values().forEach(blocks::addAll);
+            frozenChunks = frozen;
+            List<Tombstone> list = tombstones.get(columnId);
+            deletes = list != null ? new ArrayList<>(list) : Collections.emptyList();
+            HeadStripe stripe = stripes[columnId & (STRIPES - 1)];
+            synchronized (stripe) {
+                stripe.copyTo(columnId, firstPartition, lastPartition, live);
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+
+        PointBuffer points = new PointBuffer();
+        for (BlockFile block : blocks) {
+            int index = block.indexOf(columnId);
+            if (index < 0 || !block.overlaps(index, start, end)) {
+                continue;
+            }
+            List<Tombstone> applicable = applicable(deletes, block, Long.MAX_VALUE);
+            ChunkDecoder decoder = block.decoder(index);
+            while (decoder.next()) {
+                long timestamp = decoder.timestamp();
+                if (timestamp >= end) {
+                    break;
+                }
+                if (timestamp >= start && !isDeleted(applicable, timestamp)) {
+                    points.add(timestamp, decoder.value());
+                }
+            }
+        }
+        for (HeadChunk chunk : frozenChunks) {
+            if (chunk.columnId == columnId && chunk.partition >= firstPartition && chunk.partition <= lastPartition) {
+                chunk.copyTo(points);
+            }
+        }
+        for (int i = 0; i < live.size(); i++) {
+            points.add(live.timestamp(i), live.value(i));
+        }
+        return points;
+    }
+
+    /**
+     * 合并数据块，同一列按序号顺序去重，应用删除标记，超过保留时长的列丢弃
+     *
+     * @return 新数据块，沿用输入中最大的序号；没有剩余数据时返回null
+     */
+    private BlockFile rewrite(long partition, List<BlockFile> inputs, Map<Integer, List<Tombstone>> deletes,
+                              long watermark, long now) throws IOException {
+        int total = 0;
+        for (BlockFile block : inputs) {
+            total += block.columnCount();
+        }
+        int[] columnIds = new int[total];
+        int size = 0;
+        for (BlockFile block : inputs) {
+            for (int i = 0; i < block.columnCount(); i++) {
+                columnIds[size++] = block.columnId(i);
+            }
+        }
+        Arrays.sort(columnIds);
+
+        List<BlockFile.Chunk> chunks = new ArrayList<>();
+        PointBuffer points = new PointBuffer(1024);
+        int previous = -1;
+        for (int columnId : columnIds) {
+            if (columnId == previous) {
+                continue;
+            }
+            previous = columnId;
+            long cutoff = cutoff(columnId, now);
+            List<Tombstone> columnDeletes = deletes.getOrDefault(columnId, Collections.emptyList());
+            BlockFile single = null;
+            int singleIndex = -1;
+            int sources = 0;
+            boolean deleted = false;
+            for (BlockFile block : inputs) {
+                int index = block.indexOf(columnId);
+                if (index < 0 || block.maxTimestamp(index) < cutoff) {
+                    continue;
+                }
+                sources++;
+                single = block;
+                singleIndex = index;
+                deleted |= !applicable(columnDeletes, block, watermark).isEmpty();
+            }
+            if (sources == 0) {
+                continue;
+            }
+            if (sources == 1 && !deleted) {
+                // 只出现在一个数据块中且没有删除，直接复制压缩数据
+                chunks.add(new BlockFile.Chunk(columnId, single.count(singleIndex), single.minTimestamp(singleIndex),
+                        single.maxTimestamp(singleIndex), single.data(singleIndex)));
+                continue;
+            }
+            points.clear();
+            for (BlockFile block : inputs) {
+                int index = block.indexOf(columnId);
+                if (index < 0 || block.maxTimestamp(index) < cutoff) {
+                    continue;
+                }
+                List<Tombstone> applicable = applicable(columnDeletes, block, watermark);
+                ChunkDecoder decoder = block.decoder(index);
+                while (decoder.next()) {
+                    if (!isDeleted(applicable, decoder.timestamp())) {
+                        points.add(decoder.timestamp(), decoder.value());
+                    }
+                }
+            }
+            points.sortAndDedup();
+            if (points.size() > 0) {
+                chunks.add(BlockFile.Chunk.of(columnId, points.encode()));
+            }
+        }
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        long sequence = inputs.get(inputs.size() - 1).getSequence();
+        return BlockFile.write(newBlockPath(partition), partition, sequence, watermark, chunks);
+    }
+
+    /**
+     * 用新数据块替换输入的数据块并删除输入文件
+     */
+    private void replace(long partition, List<BlockFile> inputs, BlockFile output) {
+        indexLock.writeLock().lock();
+        try {
+            List<BlockFile> blocks = partitions.get(partition);
+            if (blocks != null) {
+                blocks.removeAll(inputs);
+                if (output != null) {
+                    blocks.add(output);
+                    blocks.sort(Comparator.comparingLong(BlockFile::getSequence));
+                }
+                if (blocks.isEmpty()) {
+                    partitions.remove(partition);
+                }
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        // 正在查询的线程仍持有映射，删除文件不影响其读取
+        inputs.forEach(block -> deleteFile(block.getPath()));
+        if (output != null) {
+            log.debug("合并数据块: 分区 {}, {}个 -> {}字节", partition, inputs.size(), output.getSizeBytes());
+        }
+    }
+
+    /**
+     * 分区内全部列都已超过保留时长
+     */
+    private boolean isExpired(List<BlockFile> blocks, long now) {
+        for (BlockFile block : blocks) {
+            for (int i = 0; i < block.columnCount(); i++) {
+                if (block.maxTimestamp(i) >= cutoff(block.columnId(i), now)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean needsRewrite(BlockFile block, Map<Integer, List<Tombstone>> deletes, long watermark, long now) {
+        for (int i = 0; i < block.columnCount(); i++) {
+            int columnId = block.columnId(i);
+            if (block.maxTimestamp(i) < cutoff(columnId, now)) {
+                return true;
+            }
+            List<Tombstone> columnDeletes = deletes.get(columnId);
+            if (columnDeletes != null) {
+                for (Tombstone tombstone : applicable(columnDeletes, block, watermark)) {
+                    if (block.overlaps(i, tombstone.start, tombstone.end)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 列的数据保留截止时间，早于该时间的数据可以丢弃
+     */
+    private long cutoff(int columnId, long now) {
+        SeriesColumn column = registry.get(columnId);
+        return column != null && column.getRetentionMillis() > 0 ? now - column.getRetentionMillis() : Long.MIN_VALUE;
+    }
+
+    /**
+     * 对数据块生效的删除标记：数据块写入时尚未应用，且数据块的数据早于删除操作
+     *
+     * @param maxId 只考虑ID不超过该值的删除标记
+     */
+    private static List<Tombstone> applicable(List<Tombstone> deletes, BlockFile block, long maxId) {
+        if (deletes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Tombstone> result = null;
+        for (Tombstone tombstone : deletes) {
+            if (tombstone.id <= maxId && tombstone.id > block.getTombstoneWatermark()
+                    && block.getSequence() <= tombstone.maxSequence) {
+                if (result == null) {
+                    result = new ArrayList<>(2);
+                }
+                result.add(tombstone);
+            }
+        }
+        return result != null ? result : Collections.emptyList();
+    }
+
+    private static boolean isDeleted(List<Tombstone> applicable, long timestamp) {
+        for (int i = 0; i < applicable.size(); i++) {
+            Tombstone tombstone = applicable.get(i);
+            if (timestamp >= tombstone.start && timestamp < tombstone.end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除已对全部相关数据块生效的删除标记
+     */
+    private void purgeTombstones() {
+        indexLock.writeLock().lock();
+        try {
+            int before = tombstones.values().stream().mapToInt(List::size).sum();
+            if (before == 0) {
+                return;
+            }
+            tombstones.values().forEach(list -> list.removeIf(tombstone -> {
+                for (List<BlockFile> blocks : partitions.values()) {
+                    for (BlockFile block : blocks) {
+                        if (block.getSequence() <= tombstone.maxSequence && block.getTombstoneWatermark() < tombstone.id
+                                && block.indexOf(tombstone.columnId) >= 0) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }));
+            tombstones.values().removeIf(List::isEmpty);
+            int after = tombstones.values().stream().mapToInt(List::size).sum();
+            if (after != before) {
+                saveTombstones();
+                log.debug("清理已生效的删除标记: {}个", before - after);
+            }
+        } catch (IOException e) {
+            log.warn("保存删除标记失败: {}", e.getMessage());
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写出删除标记，调用方持有写锁
+     */
+    private void saveTombstones() throws IOException {
+        Path target = dir.resolve(TOMBSTONES_FILE);
+        Path temp = dir.resolve(TOMBSTONES_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(TOMBSTONE_MAGIC);
+            out.writeLong(nextTombstoneId);
+            out.writeInt(tombstones.values().stream().mapToInt(List::size).sum());
+            for (List<Tombstone> list : tombstones.values()) {
+                for (Tombstone tombstone : list) {
+                    out.writeLong(tombstone.id);
+                    out.writeInt(tombstone.columnId);
+                    out.writeLong(tombstone.start);
+                    out.writeLong(tombstone.end);
+                    out.writeLong(tombstone.maxSequence);
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return 删除标记中最大的数据块序号
+     */
+    private long loadTombstones() throws IOException {
+        Path file = dir.resolve(TOMBSTONES_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long maxSequence = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != TOMBSTONE_MAGIC) {
+                throw new IOException("删除标记文件格式错误: " + file);
+            }
+            nextTombstoneId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Tombstone tombstone = new Tombstone(in.readLong(), in.readInt(), in.readLong(), in.readLong(), in.readLong());
+                tombstones.computeIfAbsent(tombstone.columnId, k -> new ArrayList<>()).add(tombstone);
+                maxSequence = Math.max(maxSequence, tombstone.maxSequence);
+            }
+        }
+        return maxSequence;
+    }
+
+    /**
+     * @return 数据块的序号，无法打开时返回0
+     */
+    private long openBlock(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            long fileId = Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - BlockFile.SUFFIX.length()));
+            nextFileId.accumulateAndGet(fileId + 1, Math::max);
+            BlockFile block = BlockFile.open(file);
+            partitions.computeIfAbsent(block.getPartitionStart(), k -> new ArrayList<>()).add(block);
+            return block.getSequence();
+        } catch (IOException | RuntimeException e) {
+            log.error("无法打开数据块，已忽略: {}, 原因: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    private Path newBlockPath(long partitionStart) {
+        return dir.resolve(partitionStart + "-" + nextFileId.getAndIncrement() + BlockFile.SUFFIX);
+    }
+
+    private void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除数据块失败: {}, 原因: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 序列键，在指标名、资产ID、标签的基础上区分采集任务和实例
+     */
+    private static long seriesKey(MetricData metricData) {
+        long key = SeriesKey.of(metricData);
+        if (metricData.getTaskId() != null) {
+            key = SeriesKey.combine(key, 0x7A5C1D00L ^ metricData.getTaskId());
+        }
+        if (metricData.getInstanceId() != null) {
+            key = SeriesKey.combine(key, 0x1D5C7A00L ^ metricData.getInstanceId());
+        }
+        return key;
+    }
+
+    /**
+     * 列的标签，assetId、taskId、instanceId与写入InfluxDB时一样作为标签保存
+     */
+    private static String[] columnTags(MetricData metricData) {
+        MetricData tags = new MetricData().tagPairs(metricData.tagPairs());
+        if (metricData.getAssetId() != null && tags.tag("assetId") == null) {
+            tags.addTag("assetId", metricData.getAssetId().toString());
+        }
+        if (metricData.getTaskId() != null && tags.tag("taskId") == null) {
+            tags.addTag("taskId", metricData.getTaskId().toString());
+        }
+        if (metricData.getInstanceId() != null && tags.tag("instanceId") == null) {
+            tags.addTag("instanceId", metricData.getInstanceId().toString());
+        }
+        return tags.tagPairs();
+    }
+
+    /**
+     * 数据点回调
+     */
+    @FunctionalInterface
+    public interface PointVisitor {
+
+        /**
+         * @return 是否继续读取
+         */
+        boolean accept(long timestamp, double value);
+    }
+
+    /**
+     * 删除标记，对序号不超过maxSequence且尚未应用该标记的数据块生效
+     */
+    private static final class Tombstone {
+
+        private final long id;
+        private final int columnId;
+        private final long start;
+        private final long end;
+        private final long maxSequence;
+
+        private Tombstone(long id, int columnId, long start, long end, long maxSequence) {
+            this.id = id;
+            this.columnId = columnId;
+            this.start = start;
+            this.end = end;
+            this.maxSequence = maxSequence;
+        }
+    }
+
+    /**
+     * 内存中一列在一个分区内的数据：按时间递增的数据点直接压缩，乱序数据点单独缓存
+     */
+    private static final class HeadChunk {
+
+        private static final int OVERHEAD_BYTES = 64;
+
+        private final int columnId;
+        private final long partition;
+        private final ChunkEncoder encoder = new ChunkEncoder();
+        private PointBuffer outOfOrder;
+
+        private HeadChunk(int columnId, long partition) {
+            this.columnId = columnId;
+            this.partition = partition;
+        }
+
+        private void add(long timestamp, double value) {
+            if (!encoder.append(timestamp, value)) {
+                if (outOfOrder == null) {
+                    outOfOrder = new PointBuffer(4);
+                }
+                outOfOrder.add(timestamp, value);
+            }
+        }
+
+        private int bytes() {
+            return OVERHEAD_BYTES + encoder.capacityBytes() + (outOfOrder != null ? outOfOrder.capacityBytes() : 0);
+        }
+
+        /**
+         * 按写入顺序追加全部数据点，乱序数据点在后，排序去重后覆盖同一时间戳的旧值
+         */
+        private void copyTo(PointBuffer target) {
+            target.addAll(new ChunkDecoder(encoder.toBytes(), encoder.getCount()));
+            if (outOfOrder != null) {
+                for (int i = 0; i < outOfOrder.size(); i++) {
+                    target.add(outOfOrder.timestamp(i), outOfOrder.value(i));
+                }
+            }
+        }
+
+        private BlockFile.Chunk seal() {
+            if (outOfOrder == null) {
+                return BlockFile.Chunk.of(columnId, encoder);
+            }
+            PointBuffer points = new PointBuffer(encoder.getCount() + outOfOrder.size());
+            copyTo(points);
+            points.sortAndDedup();
+            return BlockFile.Chunk.of(columnId, points.encode());
+        }
+    }
+
+    /**
+     * 内存中的块按列ID分片，每个分片由自己的锁保护
+     */
+    private static final class HeadStripe {
+
+        private LongLongMap index = new LongLongMap();
+        private HeadChunk[] chunks = new HeadChunk[16];
+        private int size;
+        private long minPartition = Long.MAX_VALUE;
+        private long maxPartition = Long.MIN_VALUE;
+
+        /**
+         * @return 内存占用的增量(字节)
+         */
+        private int append(long partition, int columnId, long timestamp, double value) {
+            long key = key(partition, columnId);
+            long slot = index.get(key, -1L);
+            HeadChunk chunk;
+            int before;
+            if (slot < 0) {
+                chunk = new HeadChunk(columnId, partition);
+                if (size == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, size * 2);
+                }
+                index.put(key, size);
+                chunks[size++] = chunk;
+                minPartition = Math.min(minPartition, partition);
+                maxPartition = Math.max(maxPartition, partition);
+                before = 0;
+            } else {
+                chunk = chunks[(int) slot];
+                before = chunk.bytes();
+            }
+            chunk.add(timestamp, value);
+            return chunk.bytes() - before;
+        }
+
+        private void copyTo(int columnId, long firstPartition, long lastPartition, PointBuffer target) {
+            if (size == 0) {
+                return;
+            }
+            for (long partition = Math.max(firstPartition, minPartition);
+                 partition <= Math.min(lastPartition, maxPartition); partition++) {
+                long slot = index.get(key(partition, columnId), -1L);
+                if (slot >= 0) {
+                    chunks[(int) slot].copyTo(target);
+                }
+            }
+        }
+
+        private void drainTo(List<HeadChunk> target) {
+            if (size == 0) {
+                return;
+            }
+            target.addAll(Arrays.asList(chunks).subList(0, size));
+            index = new LongLongMap();
+            chunks = new HeadChunk[16];
+            size = 0;
+            minPartition = Long.MAX_VALUE;
+            maxPartition = Long.MIN_VALUE;
+        }
+
+        private static long key(long partition, int columnId) {
+            return (partition << 32) | (columnId + 1L);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.skyi.processor.service.tsdb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * 预写日志
+ * 写入内存的数据点同时追加到日志缓冲区，sync时把缓冲区作为一条记录写入当前段文件(序号.wal)并落盘，
+ * 多个线程同时sync时由一次落盘覆盖(组提交)。记录格式为：
+ * <pre>
+ * int 长度 | int CRC32C | 载荷(数据点数 * (int 列ID, long 时间戳, double 值))
+ * </pre>
+ * 刷盘前切换到新段，内存数据全部写入数据块后删除之前的段；启动时按顺序重放剩余的段，
+ * 末尾不完整或校验失败的记录(进程在写入中途退出)及该段之后的数据忽略
+ */
+@Slf4j
+final class WriteAheadLog {
+
+    static final String SUFFIX = ".wal";
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final int POINT_BYTES = 20;
+
+    private final Path dir;
+
+    /**
+     * 尚未写入段文件的数据点，由this保护
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long appended;
+
+    /**
+     * 当前段及已落盘的位置，由syncLock保护
+     */
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long sequence;
+    private volatile long synced;
+
+    WriteAheadLog(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        List<Long> existing = segments();
+        sequence = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        channel = open(sequence);
+    }
+
+    /**
+     * 按顺序读取当前段之前的全部段
+     *
+     * @return 读取的数据点数
+     */
+    long replay(PointConsumer consumer) throws IOException {
+        long points = 0;
+        for (long segment : segments()) {
+            if (segment >= sequence) {
+                break;
+            }
+            Path path = path(segment);
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (data.remaining() >= HEADER_BYTES) {
+                int length = data.getInt();
+                int crc = data.getInt();
+                if (length <= 0 || length % POINT_BYTES != 0 || length > data.remaining()
+                        || crc(data, data.position(), length) != crc) {
+                    log.warn("预写日志记录不完整，忽略之后的数据: {}, 位置: {}", path, data.position() - HEADER_BYTES);
+                    break;
+                }
+                for (int end = data.position() + length; data.position() < end; points++) {
+                    consumer.accept(data.getInt(), data.getLong(), data.getDouble());
+                }
+            }
+        }
+        return points;
+    }
+
+    synchronized void append(int columnId, long timestamp, double value) {
+        if (buffer.remaining() < POINT_BYTES) {
+            ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        buffer.putInt(columnId).putLong(timestamp).putDouble(value);
+        appended++;
+    }
+
+    /**
+     * 等待此前追加的数据点全部落盘
+     */
+    void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appended;
+        }
+        if (synced >= target) {
+            return;
+        }
+        synchronized (syncLock) {
+            writeBuffered();
+        }
+    }
+
+    /**
+     * 落盘缓冲区中的数据后切换到新段，调用方保证期间没有追加
+     *
+     * @return 新段的序号，之前的段可在数据写入数据块后用{@link #truncate}删除
+     */
+    long roll() throws IOException {
+        synchronized (syncLock) {
+            writeBuffered();
+            FileChannel next = open(sequence + 1);
+            channel.close();
+            channel = next;
+            return ++sequence;
+        }
+    }
+
+    /**
+     * 删除序号小于before的段
+     */
+    void truncate(long before) {
+        try {
+            for (long segment : segments()) {
+                if (segment < before) {
+                    Files.deleteIfExists(path(segment));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("删除预写日志失败: {}, 原因: {}", dir, e.getMessage());
+        }
+    }
+
+    void close() {
+        synchronized (syncLock) {
+            try {
+                writeBuffered();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭预写日志失败: {}, 原因: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 把缓冲区写成一条记录并落盘，调用方持有syncLock
+     */
+    private void writeBuffered() throws IOException {
+        ByteBuffer pending;
+        long upTo;
+        synchronized (this) {
+            if (buffer.position() == 0) {
+                synced = appended;
+                return;
+            }
+            pending = buffer;
+            pending.flip();
+            upTo = appended;
+            buffer = ByteBuffer.allocate(pending.capacity());
+        }
+        long start = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(pending.remaining()).putInt(crc(pending, 0, pending.remaining())).flip();
+        ByteBuffer[] record = {header, pending};
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // 去掉写了一半的记录，数据放回缓冲区由下一次sync重写，避免之后的记录在重放时被忽略
+            try {
+                channel.truncate(start);
+            } catch (IOException ignored) {
+                // 截断失败时重放在该记录处停止
+            }
+            synchronized (this) {
+                pending.rewind();
+                buffer.flip();
+                ByteBuffer merged = ByteBuffer.allocate(Math.max(pending.capacity(), pending.remaining() + buffer.remaining()));
+                merged.put(pending).put(buffer);
+                buffer = merged;
+            }
+            throw e;
+        }
+        synced = upTo;
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    result.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的预写日志文件: {}", file);
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private FileChannel open(long segment) throws IOException {
+        return FileChannel.open(path(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path path(long segment) {
+        return dir.resolve(String.format("%020d%s", segment, SUFFIX));
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 重放的数据点回调
+     */
+    @FunctionalInterface
+    interface PointConsumer {
+
+        void accept(int columnId, long timestamp, double value);
+    }
+}
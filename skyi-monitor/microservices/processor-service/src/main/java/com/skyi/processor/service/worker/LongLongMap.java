@@ -0,0 +1,126 @@
+package com.skyi.processor.service.worker;
+
+/**
+ * long到long的开放寻址哈希表
+ * 以基本类型数组保存键值，不为条目创建对象，供工作线程保存序列状态。
+ * 非线程安全，只能由持有它的工作线程访问
+ */
+public final class LongLongMap {
+
+    /**
+     * 空槽位标记，真实键恰为0时映射为1
+     */
+    private static final long EMPTY = 0L;
+
+    private static final int MIN_CAPACITY = 64;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    public LongLongMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * 获取键对应的值
+     *
+     * @param key 键
+     * @param defaultValue 不存在时的返回值
+     * @return 值
+     */
+    public long get(long key, long defaultValue) {
+        key = normalize(key);
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == EMPTY) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * 写入键值
+     */
+    public void put(long key, long value) {
+        key = normalize(key);
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2, null);
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * 删除满足条件的条目，重建表以保持探测链连续
+     *
+     * @param predicate 条件
+     * @return 删除的条目数
+     */
+    public int removeIf(EntryPredicate predicate) {
+        int before = size;
+        int live = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && !predicate.test(keys[slot], values[slot])) {
+                live++;
+            }
+        }
+        int capacity = MIN_CAPACITY;
+        while (live * 4 > capacity * 3) {
+            capacity *= 2;
+        }
+        rehash(capacity, predicate);
+        return before - size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity, EntryPredicate removed) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY && (removed == null || !removed.test(oldKeys[slot], oldValues[slot]))) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        size = 0;
+    }
+
+    private static long normalize(long key) {
+        return key == EMPTY ? 1L : key;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 条目条件
+     */
+    @FunctionalInterface
+    public interface EntryPredicate {
+
+        boolean test(long key, long value);
+    }
+}
@@ -0,0 +1,65 @@
+package com.skyi.processor.service.worker;
+
+import com.skyi.processor.model.MetricData;
+
+/**
+ * 序列键
+ * 指标名、资产ID和标签集合的64位哈希，标签按无序集合参与计算，
+ * 同一序列在不同消息中的标签顺序不同也得到相同的键
+ */
+public final class SeriesKey {
+
+    private SeriesKey() {
+    }
+
+    /**
+     * 计算数据点的序列键
+     *
+     * @param metricData 指标数据
+     * @return 64位序列键
+     */
+    public static long of(MetricData metricData) {
+        long h = hash(metricData.getMetricName());
+        h = h * 0x100000001B3L ^ (metricData.getAssetId() != null ? metricData.getAssetId() : 0L);
+        long labels = 0;
+        String[] tags = metricData.tagPairs();
+        for (int i = 0; i < tags.length; i += 2) {
+            labels += mix(hash(tags[i]) * 31 + hash(tags[i + 1]));
+        }
+        return mix(h ^ labels);
+    }
+
+    /**
+     * 由序列键派生其他状态的键，如序列在某条规则下的状态
+     *
+     * @param seriesKey 序列键
+     * @param salt 区分用途的64位值
+     * @return 64位键
+     */
+    public static long combine(long seriesKey, long salt) {
+        return mix(seriesKey ^ salt * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * 64位FNV-1a字符串哈希
+     */
+    public static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        if (value == null) {
+            return h;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
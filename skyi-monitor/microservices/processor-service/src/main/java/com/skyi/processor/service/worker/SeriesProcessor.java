@@ -0,0 +1,46 @@
+package com.skyi.processor.service.worker;
+
+import com.skyi.processor.model.MetricData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 序列处理器
+ * 每个工作线程持有独立的实例，同一序列的数据点总是按到达顺序交给同一个实例，
+ * 实现类可以直接使用非同步的数据结构保存序列状态
+ */
+public interface SeriesProcessor {
+
+    /**
+     * 处理一个数据点
+     *
+     * @param metricData 指标数据，可以原地修改
+     * @param seriesKey 序列键，见{@link SeriesKey}
+     * @return 是否保留该数据点，返回false时丢弃且不再交给后续处理器
+     */
+    boolean process(MetricData metricData, long seriesKey);
+
+    /**
+     * 工作线程处理完一批数据点后调用一次，写出本批处理产生的结果(如关闭的聚合窗口)；
+     * 这批数据点在返回的Future完成后才交给调用方，调用方确认消息位点时这些结果已经写入
+     *
+     * @return 写入完成的Future，没有需要等待的结果时返回null
+     */
+    default CompletableFuture<?> flush() {
+        return null;
+    }
+
+    /**
+     * 工作线程空闲或每隔一段时间调用一次，用于清理过期状态、输出窗口结果等
+     *
+     * @param now 当前时间(毫秒)
+     */
+    default void tick(long now) {
+    }
+
+    /**
+     * 工作线程退出前调用一次，在最后一次tick之后，用于保存需要跨重启保留的状态
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,17 @@
+package com.skyi.processor.service.worker;
+
+/**
+ * 序列处理器工厂
+ * 注册为Spring Bean后由{@link SeriesWorkerPool}为每个工作线程创建一个处理器，
+ * 多个工厂按@Order顺序组成处理链
+ */
+public interface SeriesProcessorFactory {
+
+    /**
+     * 为指定工作线程创建处理器
+     *
+     * @param workerIndex 工作线程序号
+     * @return 处理器，只会被该工作线程访问
+     */
+    SeriesProcessor create(int workerIndex);
+}
@@ -0,0 +1,305 @@
+package com.skyi.processor.service.worker;
+
+import com.skyi.processor.model.MetricData;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 序列亲和的工作线程池
+ * 按序列键把数据点固定分配给单线程工作者，同一序列始终由同一线程按提交顺序处理，
+ * 处理器的序列状态只被一个线程访问，无需加锁或使用并发容器；工作者数量随CPU核数线性扩展。
+ * 每个工作者的任务队列有界，队列满时提交方阻塞等待；停止时不再接受新任务，等待中的提交方和队列中未处理的任务以
+ * RejectedExecutionException失败，关闭不会被阻塞在队列上的提交方拖住
+ */
+@Slf4j
+@Component
+public class SeriesWorkerPool {
+
+    @Autowired
+    private ObjectProvider<SeriesProcessorFactory> processorFactories;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 工作线程数，0表示与CPU核数相同
+     */
+    @Value("${processor.workers.count:0}")
+    private int workerCount;
+
+    @Value("${processor.workers.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${processor.workers.tick-interval-ms:1000}")
+    private long tickIntervalMs;
+
+    /**
+     * 队列满时提交方每次等待的时长，等待期间定期检查线程池是否已停止
+     */
+    private static final long OFFER_WAIT_MS = 100L;
+
+    private Worker[] workers;
+
+    private boolean hasProcessors;
+
+    private volatile boolean accepting;
+
+    @PostConstruct
+    public void start() {
+        List<SeriesProcessorFactory> factories = processorFactories.orderedStream().collect(Collectors.toList());
+        int count = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        hasProcessors = !factories.isEmpty();
+        workers = new Worker[count];
+        for (int i = 0; i < count; i++) {
+            List<SeriesProcessor> processors = new ArrayList<>(factories.size());
+            for (SeriesProcessorFactory factory : factories) {
+                processors.add(factory.create(i));
+            }
+            workers[i] = new Worker(i, processors, queueCapacity);
+            Gauge.builder("processor.worker.queue.size", workers[i].queue, BlockingQueue::size)
+                    .tag("worker", String.valueOf(i))
+                    .register(meterRegistry);
+            workers[i].start();
+        }
+        accepting = true;
+        log.info("序列工作线程池已启动, 工作线程数: {}, 处理器: {}", count,
+                factories.stream().map(f -> f.getClass().getSimpleName()).collect(Collectors.toList()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (workers == null) {
+            return;
+        }
+        accepting = false;
+        for (Worker worker : workers) {
+            worker.running = false;
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.isAlive()) {
+                log.warn("序列工作线程未在5秒内停止，中断: {}", worker.getName());
+                worker.interrupt();
+            }
+            // 工作线程退出后仍留在队列中的任务按失败完成，避免调用方一直等待
+            Task task;
+            while ((task = worker.queue.poll()) != null) {
+                task.future.completeExceptionally(new RejectedExecutionException("序列工作线程池已停止"));
+            }
+        }
+    }
+
+    /**
+     * 按序列分配数据点并经过全部处理器
+     * 同一调用方先后提交的数据，同一序列的处理顺序与提交顺序一致
+     *
+     * @param metricDataList 指标数据
+     * @return 全部工作线程处理完成后完成，值为保留下来的数据点(同一工作线程内保持原顺序)
+     */
+    public CompletableFuture<List<MetricData>> process(List<MetricData> metricDataList) {
+        if (metricDataList == null || metricDataList.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        if (!hasProcessors) {
+            return CompletableFuture.completedFuture(metricDataList);
+        }
+
+        int count = workers.length;
+        List<List<MetricData>> points = new ArrayList<>(count);
+        List<long[]> keys = new ArrayList<>(count);
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            points.add(new ArrayList<>());
+            keys.add(new long[Math.max(16, metricDataList.size() / count * 2)]);
+        }
+        for (MetricData metricData : metricDataList) {
+            long key = SeriesKey.of(metricData);
+            int index = (int) ((key >>> 1) % count);
+            points.get(index).add(metricData);
+            long[] workerKeys = keys.get(index);
+            if (sizes[index] == workerKeys.length) {
+                workerKeys = Arrays.copyOf(workerKeys, workerKeys.length * 2);
+                keys.set(index, workerKeys);
+            }
+            workerKeys[sizes[index]++] = key;
+        }
+
+        List<CompletableFuture<List<MetricData>>> parts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (sizes[i] == 0) {
+                continue;
+            }
+            Task task = new Task(points.get(i), keys.get(i));
+            enqueue(workers[i], task);
+            parts.add(task.future);
+        }
+
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<MetricData> result = new ArrayList<>(metricDataList.size());
+            for (CompletableFuture<List<MetricData>> part : parts) {
+                result.addAll(part.join());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 任务入队，队列满时分段等待，线程池停止或提交方被中断时以失败完成任务
+     */
+    private void enqueue(Worker worker, Task task) {
+        try {
+            while (accepting) {
+                if (worker.queue.offer(task, OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    // 入队后线程池恰好停止时，任务可能已错过停止时的清理
+                    if (!accepting && worker.queue.remove(task)) {
+                        break;
+                    }
+                    return;
+                }
+            }
+            task.future.completeExceptionally(new RejectedExecutionException("序列工作线程池已停止"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class Task {
+
+        private final List<MetricData> points;
+        private final long[] keys;
+        private final CompletableFuture<List<MetricData>> future = new CompletableFuture<>();
+
+        private Task(List<MetricData> points, long[] keys) {
+            this.points = points;
+            this.keys = keys;
+        }
+    }
+
+    private final class Worker extends Thread {
+
+        private final List<SeriesProcessor> processors;
+        private final BlockingQueue<Task> queue;
+        private volatile boolean running = true;
+        private long lastTick = System.currentTimeMillis();
+
+        private Worker(int index, List<SeriesProcessor> processors, int queueCapacity) {
+            super("series-worker-" + index);
+            setDaemon(true);
+            this.processors = processors;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Task task = queue.poll(tickIntervalMs, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        execute(task);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastTick >= tickIntervalMs) {
+                    lastTick = now;
+                    tick(now);
+                }
+            }
+            tick(System.currentTimeMillis());
+            for (SeriesProcessor processor : processors) {
+                try {
+                    processor.close();
+                } catch (Exception e) {
+                    log.error("序列处理器关闭失败: {}", processor.getClass().getSimpleName(), e);
+                }
+            }
+        }
+
+        private void execute(Task task) {
+            try {
+                List<MetricData> kept = new ArrayList<>(task.points.size());
+                for (int i = 0; i < task.points.size(); i++) {
+                    MetricData metricData = task.points.get(i);
+                    if (apply(metricData, task.keys[i])) {
+                        kept.add(metricData);
+                    }
+                }
+                CompletableFuture<?> flushed = flush();
+                if (flushed == null) {
+                    task.future.complete(kept);
+                } else {
+                    flushed.whenComplete((result, ex) -> {
+                        if (ex != null) {
+                            task.future.completeExceptionally(ex);
+                        } else {
+                            task.future.complete(kept);
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                log.error("序列处理失败, 数据点: {}", task.points.size(), e);
+                task.future.completeExceptionally(e);
+            }
+        }
+
+        private CompletableFuture<?> flush() {
+            List<CompletableFuture<?>> futures = null;
+            for (SeriesProcessor processor : processors) {
+                CompletableFuture<?> future = processor.flush();
+                if (future != null) {
+                    if (futures == null) {
+                        futures = new ArrayList<>(processors.size());
+                    }
+                    futures.add(future);
+                }
+            }
+            if (futures == null) {
+                return null;
+            }
+            return futures.size() == 1 ? futures.get(0) : CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        }
+
+        private boolean apply(MetricData metricData, long seriesKey) {
+            for (SeriesProcessor processor : processors) {
+                if (!processor.process(metricData, seriesKey)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void tick(long now) {
+            for (SeriesProcessor processor : processors) {
+                try {
+                    processor.tick(now);
+                } catch (Exception e) {
+                    log.error("序列处理器定时任务失败: {}", processor.getClass().getSimpleName(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.skyi.processor.service.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分位数草图精度测试
+ */
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1};
+
+    /**
+     * 误差上限，留出浮点运算的余量
+     */
+    private static final double TOLERANCE = QuantileSketch.DEFAULT_RELATIVE_ACCURACY + 1e-9;
+
+    /**
+     * 测试逐个加入的值，各分位数的相对误差不超过设定值
+     */
+    @Test
+    public void testAddAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[100_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 2) * 100;
+            sketch.add(values[i]);
+        }
+
+        assertEquals(values.length, sketch.getCount());
+        assertQuantiles(values, sketch);
+    }
+
+    /**
+     * 测试正值、负值和零混合
+     */
+    @Test
+    public void testMixedSigns() {
+        Random random = new Random(7);
+        double[] values = new double[20_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 10 == 0 ? 0 : (random.nextDouble() - 0.5) * 1000;
+            sketch.add(values[i]);
+        }
+
+        assertQuantiles(values, sketch);
+    }
+
+    /**
+     * 测试合并后的分位数与直接加入全部值一致
+     */
+    @Test
+    public void testMergeAccuracy() {
+        Random random = new Random(1);
+        double[] values = new double[50_000];
+        QuantileSketch[] parts = new QuantileSketch[5];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new QuantileSketch();
+        }
+        for (int i = 0; i < values.length; i++) {
+            // 各部分的取值范围不同，合并时需要扩展区间
+            int part = i % parts.length;
+            values[i] = (random.nextDouble() + 0.01) * Math.pow(10, part * 2);
+            parts[part].add(values[i]);
+        }
+
+        QuantileSketch merged = new QuantileSketch();
+        for (QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+
+        assertEquals(values.length, merged.getCount());
+        assertQuantiles(values, merged);
+    }
+
+    /**
+     * 测试编码后还原的草图结果不变
+     */
+    @Test
+    public void testEncodeDecode() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = -500; i <= 1000; i++) {
+            sketch.add(i * 0.37);
+        }
+
+        QuantileSketch decoded = QuantileSketch.decode(sketch.encode());
+
+        assertEquals(sketch.getCount(), decoded.getCount());
+        for (double q : QUANTILES) {
+            assertEquals(sketch.quantile(q), decoded.quantile(q), 0.0);
+        }
+    }
+
+    /**
+     * 测试桶数达到上限、区间上端还有空余时，更小的值先移动区间而不是并入最低的桶
+     */
+    @Test
+    public void testFullStoreAnchorsAtHighestKey() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(1.0);
+        sketch.add(1e13);
+        sketch.add(3e13);
+        sketch.add(3e-4);
+
+        assertRelative(3e-4, sketch.quantile(0));
+        assertRelative(1.0, sketch.quantile(1.0 / 3));
+        assertRelative(3e13, sketch.quantile(1));
+    }
+
+    /**
+     * 测试超过桶数上限的取值范围，按任意顺序加入或合并，被合并的只有最小的桶，较高分位数保持精度
+     */
+    @Test
+    public void testWideRangeCollapsesLowestBins() {
+        Random random = new Random(3);
+        double[] values = new double[30_000];
+        for (int i = 0; i < values.length; i++) {
+            // 1e-8到1e16，跨越24个数量级，超过2048个桶能覆盖的范围
+            values[i] = Math.pow(10, random.nextDouble() * 24 - 8);
+        }
+        double[] ascending = values.clone();
+        Arrays.sort(ascending);
+        double[] descending = new double[ascending.length];
+        for (int i = 0; i < ascending.length; i++) {
+            descending[i] = ascending[ascending.length - 1 - i];
+        }
+
+        QuantileSketch random1 = new QuantileSketch();
+        QuantileSketch low = new QuantileSketch();
+        QuantileSketch high = new QuantileSketch();
+        for (double value : values) {
+            random1.add(value);
+            (value < 1 ? low : high).add(value);
+        }
+        QuantileSketch up = new QuantileSketch();
+        for (double value : ascending) {
+            up.add(value);
+        }
+        QuantileSketch down = new QuantileSketch();
+        for (double value : descending) {
+            down.add(value);
+        }
+        QuantileSketch merged = new QuantileSketch();
+        merged.merge(low);
+        merged.merge(high);
+
+        for (QuantileSketch sketch : new QuantileSketch[]{random1, up, down, merged}) {
+            assertEquals(values.length, sketch.getCount());
+            for (double q : new double[]{0.3, 0.5, 0.75, 0.9, 0.95, 0.99, 1}) {
+                assertRelative(ascending[rank(q, ascending.length)], sketch.quantile(q));
+            }
+            // 最小的值并入最低的桶，只会被高估
+            assertTrue(sketch.quantile(0) >= ascending[0] * (1 - TOLERANCE));
+        }
+    }
+
+    /**
+     * 测试清空后复用
+     */
+    @Test
+    public void testClear() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(i * 1e6);
+        }
+        sketch.clear();
+        assertTrue(sketch.isEmpty());
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+
+        sketch.add(2.0);
+        sketch.add(Double.NaN);
+        assertEquals(1, sketch.getCount());
+        assertRelative(2.0, sketch.quantile(0.5));
+    }
+
+    private static void assertQuantiles(double[] values, QuantileSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            assertRelative(sorted[rank(q, sorted.length)], sketch.quantile(q));
+        }
+    }
+
+    private static int rank(double quantile, int count) {
+        return (int) Math.floor(quantile * (count - 1));
+    }
+
+    private static void assertRelative(double expected, double actual) {
+        assertEquals(expected, actual, Math.abs(expected) * TOLERANCE, "分位数误差超过设定值");
+    }
+}
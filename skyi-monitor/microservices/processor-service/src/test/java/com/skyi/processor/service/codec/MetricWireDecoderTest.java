@@ -0,0 +1,158 @@
+package com.skyi.processor.service.codec;
+
+import com.skyi.processor.model.MetricData;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 指标消息解码测试
+ * 二进制消息由collector-service的MetricWireEncoder编码两个数据点得到，与MetricWireEncoderTest使用同一组消息
+ */
+public class MetricWireDecoderTest {
+
+    /**
+     * 版本2信封：if_in_octets=1.5@1700000000000、if_out_octets无值@1700000000250，标签ifIndex=3
+     */
+    private static final String ENVELOPE = "c702040c69665f696e5f6f6374657473076966496e64657801330d69665f6f75745f6f6374657473"
+            + "170ed8040380a0abfef962e8a7abfef9620218003ff8000000000000000101021003f403010102";
+
+    /**
+     * 版本1，数据点同上
+     */
+    private static final String POINTS = "c701040c69665f696e5f6f6374657473076966496e64657801330d69665f6f75745f6f6374657473"
+            + "023f0ed80403003ff800000000000080a0abfef962e8a7abfef962010102"
+            + "370ed8040303f4a3abfef962e8a7abfef962010102";
+
+    /**
+     * 测试版本2信封展开公共字段和相对采集时间
+     */
+    @Test
+    public void testDecodeEnvelope() {
+        assertPoints(MetricWireDecoder.decode(hex(ENVELOPE)));
+    }
+
+    /**
+     * 测试版本1逐点消息
+     */
+    @Test
+    public void testDecodePoints() {
+        assertPoints(MetricWireDecoder.decode(hex(POINTS)));
+    }
+
+    /**
+     * 测试旧版JSON消息
+     */
+    @Test
+    public void testDecodeJson() {
+        String json = "{\"taskId\":7,\"assetId\":-2,\"metricName\":\"cpu_usage\",\"metricValue\":12.5,"
+                + "\"collectTime\":1700000000000,\"metricLabels\":{\"core\":\"0\"}}";
+        List<MetricData> metrics = MetricWireDecoder.decode(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, metrics.size());
+        MetricData metricData = metrics.get(0);
+        assertEquals("cpu_usage", metricData.getMetricName());
+        assertEquals(12.5, metricData.doubleValue());
+        assertEquals(1700000000000L, metricData.timestampMillis());
+        assertEquals("0", metricData.tag("core"));
+    }
+
+    /**
+     * 测试任意位置截断的消息都抛出格式错误，而不是数组越界
+     */
+    @Test
+    public void testTruncated() {
+        for (String message : new String[]{ENVELOPE, POINTS}) {
+            byte[] data = hex(message);
+            for (int length = 1; length < data.length; length++) {
+                byte[] truncated = Arrays.copyOf(data, length);
+                assertThrows(MetricWireFormatException.class, () -> MetricWireDecoder.decode(truncated),
+                        "截断长度: " + length);
+            }
+        }
+    }
+
+    /**
+     * 测试损坏的数量字段在分配内存前被拒绝
+     */
+    @Test
+    public void testCountExceedsMessage() {
+        // 字典长度为2^31-1
+        byte[] data = {MetricWireDecoder.MAGIC, 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(MetricWireFormatException.class, () -> MetricWireDecoder.decode(data));
+
+        // 字典项长度超出消息
+        byte[] entry = {MetricWireDecoder.MAGIC, 1, 1, 0x7F, 'a'};
+        assertThrows(MetricWireFormatException.class, () -> MetricWireDecoder.decode(entry));
+
+        // 变长整数超过10字节
+        byte[] varint = new byte[13];
+        varint[0] = MetricWireDecoder.MAGIC;
+        varint[1] = 1;
+        Arrays.fill(varint, 2, varint.length, (byte) 0x80);
+        assertThrows(MetricWireFormatException.class, () -> MetricWireDecoder.decode(varint));
+    }
+
+    /**
+     * 测试字典下标越界
+     */
+    @Test
+    public void testDictionaryIndexOutOfRange() {
+        byte[] data = hex(ENVELOPE);
+        // 第一个数据点的指标名下标(字典只有4项)
+        int index = indexOf(data, hex("021800")) + 2;
+        data[index] = 4;
+        assertThrows(MetricWireFormatException.class, () -> MetricWireDecoder.decode(data));
+    }
+
+    /**
+     * 测试不支持的版本
+     */
+    @Test
+    public void testUnsupportedVersion() {
+        byte[] data = hex(ENVELOPE);
+        data[1] = MetricWireDecoder.MAX_VERSION + 1;
+        assertThrows(MetricWireFormatException.class, () -> MetricWireDecoder.decode(data));
+    }
+
+    private static void assertPoints(List<MetricData> metrics) {
+        assertEquals(2, metrics.size());
+
+        MetricData in = metrics.get(0);
+        assertEquals("if_in_octets", in.getMetricName());
+        assertEquals(Long.valueOf(7), in.getTaskId());
+        assertEquals(Long.valueOf(300), in.getInstanceId());
+        assertEquals(Long.valueOf(-2), in.getAssetId());
+        assertEquals(1.5, in.doubleValue());
+        assertEquals(1700000000000L, in.timestampMillis());
+        assertEquals("3", in.tag("ifIndex"));
+
+        MetricData out = metrics.get(1);
+        assertEquals("if_out_octets", out.getMetricName());
+        assertEquals(Long.valueOf(-2), out.getAssetId());
+        assertFalse(out.hasValue());
+        assertEquals(1700000000250L, out.timestampMillis());
+        assertEquals("3", out.tag("ifIndex"));
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        throw new AssertionError("未找到字节序列");
+    }
+
+    private static byte[] hex(String text) {
+        byte[] data = new byte[text.length() / 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) Integer.parseInt(text.substring(i * 2, i * 2 + 2), 16);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,205 @@
+package com.skyi.processor.service.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 溢写日志记录格式与读写测试
+ */
+public class SpillLogTest {
+
+    private static final long SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 测试按追加顺序读取，提交后前移，全部提交后删除活动段
+     */
+    @Test
+    public void testAppendPeekCommit() throws IOException {
+        SpillLog spillLog = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 4);
+        assertTrue(spillLog.isEmpty());
+        assertTrue(spillLog.append("metrics", "cpu value=1 1", 1));
+        assertTrue(spillLog.append("metrics_1m", "cpu_1m mean=2 2\ncpu_1m mean=3 3", 2));
+        assertFalse(spillLog.isEmpty());
+
+        List<SpillLog.Record> records = spillLog.peek(100);
+        assertEquals(2, records.size());
+        assertEquals("metrics", records.get(0).bucket);
+        assertEquals("cpu value=1 1", records.get(0).lines);
+        assertEquals(1, records.get(0).points);
+        assertEquals("metrics_1m", records.get(1).bucket);
+        assertEquals("cpu_1m mean=2 2\ncpu_1m mean=3 3", records.get(1).lines);
+        assertEquals(2, records.get(1).points);
+
+        spillLog.commit();
+        assertTrue(spillLog.isEmpty());
+        assertEquals(0, spillLog.getSizeBytes());
+        assertTrue(segmentFiles(".seg").isEmpty());
+    }
+
+    /**
+     * 测试未提交时再次读取返回相同的记录，数据点数达到上限时分批返回
+     */
+    @Test
+    public void testPeekWithoutCommit() throws IOException {
+        SpillLog spillLog = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 4);
+        for (int i = 0; i < 3; i++) {
+            spillLog.append("metrics", "cpu value=" + i + " " + i, 10);
+        }
+
+        List<SpillLog.Record> first = spillLog.peek(15);
+        assertEquals(2, first.size());
+        List<SpillLog.Record> again = spillLog.peek(15);
+        assertEquals(2, again.size());
+        assertEquals(first.get(0).lines, again.get(0).lines);
+
+        spillLog.commit();
+        List<SpillLog.Record> rest = spillLog.peek(15);
+        assertEquals(1, rest.size());
+        assertEquals("cpu value=2 2", rest.get(0).lines);
+    }
+
+    /**
+     * 测试段写满后换用新段，超过总大小上限时追加失败，段按顺序读取
+     */
+    @Test
+    public void testRotateAndSizeLimit() throws IOException {
+        SpillLog spillLog = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 2);
+        String lines = repeat('x', 1500);
+        int appended = 0;
+        while (spillLog.append("metrics", lines + appended, 1)) {
+            appended++;
+        }
+        assertEquals(4, appended);
+        assertEquals(2, segmentFiles(".seg").size());
+
+        int read = 0;
+        while (!spillLog.isEmpty()) {
+            for (SpillLog.Record record : spillLog.peek(100)) {
+                assertEquals(lines + read, record.lines);
+                read++;
+            }
+            spillLog.commit();
+        }
+        assertEquals(appended, read);
+    }
+
+    /**
+     * 测试重启后从段文件恢复未重放的记录
+     */
+    @Test
+    public void testRecoverAfterRestart() throws IOException {
+        SpillLog spillLog = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 4);
+        spillLog.append("metrics", "cpu value=1 1", 1);
+        spillLog.append("metrics", "cpu value=2 2", 1);
+        spillLog.close();
+        assertFalse(spillLog.append("metrics", "cpu value=3 3", 1));
+
+        SpillLog reopened = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 4);
+        assertFalse(reopened.isEmpty());
+        List<SpillLog.Record> records = reopened.peek(100);
+        assertEquals(2, records.size());
+        assertEquals("cpu value=2 2", records.get(1).lines);
+        reopened.commit();
+        assertTrue(reopened.peek(100).isEmpty());
+        assertTrue(reopened.isEmpty());
+    }
+
+    /**
+     * 测试已封存的段中出现校验失败，之前的记录照常读取，之后隔离该段
+     */
+    @Test
+    public void testCorruptSealedSegment() throws IOException {
+        SpillLog spillLog = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 4);
+        spillLog.append("metrics", "cpu value=1 1", 1);
+        int second = recordBytes("metrics", "cpu value=1 1");
+        spillLog.append("metrics", "cpu value=2 2", 1);
+        spillLog.append("metrics", "cpu value=3 3", 1);
+        spillLog.close();
+        flipByte(segmentFiles(".seg").get(0), second + 12);
+
+        SpillLog reopened = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 4);
+        List<SpillLog.Record> records = reopened.peek(100);
+        assertEquals(1, records.size());
+        assertEquals("cpu value=1 1", records.get(0).lines);
+        reopened.commit();
+
+        assertTrue(reopened.peek(100).isEmpty());
+        assertTrue(reopened.isEmpty());
+        assertEquals(1, reopened.getCorruptedRecords());
+        assertEquals(0, reopened.getSizeBytes());
+        assertTrue(segmentFiles(".seg").isEmpty());
+        assertEquals(1, segmentFiles(".corrupt").size());
+    }
+
+    /**
+     * 测试活动段中出现校验失败时关闭并隔离该段，不会一直报告有积压，之后的追加写入新段
+     */
+    @Test
+    public void testCorruptActiveSegment() throws IOException {
+        SpillLog spillLog = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES * 4);
+        spillLog.append("metrics", "cpu value=1 1", 1);
+        spillLog.force();
+        flipByte(segmentFiles(".seg").get(0), 12);
+
+        assertTrue(spillLog.peek(100).isEmpty());
+        assertTrue(spillLog.isEmpty());
+        assertEquals(1, spillLog.getCorruptedRecords());
+        assertEquals(1, segmentFiles(".corrupt").size());
+
+        assertTrue(spillLog.append("metrics", "cpu value=2 2", 1));
+        List<SpillLog.Record> records = spillLog.peek(100);
+        assertEquals(1, records.size());
+        assertEquals("cpu value=2 2", records.get(0).lines);
+        spillLog.commit();
+        assertTrue(spillLog.isEmpty());
+    }
+
+    /**
+     * 记录占用的字节数：长度、校验值和载荷
+     */
+    private static int recordBytes(String bucket, String lines) {
+        return 8 + 2 + bucket.getBytes(StandardCharsets.UTF_8).length + 4 + lines.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0xFF));
+            buffer.rewind();
+            channel.write(buffer, position);
+        }
+    }
+
+    private List<Path> segmentFiles(String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + suffix)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,125 @@
+package com.skyi.processor.service.tsdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 数据块编码与解码测试
+ */
+public class ChunkCodecTest {
+
+    /**
+     * 测试固定采集间隔、取值变化不频繁的序列，解码结果与原值一致，平均每点不超过3字节
+     */
+    @Test
+    public void testRegularSeriesRoundTrip() {
+        int count = 10_000;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = timestamp + i * 10_000L;
+            values[i] = 50 + (i / 20) % 7 * 0.5;
+        }
+
+        ChunkEncoder encoder = encode(timestamps, values);
+        byte[] bytes = encoder.toBytes();
+        assertEquals(count, encoder.getCount());
+        assertEquals(timestamps[0], encoder.getFirstTimestamp());
+        assertEquals(timestamps[count - 1], encoder.getLastTimestamp());
+        assertTrue(bytes.length <= count * 3, "压缩后" + bytes.length + "字节");
+        assertDecoded(new ChunkDecoder(bytes, count), timestamps, values);
+    }
+
+    /**
+     * 测试各个时间戳差分区间和任意位模式的数值
+     */
+    @Test
+    public void testIrregularSeriesRoundTrip() {
+        long[] steps = {1, 1, 64, 1, 300, 2, 5000, 1, 100_000, 1L << 40, 3, 1, 1 << 20, 7};
+        double[] specials = {0.0, -0.0, -1.5, Double.MAX_VALUE, Double.MIN_VALUE, -Double.MAX_VALUE,
+                1e-300, Double.NaN, Double.POSITIVE_INFINITY, 42.0, 42.0, 42.0};
+        Random random = new Random(3);
+        int count = 5000;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        long timestamp = -86_400_000L;
+        for (int i = 0; i < count; i++) {
+            timestamp += i < steps.length ? steps[i] : 1 + (random.nextInt(4) == 0 ? random.nextInt(1 << 20) : 0);
+            timestamps[i] = timestamp;
+            values[i] = i < specials.length ? specials[i]
+                    : random.nextBoolean() ? random.nextGaussian() * 1e6 : Double.longBitsToDouble(random.nextLong());
+        }
+
+        ChunkEncoder encoder = encode(timestamps, values);
+        assertDecoded(new ChunkDecoder(encoder.toBytes(), count), timestamps, values);
+    }
+
+    /**
+     * 测试时间戳不递增的数据点不被接受，已编码的数据不受影响
+     */
+    @Test
+    public void testRejectsNonIncreasingTimestamps() {
+        ChunkEncoder encoder = new ChunkEncoder();
+        assertTrue(encoder.append(1000, 1.0));
+        assertTrue(encoder.append(2000, 2.0));
+        assertFalse(encoder.append(2000, 3.0));
+        assertFalse(encoder.append(1500, 4.0));
+        assertTrue(encoder.append(3000, 5.0));
+        assertEquals(3, encoder.getCount());
+
+        assertDecoded(new ChunkDecoder(encoder.toBytes(), 3), new long[]{1000, 2000, 3000}, new double[]{1.0, 2.0, 5.0});
+    }
+
+    /**
+     * 测试从缓冲区中间位置解码，与数据块文件中读取压缩数据的方式一致
+     */
+    @Test
+    public void testDecodeFromBufferOffset() {
+        long[] timestamps = {10, 20, 30, 45, 60};
+        double[] values = {1, 1, 2, 3, 5};
+        byte[] bytes = encode(timestamps, values).toBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 16);
+        buffer.position(7);
+        buffer.put(bytes);
+
+        assertDecoded(new ChunkDecoder(buffer, 7, timestamps.length), timestamps, values);
+    }
+
+    /**
+     * 测试乱序和重复时间戳经PointBuffer排序去重后保留最后写入的值
+     */
+    @Test
+    public void testPointBufferEncode() {
+        PointBuffer points = new PointBuffer();
+        points.add(30, 3);
+        points.add(10, 1);
+        points.add(20, 2);
+        points.add(10, 9);
+
+        points.sortAndDedup();
+        ChunkEncoder encoder = points.encode();
+        assertDecoded(new ChunkDecoder(encoder.toBytes(), encoder.getCount()), new long[]{10, 20, 30}, new double[]{9, 2, 3});
+    }
+
+    private static ChunkEncoder encode(long[] timestamps, double[] values) {
+        ChunkEncoder encoder = new ChunkEncoder();
+        for (int i = 0; i < timestamps.length; i++) {
+            assertTrue(encoder.append(timestamps[i], values[i]));
+        }
+        return encoder;
+    }
+
+    private static void assertDecoded(ChunkDecoder decoder, long[] timestamps, double[] values) {
+        for (int i = 0; i < timestamps.length; i++) {
+            assertTrue(decoder.next(), "数据点不足: " + i);
+            assertEquals(timestamps[i], decoder.timestamp(), "时间戳: " + i);
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.value()), "数值: " + i);
+        }
+        assertFalse(decoder.next());
+    }
+}
@@ -0,0 +1,188 @@
+package com.skyi.processor.service.tsdb;
+
+import com.skyi.processor.model.MetricData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 嵌入式时序存储测试：写入、删除标记、数据块合并、过期清理和预写日志恢复
+ */
+public class TimeSeriesStoreTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private static final long PARTITION = 2 * HOUR;
+
+    private static final long BASE = 1_700_000_000_000L / PARTITION * PARTITION;
+
+    @TempDir
+    Path dir;
+
+    private final List<TimeSeriesStore> opened = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        opened.forEach(TimeSeriesStore::close);
+    }
+
+    /**
+     * 测试内存和数据块中的数据合并读取，乱序写入按时间返回，同一时间戳保留最后写入的值
+     */
+    @Test
+    public void testWriteAndScan() throws IOException {
+        TimeSeriesStore store = open(0);
+        write(store, BASE + 3000, 3);
+        write(store, BASE + 1000, 1);
+        store.flush();
+        write(store, BASE + 2000, 2);
+        write(store, BASE + 1000, 10);
+
+        assertEquals(1, store.getBlockCount());
+        assertPoints(store, BASE, BASE + HOUR, new long[]{BASE + 1000, BASE + 2000, BASE + 3000}, new double[]{10, 2, 3});
+        assertPoints(store, BASE + 1500, BASE + 3000, new long[]{BASE + 2000}, new double[]{2});
+    }
+
+    /**
+     * 测试删除标记只作用于删除前写入的数据，之后写入同一时间范围的数据可以读取；重启后删除仍然生效
+     */
+    @Test
+    public void testDeleteWithTombstone() throws IOException {
+        TimeSeriesStore store = open(0);
+        for (int i = 0; i < 10; i++) {
+            write(store, BASE + i * 1000L, i);
+        }
+        store.flush();
+        write(store, BASE + 10_000, 10);
+
+        long deleted = store.delete(columns(store), BASE + 2000, BASE + 5000);
+        assertEquals(3, deleted);
+        assertEquals(0, store.getHeadBytes());
+        write(store, BASE + 3000, 33);
+
+        long[] expected = {BASE, BASE + 1000, BASE + 3000, BASE + 5000, BASE + 6000, BASE + 7000, BASE + 8000,
+                BASE + 9000, BASE + 10_000};
+        double[] values = {0, 1, 33, 5, 6, 7, 8, 9, 10};
+        assertPoints(store, BASE, BASE + HOUR, expected, values);
+
+        store.close();
+        opened.remove(store);
+        assertPoints(open(0), BASE, BASE + HOUR, expected, values);
+    }
+
+    /**
+     * 测试合并分区内的数据块时应用删除标记，合并后数据与合并前一致，删除标记清理后重启不会恢复已删除的数据
+     */
+    @Test
+    public void testCompactionAppliesTombstones() throws IOException {
+        TimeSeriesStore store = open(0);
+        for (int block = 0; block < 3; block++) {
+            for (int i = 0; i < 5; i++) {
+                write(store, BASE + block * 10_000L + i * 1000L, block * 10 + i);
+            }
+            store.flush();
+        }
+        assertEquals(3, store.getBlockCount());
+        store.delete(columns(store), BASE + 10_000, BASE + 20_000);
+        long before = store.getDiskBytes();
+
+        store.compact(BASE + 2 * PARTITION);
+        assertEquals(1, store.getBlockCount());
+        assertTrue(store.getDiskBytes() < before);
+
+        long[] expected = {BASE, BASE + 1000, BASE + 2000, BASE + 3000, BASE + 4000,
+                BASE + 20_000, BASE + 21_000, BASE + 22_000, BASE + 23_000, BASE + 24_000};
+        double[] values = {0, 1, 2, 3, 4, 20, 21, 22, 23, 24};
+        assertPoints(store, BASE, BASE + HOUR, expected, values);
+
+        store.close();
+        opened.remove(store);
+        TimeSeriesStore reopened = open(0);
+        assertEquals(1, reopened.getBlockCount());
+        assertPoints(reopened, BASE, BASE + HOUR, expected, values);
+    }
+
+    /**
+     * 测试压缩时删除全部数据都超过保留时长的分区
+     */
+    @Test
+    public void testCompactionDropsExpiredPartitions() throws IOException {
+        long now = BASE + 10 * PARTITION;
+        TimeSeriesStore store = open(3 * PARTITION);
+        write(store, BASE + 1000, 1);
+        write(store, now - 1000, 2);
+        store.flush();
+        assertEquals(2, store.getBlockCount());
+
+        store.compact(now);
+        assertEquals(1, store.getBlockCount());
+        assertPoints(store, BASE, now, new long[]{now - 1000}, new double[]{2});
+    }
+
+    /**
+     * 测试sync之后进程异常退出(不刷盘、不关闭)，重新打开时从预写日志恢复内存中的数据
+     */
+    @Test
+    public void testRecoverFromWriteAheadLog() throws IOException {
+        TimeSeriesStore store = open(0);
+        write(store, BASE + 1000, 1);
+        store.flush();
+        write(store, BASE + 2000, 2);
+        write(store, BASE + 3000, 3);
+        store.sync();
+
+        TimeSeriesStore recovered = open(0);
+        assertEquals(1, recovered.getBlockCount());
+        assertTrue(recovered.getHeadBytes() > 0);
+        assertPoints(recovered, BASE, BASE + HOUR, new long[]{BASE + 1000, BASE + 2000, BASE + 3000}, new double[]{1, 2, 3});
+
+        // 写入数据块后删除已重放的日志，再次打开时不会重复恢复
+        recovered.flush();
+        TimeSeriesStore again = open(0);
+        assertEquals(0, again.getHeadBytes());
+        assertPoints(again, BASE, BASE + HOUR, new long[]{BASE + 1000, BASE + 2000, BASE + 3000}, new double[]{1, 2, 3});
+    }
+
+    private TimeSeriesStore open(long retentionMillis) throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(dir, PARTITION, 8, measurement -> retentionMillis);
+        opened.add(store);
+        return store;
+    }
+
+    private static void write(TimeSeriesStore store, long timestamp, double value) throws IOException {
+        MetricData metricData = MetricData.of("cpu_usage", value, Instant.ofEpochMilli(timestamp));
+        metricData.setAssetId(1L);
+        metricData.addTag("host", "server-1");
+        assertEquals(1, store.write(metricData, timestamp));
+    }
+
+    private static List<SeriesColumn> columns(TimeSeriesStore store) {
+        return store.columns("cpu_usage", TimeSeriesStore.VALUE_FIELD, Collections.singletonMap("host", "server-1"));
+    }
+
+    private static void assertPoints(TimeSeriesStore store, long start, long end, long[] timestamps, double[] values) {
+        List<SeriesColumn> columns = columns(store);
+        assertEquals(1, columns.size());
+        List<Long> actualTimestamps = new ArrayList<>();
+        List<Double> actualValues = new ArrayList<>();
+        store.scan(columns.get(0), start, end, (timestamp, value) -> {
+            actualTimestamps.add(timestamp);
+            actualValues.add(value);
+            return true;
+        });
+        assertEquals(timestamps.length, actualTimestamps.size(), "数据点数");
+        for (int i = 0; i < timestamps.length; i++) {
+            assertEquals(timestamps[i], actualTimestamps.get(i), "时间戳: " + i);
+            assertEquals(values[i], actualValues.get(i), "数值: " + i);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.skyi.storage.controller;
 
+import com.skyi.storage.dto.LatestBatchDTO;
+import com.skyi.storage.dto.LatestQueryDTO;
 import com.skyi.storage.dto.TimeSeriesDataDTO;
 import com.skyi.storage.dto.TimeSeriesQueryDTO;
+import com.skyi.storage.index.SeriesIndex;
 import com.skyi.storage.model.TimeSeriesData;
 import com.skyi.storage.service.TimeSeriesService;
 import com.skyi.storage.utils.Result;
@@ -10,10 +13,13 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 时间序列数据控制器
@@ -61,6 +67,13 @@ public class TimeSeriesController {
         return Result.success(data);
     }
 
+    @PostMapping("/latest/batch")
+    @Operation(summary = "批量查询最新数据", description = "批量查询多个资产指标的最新值，结果与请求顺序一致并附带水位")
+    public Result<LatestBatchDTO> queryLatestBatch(@Valid @RequestBody List<LatestQueryDTO> queries) {
+        log.debug("批量查询最新数据, 数量: {}", queries.size());
+        return Result.success(timeSeriesService.queryLatestBatch(queries));
+    }
+
     @PostMapping("/group")
     @Operation(summary = "分组统计数据", description = "根据指标名称分组统计数据")
     public Result<List<Object>> groupByMetric(@Valid @RequestBody TimeSeriesQueryDTO queryDTO) {
@@ -69,6 +82,25 @@ public class TimeSeriesController {
         return Result.success(resultList);
     }
 
+    @GetMapping("/tag-values")
+    @Operation(summary = "查询标签值", description = "查询标签的取值列表，用于自动补全")
+    public Result<List<String>> listTagValues(
+            @Parameter(description = "标签键") @RequestParam String tagKey,
+            @Parameter(description = "值前缀") @RequestParam(required = false) String prefix,
+            @Parameter(description = "资产ID") @RequestParam(required = false) String assetId,
+            @Parameter(description = "指标名称") @RequestParam(required = false) String metricName,
+            @Parameter(description = "最大数量") @RequestParam(defaultValue = "100") int limit) {
+        log.debug("查询标签值, tagKey: {}, prefix: {}, assetId: {}, metricName: {}", tagKey, prefix, assetId, metricName);
+        Map<String, String> tags = new HashMap<>();
+        if (StringUtils.hasText(assetId)) {
+            tags.put(SeriesIndex.TAG_ASSET_ID, assetId);
+        }
+        if (StringUtils.hasText(metricName)) {
+            tags.put(SeriesIndex.TAG_METRIC_NAME, metricName);
+        }
+        return Result.success(timeSeriesService.listTagValues(tagKey, tags, prefix, limit));
+    }
+
     @DeleteMapping("/data")
     @Operation(summary = "删除时间序列数据", description = "删除指定条件的时间序列数据")
     public Result<Boolean> deleteData(
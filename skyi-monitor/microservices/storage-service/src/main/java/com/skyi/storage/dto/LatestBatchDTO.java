@@ -0,0 +1,30 @@
+package com.skyi.storage.dto;
+
+import com.skyi.common.model.LatestValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 批量最新值查询结果DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatestBatchDTO {
+
+    /**
+     * 最新值，与请求顺序一致，没有数据时为null
+     */
+    private List<LatestValue> values;
+    
+    /**
+     * 水位，各在线存储实例最近一次更新最新值表的时间中最早的一个，不表示该时间之前产生的数据都已反映
+     */
+    private Instant watermark;
+}
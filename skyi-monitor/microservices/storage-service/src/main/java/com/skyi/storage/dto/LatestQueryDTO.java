@@ -0,0 +1,36 @@
+package com.skyi.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import java.util.Map;
+
+/**
+ * 最新值查询DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatestQueryDTO {
+
+    /**
+     * 资产ID
+     */
+    @NotBlank(message = "资产ID不能为空")
+    private String assetId;
+    
+    /**
+     * 指标名称
+     */
+    @NotBlank(message = "指标名称不能为空")
+    private String metricName;
+    
+    /**
+     * 标签，为null时查询所有标签组合中最新的值
+     */
+    private Map<String, String> tags;
+}
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.NotBlank;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -49,10 +50,15 @@ public class TimeSeriesQueryDTO {
     private String window;
     
     /**
-     * 查询标签
+     * 查询标签，多个标签同时满足。值支持 value、!=value、=~regex、!~regex 四种写法
      */
     private Map<String, String> tags;
     
+    /**
+     * 标签条件组，满足任一组即可，每组内的标签同时满足且与tags、assetId、metricName一并生效
+     */
+    private List<Map<String, String>> tagGroups;
+    
     /**
      * 分页大小
      */
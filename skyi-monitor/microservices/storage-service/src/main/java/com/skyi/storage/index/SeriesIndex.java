@@ -0,0 +1,341 @@
+package com.skyi.storage.index;
+
+import com.skyi.storage.model.TimeSeriesData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 序列倒排索引
+ * 写入时登记序列(资产ID、指标名称和单位的组合，与InfluxDB中的序列一一对应)，为每个序列分配连续的ID，维护：
+ * <ul>
+ *     <li>标签键 → 标签值 → 序列ID位图(倒排表)</li>
+ *     <li>序列ID → 标签集合</li>
+ * </ul>
+ * 查询时按标签条件在内存中求出精确的序列集合，再下推到InfluxDB，也可以直接回答标签值的自动补全。
+ * 索引只覆盖{@link #getCoveredSince()}到{@link #getCoveredUntil()}之间有数据的序列(由{@link SeriesIndexLoader}从InfluxDB加载和刷新，
+ * 其他实例写入的新序列要到下次刷新才能登记)，序列数超过上限后停止登记并标记为不完整，调用方此时应退回按标签逐条过滤的查询
+ */
+@Slf4j
+@Component
+public class SeriesIndex {
+
+    public static final String TAG_ASSET_ID = "assetId";
+
+    public static final String TAG_METRIC_NAME = "metricName";
+
+    public static final String TAG_UNIT = "unit";
+
+    /**
+     * InfluxDB中作为标签列保存的字段，决定InfluxDB里的序列；附加标签不保存，也不登记到索引中(加载器无法重建)
+     */
+    public static final List<String> STORED_TAGS = List.of(TAG_ASSET_ID, TAG_METRIC_NAME, TAG_UNIT);
+
+    @Value("${storage.index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.index.max-series:1000000}")
+    private int maxSeries;
+
+    /**
+     * 序列标识 → 序列ID，写入路径先查这里，已登记的序列不加锁
+     */
+    private final Map<String, Integer> seriesIds = new ConcurrentHashMap<>();
+
+    private final List<Map<String, String>> seriesTags = new ArrayList<>();
+
+    private final Map<String, Map<String, RoaringBitmap>> postings = new HashMap<>();
+
+    private final RoaringBitmap allSeries = new RoaringBitmap();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean complete = true;
+
+    /**
+     * 索引覆盖的起始时间(毫秒)，加载完成前为Long.MAX_VALUE，即不能用于任何查询
+     */
+    private volatile long coveredSince = Long.MAX_VALUE;
+
+    /**
+     * 索引覆盖的结束时间(毫秒)，即上次从InfluxDB刷新开始的时间，之后其他实例写入的新序列可能还没有登记
+     */
+    private volatile long coveredUntil = Long.MIN_VALUE;
+
+    /**
+     * 登记写入数据所属的序列
+     *
+     * @return 序列ID，索引未启用或已满时返回-1
+     */
+    public int register(TimeSeriesData data) {
+        TreeMap<String, String> tags = new TreeMap<>();
+        putIfPresent(tags, TAG_ASSET_ID, data.getAssetId());
+        putIfPresent(tags, TAG_METRIC_NAME, data.getMetricName());
+        putIfPresent(tags, TAG_UNIT, data.getUnit());
+        return registerSorted(tags);
+    }
+
+    /**
+     * 登记序列
+     *
+     * @param tags 序列的标签，只登记{@link #STORED_TAGS}，值为空的标签视为不存在
+     * @return 序列ID，索引未启用或已满时返回-1
+     */
+    public int register(Map<String, String> tags) {
+        TreeMap<String, String> sorted = new TreeMap<>();
+        STORED_TAGS.forEach(key -> putIfPresent(sorted, key, tags.get(key)));
+        return registerSorted(sorted);
+    }
+
+    private int registerSorted(TreeMap<String, String> tags) {
+        if (!enabled) {
+            return -1;
+        }
+        String seriesKey = seriesKey(tags);
+        Integer id = seriesIds.get(seriesKey);
+        if (id != null) {
+            return id;
+        }
+
+        lock.writeLock().lock();
+        try {
+            id = seriesIds.get(seriesKey);
+            if (id != null) {
+                return id;
+            }
+            if (seriesTags.size() >= maxSeries) {
+                if (complete) {
+                    complete = false;
+                    log.warn("序列数达到索引上限{}，停止登记新序列，查询将退回按标签过滤", maxSeries);
+                }
+                return -1;
+            }
+            id = seriesTags.size();
+            for (Map.Entry<String, String> entry : tags.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>())
+                        .computeIfAbsent(entry.getValue(), value -> new RoaringBitmap())
+                        .add(id);
+            }
+            seriesTags.add(Collections.unmodifiableMap(tags));
+            allSeries.add(id);
+            seriesIds.put(seriesKey, id);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 索引能否列出从指定时间开始有数据的序列
+     * 条件只能使用{@link #STORED_TAGS}；上次刷新之后其他实例写入的新序列可能不在结果中，
+     * 查询范围超过{@link #getCoveredUntil()}时调用方需要另外查询这部分序列
+     *
+     * @param groups 标签条件组
+     */
+    public boolean canSelect(Instant startTime, List<List<TagMatcher>> groups) {
+        if (!enabled || !complete || startTime == null || startTime.toEpochMilli() < coveredSince) {
+            return false;
+        }
+        for (List<TagMatcher> group : groups) {
+            for (TagMatcher matcher : group) {
+                if (!STORED_TAGS.contains(matcher.getKey())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 索引能否精确回答指定时间范围的查询：在{@link #canSelect}的基础上，查询范围在上次刷新之前结束
+     */
+    public boolean canResolve(Instant startTime, Instant endTime, List<List<TagMatcher>> groups) {
+        return endTime != null && endTime.toEpochMilli() <= coveredUntil && canSelect(startTime, groups);
+    }
+
+    /**
+     * 索引能否回答标签值查询
+     */
+    public boolean isReady() {
+        return enabled && complete && coveredSince != Long.MAX_VALUE;
+    }
+
+    /**
+     * 查找同时满足所有条件的序列
+     *
+     * @param matchers 标签条件，为空时返回全部序列
+     */
+    public RoaringBitmap select(List<TagMatcher> matchers) {
+        lock.readLock().lock();
+        try {
+            return selectLocked(matchers);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查找满足任一组条件的序列，组内条件同时满足
+     */
+    public RoaringBitmap selectAny(List<List<TagMatcher>> groups) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = new RoaringBitmap();
+            for (List<TagMatcher> group : groups) {
+                result = RoaringBitmap.or(result, selectLocked(group));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 序列的标签集合
+     */
+    public Map<String, String> tags(int seriesId) {
+        lock.readLock().lock();
+        try {
+            return seriesTags.get(seriesId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 标签值列表(自动补全)
+     *
+     * @param tagKey 标签键
+     * @param within 只返回这些序列上出现过的值，为null时不限
+     * @param prefix 值前缀，为空时不限
+     * @param limit 最多返回的数量，不大于0时不限
+     * @return 按字典序排列的标签值
+     */
+    public List<String> tagValues(String tagKey, RoaringBitmap within, String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<String, RoaringBitmap> values = postings.get(tagKey);
+            if (values == null) {
+                return result;
+            }
+            for (Map.Entry<String, RoaringBitmap> entry : values.entrySet()) {
+                if (prefix != null && !entry.getKey().startsWith(prefix)) {
+                    continue;
+                }
+                if (within != null && RoaringBitmap.and(entry.getValue(), within).isEmpty()) {
+                    continue;
+                }
+                result.add(entry.getKey());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(result);
+        return limit > 0 && result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public int getSeriesCount() {
+        return seriesIds.size();
+    }
+
+    public long getCoveredSince() {
+        return coveredSince;
+    }
+
+    public long getCoveredUntil() {
+        return coveredUntil;
+    }
+
+    /**
+     * 标记索引已覆盖指定时间之后的全部序列，只会向更早的方向推进
+     */
+    public void markCoveredSince(long epochMillis) {
+        if (epochMillis < coveredSince) {
+            coveredSince = epochMillis;
+        }
+    }
+
+    /**
+     * 标记索引已包含指定时间之前有数据的全部序列，只会向更晚的方向推进
+     */
+    public void markCoveredUntil(long epochMillis) {
+        if (epochMillis > coveredUntil) {
+            coveredUntil = epochMillis;
+        }
+    }
+
+    private RoaringBitmap selectLocked(List<TagMatcher> matchers) {
+        RoaringBitmap result = null;
+        // 先算肯定条件缩小范围，再扣除否定条件
+        for (TagMatcher matcher : matchers) {
+            if (!matcher.isNegative()) {
+                RoaringBitmap matched = matchPositive(matcher);
+                result = result == null ? matched : RoaringBitmap.and(result, matched);
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+        }
+        if (result == null) {
+            result = allSeries.copy();
+        }
+        for (TagMatcher matcher : matchers) {
+            if (matcher.isNegative()) {
+                result = RoaringBitmap.andNot(result, matchPositive(matcher));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 去掉否定后条件成立的序列，没有该标签的序列按空字符串参与匹配
+     */
+    private RoaringBitmap matchPositive(TagMatcher matcher) {
+        Map<String, RoaringBitmap> values = postings.getOrDefault(matcher.getKey(), Collections.emptyMap());
+        if (matcher.getType() == TagMatcher.Type.EQ || matcher.getType() == TagMatcher.Type.NEQ) {
+            if (!matcher.getValue().isEmpty()) {
+                RoaringBitmap bitmap = values.get(matcher.getValue());
+                return bitmap == null ? new RoaringBitmap() : bitmap.copy();
+            }
+            return withoutKey(values);
+        }
+        List<RoaringBitmap> matched = new ArrayList<>();
+        for (Map.Entry<String, RoaringBitmap> entry : values.entrySet()) {
+            if (matcher.matchesPositive(entry.getKey())) {
+                matched.add(entry.getValue());
+            }
+        }
+        if (matcher.matchesPositive("")) {
+            matched.add(withoutKey(values));
+        }
+        return RoaringBitmap.or(matched);
+    }
+
+    private RoaringBitmap withoutKey(Map<String, RoaringBitmap> values) {
+        return RoaringBitmap.andNot(allSeries, RoaringBitmap.or(values.values()));
+    }
+
+    private static void putIfPresent(Map<String, String> tags, String key, String value) {
+        if (key != null && value != null && !value.isEmpty()) {
+            tags.put(key, value);
+        }
+    }
+
+    private static String seriesKey(TreeMap<String, String> tags) {
+        StringBuilder key = new StringBuilder();
+        tags.forEach((k, v) -> key.append(k).append('\u0000').append(v).append('\u0001'));
+        return key.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.skyi.storage.index;
+
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 序列索引加载器
+ * 启动后从InfluxDB加载回溯期内出现过的序列，之后定期扫描最近写入的序列，
+ * 补上由其他实例消费写入的序列(Kafka分区分散在多个实例上，每个实例只能在写入时看到自己的那部分)。
+ * 每次扫描成功后把索引的覆盖结束时间推进到扫描开始的时间，查询范围超过该时间时不能只依赖索引
+ */
+@Slf4j
+@Component
+public class SeriesIndexLoader {
+
+    @Value("${influxdb.bucket}")
+    private String bucket;
+
+    @Value("${influxdb.org}")
+    private String organization;
+
+    @Value("${storage.index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.index.bootstrap-lookback:30d}")
+    private Duration bootstrapLookback;
+
+    @Value("${storage.index.refresh-interval-ms:60000}")
+    private long refreshIntervalMs;
+
+    @Autowired
+    private InfluxDBClient influxDBClient;
+
+    @Autowired
+    private SeriesIndex seriesIndex;
+
+    /**
+     * 上次扫描开始的时间，为null表示尚未完成首次加载
+     */
+    private Instant lastScan;
+
+    /**
+     * 首次执行加载回溯期内的全部序列，失败时下次重试；之后只扫描上次扫描以来的序列
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${storage.index.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant start = lastScan == null
+                ? now.minus(bootstrapLookback)
+                : lastScan.minusMillis(refreshIntervalMs);
+        try {
+            int count = scan(start);
+            seriesIndex.markCoveredUntil(now.toEpochMilli());
+            if (lastScan == null) {
+                seriesIndex.markCoveredSince(start.toEpochMilli());
+                log.info("序列索引加载完成: 回溯={}, 加载序列数={}, 索引序列数={}",
+                        bootstrapLookback, count, seriesIndex.getSeriesCount());
+            } else {
+                log.debug("序列索引刷新完成: 扫描序列数={}, 索引序列数={}", count, seriesIndex.getSeriesCount());
+            }
+            lastScan = now;
+        } catch (Exception e) {
+            log.error("从InfluxDB加载序列索引失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 登记从指定时间起有数据的全部序列
+     *
+     * @return 扫描到的序列数
+     */
+    private int scan(Instant start) {
+        // 每个序列是一张表，last()后每张表只剩一行，行上带有全部标签列
+        String fluxQuery = "from(bucket: \"" + bucket + "\") " +
+                "|> range(start: " + start + ") " +
+                "|> filter(fn: (r) => r[\"_measurement\"] == \"metric_data\") " +
+                "|> last()";
+        List<FluxTable> tables = influxDBClient.getQueryApi().query(fluxQuery, organization);
+        int count = 0;
+        for (FluxTable table : tables) {
+            for (FluxRecord record : table.getRecords()) {
+                Map<String, String> tags = new HashMap<>();
+                for (String column : SeriesIndex.STORED_TAGS) {
+                    Object value = record.getValueByKey(column);
+                    if (value != null) {
+                        tags.put(column, value.toString());
+                    }
+                }
+                seriesIndex.register(tags);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,130 @@
+package com.skyi.storage.index;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 标签匹配条件
+ * 查询标签的值支持以下写法：
+ * <pre>
+ * value      等于
+ * !=value    不等于
+ * =~regex    匹配正则表达式(完整匹配)
+ * !~regex    不匹配正则表达式
+ * </pre>
+ * 不带标签的序列按标签值为空字符串处理，例如 "!=prod" 也会匹配没有该标签的序列
+ */
+@Getter
+public final class TagMatcher {
+
+    public enum Type {
+        EQ, NEQ, REGEX, NOT_REGEX
+    }
+
+    private final String key;
+    private final Type type;
+    private final String value;
+    private final Pattern pattern;
+
+    private TagMatcher(String key, Type type, String value) {
+        this.key = key;
+        this.type = type;
+        this.value = value;
+        this.pattern = type == Type.REGEX || type == Type.NOT_REGEX ? Pattern.compile(value) : null;
+    }
+
+    public static TagMatcher eq(String key, String value) {
+        return new TagMatcher(key, Type.EQ, value);
+    }
+
+    public static TagMatcher neq(String key, String value) {
+        return new TagMatcher(key, Type.NEQ, value);
+    }
+
+    public static TagMatcher regex(String key, String regex) {
+        return new TagMatcher(key, Type.REGEX, regex);
+    }
+
+    public static TagMatcher notRegex(String key, String regex) {
+        return new TagMatcher(key, Type.NOT_REGEX, regex);
+    }
+
+    /**
+     * 按查询标签的写法解析匹配条件
+     *
+     * @throws java.util.regex.PatternSyntaxException 正则表达式无效
+     */
+    public static TagMatcher parse(String key, String expression) {
+        String expr = expression == null ? "" : expression;
+        if (expr.startsWith("!=")) {
+            return neq(key, expr.substring(2));
+        }
+        if (expr.startsWith("=~")) {
+            return regex(key, expr.substring(2));
+        }
+        if (expr.startsWith("!~")) {
+            return notRegex(key, expr.substring(2));
+        }
+        return eq(key, expr);
+    }
+
+    /**
+     * 解析一组标签条件，忽略键为空的条目
+     */
+    public static List<TagMatcher> parseAll(Map<String, String> tags) {
+        List<TagMatcher> matchers = new ArrayList<>();
+        if (tags == null) {
+            return matchers;
+        }
+        tags.forEach((key, expression) -> {
+            if (key != null && !key.isEmpty()) {
+                matchers.add(parse(key, expression));
+            }
+        });
+        return matchers;
+    }
+
+    /**
+     * 是否为否定条件(结果需要从全集中扣除)
+     */
+    public boolean isNegative() {
+        return type == Type.NEQ || type == Type.NOT_REGEX;
+    }
+
+    /**
+     * 去掉否定后的条件对标签值是否成立
+     *
+     * @param tagValue 标签值，没有该标签时为空字符串
+     */
+    public boolean matchesPositive(String tagValue) {
+        if (type == Type.EQ || type == Type.NEQ) {
+            return value.equals(tagValue);
+        }
+        return pattern.matcher(tagValue).matches();
+    }
+
+    /**
+     * 条件对标签值是否成立
+     */
+    public boolean matches(String tagValue) {
+        return matchesPositive(tagValue == null ? "" : tagValue) != isNegative();
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case NEQ:
+                return key + "!=" + value;
+            case REGEX:
+                return key + "=~" + value;
+            case NOT_REGEX:
+                return key + "!~" + value;
+            default:
+                return key + "=" + value;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.skyi.storage.latest;
+
+import com.skyi.common.model.LatestValue;
+import com.skyi.storage.model.TimeSeriesData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 最新值表
+ * 写入时按(资产ID, 指标名称, 标签哈希)更新，同时更新该资产指标所有标签组合的最新值(标签哈希为*)，数据时间更新的值才会覆盖。
+ * <ul>
+ *     <li>本地表：本实例消费的数据，读取只需一次哈希查找</li>
+ *     <li>Redis表：各实例写入的汇总(可选)，按批用Lua脚本比较后写入，读取时批量MGET，也供可视化服务直接读取</li>
+ * </ul>
+ * 本地表只包含本实例写入的数据。本实例近期写入过的键直接返回本地值；较久没有写入的键可能已由其他实例
+ * (分区重新分配后)写入更新的值，读取时与Redis表按数据时间取较新的。
+ * 本地表按写入时间过期，并限制键数，超出时新的键只写入Redis。
+ * 水位是各在线实例最近一次更新最新值表的时间中最早的一个，只说明各实例在该时间之后仍在写入，
+ * 不表示该时间之前产生的数据都已反映(Kafka消费可能积压)。
+ * 更新脚本和MGET一次访问多个键，不支持Redis Cluster(键分布在不同槽位时报CROSSSLOT)，需使用单机或哨兵模式
+ */
+@Slf4j
+@Component
+public class LatestValueCache {
+
+    /**
+     * 逐个比较数据时间，不比已有值旧时写入，再更新本实例的水位
+     * KEYS为 最新值键* | 水位键；ARGV为 (数据时间, 编码值)* | 过期秒数 | 实例 | 水位
+     */
+    private static final DefaultRedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>(
+            "local n = #KEYS - 1\n" +
+            "local updated = 0\n" +
+            "for i = 1, n do\n" +
+            "  local current = redis.call('GET', KEYS[i])\n" +
+            "  local t = current and tonumber(string.match(current, '^[^|]+'))\n" +
+            "  if not t or t <= tonumber(ARGV[2 * i - 1]) then\n" +
+            "    redis.call('SET', KEYS[i], ARGV[2 * i], 'EX', ARGV[2 * n + 1])\n" +
+            "    updated = updated + 1\n" +
+            "  end\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[n + 1], ARGV[2 * n + 2], ARGV[2 * n + 3])\n" +
+            "return updated", Long.class);
+
+    /**
+     * 删除时每批SCAN和DEL的键数
+     */
+    private static final int EVICT_BATCH = 500;
+
+    @Value("${storage.latest.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    @Value("${storage.latest.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    /**
+     * 超过该时间没有更新水位的实例视为已下线，不参与水位计算
+     */
+    @Value("${storage.latest.instance-timeout-ms:300000}")
+    private long instanceTimeoutMs;
+
+    /**
+     * 本实例在该时间内写入过的键直接返回本地值，不查询Redis
+     */
+    @Value("${storage.latest.local-fresh-ms:30000}")
+    private long localFreshMs;
+
+    /**
+     * 本地表的键数上限
+     */
+    @Value("${storage.latest.local-max-entries:200000}")
+    private int localMaxEntries;
+
+    /**
+     * 本地表中超过该时间没有写入的键被清除，之后从Redis读取；未启用Redis时按Redis的过期时间清除
+     */
+    @Value("${storage.latest.local-ttl-ms:3600000}")
+    private long localTtlMs;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, LatestValue> localValues = new ConcurrentHashMap<>();
+
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName();
+
+    /**
+     * 本实例最近一次更新最新值表的时间(毫秒)
+     */
+    private volatile long localWatermark;
+
+    /**
+     * 本地表已满时是否已经提示过，避免每批都打印
+     */
+    private volatile boolean localFullWarned;
+
+    /**
+     * 用写入的数据更新最新值表
+     */
+    public void update(List<TimeSeriesData> dataList) {
+        long now = System.currentTimeMillis();
+        // 批内先按键合并，只保留最新的值
+        Map<String, LatestValue> batch = new LinkedHashMap<>();
+        for (TimeSeriesData data : dataList) {
+            if (data.getValue() == null || data.getTime() == null) {
+                continue;
+            }
+            LatestValue value = new LatestValue(data.getTime().toEpochMilli(), data.getValue(), now, data.getUnit());
+            merge(batch, LatestValue.key(data.getAssetId(), data.getMetricName(), data.getTags()), value);
+            merge(batch, LatestValue.anyTagsKey(data.getAssetId(), data.getMetricName()), value);
+        }
+        for (Map.Entry<String, LatestValue> entry : batch.entrySet()) {
+            if (localValues.size() < localMaxEntries || localValues.containsKey(entry.getKey())) {
+                merge(localValues, entry.getKey(), entry.getValue());
+            } else if (!localFullWarned) {
+                localFullWarned = true;
+                log.warn("本地最新值表已达到上限{}，新的键只写入Redis", localMaxEntries);
+            }
+        }
+        localWatermark = now;
+
+        if (redisEnabled && !batch.isEmpty()) {
+            try {
+                List<String> keys = new ArrayList<>(batch.keySet());
+                keys.add(LatestValue.WATERMARK_KEY);
+                List<Object> args = new ArrayList<>(batch.size() * 2 + 3);
+                for (LatestValue value : batch.values()) {
+                    args.add(String.valueOf(value.getTime()));
+                    args.add(value.encode());
+                }
+                args.add(String.valueOf(ttlSeconds));
+                args.add(instanceId);
+                args.add(String.valueOf(now));
+                stringRedisTemplate.execute(UPDATE_SCRIPT, keys, args.toArray());
+            } catch (Exception e) {
+                log.warn("更新Redis最新值表失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 批量读取最新值：本实例近期写入过的键直接用本地值，其余的键一次MGET查询Redis，
+     * 本地也有时取数据时间较新的；Redis不可用时只用本地表
+     *
+     * @param keys 键，见{@link LatestValue#key}
+     * @return 键 → 最新值，未命中的键不在结果中
+     */
+    public Map<String, LatestValue> multiGet(List<String> keys) {
+        Map<String, LatestValue> result = new HashMap<>();
+        long freshSince = System.currentTimeMillis() - localFreshMs;
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : keys) {
+            LatestValue value = localValues.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+            if (value == null || value.getUpdatedAt() < freshSince) {
+                remoteKeys.add(key);
+            }
+        }
+        if (!redisEnabled || remoteKeys.isEmpty()) {
+            return result;
+        }
+        try {
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(remoteKeys);
+            for (int i = 0; values != null && i < remoteKeys.size(); i++) {
+                LatestValue value = LatestValue.decode(values.get(i));
+                if (value != null) {
+                    merge(result, remoteKeys.get(i), value);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis最新值表失败: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 最新值表的水位(毫秒)：各实例最近一次更新最新值表的时间，不表示该时间之前产生的数据都已反映
+     * 启用Redis时取各在线实例中最早的水位，否则为本实例的水位；从未更新过时为0
+     */
+    public long watermark() {
+        if (!redisEnabled) {
+            return localWatermark;
+        }
+        try {
+            Map<Object, Object> watermarks = stringRedisTemplate.opsForHash().entries(LatestValue.WATERMARK_KEY);
+            long now = System.currentTimeMillis();
+            long watermark = Long.MAX_VALUE;
+            for (Object value : watermarks.values()) {
+                long instanceWatermark = Long.parseLong(value.toString());
+                if (now - instanceWatermark <= instanceTimeoutMs) {
+                    watermark = Math.min(watermark, instanceWatermark);
+                }
+            }
+            return watermark == Long.MAX_VALUE ? localWatermark : watermark;
+        } catch (Exception e) {
+            log.warn("读取Redis最新值水位失败: {}", e.getMessage());
+            return localWatermark;
+        }
+    }
+
+    /**
+     * 丢弃资产指标的最新值(数据被删除时调用)，资产ID或指标名称为空时表示不限
+     */
+    public void evict(String assetId, String metricName) {
+        boolean exact = StringUtils.hasText(assetId) && StringUtils.hasText(metricName);
+        if (exact) {
+            String prefix = LatestValue.KEY_PREFIX + assetId + ":" + metricName + ":";
+            localValues.keySet().removeIf(key -> key.startsWith(prefix));
+        } else {
+            localValues.clear();
+        }
+        if (redisEnabled) {
+            String pattern = LatestValue.KEY_PREFIX + (StringUtils.hasText(assetId) ? escapeGlob(assetId) : "*") + ":"
+                    + (StringUtils.hasText(metricName) ? escapeGlob(metricName) : "*") + ":*";
+            // 用SCAN分批遍历，避免KEYS在键很多时阻塞Redis
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(EVICT_BATCH).build();
+            try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+                List<String> keys = new ArrayList<>(EVICT_BATCH);
+                while (cursor.hasNext()) {
+                    keys.add(cursor.next());
+                    if (keys.size() >= EVICT_BATCH) {
+                        stringRedisTemplate.delete(keys);
+                        keys.clear();
+                    }
+                }
+                if (!keys.isEmpty()) {
+                    stringRedisTemplate.delete(keys);
+                }
+            } catch (Exception e) {
+                log.warn("删除Redis最新值失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 清除本地表中较久没有写入的键
+     */
+    @Scheduled(fixedDelayString = "${storage.latest.local-purge-interval-ms:60000}")
+    public void purgeLocal() {
+        long expireBefore = System.currentTimeMillis() - (redisEnabled ? localTtlMs : ttlSeconds * 1000);
+        int before = localValues.size();
+        localValues.values().removeIf(value -> value.getUpdatedAt() < expireBefore);
+        int purged = before - localValues.size();
+        if (purged > 0) {
+            localFullWarned = false;
+            log.debug("清除过期的本地最新值: {}", purged);
+        }
+    }
+
+    /**
+     * 清空本地表(分区重新分配时调用，已不归本实例消费的序列在本地表中不会再更新)
+     */
+    public void clearLocal() {
+        localValues.clear();
+    }
+
+    /**
+     * 转义Redis匹配模式中的特殊字符
+     */
+    private static String escapeGlob(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * 按数据时间合并，数据时间相同时以后到的值为准，与更新脚本的比较规则一致
+     */
+    static void merge(Map<String, LatestValue> values, String key, LatestValue value) {
+        values.merge(key, value, (current, candidate) -> candidate.getTime() >= current.getTime() ? candidate : current);
+    }
+}
@@ -0,0 +1,49 @@
+package com.skyi.storage.listener;
+
+import com.skyi.storage.latest.LatestValueCache;
+import com.skyi.storage.window.HotWindowBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * 分区重新分配监听器
+ * 热数据窗口和本地最新值表只包含本实例消费的分区中的数据，分区被回收或丢失后这些序列不再更新，
+ * 无法区分具体是哪些序列，因此整体清空
+ */
+@Slf4j
+@Component
+public class PartitionRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    @Autowired
+    private HotWindowBuffer hotWindowBuffer;
+
+    @Autowired
+    private LatestValueCache latestValueCache;
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!partitions.isEmpty()) {
+            log.info("分区被回收，清空热数据窗口和本地最新值表: {}", partitions);
+            clear();
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!partitions.isEmpty()) {
+            log.info("分区丢失，清空热数据窗口和本地最新值表: {}", partitions);
+            clear();
+        }
+    }
+
+    private void clear() {
+        hotWindowBuffer.clear();
+        latestValueCache.clearLocal();
+    }
+}
@@ -28,6 +28,7 @@ public class TimeSeriesDataListener {
      * 处理单条时间序列数据
      *
      * @param data     数据
+     * @param key      记录键
      * @param topic    主题
      * @param partition 分区
      * @param offset   偏移量
@@ -36,6 +37,7 @@ public class TimeSeriesDataListener {
     @KafkaListener(topics = KafkaTopicConstants.TOPIC_TIMESERIES_DATA)
     public void handleTimeSeriesData(
             @Payload TimeSeriesDataDTO data,
+            @Header(value = KafkaHeaders.RECEIVED_MESSAGE_KEY, required = false) String key,
             @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
             @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
@@ -45,7 +47,7 @@ public class TimeSeriesDataListener {
                 topic, partition, offset, data);
         
         try {
-            boolean result = timeSeriesService.saveData(data);
+            boolean result = timeSeriesService.saveData(data, key);
             if (result) {
                 log.info("时间序列数据保存成功");
                 ack.acknowledge();
@@ -69,6 +71,7 @@ public class TimeSeriesDataListener {
      * 处理批量时间序列数据
      *
      * @param dataList  数据列表
+     * @param key       记录键
      * @param topic     主题
      * @param partition 分区
      * @param offset    偏移量
@@ -77,6 +80,7 @@ public class TimeSeriesDataListener {
     @KafkaListener(topics = KafkaTopicConstants.TOPIC_TIMESERIES_BATCH)
     public void handleTimeSeriesBatch(
             @Payload List<TimeSeriesDataDTO> dataList,
+            @Header(value = KafkaHeaders.RECEIVED_MESSAGE_KEY, required = false) String key,
             @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
             @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
@@ -86,7 +90,7 @@ public class TimeSeriesDataListener {
                 topic, partition, offset, dataList.size());
         
         try {
-            boolean result = timeSeriesService.saveBatchData(dataList);
+            boolean result = timeSeriesService.saveBatchData(dataList, key);
             if (result) {
                 log.info("批量时间序列数据保存成功");
                 ack.acknowledge();
@@ -1,10 +1,13 @@
 package com.skyi.storage.service;
 
+import com.skyi.storage.dto.LatestBatchDTO;
+import com.skyi.storage.dto.LatestQueryDTO;
 import com.skyi.storage.dto.TimeSeriesDataDTO;
 import com.skyi.storage.dto.TimeSeriesQueryDTO;
 import com.skyi.storage.model.TimeSeriesData;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 时间序列服务接口
@@ -19,6 +22,15 @@ public interface TimeSeriesService {
      */
     boolean saveData(TimeSeriesDataDTO dataDTO);
 
+    /**
+     * 保存从Kafka消费的单条时间序列数据
+     *
+     * @param dataDTO 时间序列数据DTO
+     * @param recordKey Kafka记录键，没有时为null
+     * @return 是否保存成功
+     */
+    boolean saveData(TimeSeriesDataDTO dataDTO, String recordKey);
+
     /**
      * 批量保存时间序列数据
      *
@@ -27,6 +39,15 @@ public interface TimeSeriesService {
      */
     boolean saveBatchData(List<TimeSeriesDataDTO> dataDTOList);
 
+    /**
+     * 批量保存从Kafka消费的时间序列数据
+     *
+     * @param dataDTOList 时间序列数据DTO列表
+     * @param recordKey Kafka记录键，没有时为null
+     * @return 是否保存成功
+     */
+    boolean saveBatchData(List<TimeSeriesDataDTO> dataDTOList, String recordKey);
+
     /**
      * 查询时间序列数据
      *
@@ -55,6 +76,14 @@ public interface TimeSeriesService {
      */
     TimeSeriesData queryLatestData(String assetId, String metricName);
 
+    /**
+     * 批量查询最新值
+     *
+     * @param queries 查询条件列表
+     * @return 与查询顺序一致的最新值及水位
+     */
+    LatestBatchDTO queryLatestBatch(List<LatestQueryDTO> queries);
+
     /**
      * 根据指标名称分组统计数据
      *
@@ -62,4 +91,15 @@ public interface TimeSeriesService {
      * @return 分组统计结果
      */
     List<Object> groupByMetric(TimeSeriesQueryDTO queryDTO);
-} 
\ No newline at end of file
+
+    /**
+     * 查询标签值列表(用于自动补全)
+     *
+     * @param tagKey 标签键
+     * @param tags   限定条件，只返回满足条件的序列上出现过的值，写法同查询标签
+     * @param prefix 值前缀，为空时不限
+     * @param limit  最多返回的数量，不大于0时不限
+     * @return 按字典序排列的标签值
+     */
+    List<String> listTagValues(String tagKey, Map<String, String> tags, String prefix, int limit);
+}
@@ -6,9 +6,20 @@ import com.influxdb.client.WriteApi;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
+import com.skyi.common.model.LatestValue;
+import com.skyi.storage.constant.KafkaTopicConstants;
+import com.skyi.storage.dto.LatestBatchDTO;
+import com.skyi.storage.dto.LatestQueryDTO;
 import com.skyi.storage.dto.TimeSeriesDataDTO;
 import com.skyi.storage.dto.TimeSeriesQueryDTO;
+import com.skyi.storage.index.RoaringBitmap;
+import com.skyi.storage.index.SeriesIndex;
+import com.skyi.storage.index.TagMatcher;
+import com.skyi.storage.latest.LatestValueCache;
+import com.skyi.storage.window.HotWindowBuffer;
+import com.skyi.storage.window.WindowPoints;
 import com.skyi.storage.model.TimeSeriesData;
+import com.skyi.storage.service.MessageService;
 import com.skyi.storage.service.TimeSeriesService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -17,12 +28,23 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * 时间序列服务实现
@@ -31,6 +53,11 @@ import java.util.stream.Collectors;
 @Service
 public class TimeSeriesServiceImpl implements TimeSeriesService {
 
+    /**
+     * Flux时长字面量的一个单位段，如1h30m中的1h
+     */
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+)(ns|us|ms|s|m|h|d|w)");
+
     @Value("${influxdb.bucket}")
     private String bucket;
 
@@ -43,11 +70,42 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
     @Autowired
     private WriteApi writeApi;
 
+    @Autowired
+    private SeriesIndex seriesIndex;
+
+    @Autowired
+    private HotWindowBuffer hotWindowBuffer;
+
+    @Autowired
+    private LatestValueCache latestValueCache;
+
+    @Autowired
+    private MessageService messageService;
+
+    /**
+     * 下推到InfluxDB的序列数上限，超过时退回按标签条件过滤
+     */
+    @Value("${storage.index.max-pushdown-series:200}")
+    private int maxPushdownSeries;
+
+    @Value("${storage.index.bootstrap-lookback:30d}")
+    private Duration indexLookback;
+
     @Override
     public boolean saveData(TimeSeriesDataDTO dataDTO) {
+        return saveData(dataDTO, null);
+    }
+
+    @Override
+    public boolean saveData(TimeSeriesDataDTO dataDTO, String recordKey) {
         try {
+            if (hotWindowBuffer.isEnabled() && !isOwned(dataDTO, recordKey)) {
+                return forwardToOwners(Collections.singletonList(dataDTO));
+            }
             TimeSeriesData data = convertToEntity(dataDTO);
             writeApi.writeMeasurement(WritePrecision.NS, data);
+            appendHotWindow(data);
+            latestValueCache.update(Collections.singletonList(data));
             return true;
         } catch (Exception e) {
             log.error("保存时间序列数据失败", e);
@@ -57,11 +115,35 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
 
     @Override
     public boolean saveBatchData(List<TimeSeriesDataDTO> dataDTOList) {
+        return saveBatchData(dataDTOList, null);
+    }
+
+    @Override
+    public boolean saveBatchData(List<TimeSeriesDataDTO> dataDTOList, String recordKey) {
         try {
-            List<TimeSeriesData> dataList = dataDTOList.stream()
+            List<TimeSeriesDataDTO> owned = dataDTOList;
+            if (hotWindowBuffer.isEnabled()) {
+                owned = new ArrayList<>(dataDTOList.size());
+                List<TimeSeriesDataDTO> foreign = new ArrayList<>();
+                for (TimeSeriesDataDTO dataDTO : dataDTOList) {
+                    (isOwned(dataDTO, recordKey) ? owned : foreign).add(dataDTO);
+                }
+                // 转发失败时整批返回失败，由调用方或Kafka重新投递，已写入的部分重复写入不影响结果
+                if (!foreign.isEmpty() && !forwardToOwners(foreign)) {
+                    return false;
+                }
+                if (owned.isEmpty()) {
+                    return true;
+                }
+            }
+            List<TimeSeriesData> dataList = owned.stream()
                     .map(this::convertToEntity)
                     .collect(Collectors.toList());
             writeApi.writeMeasurements(WritePrecision.NS, dataList);
+            for (TimeSeriesData data : dataList) {
+                appendHotWindow(data);
+            }
+            latestValueCache.update(dataList);
             return true;
         } catch (Exception e) {
             log.error("批量保存时间序列数据失败", e);
@@ -72,6 +154,29 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
     @Override
     public List<TimeSeriesData> queryData(TimeSeriesQueryDTO queryDTO) {
         try {
+            // 查询范围完全在热数据窗口内的序列直接读取，其余序列再查询InfluxDB
+            List<TimeSeriesData> resultList = new ArrayList<>();
+            String seriesFilter;
+            Set<List<String>> served = new LinkedHashSet<>();
+            Set<List<String>> remaining = readHotWindow(queryDTO, resultList, served);
+            List<List<TagMatcher>> groups = matcherGroups(queryDTO);
+            if (remaining == null) {
+                seriesFilter = buildSeriesFilter(queryDTO);
+            } else if (seriesIndex.canResolve(rangeStart(queryDTO), rangeEnd(queryDTO), groups)) {
+                if (remaining.isEmpty()) {
+                    return resultList;
+                }
+                seriesFilter = seriesPredicate(remaining);
+            } else {
+                // 查询范围超过索引上次刷新的时间，其他实例写入的新序列可能还没有登记：
+                // 按标签条件查询InfluxDB，排除已从窗口读取的序列
+                seriesFilter = tagFilter(groups) + excludeSeries(served);
+            }
+            if (seriesFilter == null) {
+                log.debug("序列索引中没有满足条件的序列: {}", queryDTO);
+                return resultList;
+            }
+
             StringBuilder fluxQuery = new StringBuilder();
             fluxQuery.append("from(bucket: \"").append(bucket).append("\") ");
             
@@ -88,22 +193,8 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
             // 添加measurement过滤
             fluxQuery.append("|> filter(fn: (r) => r[\"_measurement\"] == \"metric_data\") ");
             
-            // 添加资产ID过滤
-            if (StringUtils.hasText(queryDTO.getAssetId())) {
-                fluxQuery.append("|> filter(fn: (r) => r[\"assetId\"] == \"").append(queryDTO.getAssetId()).append("\") ");
-            }
-            
-            // 添加指标名称过滤
-            if (StringUtils.hasText(queryDTO.getMetricName())) {
-                fluxQuery.append("|> filter(fn: (r) => r[\"metricName\"] == \"").append(queryDTO.getMetricName()).append("\") ");
-            }
-            
-            // 添加标签过滤
-            if (queryDTO.getTags() != null && !queryDTO.getTags().isEmpty()) {
-                for (Map.Entry<String, String> entry : queryDTO.getTags().entrySet()) {
-                    fluxQuery.append("|> filter(fn: (r) => r[\"").append(entry.getKey()).append("\"] == \"").append(entry.getValue()).append("\") ");
-                }
-            }
+            // 添加序列过滤(资产ID、指标名称和标签)
+            fluxQuery.append(seriesFilter);
             
             // 添加聚合函数
             if (StringUtils.hasText(queryDTO.getAggregateFunction()) && StringUtils.hasText(queryDTO.getWindow())) {
@@ -127,7 +218,6 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
             QueryApi queryApi = influxDBClient.getQueryApi();
             List<FluxTable> tables = queryApi.query(fluxQuery.toString(), organization);
             
-            List<TimeSeriesData> resultList = new ArrayList<>();
             for (FluxTable table : tables) {
                 for (FluxRecord record : table.getRecords()) {
                     TimeSeriesData data = new TimeSeriesData();
@@ -182,6 +272,17 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
             QueryApi queryApi = influxDBClient.getQueryApi();
             queryApi.query(fluxQuery.toString(), organization);
             
+            // 热数据窗口中只有索引登记过的序列，按条件丢弃对应的缓冲数据
+            List<TagMatcher> matchers = new ArrayList<>();
+            if (StringUtils.hasText(assetId)) {
+                matchers.add(TagMatcher.eq(SeriesIndex.TAG_ASSET_ID, assetId));
+            }
+            if (StringUtils.hasText(metricName)) {
+                matchers.add(TagMatcher.eq(SeriesIndex.TAG_METRIC_NAME, metricName));
+            }
+            seriesIndex.select(matchers).forEach(hotWindowBuffer::remove);
+            latestValueCache.evict(assetId, metricName);
+            
             return true;
         } catch (Exception e) {
             log.error("删除时间序列数据失败", e);
@@ -192,6 +293,22 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
     @Override
     public TimeSeriesData queryLatestData(String assetId, String metricName) {
         try {
+            // 资产和指标都指定时先查最新值表
+            if (StringUtils.hasText(assetId) && StringUtils.hasText(metricName)) {
+                String key = LatestValue.anyTagsKey(assetId, metricName);
+                LatestValue latest = latestValueCache.multiGet(Collections.singletonList(key)).get(key);
+                if (latest != null && latest.getTime() >= latestLookbackStart()) {
+                    TimeSeriesData data = new TimeSeriesData();
+                    data.setTime(Instant.ofEpochMilli(latest.getTime()));
+                    data.setAssetId(assetId);
+                    data.setMetricName(metricName);
+                    data.setValue(latest.getValue());
+                    data.setUnit(latest.getUnit());
+                    data.setTags(new HashMap<>());
+                    return data;
+                }
+            }
+            
             StringBuilder fluxQuery = new StringBuilder();
             fluxQuery.append("from(bucket: \"").append(bucket).append("\") ");
             fluxQuery.append("|> range(start: -1h) "); // 查询最近1小时的数据
@@ -241,6 +358,47 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
         }
     }
 
+    @Override
+    public LatestBatchDTO queryLatestBatch(List<LatestQueryDTO> queries) {
+        // 先取水位，读取的值不早于各实例此时已写入的值
+        long watermark = latestValueCache.watermark();
+        List<String> keys = queries.stream()
+                .map(query -> query.getTags() == null
+                        ? LatestValue.anyTagsKey(query.getAssetId(), query.getMetricName())
+                        : LatestValue.key(query.getAssetId(), query.getMetricName(), query.getTags()))
+                .collect(Collectors.toList());
+        Map<String, LatestValue> cached = latestValueCache.multiGet(keys);
+        
+        long lookbackStart = latestLookbackStart();
+        List<LatestValue> values = new ArrayList<>(queries.size());
+        Set<List<String>> misses = new LinkedHashSet<>();
+        for (int i = 0; i < queries.size(); i++) {
+            LatestValue value = cached.get(keys.get(i));
+            if (value != null && value.getTime() < lookbackStart) {
+                value = null;
+            }
+            values.add(value);
+            if (value == null) {
+                misses.add(Arrays.asList(queries.get(i).getAssetId(), queries.get(i).getMetricName()));
+            }
+        }
+        
+        // 未命中的资产指标合并为一次InfluxDB查询；附加标签不保存在InfluxDB中，按资产指标取最新值
+        if (!misses.isEmpty()) {
+            Map<List<String>, LatestValue> fallback = queryLatestFromInflux(misses);
+            for (int i = 0; i < queries.size(); i++) {
+                if (values.get(i) == null) {
+                    values.set(i, fallback.get(Arrays.asList(queries.get(i).getAssetId(), queries.get(i).getMetricName())));
+                }
+            }
+        }
+        
+        return LatestBatchDTO.builder()
+                .values(values)
+                .watermark(Instant.ofEpochMilli(watermark))
+                .build();
+    }
+
     @Override
     public List<Object> groupByMetric(TimeSeriesQueryDTO queryDTO) {
         try {
@@ -260,22 +418,13 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
             // 添加measurement过滤
             fluxQuery.append("|> filter(fn: (r) => r[\"_measurement\"] == \"metric_data\") ");
             
-            // 添加资产ID过滤
-            if (StringUtils.hasText(queryDTO.getAssetId())) {
-                fluxQuery.append("|> filter(fn: (r) => r[\"assetId\"] == \"").append(queryDTO.getAssetId()).append("\") ");
-            }
-            
-            // 添加指标名称过滤
-            if (StringUtils.hasText(queryDTO.getMetricName())) {
-                fluxQuery.append("|> filter(fn: (r) => r[\"metricName\"] == \"").append(queryDTO.getMetricName()).append("\") ");
-            }
-            
-            // 添加标签过滤
-            if (queryDTO.getTags() != null && !queryDTO.getTags().isEmpty()) {
-                for (Map.Entry<String, String> entry : queryDTO.getTags().entrySet()) {
-                    fluxQuery.append("|> filter(fn: (r) => r[\"").append(entry.getKey()).append("\"] == \"").append(entry.getValue()).append("\") ");
-                }
+            // 添加序列过滤(资产ID、指标名称和标签)
+            String seriesFilter = buildSeriesFilter(queryDTO);
+            if (seriesFilter == null) {
+                log.debug("序列索引中没有满足条件的序列: {}", queryDTO);
+                return new ArrayList<>();
             }
+            fluxQuery.append(seriesFilter);
             
             // 按指标名称分组
             fluxQuery.append("|> group(columns: [\"metricName\"]) ");
@@ -325,6 +474,489 @@ public class TimeSeriesServiceImpl implements TimeSeriesService {
         }
     }
 
+    @Override
+    public List<String> listTagValues(String tagKey, Map<String, String> tags, String prefix, int limit) {
+        try {
+            List<TagMatcher> matchers = TagMatcher.parseAll(tags);
+            if (seriesIndex.isReady() && SeriesIndex.STORED_TAGS.contains(tagKey)
+                    && matchers.stream().allMatch(matcher -> SeriesIndex.STORED_TAGS.contains(matcher.getKey()))) {
+                return seriesIndex.tagValues(tagKey, matchers.isEmpty() ? null : seriesIndex.select(matchers),
+                        prefix, limit);
+            }
+
+            // 索引尚未加载完成或查询附加标签时查询InfluxDB
+            StringBuilder fluxQuery = new StringBuilder();
+            fluxQuery.append("import \"influxdata/influxdb/schema\" ");
+            fluxQuery.append("schema.tagValues(bucket: \"").append(bucket).append("\", ");
+            fluxQuery.append("tag: \"").append(escape(tagKey)).append("\", ");
+            fluxQuery.append("predicate: (r) => r[\"_measurement\"] == \"metric_data\"");
+            for (TagMatcher matcher : matchers) {
+                fluxQuery.append(" and ").append(matcherPredicate(matcher));
+            }
+            fluxQuery.append(", start: ").append(Instant.now().minus(indexLookback)).append(")");
+
+            List<String> values = new ArrayList<>();
+            for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery.toString(), organization)) {
+                for (FluxRecord record : table.getRecords()) {
+                    String value = String.valueOf(record.getValue());
+                    if (!StringUtils.hasText(prefix) || value.startsWith(prefix)) {
+                        values.add(value);
+                    }
+                }
+            }
+            values.sort(null);
+            return limit > 0 && values.size() > limit ? new ArrayList<>(values.subList(0, limit)) : values;
+        } catch (Exception e) {
+            log.error("查询标签值失败: tagKey={}", tagKey, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 构建序列过滤语句
+     * 索引覆盖查询的时间范围(查询在索引上次刷新之前结束)时，先在内存中求出满足条件的序列，再按序列的标签列生成一条过滤语句；
+     * 否则(索引未加载完成、已满、范围可能包含未登记的新序列、条件含附加标签或序列过多)把标签条件直接翻译为过滤表达式
+     *
+     * @return 过滤语句，没有条件时为空字符串，索引确定没有满足条件的序列时返回null
+     */
+    private String buildSeriesFilter(TimeSeriesQueryDTO queryDTO) {
+        List<List<TagMatcher>> groups = matcherGroups(queryDTO);
+        if (groups.stream().anyMatch(List::isEmpty)) {
+            return "";
+        }
+
+        if (seriesIndex.canResolve(rangeStart(queryDTO), rangeEnd(queryDTO), groups)) {
+            Set<List<String>> series = new LinkedHashSet<>();
+            for (int id : seriesIndex.selectAny(groups).toArray()) {
+                series.add(storedSeries(seriesIndex.tags(id)));
+                if (series.size() > maxPushdownSeries) {
+                    break;
+                }
+            }
+            if (series.isEmpty()) {
+                return null;
+            }
+            if (series.size() <= maxPushdownSeries) {
+                return seriesPredicate(series);
+            }
+        }
+        return tagFilter(groups);
+    }
+
+    /**
+     * 把标签条件直接翻译为过滤语句，没有条件时为空字符串
+     */
+    private static String tagFilter(List<List<TagMatcher>> groups) {
+        if (groups.stream().anyMatch(List::isEmpty)) {
+            return "";
+        }
+        List<String> predicates = new ArrayList<>();
+        for (List<TagMatcher> group : groups) {
+            List<String> conditions = new ArrayList<>();
+            for (TagMatcher matcher : group) {
+                conditions.add(matcherPredicate(matcher));
+            }
+            predicates.add("(" + String.join(" and ", conditions) + ")");
+        }
+        return "|> filter(fn: (r) => " + String.join(" or ", predicates) + ") ";
+    }
+
+    /**
+     * 从InfluxDB查询资产指标的最新值，按下推序列数上限分批
+     *
+     * @param pairs (资产ID, 指标名称)
+     * @return (资产ID, 指标名称) → 最新值，查询失败或没有数据的不在结果中
+     */
+    private Map<List<String>, LatestValue> queryLatestFromInflux(Collection<List<String>> pairs) {
+        Map<List<String>, LatestValue> result = new HashMap<>();
+        List<List<String>> pending = new ArrayList<>(pairs);
+        long now = System.currentTimeMillis();
+        for (int from = 0; from < pending.size(); from += maxPushdownSeries) {
+            List<String> predicates = new ArrayList<>();
+            for (List<String> pair : pending.subList(from, Math.min(from + maxPushdownSeries, pending.size()))) {
+                predicates.add("(r[\"" + SeriesIndex.TAG_ASSET_ID + "\"] == \"" + escape(pair.get(0)) + "\" and r[\""
+                        + SeriesIndex.TAG_METRIC_NAME + "\"] == \"" + escape(pair.get(1)) + "\")");
+            }
+            try {
+                StringBuilder fluxQuery = new StringBuilder();
+                fluxQuery.append("from(bucket: \"").append(bucket).append("\") ");
+                fluxQuery.append("|> range(start: -1h) ");
+                fluxQuery.append("|> filter(fn: (r) => r[\"_measurement\"] == \"metric_data\") ");
+                fluxQuery.append("|> filter(fn: (r) => ").append(String.join(" or ", predicates)).append(") ");
+                fluxQuery.append("|> last()");
+                
+                QueryApi queryApi = influxDBClient.getQueryApi();
+                List<FluxTable> tables = queryApi.query(fluxQuery.toString(), organization);
+                for (FluxTable table : tables) {
+                    for (FluxRecord record : table.getRecords()) {
+                        if (record.getTime() == null || !(record.getValue() instanceof Number)) {
+                            continue;
+                        }
+                        Object unit = record.getValueByKey(SeriesIndex.TAG_UNIT);
+                        LatestValue value = new LatestValue(record.getTime().toEpochMilli(),
+                                ((Number) record.getValue()).doubleValue(), now, unit == null ? null : unit.toString());
+                        // 一个资产指标可能有多个序列(单位不同)，取最新的
+                        result.merge(Arrays.asList(String.valueOf(record.getValueByKey(SeriesIndex.TAG_ASSET_ID)),
+                                        String.valueOf(record.getValueByKey(SeriesIndex.TAG_METRIC_NAME))), value,
+                                (current, candidate) -> candidate.getTime() > current.getTime() ? candidate : current);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("查询最新时间序列数据失败", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 登记序列并写入热数据窗口
+     */
+    private void appendHotWindow(TimeSeriesData data) {
+        int seriesId = seriesIndex.register(data);
+        hotWindowBuffer.append(seriesId, data);
+    }
+
+    /**
+     * 数据是否由本实例负责写入：热数据窗口要求一个序列的全部数据由同一实例消费，
+     * 只有记录键与序列对应的Kafka消息才能保证这一点
+     *
+     * @param recordKey Kafka记录键，REST写入时为null
+     */
+    private static boolean isOwned(TimeSeriesDataDTO dataDTO, String recordKey) {
+        return HotWindowBuffer.affinityKey(dataDTO.getAssetId(), dataDTO.getMetricName()).equals(recordKey);
+    }
+
+    /**
+     * 将REST写入、无键或键不匹配的数据按序列键重新发送到批量主题，由消费该序列分区的实例写入存储和热数据窗口
+     *
+     * @return 是否全部发送成功
+     */
+    private boolean forwardToOwners(List<TimeSeriesDataDTO> dataDTOList) {
+        Map<String, List<TimeSeriesDataDTO>> bySeries = new LinkedHashMap<>();
+        for (TimeSeriesDataDTO dataDTO : dataDTOList) {
+            if (dataDTO.getTime() == null) {
+                // 转发前确定时间，与直接写入时以接收时间为准一致
+                dataDTO.setTime(Instant.now());
+            }
+            bySeries.computeIfAbsent(HotWindowBuffer.affinityKey(dataDTO.getAssetId(), dataDTO.getMetricName()),
+                    k -> new ArrayList<>()).add(dataDTO);
+        }
+        boolean success = true;
+        for (Map.Entry<String, List<TimeSeriesDataDTO>> entry : bySeries.entrySet()) {
+            success &= messageService.sendMessage(KafkaTopicConstants.TOPIC_TIMESERIES_BATCH, entry.getKey(), entry.getValue());
+        }
+        log.debug("按序列键转发时间序列数据: 数据点={}, 序列={}, 成功={}", dataDTOList.size(), bySeries.size(), success);
+        return success;
+    }
+
+    /**
+     * 最新值的回溯起点(毫秒)，与Flux查询一致取最近1小时
+     */
+    private static long latestLookbackStart() {
+        return System.currentTimeMillis() - Duration.ofHours(1).toMillis();
+    }
+
+    /**
+     * 按InfluxDB中的序列(保存的标签列取值)生成过滤语句
+     */
+    private static String seriesPredicate(Collection<List<String>> series) {
+        return "|> filter(fn: (r) => " + seriesCondition(series) + ") ";
+    }
+
+    /**
+     * 排除指定InfluxDB序列的过滤语句，没有序列时为空字符串
+     */
+    private static String excludeSeries(Collection<List<String>> series) {
+        return series.isEmpty() ? "" : "|> filter(fn: (r) => not (" + seriesCondition(series) + ")) ";
+    }
+
+    private static String seriesCondition(Collection<List<String>> series) {
+        List<String> predicates = new ArrayList<>();
+        for (List<String> values : series) {
+            List<String> conditions = new ArrayList<>();
+            for (int i = 0; i < SeriesIndex.STORED_TAGS.size(); i++) {
+                String column = "r[\"" + SeriesIndex.STORED_TAGS.get(i) + "\"]";
+                conditions.add(values.get(i) == null
+                        ? "not exists " + column
+                        : column + " == \"" + escape(values.get(i)) + "\"");
+            }
+            predicates.add("(" + String.join(" and ", conditions) + ")");
+        }
+        return String.join(" or ", predicates);
+    }
+
+    /**
+     * 索引序列对应的InfluxDB序列(保存的标签列取值)
+     */
+    private static List<String> storedSeries(Map<String, String> tags) {
+        return Arrays.asList(tags.get(SeriesIndex.TAG_ASSET_ID), tags.get(SeriesIndex.TAG_METRIC_NAME),
+                tags.get(SeriesIndex.TAG_UNIT));
+    }
+
+    /**
+     * 查询的开始时间，未指定时与Flux查询一致取最近1小时
+     */
+    private static Instant rangeStart(TimeSeriesQueryDTO queryDTO) {
+        return queryDTO.getStartTime() != null
+                ? queryDTO.getStartTime()
+                : Instant.now().minus(1, ChronoUnit.HOURS);
+    }
+
+    /**
+     * 查询的结束时间，未指定时为当前时间
+     */
+    private static Instant rangeEnd(TimeSeriesQueryDTO queryDTO) {
+        return queryDTO.getEndTime() != null ? queryDTO.getEndTime() : Instant.now();
+    }
+
+    /**
+     * 从热数据窗口读取查询结果
+     * 以InfluxDB序列为单位判断：对应的索引序列都被窗口完整覆盖时从窗口读取，否则整个交给InfluxDB，避免结果重复
+     *
+     * @param resultList 窗口中读到的结果
+     * @param served 已从窗口读取的InfluxDB序列
+     * @return 索引中仍需查询InfluxDB的序列；窗口无法使用(未启用、索引不能列出序列、查询方式不支持或序列过多)时返回null
+     */
+    private Set<List<String>> readHotWindow(TimeSeriesQueryDTO queryDTO, List<TimeSeriesData> resultList,
+                                            Set<List<String>> served) {
+        if (!hotWindowBuffer.isEnabled()) {
+            return null;
+        }
+        String orderBy = queryDTO.getOrderBy();
+        if (StringUtils.hasText(orderBy) && !"time".equals(orderBy) && !"_time".equals(orderBy)
+                && !"value".equals(orderBy) && !"_value".equals(orderBy)) {
+            return null;
+        }
+        boolean aggregate = StringUtils.hasText(queryDTO.getAggregateFunction()) && StringUtils.hasText(queryDTO.getWindow());
+        long windowNanos = aggregate ? parseDurationNanos(queryDTO.getWindow()) : 0;
+        if (aggregate && (windowNanos <= 0 || !isWindowAggregate(queryDTO.getAggregateFunction()))) {
+            return null;
+        }
+        Instant start = rangeStart(queryDTO);
+        List<List<TagMatcher>> groups = matcherGroups(queryDTO);
+        if (!seriesIndex.canSelect(start, groups)) {
+            return null;
+        }
+        Instant end = rangeEnd(queryDTO);
+
+        Map<List<String>, List<Integer>> bySeries = new LinkedHashMap<>();
+        seriesIndex.selectAny(groups)
+                .forEach(id -> bySeries.computeIfAbsent(storedSeries(seriesIndex.tags(id)), k -> new ArrayList<>()).add(id));
+        Set<List<String>> remaining = new LinkedHashSet<>();
+        for (Map.Entry<List<String>, List<Integer>> entry : bySeries.entrySet()) {
+            List<WindowPoints> pointsList = new ArrayList<>();
+            for (int id : entry.getValue()) {
+                WindowPoints points = hotWindowBuffer.read(id, start, end);
+                if (points == null) {
+                    break;
+                }
+                pointsList.add(points);
+            }
+            if (pointsList.size() < entry.getValue().size()) {
+                remaining.add(entry.getKey());
+                if (remaining.size() > maxPushdownSeries) {
+                    resultList.clear();
+                    return null;
+                }
+                continue;
+            }
+            // 范围可能包含未登记的新序列时，已读取的序列要从InfluxDB查询中排除，同样受下推序列数上限限制
+            served.add(entry.getKey());
+            if (served.size() > maxPushdownSeries) {
+                resultList.clear();
+                served.clear();
+                return null;
+            }
+            for (int i = 0; i < pointsList.size(); i++) {
+                appendWindowData(queryDTO, seriesIndex.tags(entry.getValue().get(i)), pointsList.get(i),
+                        windowNanos, end, resultList);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * 把一个序列的窗口数据按查询要求(聚合、排序、条数限制)转换为结果，与Flux一样按序列分别排序和限制条数
+     */
+    private void appendWindowData(TimeSeriesQueryDTO queryDTO, Map<String, String> seriesTags, WindowPoints points,
+                                  long windowNanos, Instant end, List<TimeSeriesData> resultList) {
+        List<TimeSeriesData> series = new ArrayList<>();
+        if (windowNanos > 0) {
+            // 与aggregateWindow一致：窗口按纪元对齐，时间取窗口结束时间(不超过查询结束时间)，不生成空窗口
+            long endNanos = end.getEpochSecond() * 1_000_000_000L + end.getNano();
+            int from = 0;
+            while (from < points.size()) {
+                long windowStart = Math.floorDiv(points.timestamp(from), windowNanos) * windowNanos;
+                int to = from;
+                while (to < points.size() && points.timestamp(to) < windowStart + windowNanos) {
+                    to++;
+                }
+                long windowEnd = Math.min(windowStart + windowNanos, endNanos);
+                Instant time = Instant.ofEpochSecond(Math.floorDiv(windowEnd, 1_000_000_000L),
+                        Math.floorMod(windowEnd, 1_000_000_000L));
+                series.add(windowData(seriesTags, time, aggregateWindow(queryDTO.getAggregateFunction(), points, from, to)));
+                from = to;
+            }
+        } else {
+            for (int i = 0; i < points.size(); i++) {
+                series.add(windowData(seriesTags, points.time(i), points.value(i)));
+            }
+        }
+
+        boolean desc = "DESC".equalsIgnoreCase(queryDTO.getOrderDirection());
+        if (StringUtils.hasText(queryDTO.getOrderBy())) {
+            if (queryDTO.getOrderBy().endsWith("value")) {
+                series.sort((a, b) -> desc ? Double.compare(b.getValue(), a.getValue()) : Double.compare(a.getValue(), b.getValue()));
+            } else if (desc) {
+                Collections.reverse(series);
+            }
+        }
+        if (queryDTO.getLimit() > 0 && series.size() > queryDTO.getLimit()) {
+            series = series.subList(0, queryDTO.getLimit());
+        }
+        resultList.addAll(series);
+    }
+
+    private static TimeSeriesData windowData(Map<String, String> seriesTags, Instant time, double value) {
+        Map<String, String> tags = new HashMap<>(seriesTags);
+        SeriesIndex.STORED_TAGS.forEach(tags::remove);
+        return TimeSeriesData.builder()
+                .time(time)
+                .assetId(seriesTags.get(SeriesIndex.TAG_ASSET_ID))
+                .metricName(seriesTags.get(SeriesIndex.TAG_METRIC_NAME))
+                .unit(seriesTags.get(SeriesIndex.TAG_UNIT))
+                .value(value)
+                .tags(tags)
+                .build();
+    }
+
+    private static boolean isWindowAggregate(String function) {
+        switch (function) {
+            case "mean":
+            case "max":
+            case "min":
+            case "sum":
+            case "count":
+            case "first":
+            case "last":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 计算窗口内数据点[from, to)的聚合值
+     */
+    private static double aggregateWindow(String function, WindowPoints points, int from, int to) {
+        switch (function) {
+            case "first":
+                return points.value(from);
+            case "last":
+                return points.value(to - 1);
+            case "count":
+                return to - from;
+            case "max":
+                return IntStream.range(from, to).mapToDouble(points::value).max().orElse(Double.NaN);
+            case "min":
+                return IntStream.range(from, to).mapToDouble(points::value).min().orElse(Double.NaN);
+            case "sum":
+                return IntStream.range(from, to).mapToDouble(points::value).sum();
+            default:
+                return IntStream.range(from, to).mapToDouble(points::value).sum() / (to - from);
+        }
+    }
+
+    /**
+     * 解析Flux时长字面量(如30s、5m、1h30m)
+     *
+     * @return 纳秒数，无法解析时返回-1
+     */
+    private static long parseDurationNanos(String duration) {
+        Matcher matcher = DURATION_PART.matcher(duration.trim());
+        long nanos = 0;
+        int position = 0;
+        while (matcher.find() && matcher.start() == position) {
+            long amount = Long.parseLong(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "ns":
+                    nanos += amount;
+                    break;
+                case "us":
+                    nanos += amount * 1_000L;
+                    break;
+                case "ms":
+                    nanos += amount * 1_000_000L;
+                    break;
+                case "s":
+                    nanos += amount * 1_000_000_000L;
+                    break;
+                case "m":
+                    nanos += amount * 60_000_000_000L;
+                    break;
+                case "h":
+                    nanos += amount * 3_600_000_000_000L;
+                    break;
+                case "d":
+                    nanos += amount * 86_400_000_000_000L;
+                    break;
+                default:
+                    nanos += amount * 604_800_000_000_000L;
+                    break;
+            }
+            position = matcher.end();
+        }
+        return position == duration.trim().length() ? nanos : -1;
+    }
+
+    /**
+     * 把查询条件整理为标签条件组，各组之间为或，组内为与
+     */
+    private List<List<TagMatcher>> matcherGroups(TimeSeriesQueryDTO queryDTO) {
+        List<TagMatcher> base = TagMatcher.parseAll(queryDTO.getTags());
+        if (StringUtils.hasText(queryDTO.getAssetId())) {
+            base.add(TagMatcher.eq(SeriesIndex.TAG_ASSET_ID, queryDTO.getAssetId()));
+        }
+        if (StringUtils.hasText(queryDTO.getMetricName())) {
+            base.add(TagMatcher.eq(SeriesIndex.TAG_METRIC_NAME, queryDTO.getMetricName()));
+        }
+        List<List<TagMatcher>> groups = new ArrayList<>();
+        if (queryDTO.getTagGroups() == null || queryDTO.getTagGroups().isEmpty()) {
+            groups.add(base);
+            return groups;
+        }
+        for (Map<String, String> tagGroup : queryDTO.getTagGroups()) {
+            List<TagMatcher> group = new ArrayList<>(base);
+            group.addAll(TagMatcher.parseAll(tagGroup));
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * 把标签条件翻译为Flux表达式，正则表达式按完整匹配处理
+     */
+    private static String matcherPredicate(TagMatcher matcher) {
+        String column = "r[\"" + escape(matcher.getKey()) + "\"]";
+        switch (matcher.getType()) {
+            case NEQ:
+                return column + " != \"" + escape(matcher.getValue()) + "\"";
+            case REGEX:
+                return column + " =~ /^(?:" + matcher.getValue().replace("/", "\\/") + ")$/";
+            case NOT_REGEX:
+                return column + " !~ /^(?:" + matcher.getValue().replace("/", "\\/") + ")$/";
+            default:
+                return column + " == \"" + escape(matcher.getValue()) + "\"";
+        }
+    }
+
+    /**
+     * 转义Flux字符串字面量
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
     /**
      * 将DTO转换为实体
      */
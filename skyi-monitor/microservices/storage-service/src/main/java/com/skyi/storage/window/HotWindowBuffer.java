@@ -0,0 +1,261 @@
+package com.skyi.storage.window;
+
+import com.skyi.storage.model.TimeSeriesData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 热数据窗口缓冲区
+ * 为每个序列在堆外内存中保留最近写入的固定数量数据点(环形缓冲)，由写入路径直接填充，
+ * 查询范围完全落在窗口内的序列直接从这里读取，不再访问InfluxDB。
+ * <ul>
+ *     <li>内存：总预算按序列槽位切分为若干直接内存块，槽位数 = 预算 / (每序列点数 × 16字节)</li>
+ *     <li>淘汰：槽位用尽时按最近访问(写入或查询)淘汰最冷的序列</li>
+ *     <li>完整性：序列从首次写入本实例的时间点开始有完整数据，环形覆盖后从最早保留的点开始；
+ *     早于这个时间的查询交给InfluxDB</li>
+ * </ul>
+ * 只有本实例消费的分区中的数据会进入缓冲区，分区重新分配时清空(见{@link com.skyi.storage.listener.PartitionRebalanceListener})，
+ * 避免已不归本实例消费的序列继续被当作完整数据。
+ * 完整性依赖序列与分区的对应关系：只有记录键为{@link #affinityKey}的Kafka消息进入缓冲区，
+ * 无键或键不匹配的消息以及REST写入由写入路径按序列键转发给负责该序列的实例
+ */
+@Slf4j
+@Component
+public class HotWindowBuffer {
+
+    /**
+     * 每个数据点：long 时间戳(纳秒) | double 值
+     */
+    private static final int POINT_BYTES = 16;
+
+    /**
+     * 单个直接内存块的上限
+     */
+    private static final int MAX_SLAB_BYTES = 1 << 30;
+
+    @Value("${storage.hot-window.enabled:true}")
+    private volatile boolean enabled;
+
+    @Value("${storage.hot-window.budget-mb:64}")
+    private int budgetMb;
+
+    @Value("${storage.hot-window.points-per-series:512}")
+    private int pointsPerSeries;
+
+    private ByteBuffer[] slabs;
+    private int slotsPerSlab;
+
+    private int[] slotHead;
+    private int[] slotCount;
+
+    /**
+     * 槽位数据完整的起始时间(纳秒)，查询开始时间不早于它时才能使用该槽位
+     */
+    private long[] slotCompleteSince;
+
+    private int[] freeSlots;
+    private int freeCount;
+
+    /**
+     * 序列ID → 槽位，按访问顺序排列，最前面的是最冷的序列
+     */
+    private final LinkedHashMap<Integer, Integer> seriesSlots = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int slotBytes = pointsPerSeries * POINT_BYTES;
+        long slots = pointsPerSeries > 0 ? (long) budgetMb * 1024 * 1024 / slotBytes : 0;
+        if (slots <= 0) {
+            log.warn("热数据窗口配置无效: 预算={}MB, 每序列点数={}，已禁用", budgetMb, pointsPerSeries);
+            enabled = false;
+            return;
+        }
+        int slotCountTotal = (int) Math.min(slots, Integer.MAX_VALUE);
+        slotsPerSlab = MAX_SLAB_BYTES / slotBytes;
+        int slabCount = (slotCountTotal + slotsPerSlab - 1) / slotsPerSlab;
+        slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            int slabSlots = Math.min(slotsPerSlab, slotCountTotal - i * slotsPerSlab);
+            slabs[i] = ByteBuffer.allocateDirect(slabSlots * slotBytes);
+        }
+        slotHead = new int[slotCountTotal];
+        slotCount = new int[slotCountTotal];
+        slotCompleteSince = new long[slotCountTotal];
+        freeSlots = new int[slotCountTotal];
+        for (int i = 0; i < slotCountTotal; i++) {
+            freeSlots[i] = slotCountTotal - 1 - i;
+        }
+        freeCount = slotCountTotal;
+        log.info("热数据窗口已启用: 预算={}MB, 每序列点数={}, 序列槽位数={}", budgetMb, pointsPerSeries, slotCountTotal);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 序列的Kafka记录键，同一资产指标的数据写入同一分区，由同一实例消费
+     */
+    public static String affinityKey(String assetId, String metricName) {
+        return assetId + ":" + metricName;
+    }
+
+    /**
+     * 追加写入的数据点
+     *
+     * @param seriesId 序列ID(由序列索引分配)，小于0时忽略
+     */
+    public void append(int seriesId, TimeSeriesData data) {
+        if (!enabled || seriesId < 0 || data.getValue() == null || data.getTime() == null) {
+            return;
+        }
+        long timestamp = toNanos(data.getTime());
+        lock.lock();
+        try {
+            if (!enabled) {
+                return;
+            }
+            Integer slot = seriesSlots.get(seriesId);
+            if (slot == null) {
+                slot = allocate(seriesId);
+                slotCompleteSince[slot] = timestamp;
+            }
+            ByteBuffer slab = slabs[slot / slotsPerSlab];
+            int base = (slot % slotsPerSlab) * pointsPerSeries * POINT_BYTES;
+            int position = base + slotHead[slot] * POINT_BYTES;
+            if (slotCount[slot] == pointsPerSeries) {
+                // 覆盖最早的点，完整数据的起点后移
+                slotCompleteSince[slot] = Math.max(slotCompleteSince[slot], slab.getLong(position) + 1);
+            } else {
+                slotCount[slot]++;
+            }
+            slab.putLong(position, timestamp);
+            slab.putDouble(position + 8, data.getValue());
+            slotHead[slot] = (slotHead[slot] + 1) % pointsPerSeries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取序列在时间范围[start, end)内的数据点
+     *
+     * @return 按时间升序排列的数据点，同一时间戳只保留最后写入的值；缓冲区不能完整覆盖该范围时返回null
+     */
+    public WindowPoints read(int seriesId, Instant start, Instant end) {
+        if (!enabled) {
+            return null;
+        }
+        long startNanos = toNanos(start);
+        long endNanos = toNanos(end);
+        WindowPoints points;
+        lock.lock();
+        try {
+            Integer slot = seriesSlots.get(seriesId);
+            if (slot == null || slotCompleteSince[slot] > startNanos) {
+                return null;
+            }
+            ByteBuffer slab = slabs[slot / slotsPerSlab];
+            int base = (slot % slotsPerSlab) * pointsPerSeries * POINT_BYTES;
+            int count = slotCount[slot];
+            // 从最早的点开始按写入顺序读取
+            int first = count < pointsPerSeries ? 0 : slotHead[slot];
+            points = new WindowPoints(count);
+            for (int i = 0; i < count; i++) {
+                int position = base + ((first + i) % pointsPerSeries) * POINT_BYTES;
+                long timestamp = slab.getLong(position);
+                if (timestamp >= startNanos && timestamp < endNanos) {
+                    points.add(timestamp, slab.getDouble(position + 8));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        points.sortAndDedup();
+        return points;
+    }
+
+    /**
+     * 丢弃序列的缓冲数据(数据被删除时调用)
+     */
+    public void remove(int seriesId) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            Integer slot = seriesSlots.remove(seriesId);
+            if (slot != null) {
+                release(slot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃全部缓冲数据
+     */
+    public void clear() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (Integer slot : seriesSlots.values()) {
+                release(slot);
+            }
+            seriesSlots.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSeriesCount() {
+        lock.lock();
+        try {
+            return seriesSlots.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 为序列分配槽位，没有空闲槽位时淘汰最冷的序列
+     */
+    private int allocate(int seriesId) {
+        if (freeCount == 0) {
+            Iterator<Map.Entry<Integer, Integer>> eldest = seriesSlots.entrySet().iterator();
+            Map.Entry<Integer, Integer> entry = eldest.next();
+            eldest.remove();
+            release(entry.getValue());
+        }
+        int slot = freeSlots[--freeCount];
+        seriesSlots.put(seriesId, slot);
+        return slot;
+    }
+
+    private void release(int slot) {
+        slotHead[slot] = 0;
+        slotCount[slot] = 0;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private static long toNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+}
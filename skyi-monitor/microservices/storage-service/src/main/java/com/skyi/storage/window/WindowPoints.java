@@ -0,0 +1,71 @@
+package com.skyi.storage.window;
+
+import java.time.Instant;
+
+/**
+ * 从热数据窗口读出的一个序列的数据点，时间戳为纳秒
+ */
+public final class WindowPoints {
+
+    private final long[] timestamps;
+    private final double[] values;
+    private int size;
+
+    WindowPoints(int capacity) {
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    void add(long timestamp, double value) {
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * 按时间戳排序，同一时间戳保留最后写入的值(与InfluxDB覆盖写入一致)
+     * 数据基本按时间顺序写入，用稳定的插入排序
+     */
+    void sortAndDedup() {
+        for (int i = 1; i < size; i++) {
+            long timestamp = timestamps[i];
+            double value = values[i];
+            int j = i - 1;
+            while (j >= 0 && timestamps[j] > timestamp) {
+                timestamps[j + 1] = timestamps[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            timestamps[j + 1] = timestamp;
+            values[j + 1] = value;
+        }
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique > 0 && timestamps[unique - 1] == timestamps[i]) {
+                values[unique - 1] = values[i];
+            } else {
+                timestamps[unique] = timestamps[i];
+                values[unique] = values[i];
+                unique++;
+            }
+        }
+        size = unique;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public Instant time(int index) {
+        return Instant.ofEpochSecond(Math.floorDiv(timestamps[index], 1_000_000_000L),
+                Math.floorMod(timestamps[index], 1_000_000_000L));
+    }
+
+    public double value(int index) {
+        return values[index];
+    }
+}
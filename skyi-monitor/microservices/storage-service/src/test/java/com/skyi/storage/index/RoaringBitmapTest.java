@@ -0,0 +1,146 @@
+package com.skyi.storage.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 压缩位图测试：数组容器与位图容器之间的转换、跨桶的交并差与BitSet的结果一致
+ */
+public class RoaringBitmapTest {
+
+    /**
+     * 测试添加、重复添加和按升序遍历，元素跨越多个桶
+     */
+    @Test
+    public void testAddAndContains() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        assertTrue(bitmap.isEmpty());
+        int[] values = {70_000, 3, 65_535, 65_536, 0, 3, Integer.MAX_VALUE};
+        for (int value : values) {
+            bitmap.add(value);
+        }
+
+        assertFalse(bitmap.isEmpty());
+        assertEquals(6, bitmap.cardinality());
+        assertArrayEquals(new int[]{0, 3, 65_535, 65_536, 70_000, Integer.MAX_VALUE}, bitmap.toArray());
+        assertTrue(bitmap.contains(65_536));
+        assertTrue(bitmap.contains(Integer.MAX_VALUE));
+        assertFalse(bitmap.contains(1));
+        assertFalse(bitmap.contains(131_072));
+    }
+
+    /**
+     * 测试基数超过4096后转换为位图容器，元素不丢失
+     */
+    @Test
+    public void testArrayToBitmapContainer() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < 10_000; i++) {
+            bitmap.add(i * 2);
+        }
+        assertEquals(10_000, bitmap.cardinality());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(i % 2 == 0, bitmap.contains(i), "元素: " + i);
+        }
+        int[] values = bitmap.toArray();
+        assertEquals(0, values[0]);
+        assertEquals(19_998, values[values.length - 1]);
+    }
+
+    /**
+     * 测试复制后修改互不影响
+     */
+    @Test
+    public void testCopyIsIndependent() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < 5000; i++) {
+            bitmap.add(i);
+        }
+        RoaringBitmap copy = bitmap.copy();
+        copy.add(100_000);
+        bitmap.add(200_000);
+
+        assertEquals(bitmap.cardinality(), copy.cardinality());
+        assertTrue(copy.contains(100_000));
+        assertFalse(copy.contains(200_000));
+        assertFalse(bitmap.contains(100_000));
+        assertEquals(bitmap, bitmap.copy());
+        assertEquals(bitmap.hashCode(), bitmap.copy().hashCode());
+    }
+
+    /**
+     * 测试稀疏、稠密及混合容器组合下的交并差，结果与BitSet一致；交集和差集结果降到4096以下时与逐个添加的位图相等
+     */
+    @Test
+    public void testSetOperationsMatchBitSet() {
+        Random random = new Random(7);
+        int[][] densities = {{100, 100}, {100, 8000}, {8000, 8000}, {8000, 100}, {60_000, 5000}};
+        for (int[] density : densities) {
+            BitSet expectedA = new BitSet();
+            BitSet expectedB = new BitSet();
+            RoaringBitmap a = randomBitmap(random, density[0], expectedA);
+            RoaringBitmap b = randomBitmap(random, density[1], expectedB);
+            String label = Arrays.toString(density);
+
+            BitSet and = (BitSet) expectedA.clone();
+            and.and(expectedB);
+            assertBitmap(and, RoaringBitmap.and(a, b), "交集" + label);
+
+            BitSet or = (BitSet) expectedA.clone();
+            or.or(expectedB);
+            assertBitmap(or, RoaringBitmap.or(a, b), "并集" + label);
+            assertBitmap(or, RoaringBitmap.or(Arrays.asList(a, b, new RoaringBitmap())), "多个并集" + label);
+
+            BitSet andNot = (BitSet) expectedA.clone();
+            andNot.andNot(expectedB);
+            assertBitmap(andNot, RoaringBitmap.andNot(a, b), "差集" + label);
+        }
+    }
+
+    /**
+     * 测试结果为空的桶不保留，空位图参与运算
+     */
+    @Test
+    public void testEmptyResults() {
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        for (int i = 0; i < 5000; i++) {
+            a.add(i * 2);
+            b.add(i * 2 + 1);
+        }
+        b.add(100_000);
+
+        assertTrue(RoaringBitmap.and(a, b).isEmpty());
+        assertTrue(RoaringBitmap.andNot(a, a).isEmpty());
+        assertEquals(a, RoaringBitmap.andNot(a, new RoaringBitmap()));
+        assertEquals(a, RoaringBitmap.or(a, new RoaringBitmap()));
+        assertTrue(RoaringBitmap.and(a, new RoaringBitmap()).isEmpty());
+        assertEquals(10_001, RoaringBitmap.or(a, b).cardinality());
+    }
+
+    /**
+     * 在前3个桶中随机生成指定数量的元素
+     */
+    private static RoaringBitmap randomBitmap(Random random, int count, BitSet expected) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < count; i++) {
+            int value = random.nextInt(3 * 65_536);
+            bitmap.add(value);
+            expected.set(value);
+        }
+        return bitmap;
+    }
+
+    private static void assertBitmap(BitSet expected, RoaringBitmap actual, String message) {
+        assertEquals(expected.cardinality(), actual.cardinality(), message);
+        assertArrayEquals(expected.stream().toArray(), actual.toArray(), message);
+        for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1)) {
+            assertTrue(actual.contains(i), message + ": " + i);
+        }
+    }
+}
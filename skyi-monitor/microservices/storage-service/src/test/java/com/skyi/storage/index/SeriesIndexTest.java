@@ -0,0 +1,155 @@
+package com.skyi.storage.index;
+
+import com.skyi.storage.model.TimeSeriesData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 序列索引测试：按标签条件选择序列，以及索引能回答的查询范围和条件
+ */
+public class SeriesIndexTest {
+
+    private static final long LOADED = 1_700_000_000_000L;
+
+    private SeriesIndex seriesIndex;
+
+    @BeforeEach
+    public void setUp() {
+        seriesIndex = new SeriesIndex();
+        ReflectionTestUtils.setField(seriesIndex, "enabled", true);
+        ReflectionTestUtils.setField(seriesIndex, "maxSeries", 100);
+    }
+
+    /**
+     * 测试写入登记与加载器登记同一个序列，附加标签不登记
+     */
+    @Test
+    public void testRegisterStoredTagsOnly() {
+        Map<String, String> extra = new HashMap<>();
+        extra.put("host", "server-1");
+        int written = seriesIndex.register(data("1", "cpu_usage", "%", extra));
+        int loaded = seriesIndex.register(tags("1", "cpu_usage", "%"));
+
+        assertEquals(written, loaded);
+        assertEquals(1, seriesIndex.getSeriesCount());
+        assertFalse(seriesIndex.tags(written).containsKey("host"));
+        assertTrue(seriesIndex.tagValues("host", null, null, 0).isEmpty());
+    }
+
+    /**
+     * 测试肯定、否定和正则条件，以及多组条件取并集
+     */
+    @Test
+    public void testSelect() {
+        int cpu1 = seriesIndex.register(tags("1", "cpu_usage", "%"));
+        int mem1 = seriesIndex.register(tags("1", "memory_usage", "%"));
+        int cpu2 = seriesIndex.register(tags("2", "cpu_usage", null));
+
+        assertArrayEquals(new int[]{cpu1, cpu2},
+                seriesIndex.select(Collections.singletonList(TagMatcher.eq(SeriesIndex.TAG_METRIC_NAME, "cpu_usage"))).toArray());
+        assertArrayEquals(new int[]{cpu1, mem1},
+                seriesIndex.select(Collections.singletonList(TagMatcher.eq(SeriesIndex.TAG_UNIT, "%"))).toArray());
+        assertArrayEquals(new int[]{cpu2},
+                seriesIndex.select(Collections.singletonList(TagMatcher.eq(SeriesIndex.TAG_UNIT, ""))).toArray());
+        assertArrayEquals(new int[]{mem1}, seriesIndex.select(Arrays.asList(
+                TagMatcher.eq(SeriesIndex.TAG_ASSET_ID, "1"),
+                TagMatcher.notRegex(SeriesIndex.TAG_METRIC_NAME, "cpu.*"))).toArray());
+        assertArrayEquals(new int[]{mem1, cpu2}, seriesIndex.selectAny(Arrays.asList(
+                Collections.singletonList(TagMatcher.eq(SeriesIndex.TAG_METRIC_NAME, "memory_usage")),
+                Collections.singletonList(TagMatcher.eq(SeriesIndex.TAG_ASSET_ID, "2")))).toArray());
+        assertEquals(Arrays.asList("cpu_usage", "memory_usage"),
+                seriesIndex.tagValues(SeriesIndex.TAG_METRIC_NAME, null, null, 0));
+    }
+
+    /**
+     * 测试加载完成前不能回答查询，之后只能精确回答在上次刷新之前结束的查询
+     */
+    @Test
+    public void testCoveredRange() {
+        List<List<TagMatcher>> groups = groups(TagMatcher.eq(SeriesIndex.TAG_ASSET_ID, "1"));
+        Instant start = Instant.ofEpochMilli(LOADED);
+        assertFalse(seriesIndex.canSelect(start, groups));
+        assertFalse(seriesIndex.isReady());
+
+        seriesIndex.markCoveredSince(LOADED);
+        seriesIndex.markCoveredUntil(LOADED + 60_000);
+        assertTrue(seriesIndex.isReady());
+        assertTrue(seriesIndex.canSelect(start, groups));
+        assertFalse(seriesIndex.canSelect(start.minusMillis(1), groups));
+        assertTrue(seriesIndex.canResolve(start, Instant.ofEpochMilli(LOADED + 60_000), groups));
+        assertFalse(seriesIndex.canResolve(start, Instant.ofEpochMilli(LOADED + 60_001), groups));
+        assertFalse(seriesIndex.canResolve(start, null, groups));
+
+        // 覆盖范围只向外扩展
+        seriesIndex.markCoveredSince(LOADED + 1000);
+        seriesIndex.markCoveredUntil(LOADED);
+        assertEquals(LOADED, seriesIndex.getCoveredSince());
+        assertEquals(LOADED + 60_000, seriesIndex.getCoveredUntil());
+    }
+
+    /**
+     * 测试条件含附加标签时索引不回答
+     */
+    @Test
+    public void testExtraTagsNotResolvable() {
+        seriesIndex.markCoveredSince(LOADED);
+        seriesIndex.markCoveredUntil(LOADED + 60_000);
+        Instant start = Instant.ofEpochMilli(LOADED);
+        Instant end = Instant.ofEpochMilli(LOADED + 1000);
+
+        assertTrue(seriesIndex.canResolve(start, end, groups(TagMatcher.eq(SeriesIndex.TAG_METRIC_NAME, "cpu_usage"))));
+        assertFalse(seriesIndex.canResolve(start, end, groups(TagMatcher.eq(SeriesIndex.TAG_METRIC_NAME, "cpu_usage"),
+                TagMatcher.eq("host", "server-1"))));
+        assertFalse(seriesIndex.canSelect(start, groups(TagMatcher.neq("host", "server-1"))));
+    }
+
+    /**
+     * 测试序列数达到上限后停止登记，索引不再回答查询
+     */
+    @Test
+    public void testFullIndexNotResolvable() {
+        ReflectionTestUtils.setField(seriesIndex, "maxSeries", 2);
+        seriesIndex.markCoveredSince(LOADED);
+        seriesIndex.markCoveredUntil(LOADED + 60_000);
+        assertEquals(0, seriesIndex.register(tags("1", "cpu_usage", null)));
+        assertEquals(1, seriesIndex.register(tags("2", "cpu_usage", null)));
+        assertEquals(-1, seriesIndex.register(tags("3", "cpu_usage", null)));
+
+        assertEquals(2, seriesIndex.getSeriesCount());
+        assertFalse(seriesIndex.isReady());
+        assertFalse(seriesIndex.canSelect(Instant.ofEpochMilli(LOADED), groups()));
+    }
+
+    private static List<List<TagMatcher>> groups(TagMatcher... matchers) {
+        return Collections.singletonList(Arrays.asList(matchers));
+    }
+
+    private static Map<String, String> tags(String assetId, String metricName, String unit) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put(SeriesIndex.TAG_ASSET_ID, assetId);
+        tags.put(SeriesIndex.TAG_METRIC_NAME, metricName);
+        tags.put(SeriesIndex.TAG_UNIT, unit);
+        return tags;
+    }
+
+    private static TimeSeriesData data(String assetId, String metricName, String unit, Map<String, String> extra) {
+        return TimeSeriesData.builder()
+                .time(Instant.ofEpochMilli(LOADED))
+                .assetId(assetId)
+                .metricName(metricName)
+                .unit(unit)
+                .value(1.0)
+                .tags(extra)
+                .build();
+    }
+}
@@ -0,0 +1,191 @@
+package com.skyi.storage.latest;
+
+import com.skyi.common.model.LatestValue;
+import com.skyi.storage.model.TimeSeriesData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.Invocation;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 最新值表测试：按数据时间合并、本地命中跳过Redis、本地表上限和过期
+ */
+public class LatestValueCacheTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private LatestValueCache cache;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ValueOperations<String, String> valueOperations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        cache = new LatestValueCache();
+        ReflectionTestUtils.setField(cache, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(cache, "redisEnabled", true);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 86400L);
+        ReflectionTestUtils.setField(cache, "localFreshMs", 30000L);
+        ReflectionTestUtils.setField(cache, "localMaxEntries", 100);
+        ReflectionTestUtils.setField(cache, "localTtlMs", 3600000L);
+    }
+
+    /**
+     * 测试合并时保留数据时间较新的值，数据时间相同时以后到的值为准
+     */
+    @Test
+    public void testMerge() {
+        Map<String, LatestValue> values = new HashMap<>();
+        LatestValueCache.merge(values, "k", new LatestValue(T0 + 2, 1.0, 0, null));
+        LatestValueCache.merge(values, "k", new LatestValue(T0 + 1, 2.0, 0, null));
+        assertEquals(1.0, values.get("k").getValue());
+
+        LatestValueCache.merge(values, "k", new LatestValue(T0 + 2, 3.0, 0, null));
+        assertEquals(3.0, values.get("k").getValue());
+    }
+
+    /**
+     * 测试批内和跨批都只保留数据时间最新的值，任意标签的键取所有标签组合中最新的
+     */
+    @Test
+    public void testUpdateKeepsLatest() {
+        ReflectionTestUtils.setField(cache, "redisEnabled", false);
+        cache.update(Arrays.asList(data(2, 2.0, "eth0"), data(1, 1.0, "eth0"), data(3, 3.0, "eth1")));
+        cache.update(Collections.singletonList(data(0, 9.0, "eth0")));
+
+        Map<String, LatestValue> result = cache.multiGet(Arrays.asList(key("eth0"), key("eth1"), anyTagsKey()));
+        assertEquals(2.0, result.get(key("eth0")).getValue());
+        assertEquals(3.0, result.get(key("eth1")).getValue());
+        assertEquals(3.0, result.get(anyTagsKey()).getValue());
+    }
+
+    /**
+     * 测试更新脚本的参数：最新值键后跟水位键，每个键对应(数据时间, 编码值)，最后是过期秒数、实例和水位
+     */
+    @Test
+    public void testUpdateScriptArguments() {
+        cache.update(Collections.singletonList(data(1, 1.0, "eth0")));
+
+        Invocation execute = mockingDetails(stringRedisTemplate).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("execute"))
+                .findFirst().orElseThrow(AssertionError::new);
+        Object[] raw = execute.getRawArguments();
+        assertEquals(Arrays.asList(key("eth0"), anyTagsKey(), LatestValue.WATERMARK_KEY), raw[1]);
+
+        Object[] args = (Object[]) raw[2];
+        assertEquals(7, args.length);
+        assertEquals(String.valueOf(T0 + 1), args[0]);
+        LatestValue encoded = LatestValue.decode((String) args[1]);
+        assertEquals(T0 + 1, encoded.getTime());
+        assertEquals(1.0, encoded.getValue());
+        assertEquals(args[0], args[2]);
+        assertEquals("86400", args[4]);
+        assertEquals(String.valueOf(encoded.getUpdatedAt()), args[6]);
+    }
+
+    /**
+     * 测试本实例近期写入过的键直接返回本地值，不查询Redis
+     */
+    @Test
+    public void testMultiGetFreshLocalSkipsRedis() {
+        cache.update(Collections.singletonList(data(1, 1.0, "eth0")));
+
+        Map<String, LatestValue> result = cache.multiGet(Arrays.asList(key("eth0"), anyTagsKey()));
+
+        assertEquals(2, result.size());
+        verify(stringRedisTemplate, never()).opsForValue();
+    }
+
+    /**
+     * 测试只向Redis查询本地没有或较久没有写入的键，两边都有时取数据时间较新的
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMultiGetStaleLocalMergesRedis() {
+        cache.update(Collections.singletonList(data(1, 1.0, "eth0")));
+        Map<String, LatestValue> localValues = (Map<String, LatestValue>) ReflectionTestUtils.getField(cache, "localValues");
+        long stale = System.currentTimeMillis() - 60000;
+        localValues.put(key("eth1"), new LatestValue(T0 + 1, 1.0, stale, null));
+        when(valueOperations.multiGet(anyList())).thenReturn(
+                Arrays.asList(new LatestValue(T0 + 5, 5.0, stale, null).encode(), null));
+
+        Map<String, LatestValue> result = cache.multiGet(Arrays.asList(key("eth0"), key("eth1"), key("eth2")));
+
+        verify(valueOperations).multiGet(Arrays.asList(key("eth1"), key("eth2")));
+        assertEquals(1.0, result.get(key("eth0")).getValue());
+        assertEquals(5.0, result.get(key("eth1")).getValue());
+        assertFalse(result.containsKey(key("eth2")));
+    }
+
+    /**
+     * 测试本地表已满时新的键不再进入本地表，已有的键照常更新
+     */
+    @Test
+    public void testLocalMaxEntries() {
+        ReflectionTestUtils.setField(cache, "redisEnabled", false);
+        ReflectionTestUtils.setField(cache, "localMaxEntries", 2);
+        cache.update(Collections.singletonList(data(1, 1.0, "eth0")));
+        cache.update(Arrays.asList(data(2, 2.0, "eth0"), data(2, 2.0, "eth1")));
+
+        Map<String, LatestValue> result = cache.multiGet(Arrays.asList(key("eth0"), key("eth1"), anyTagsKey()));
+        assertEquals(2, result.size());
+        assertEquals(2.0, result.get(key("eth0")).getValue());
+        assertFalse(result.containsKey(key("eth1")));
+    }
+
+    /**
+     * 测试清除较久没有写入的本地键
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPurgeLocal() {
+        cache.update(Collections.singletonList(data(1, 1.0, "eth0")));
+        Map<String, LatestValue> localValues = (Map<String, LatestValue>) ReflectionTestUtils.getField(cache, "localValues");
+        localValues.put(key("eth1"), new LatestValue(T0, 1.0, System.currentTimeMillis() - 7200000, null));
+
+        cache.purgeLocal();
+
+        assertTrue(localValues.containsKey(key("eth0")));
+        assertFalse(localValues.containsKey(key("eth1")));
+    }
+
+    private static String key(String ifName) {
+        return LatestValue.key("1", "if_in_octets", Collections.singletonMap("ifName", ifName));
+    }
+
+    private static String anyTagsKey() {
+        return LatestValue.anyTagsKey("1", "if_in_octets");
+    }
+
+    private static TimeSeriesData data(long offsetMillis, double value, String ifName) {
+        TimeSeriesData data = new TimeSeriesData();
+        data.setAssetId("1");
+        data.setMetricName("if_in_octets");
+        data.setTime(Instant.ofEpochMilli(T0 + offsetMillis));
+        data.setValue(value);
+        data.setTags(new HashMap<>(Collections.singletonMap("ifName", ifName)));
+        return data;
+    }
+}
@@ -0,0 +1,183 @@
+package com.skyi.storage.window;
+
+import com.skyi.storage.model.TimeSeriesData;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热数据窗口测试：环形覆盖、完整性起点、按访问顺序淘汰序列
+ */
+public class HotWindowBufferTest {
+
+    private static final long BASE = 1_700_000_000L;
+
+    /**
+     * 测试读取范围内的数据点，未缓冲的序列返回null
+     */
+    @Test
+    public void testReadWithinRange() {
+        HotWindowBuffer buffer = buffer(1, 8);
+        buffer.append(1, data(0, 1.0));
+        buffer.append(1, data(1, 2.0));
+        buffer.append(1, data(2, 3.0));
+
+        WindowPoints all = buffer.read(1, time(0), time(3));
+        assertEquals(3, all.size());
+        assertEquals(time(0), all.time(0));
+        assertEquals(3.0, all.value(2));
+
+        WindowPoints middle = buffer.read(1, time(1), time(2));
+        assertEquals(1, middle.size());
+        assertEquals(2.0, middle.value(0));
+
+        assertNull(buffer.read(2, time(0), time(3)));
+    }
+
+    /**
+     * 测试查询开始时间早于序列首次写入时返回null，交给InfluxDB
+     */
+    @Test
+    public void testReadBeforeCompleteSince() {
+        HotWindowBuffer buffer = buffer(1, 8);
+        buffer.append(1, data(10, 1.0));
+
+        assertNull(buffer.read(1, time(5), time(20)));
+        assertEquals(1, buffer.read(1, time(10), time(20)).size());
+    }
+
+    /**
+     * 测试环形覆盖最早的点后完整性起点后移
+     */
+    @Test
+    public void testOverwrite() {
+        HotWindowBuffer buffer = buffer(1, 4);
+        for (int i = 0; i < 6; i++) {
+            buffer.append(1, data(i, i));
+        }
+
+        // t0、t1已被覆盖，从t1开始的查询不再完整
+        assertNull(buffer.read(1, time(1), time(6)));
+
+        WindowPoints points = buffer.read(1, time(2), time(6));
+        assertEquals(4, points.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(time(i + 2), points.time(i));
+            assertEquals(i + 2, points.value(i));
+        }
+    }
+
+    /**
+     * 测试乱序写入按时间排序，同一时间戳保留最后写入的值
+     */
+    @Test
+    public void testSortAndDedup() {
+        HotWindowBuffer buffer = buffer(1, 8);
+        buffer.append(1, data(0, 1.0));
+        buffer.append(1, data(2, 2.0));
+        buffer.append(1, data(1, 3.0));
+        buffer.append(1, data(2, 4.0));
+
+        WindowPoints points = buffer.read(1, time(0), time(3));
+        assertEquals(3, points.size());
+        assertEquals(time(1), points.time(1));
+        assertEquals(3.0, points.value(1));
+        assertEquals(4.0, points.value(2));
+    }
+
+    /**
+     * 测试槽位用尽时淘汰最久未访问的序列，查询也算访问
+     */
+    @Test
+    public void testLruEviction() {
+        // 1MB / (32768点 × 16字节) = 2个槽位
+        HotWindowBuffer buffer = buffer(1, 32768);
+        buffer.append(1, data(0, 1.0));
+        buffer.append(2, data(0, 2.0));
+        assertNotNull(buffer.read(1, time(0), time(1)));
+
+        buffer.append(3, data(0, 3.0));
+
+        assertEquals(2, buffer.getSeriesCount());
+        assertNull(buffer.read(2, time(0), time(1)));
+        assertEquals(1.0, buffer.read(1, time(0), time(1)).value(0));
+        assertEquals(3.0, buffer.read(3, time(0), time(1)).value(0));
+    }
+
+    /**
+     * 测试淘汰后重新写入的序列从新的时间点开始完整，不会读到槽位上一个序列的数据
+     */
+    @Test
+    public void testReusedSlotStartsEmpty() {
+        HotWindowBuffer buffer = buffer(1, 32768);
+        buffer.append(1, data(0, 1.0));
+        buffer.append(2, data(0, 2.0));
+        buffer.append(3, data(5, 3.0));
+        buffer.append(1, data(6, 4.0));
+
+        assertNull(buffer.read(1, time(0), time(10)));
+        WindowPoints points = buffer.read(1, time(6), time(10));
+        assertEquals(1, points.size());
+        assertEquals(4.0, points.value(0));
+    }
+
+    /**
+     * 测试丢弃单个序列和全部序列
+     */
+    @Test
+    public void testRemoveAndClear() {
+        HotWindowBuffer buffer = buffer(1, 8);
+        buffer.append(1, data(0, 1.0));
+        buffer.append(2, data(0, 2.0));
+
+        buffer.remove(1);
+        assertNull(buffer.read(1, time(0), time(1)));
+        assertNotNull(buffer.read(2, time(0), time(1)));
+
+        buffer.clear();
+        assertEquals(0, buffer.getSeriesCount());
+        assertNull(buffer.read(2, time(0), time(1)));
+    }
+
+    /**
+     * 测试未启用或配置无效时不缓冲任何数据
+     */
+    @Test
+    public void testDisabled() {
+        HotWindowBuffer disabled = new HotWindowBuffer();
+        ReflectionTestUtils.setField(disabled, "enabled", false);
+        disabled.init();
+        disabled.append(1, data(0, 1.0));
+        assertNull(disabled.read(1, time(0), time(1)));
+
+        HotWindowBuffer invalid = buffer(1, 0);
+        assertFalse(invalid.isEnabled());
+        invalid.append(1, data(0, 1.0));
+        assertNull(invalid.read(1, time(0), time(1)));
+    }
+
+    private static HotWindowBuffer buffer(int budgetMb, int pointsPerSeries) {
+        HotWindowBuffer buffer = new HotWindowBuffer();
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "budgetMb", budgetMb);
+        ReflectionTestUtils.setField(buffer, "pointsPerSeries", pointsPerSeries);
+        buffer.init();
+        return buffer;
+    }
+
+    private static Instant time(long seconds) {
+        return Instant.ofEpochSecond(BASE + seconds);
+    }
+
+    private static TimeSeriesData data(long seconds, double value) {
+        TimeSeriesData data = new TimeSeriesData();
+        data.setAssetId("1");
+        data.setMetricName("cpu_usage");
+        data.setTime(time(seconds));
+        data.setValue(value);
+        return data;
+    }
+}
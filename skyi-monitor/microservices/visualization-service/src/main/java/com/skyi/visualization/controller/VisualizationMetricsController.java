@@ -108,6 +108,34 @@ public class VisualizationMetricsController {
         }
     }
     
+    /**
+     * 批量查询指标最新值
+     * @param name 指标名称
+     * @param tagsList 各组标签
+     * @return 与标签组顺序一致的最新值
+     */
+    @PostMapping("/latest/batch")
+    public ResponseEntity<Map<String, Object>> getLatestMetricValues(
+            @RequestParam String name,
+            @RequestBody List<Map<String, String>> tagsList) {
+        try {
+            List<Double> values = metricService.queryLatestValues(name, tagsList);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "成功");
+            response.put("data", values);
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "查询失败: " + e.getMessage());
+            
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+    
     /**
      * 获取指标名称列表
      * @return 指标名称列表
@@ -37,6 +37,15 @@ public interface MetricService {
      */
     Double queryLatestValue(String metricName, Map<String, String> tags);
     
+    /**
+     * 批量查询指标的最新值
+     *
+     * @param metricName 指标名称
+     * @param tagsList   各组标签过滤条件
+     * @return 与标签组顺序一致的最新值，没有数据时为null
+     */
+    List<Double> queryLatestValues(String metricName, List<Map<String, String>> tagsList);
+    
     /**
      * 查询指标在时间范围内的统计值
      *
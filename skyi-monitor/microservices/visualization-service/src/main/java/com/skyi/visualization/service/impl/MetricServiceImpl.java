@@ -1,5 +1,6 @@
 package com.skyi.visualization.service.impl;
 
+import com.skyi.common.model.LatestValue;
 import com.skyi.visualization.dto.MetricDataDTO;
 import com.skyi.visualization.dto.MetricDataDTO.DataPoint;
 import com.skyi.visualization.dto.MetricQueryDTO;
@@ -7,6 +8,7 @@ import com.skyi.visualization.service.MetricService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -15,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -28,6 +31,7 @@ public class MetricServiceImpl implements MetricService {
 
     private final RestTemplate restTemplate;
     private final InfluxDBMetricAdapter influxDBAdapter;
+    private final StringRedisTemplate stringRedisTemplate;
     
     @Value("${skyi.tsdb.url}")
     private String tsdbUrl;
@@ -39,9 +43,11 @@ public class MetricServiceImpl implements MetricService {
     private String metadataApi;
     
     @Autowired
-    public MetricServiceImpl(RestTemplate restTemplate, InfluxDBMetricAdapter influxDBAdapter) {
+    public MetricServiceImpl(RestTemplate restTemplate, InfluxDBMetricAdapter influxDBAdapter,
+                             StringRedisTemplate stringRedisTemplate) {
         this.restTemplate = restTemplate;
         this.influxDBAdapter = influxDBAdapter;
+        this.stringRedisTemplate = stringRedisTemplate;
     }
 
     @Override
@@ -69,6 +75,82 @@ public class MetricServiceImpl implements MetricService {
     
     @Override
     public Double queryLatestValue(String metricName, Map<String, String> tags) {
+        // 指定了资产时先读存储服务维护的最新值表
+        String key = latestKey(metricName, tags);
+        if (key != null) {
+            try {
+                LatestValue latest = LatestValue.decode(stringRedisTemplate.opsForValue().get(key));
+                if (latest != null && latest.getTime() >= latestLookbackStart()) {
+                    return latest.getValue();
+                }
+            } catch (Exception e) {
+                log.warn("读取最新值表失败: {}", e.getMessage());
+            }
+        }
+        return queryLatestFromStore(metricName, tags);
+    }
+    
+    @Override
+    public List<Double> queryLatestValues(String metricName, List<Map<String, String>> tagsList) {
+        List<Double> values = new ArrayList<>(Collections.nCopies(tagsList.size(), null));
+        
+        // 有资产ID的标签组一次MGET读取最新值表
+        List<Integer> indexes = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < tagsList.size(); i++) {
+            String key = latestKey(metricName, tagsList.get(i));
+            if (key != null) {
+                indexes.add(i);
+                keys.add(key);
+            }
+        }
+        Set<Integer> hits = new HashSet<>();
+        if (!keys.isEmpty()) {
+            try {
+                List<String> encoded = stringRedisTemplate.opsForValue().multiGet(keys);
+                long lookbackStart = latestLookbackStart();
+                for (int i = 0; encoded != null && i < keys.size(); i++) {
+                    LatestValue latest = LatestValue.decode(encoded.get(i));
+                    if (latest != null && latest.getTime() >= lookbackStart) {
+                        values.set(indexes.get(i), latest.getValue());
+                        hits.add(indexes.get(i));
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("批量读取最新值表失败: {}", e.getMessage());
+            }
+        }
+        
+        // 未命中的逐个查询
+        for (int i = 0; i < tagsList.size(); i++) {
+            if (!hits.contains(i)) {
+                values.set(i, queryLatestFromStore(metricName, tagsList.get(i)));
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * 最新值的回溯起点(毫秒)，与存储服务一致取最近1小时，更早的值(序列已停止上报)视为未命中
+     */
+    private static long latestLookbackStart() {
+        return System.currentTimeMillis() - Duration.ofHours(1).toMillis();
+    }
+    
+    /**
+     * 最新值表中的键，标签中没有资产ID时返回null
+     */
+    private static String latestKey(String metricName, Map<String, String> tags) {
+        if (tags == null || tags.get("assetId") == null) {
+            return null;
+        }
+        return LatestValue.key(tags.get("assetId"), metricName, tags);
+    }
+    
+    /**
+     * 从时序库查询最新值
+     */
+    private Double queryLatestFromStore(String metricName, Map<String, String> tags) {
         MetricQueryDTO queryDTO = new MetricQueryDTO();
         queryDTO.setName(metricName);
         queryDTO.setTags(tags);
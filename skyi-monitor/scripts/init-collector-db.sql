@@ -94,4 +94,14 @@ CREATE TABLE IF NOT EXISTS t_collector_agent (
     update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX idx_code (code),
     INDEX idx_status (status)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='采集代理表'; 
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='采集代理表';
+
+-- 采集服务节点表（多实例部署时的心跳与任务归属）
+CREATE TABLE IF NOT EXISTS t_collector_node (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    node_id VARCHAR(100) NOT NULL UNIQUE COMMENT '节点标识',
+    host VARCHAR(100) COMMENT '主机地址',
+    last_heartbeat_time DATETIME NOT NULL COMMENT '最后心跳时间',
+    create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    INDEX idx_last_heartbeat_time (last_heartbeat_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='采集服务节点表';